@@ -0,0 +1,366 @@
+package com.example.network_tool.bench;
+
+import ch.qos.logback.classic.Level;
+import com.example.network_tool.db.DuckDb;
+import com.example.network_tool.logic.ProfileLogic;
+import com.example.network_tool.mapper.ProfileJsonMapper;
+import com.example.network_tool.metrics.ProfileMetrics;
+import com.example.network_tool.model.Models.Consts;
+import com.example.network_tool.model.Models.TimedProfile;
+import com.example.network_tool.repo.DuckDbRepo;
+import com.example.network_tool.service.AnalysisEngines;
+import com.example.network_tool.service.NetworkSettings;
+import com.example.network_tool.service.ProfileService;
+import com.example.network_tool.service.ReferenceDataCache;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * End to end profile latency over a generated dataset, for sizing hardware.
+ * <p>
+ * Generates a data dir with DatasetGenerator (reused when one with the same
+ * scale and seed is already there), boots DuckDb in memory over it, wires the
+ * service by hand the way Spring would, then profiles a random sample of SSNs
+ * (monitored subjects and ordinary people mixed) and prints latency
+ * percentiles, per stage and per repo call breakdowns, allocation and heap
+ * figures.
+ * <p>
+ * From the project root:
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec -Djmh.main=com.example.network_tool.bench.LoadHarness \
+ *     -Djmh.args="--scale=10 --samples=300 --concurrency=4"
+ * </pre>
+ * Options: --scale (1), --samples (200), --warmup (30), --concurrency (1),
+ * --subjectShare (0.5), --seed (42), --source (data), --dataDir
+ * (target/harness/scale-N), --ingest (csv), --poolSize (8), --stageThreads (8),
+ * --engine (jvm; sql runs the proximity joins in DuckDB, see AnalysisEngines)
+ * and --businessesLinked / --wifiNearby / --lprSightings to set one analysis.
+ */
+public final class LoadHarness {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opt = parse(args);
+        int scale = Integer.parseInt(opt.getOrDefault("scale", "1"));
+        int samples = Integer.parseInt(opt.getOrDefault("samples", "200"));
+        int warmup = Integer.parseInt(opt.getOrDefault("warmup", "30"));
+        int concurrency = Math.max(1, Integer.parseInt(opt.getOrDefault("concurrency", "1")));
+        double subjectShare = Double.parseDouble(opt.getOrDefault("subjectShare", "0.5"));
+        long seed = Long.parseLong(opt.getOrDefault("seed", "42"));
+        String ingest = opt.getOrDefault("ingest", "csv");
+        int poolSize = Integer.parseInt(opt.getOrDefault("poolSize", "8"));
+        int stageThreads = Integer.parseInt(opt.getOrDefault("stageThreads", "8"));
+        AnalysisEngines engines = engines(opt);
+
+        // the app logs per source / per rebuild at INFO, too chatty here
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME))
+                .setLevel(Level.WARN);
+
+        // ---------- data ----------
+        Dataset data = dataset(opt, scale, seed);
+        List<String> ssns = data.ssns();
+        List<String> subjects = data.subjects();
+        Path dataDir = data.dir();
+        // ---------- boot ----------
+        long t0 = System.nanoTime();
+        DuckDb duck = new DuckDb(dataDir.toString(), "", poolSize, 30_000, ingest, "");
+        long bootMs = ms(System.nanoTime() - t0);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ProfileMetrics metrics = new ProfileMetrics(registry);
+        DuckDbRepo repo = new DuckDbRepo(duck, metrics);
+        ReferenceDataCache refCache = new ReferenceDataCache(repo, duck, registry);
+        ProfileService service = new ProfileService(repo, new ProfileLogic(), new ProfileJsonMapper(), refCache,
+                metrics, engines, NetworkSettings.defaults(), stageThreads, 1, false, Consts.CRIME_MINUTES);
+        t0 = System.nanoTime();
+        refCache.get();
+        long refMs = ms(System.nanoTime() - t0);
+        System.out.printf("boot        ingest (%s, in memory) %d ms, reference cache %d ms%n", ingest, bootMs, refMs);
+        System.out.printf("engines     %s%n", engines);
+
+        // ---------- sample ----------
+        Random rnd = new Random(seed);
+        List<String> sample = new ArrayList<>(warmup + samples);
+        for (int i = 0; i < warmup + samples; i++)
+            sample.add(rnd.nextDouble() < subjectShare
+                    ? subjects.get(rnd.nextInt(subjects.size()))
+                    : ssns.get(rnd.nextInt(ssns.size())));
+        Set<String> subjectSet = new HashSet<>(subjects);
+
+        AtomicInteger n = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency, r -> {
+            Thread t = new Thread(r, "harness-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            run(service, sample.subList(0, warmup), pool, null);
+            registry.clear();
+
+            System.gc();
+            long liveHeap = heapUsed();
+            List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                    .filter(p -> p.getType() == MemoryType.HEAP).toList();
+            heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+            long gcCount0 = gcCount(), gcTime0 = gcTime();
+            Map<Long, Long> alloc0 = allocatedByThread();
+
+            Results res = new Results();
+            long w0 = System.nanoTime();
+            run(service, sample.subList(warmup, sample.size()), pool, res);
+            long wallNanos = System.nanoTime() - w0;
+
+            long allocated = allocatedSince(alloc0);
+            long peakHeap = heapPools.stream().mapToLong(p -> p.getPeakUsage().getUsed()).sum();
+            long gcCount = gcCount() - gcCount0, gcTime = gcTime() - gcTime0;
+
+            // ---------- report ----------
+            System.out.printf("run         %d profiles (%d warmup), concurrency %d, %.1f profiles/s%n",
+                    samples, warmup, concurrency, samples / (wallNanos / 1e9));
+            System.out.println();
+            System.out.printf("%-30s %6s %9s %9s %9s %9s %9s%n", "latency ms", "n", "mean", "p50", "p95", "p99",
+                    "max");
+            printRow("all", res.latency);
+            List<Long> subj = new ArrayList<>(), other = new ArrayList<>();
+            for (int i = 0; i < res.latency.size(); i++)
+                (subjectSet.contains(res.ssn.get(i)) ? subj : other).add(res.latency.get(i));
+            printRow("monitored subjects", subj);
+            printRow("other people", other);
+            System.out.println();
+            System.out.printf("%-30s %6s %9s %9s %9s %9s %9s%n", "stage ms", "n", "mean", "p50", "p95", "p99",
+                    "max");
+            res.stages.entrySet().stream()
+                    .sorted((a, b) -> Double.compare(mean(b.getValue()), mean(a.getValue())))
+                    .forEach(e -> printRow(e.getKey(), e.getValue()));
+            System.out.println();
+            System.out.printf("%-30s %6s %9s %9s %9s%n", "repo call ms", "calls", "mean", "max", "rows/call");
+            registry.find("profile.repo").timers().stream()
+                    .filter(t -> "ok".equals(t.getId().getTag("outcome")))
+                    .sorted((a, b) -> Double.compare(b.totalTime(TimeUnit.MILLISECONDS),
+                            a.totalTime(TimeUnit.MILLISECONDS)))
+                    .forEach(t -> {
+                        String method = t.getId().getTag("method");
+                        DistributionSummary rows = registry.find("profile.repo.rows").tag("method", method)
+                                .summary();
+                        System.out.printf("%-30s %6d %9.2f %9.2f %9.1f%n", method, t.count(),
+                                t.mean(TimeUnit.MILLISECONDS), t.max(TimeUnit.MILLISECONDS),
+                                rows == null ? 0 : rows.mean());
+                    });
+            System.out.println();
+            double secs = wallNanos / 1e9;
+            System.out.printf("allocation  %.1f MB total, %.1f MB/s, %.2f MB per profile%n", mb(allocated),
+                    mb(allocated) / secs, mb(allocated) / samples);
+            System.out.printf("heap        live after warmup %.1f MB, peak during run %.1f MB, max %.1f MB%n",
+                    mb(liveHeap), mb(peakHeap), mb(Runtime.getRuntime().maxMemory()));
+            System.out.printf("gc          %d collections, %d ms%n", gcCount, gcTime);
+            System.out.printf("duckdb      %s%n", duckMemory(duck));
+            if (res.failures.get() > 0)
+                System.out.printf("failures    %d (first: %s)%n", res.failures.get(), res.firstFailure);
+        } finally {
+            pool.shutdownNow();
+            service.close();
+            duck.close();
+        }
+    }
+
+    // ---------- dataset ----------
+
+    record Dataset(Path dir, List<String> ssns, List<String> subjects) {
+    }
+
+    // generates the data dir, or reuses it when one with the same scale and
+    // seed is already there (the marker file lists its people, subjects first)
+    static Dataset dataset(Map<String, String> opt, int scale, long seed) throws Exception {
+        Path source = Path.of(opt.getOrDefault("source", "data"));
+        Path dataDir = Path.of(opt.getOrDefault("dataDir", "target/harness/scale-" + scale));
+        Path marker = dataDir.resolve(".harness");
+        String stamp = "scale=" + scale + ",seed=" + seed + ",people=" + DatasetGenerator.PEOPLE_PER_SCALE
+                + ",format=" + DatasetGenerator.FORMAT;
+        List<String> ssns;
+        List<String> subjects;
+        if (Files.isRegularFile(marker) && Files.readString(marker).startsWith(stamp + "\n")) {
+            List<String> lines = Files.readAllLines(marker, StandardCharsets.UTF_8);
+            int nSubjects = Integer.parseInt(lines.get(1));
+            ssns = lines.subList(2, lines.size());
+            subjects = ssns.subList(0, nSubjects);
+            System.out.printf("dataset     reusing %s (%d people, %d subjects)%n", dataDir, ssns.size(), nSubjects);
+        } else {
+            long t0 = System.nanoTime();
+            DatasetGenerator.Summary s = DatasetGenerator.generate(source, dataDir, scale, seed);
+            ssns = s.ssns();
+            subjects = s.subjectSsns();
+            List<String> lines = new ArrayList<>();
+            lines.add(stamp);
+            lines.add(Integer.toString(s.subjects()));
+            lines.addAll(ssns);
+            Files.write(marker, lines, StandardCharsets.UTF_8);
+            System.out.printf("dataset     generated %s in %d ms%n", dataDir, ms(System.nanoTime() - t0));
+            System.out.printf("            people %d, phones %d, vehicles %d, subjects %d, ankle %d, wifi %d, "
+                    + "lpr %d, telco %d, crimes %d, businesses %d%n", s.people(), s.phones(), s.vehicles(),
+                    s.subjects(), s.anklePings(), s.wifiEvents(), s.lprHits(), s.telcoRows(), s.crimes(),
+                    s.businesses());
+        }
+
+        return new Dataset(dataDir, ssns, subjects);
+    }
+
+    // --engine for all three analyses, --businessesLinked / --wifiNearby /
+    // --lprSightings to override one
+    static AnalysisEngines engines(Map<String, String> opt) {
+        String all = opt.getOrDefault("engine", "jvm");
+        return new AnalysisEngines(opt.getOrDefault("businessesLinked", all),
+                opt.getOrDefault("wifiNearby", all), opt.getOrDefault("lprSightings", all));
+    }
+
+    // ---------- running ----------
+
+    private static final class Results {
+        final List<Long> latency = Collections.synchronizedList(new ArrayList<>());
+        final List<String> ssn = Collections.synchronizedList(new ArrayList<>());
+        final Map<String, List<Long>> stages = new ConcurrentHashMap<>();
+        final AtomicInteger failures = new AtomicInteger();
+        volatile String firstFailure;
+    }
+
+    private static void run(ProfileService service, List<String> ssns, ExecutorService pool, Results res)
+            throws Exception {
+        List<Future<?>> all = new ArrayList<>(ssns.size());
+        for (String ssn : ssns) {
+            all.add(pool.submit(() -> {
+                long t0 = System.nanoTime();
+                TimedProfile p;
+                try {
+                    p = service.profileTimed(ssn);
+                } catch (RuntimeException e) {
+                    if (res != null && res.failures.getAndIncrement() == 0)
+                        res.firstFailure = ssn + ": " + (e.getCause() != null ? e.getCause() : e);
+                    return;
+                }
+                long nanos = System.nanoTime() - t0;
+                if (res == null)
+                    return;
+                synchronized (res) {
+                    res.latency.add(nanos);
+                    res.ssn.add(ssn);
+                }
+                p.stageNanos().forEach((k, v) ->
+                        res.stages.computeIfAbsent(k, x -> Collections.synchronizedList(new ArrayList<>())).add(v));
+            }));
+        }
+        for (Future<?> f : all)
+            f.get();
+    }
+
+    // ---------- numbers ----------
+
+    private static void printRow(String name, List<Long> nanos) {
+        if (nanos.isEmpty()) {
+            System.out.printf("%-30s %6d%n", name, 0);
+            return;
+        }
+        List<Long> s = new ArrayList<>(nanos);
+        Collections.sort(s);
+        System.out.printf("%-30s %6d %9.2f %9.2f %9.2f %9.2f %9.2f%n", name, s.size(), mean(s) / 1e6,
+                pct(s, 50) / 1e6, pct(s, 95) / 1e6, pct(s, 99) / 1e6, s.get(s.size() - 1) / 1e6);
+    }
+
+    // nearest rank on a sorted list
+    private static long pct(List<Long> sorted, double p) {
+        int rank = (int) Math.ceil(p / 100.0 * sorted.size());
+        return sorted.get(Math.max(0, Math.min(sorted.size() - 1, rank - 1)));
+    }
+
+    private static double mean(List<Long> v) {
+        synchronized (v) {
+            return v.stream().mapToLong(Long::longValue).average().orElse(0);
+        }
+    }
+
+    // bytes allocated per live thread. Threads that exit between two snapshots
+    // drop out, so this is a lower bound (pool threads here all live throughout)
+    private static Map<Long, Long> allocatedByThread() {
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long[] ids = mx.getAllThreadIds();
+        long[] bytes = mx.getThreadAllocatedBytes(ids);
+        Map<Long, Long> out = new HashMap<>();
+        for (int i = 0; i < ids.length; i++)
+            if (bytes[i] >= 0)
+                out.put(ids[i], bytes[i]);
+        return out;
+    }
+
+    private static long allocatedSince(Map<Long, Long> before) {
+        long total = 0;
+        for (Map.Entry<Long, Long> e : allocatedByThread().entrySet())
+            total += e.getValue() - before.getOrDefault(e.getKey(), 0L);
+        return total;
+    }
+
+    private static long heapUsed() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount).filter(c -> c > 0).sum();
+    }
+
+    private static long gcTime() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime).filter(c -> c > 0).sum();
+    }
+
+    // native memory held by DuckDB (buffer manager), outside the Java heap
+    private static String duckMemory(DuckDb duck) {
+        try (Connection c = duck.borrow();
+                Statement st = c.createStatement();
+                ResultSet rs = st.executeQuery("SELECT SUM(memory_usage_bytes) FROM duckdb_memory()")) {
+            return rs.next() ? String.format("%.1f MB in use", mb(rs.getLong(1))) : "n/a";
+        } catch (Exception e) {
+            return "n/a (" + e.getMessage() + ")";
+        }
+    }
+
+    private static double mb(long bytes) {
+        return bytes / (1024.0 * 1024.0);
+    }
+
+    private static long ms(long nanos) {
+        return nanos / 1_000_000;
+    }
+
+    static Map<String, String> parse(String[] args) {
+        Map<String, String> out = new LinkedHashMap<>();
+        for (String a : args) {
+            if (!a.startsWith("--") || !a.contains("="))
+                throw new IllegalArgumentException("expected --name=value, got " + a);
+            out.put(a.substring(2, a.indexOf('=')), a.substring(a.indexOf('=') + 1));
+        }
+        return out;
+    }
+}
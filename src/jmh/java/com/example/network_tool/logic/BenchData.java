@@ -0,0 +1,287 @@
+package com.example.network_tool.logic;
+
+import com.example.network_tool.model.Models.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic inputs for the benchmarks, built from the CSVs in data/.
+ * <p>
+ * The ankle track, businesses and crime reports come from the bundled files.
+ * At scale N the track is repeated N times one day apart and businesses /
+ * crimes get N jittered copies, so density grows along with size. WIFI and LPR
+ * are not in the repo, so events are generated around the (scaled) track:
+ * some near pings in space and time, the same amount again as background
+ * noise, with a few carrying the POI phone MACs / plates. Fixed seed, so a
+ * given scale always produces the same data.
+ */
+final class BenchData {
+    static final String POI_MAC_1 = "AA:BB:CC:00:00:01";
+    static final String POI_MAC_2 = "AA:BB:CC:00:00:02";
+    static final String POI_PLATE_1 = "PL0001";
+    static final String POI_PLATE_2 = "PL0002";
+
+    private static final double M_PER_DEG = 111000.0;
+    private static final long DAY_MS = 24L * 3600 * 1000;
+
+    final AnkleTrack track;
+    final List<Business> businesses;
+    final SpatialGrid<Business> bizGrid;
+    final List<Crime> crimes;
+    // in the column form the repo loads them in
+    final WifiScan wifi;
+    final LprScan lpr;
+    final List<Phone> phones;
+    final List<Vehicle> vehicles;
+
+    private BenchData(AnkleTrack track, List<Business> businesses, List<Crime> crimes,
+            List<WifiEvent> wifi, List<LprHit> lpr, List<Phone> phones, List<Vehicle> vehicles) {
+        this.track = track;
+        this.businesses = businesses;
+        this.bizGrid = new SpatialGrid<>(businesses, b -> b.lat, b -> b.lon, Consts.BIZ_RADIUS_M);
+        this.crimes = crimes;
+        this.wifi = WifiScan.of(wifi);
+        this.lpr = LprScan.of(lpr);
+        this.phones = phones;
+        this.vehicles = vehicles;
+    }
+
+    static BenchData load(Path dataDir, int scale) throws SQLException {
+        Path ankleCsv = dataDir.resolve("JaredCombs_Ankle_Monitor.csv");
+        if (!Files.isRegularFile(ankleCsv))
+            throw new IllegalStateException("bundled CSVs not found in " + dataDir.toAbsolutePath()
+                    + ", run from the project root or pass -Djmh.dataDir=<dir>");
+
+        Random rnd = new Random(42);
+        try (Connection c = DriverManager.getConnection("jdbc:duckdb:")) {
+            AnkleTrack base = loadAnkle(c, ankleCsv);
+            AnkleTrack track = scaleTrack(base, scale, rnd);
+            List<Business> biz = scaleBusinesses(loadBusinesses(c, dataDir.resolve("Baltimore_Businesses.csv")),
+                    scale, rnd);
+            List<Crime> crimes = scaleCrimes(loadCrimes(c, dataDir.resolve("crime_reports.csv")), scale, rnd);
+            return new BenchData(track, biz, crimes, synthWifi(track, rnd), synthLpr(track, rnd),
+                    phones(), vehicles());
+        }
+    }
+
+    // ---------- bundled CSVs ----------
+
+    private static AnkleTrack loadAnkle(Connection c, Path csv) throws SQLException {
+        AnkleTrack.Builder b = new AnkleTrack.Builder();
+        try (Statement st = c.createStatement();
+                ResultSet rs = st.executeQuery("SELECT CAST(datetime AS VARCHAR), TRY_CAST(location_y AS DOUBLE),"
+                        + " TRY_CAST(location_x AS DOUBLE) FROM read_csv_auto('" + path(csv) + "', header=true,"
+                        + " all_varchar=true)")) {
+            while (rs.next()) {
+                double lat = rs.getDouble(2);
+                boolean noLat = rs.wasNull();
+                double lon = rs.getDouble(3);
+                if (noLat || rs.wasNull())
+                    continue;
+                try {
+                    b.add(OffsetDateTime.parse(rs.getString(1)).toInstant().toEpochMilli(), lat, lon);
+                } catch (DateTimeParseException | NullPointerException e) {
+                    // skip rows the app would reject too
+                }
+            }
+        }
+        return b.build();
+    }
+
+    private static List<Business> loadBusinesses(Connection c, Path csv) throws SQLException {
+        List<Business> out = new ArrayList<>();
+        try (Statement st = c.createStatement();
+                ResultSet rs = st.executeQuery("SELECT md5(CAST(name AS VARCHAR) || lat || lon), UPPER(TRIM(name)),"
+                        + " UPPER(TRIM(address)), TRY_CAST(lat AS DOUBLE), TRY_CAST(lon AS DOUBLE),"
+                        + " UPPER(TRIM(owner_firs)), UPPER(TRIM(owner_last))"
+                        + " FROM read_csv_auto('" + path(csv) + "', header=true, all_varchar=true)"
+                        + " WHERE TRY_CAST(lat AS DOUBLE) IS NOT NULL AND TRY_CAST(lon AS DOUBLE) IS NOT NULL")) {
+            while (rs.next()) {
+                Business b = new Business();
+                b.bizId = rs.getString(1);
+                b.name = rs.getString(2);
+                b.line1 = rs.getString(3);
+                b.lat = rs.getDouble(4);
+                b.lon = rs.getDouble(5);
+                b.ownerFirst = rs.getString(6);
+                b.ownerLast = rs.getString(7);
+                out.add(b);
+            }
+        }
+        return out;
+    }
+
+    private static List<Crime> loadCrimes(Connection c, Path csv) throws SQLException {
+        List<Crime> out = new ArrayList<>();
+        try (Statement st = c.createStatement();
+                ResultSet rs = st.executeQuery("SELECT TRIM(report_id), TRY_CAST(lat AS DOUBLE),"
+                        + " TRY_CAST(lon AS DOUBLE), \"pre-text\", \"post-text\", file_path"
+                        + " FROM read_csv_auto('" + path(csv) + "', header=true, all_varchar=true)"
+                        + " WHERE TRY_CAST(lat AS DOUBLE) IS NOT NULL")) {
+            while (rs.next()) {
+                Crime cr = new Crime();
+                cr.reportId = rs.getString(1);
+                cr.lat = rs.getDouble(2);
+                cr.lon = rs.getDouble(3);
+                cr.preText = rs.getString(4);
+                cr.postText = rs.getString(5);
+                cr.filePath = rs.getString(6);
+                out.add(cr);
+            }
+        }
+        return out;
+    }
+
+    // ---------- scaling ----------
+
+    // copy k is the same walk k days later, moved a few meters
+    private static AnkleTrack scaleTrack(AnkleTrack base, int scale, Random rnd) {
+        AnkleTrack.Builder b = new AnkleTrack.Builder(base.size() * scale);
+        for (int k = 0; k < scale; k++) {
+            for (int i = 0; i < base.size(); i++) {
+                double j = k == 0 ? 0 : 20;
+                b.add(base.epochMillis[i] + k * DAY_MS,
+                        base.lat[i] + jitterDeg(rnd, j), base.lon[i] + jitterDeg(rnd, j));
+            }
+        }
+        return b.build();
+    }
+
+    private static List<Business> scaleBusinesses(List<Business> base, int scale, Random rnd) {
+        List<Business> out = new ArrayList<>(base.size() * scale);
+        for (int k = 0; k < scale; k++) {
+            for (Business src : base) {
+                Business b = new Business();
+                b.bizId = k == 0 ? src.bizId : src.bizId + "#" + k;
+                b.name = src.name;
+                b.line1 = src.line1;
+                b.lat = src.lat + (k == 0 ? 0 : jitterDeg(rnd, 250));
+                b.lon = src.lon + (k == 0 ? 0 : jitterDeg(rnd, 250));
+                b.ownerFirst = src.ownerFirst;
+                b.ownerLast = src.ownerLast;
+                out.add(b);
+            }
+        }
+        return out;
+    }
+
+    private static List<Crime> scaleCrimes(List<Crime> base, int scale, Random rnd) {
+        List<Crime> out = new ArrayList<>(base.size() * scale);
+        for (int k = 0; k < scale; k++) {
+            for (Crime src : base) {
+                Crime c = new Crime();
+                c.reportId = k == 0 ? src.reportId : src.reportId + "-" + k;
+                c.lat = src.lat + (k == 0 ? 0 : jitterDeg(rnd, 500));
+                c.lon = src.lon + (k == 0 ? 0 : jitterDeg(rnd, 500));
+                c.preText = src.preText;
+                c.postText = src.postText;
+                c.filePath = src.filePath;
+                out.add(c);
+            }
+        }
+        return out;
+    }
+
+    // ---------- generated WIFI / LPR ----------
+
+    // one event near every 4th ping (150 m, +/- 12 min) plus as many random ones
+    private static List<WifiEvent> synthWifi(AnkleTrack t, Random rnd) {
+        List<WifiEvent> out = new ArrayList<>(t.size() / 2 + 1);
+        for (int i = 0; i < t.size(); i += 4) {
+            out.add(wifi(rnd, t.epochMillis[i] + offsetMs(rnd, 12),
+                    t.lat[i] + jitterDeg(rnd, 150), t.lon[i] + jitterDeg(rnd, 150)));
+            int r = rnd.nextInt(t.size());
+            out.add(wifi(rnd, t.epochMillis[r] + offsetMs(rnd, 180),
+                    t.lat[r] + jitterDeg(rnd, 3000), t.lon[r] + jitterDeg(rnd, 3000)));
+        }
+        return out;
+    }
+
+    private static WifiEvent wifi(Random rnd, long ms, double lat, double lon) {
+        WifiEvent e = new WifiEvent();
+        e.ts = Instant.ofEpochMilli(ms);
+        e.lat = lat;
+        e.lon = lon;
+        int m = rnd.nextInt(100);
+        e.deviceMac = m == 0 ? POI_MAC_1
+                : m == 1 ? POI_MAC_2
+                        : String.format("AA:BB:CC:%02X:%02X:%02X", rnd.nextInt(4), rnd.nextInt(256), rnd.nextInt(256));
+        int n = 1 + rnd.nextInt(3);
+        for (int s = 0; s < n; s++)
+            e.ssids.add("NET_" + rnd.nextInt(300));
+        return e;
+    }
+
+    // one read near every 10th ping plus as many random ones
+    private static List<LprHit> synthLpr(AnkleTrack t, Random rnd) {
+        List<LprHit> out = new ArrayList<>(t.size() / 5 + 1);
+        for (int i = 0; i < t.size(); i += 10) {
+            out.add(lpr(rnd, t.epochMillis[i] + offsetMs(rnd, 12),
+                    t.lat[i] + jitterDeg(rnd, 150), t.lon[i] + jitterDeg(rnd, 150)));
+            int r = rnd.nextInt(t.size());
+            out.add(lpr(rnd, t.epochMillis[r] + offsetMs(rnd, 180),
+                    t.lat[r] + jitterDeg(rnd, 3000), t.lon[r] + jitterDeg(rnd, 3000)));
+        }
+        return out;
+    }
+
+    private static LprHit lpr(Random rnd, long ms, double lat, double lon) {
+        LprHit h = new LprHit();
+        h.ts = Instant.ofEpochMilli(ms);
+        h.lat = lat;
+        h.lon = lon;
+        int p = rnd.nextInt(50);
+        h.plateNorm = p == 0 ? POI_PLATE_1 : p == 1 ? POI_PLATE_2 : String.format("PL%04d", 3 + rnd.nextInt(5000));
+        h.plateRaw = h.plateNorm;
+        h.plateState = "MD";
+        h.sensorId = "LPR" + rnd.nextInt(40);
+        h.direction = rnd.nextBoolean() ? "N" : "S";
+        return h;
+    }
+
+    private static List<Phone> phones() {
+        List<Phone> out = new ArrayList<>();
+        for (String mac : List.of(POI_MAC_1, POI_MAC_2)) {
+            Phone p = new Phone();
+            p.mac = mac;
+            p.msisdn = "4105550000";
+            p.type = "CONTRACT";
+            out.add(p);
+        }
+        return out;
+    }
+
+    private static List<Vehicle> vehicles() {
+        List<Vehicle> out = new ArrayList<>();
+        for (String plate : List.of(POI_PLATE_1, POI_PLATE_2)) {
+            Vehicle v = new Vehicle();
+            v.plate = plate;
+            out.add(v);
+        }
+        return out;
+    }
+
+    private static double jitterDeg(Random rnd, double meters) {
+        return (rnd.nextDouble() * 2 - 1) * meters / M_PER_DEG;
+    }
+
+    private static long offsetMs(Random rnd, int minutes) {
+        return (long) ((rnd.nextDouble() * 2 - 1) * minutes * 60_000);
+    }
+
+    private static String path(Path p) {
+        return p.toAbsolutePath().toString().replace("\\", "/");
+    }
+}
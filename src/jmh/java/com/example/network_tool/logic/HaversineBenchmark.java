@@ -0,0 +1,40 @@
+package com.example.network_tool.logic;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one ProfileLogic.haversineM call, the inner loop of every proximity
+ * match. Points are spread over the Baltimore area like the real data.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class HaversineBenchmark {
+    static final int N = 1024;
+    final double[] lat1 = new double[N], lon1 = new double[N], lat2 = new double[N], lon2 = new double[N];
+
+    @Setup
+    public void setup() {
+        Random rnd = new Random(7);
+        for (int i = 0; i < N; i++) {
+            lat1[i] = 39.2 + rnd.nextDouble() * 0.2;
+            lon1[i] = -76.7 + rnd.nextDouble() * 0.2;
+            lat2[i] = 39.2 + rnd.nextDouble() * 0.2;
+            lon2[i] = -76.7 + rnd.nextDouble() * 0.2;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(N)
+    public void haversineM(Blackhole bh) {
+        for (int i = 0; i < N; i++)
+            bh.consume(ProfileLogic.haversineM(lat1[i], lon1[i], lat2[i], lon2[i]));
+    }
+}
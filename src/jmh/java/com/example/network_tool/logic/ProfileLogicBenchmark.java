@@ -0,0 +1,108 @@
+package com.example.network_tool.logic;
+
+import com.example.network_tool.model.Models.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ProfileLogic hot paths over BenchData at 1x / 10x / 100x of the bundled CSVs.
+ * <p>
+ * mode=parallel calls the logic as the service does (parallel streams on the
+ * common pool). mode=serial runs the same call inside a one thread
+ * ForkJoinPool, which is where its parallel streams then run, so the two rows
+ * show what the parallelism buys at each size.
+ * <p>
+ * Run from the project root: mvn -Pjmh test-compile exec:exec
+ * (see the jmh profile in pom.xml for passing JMH options).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx6g" })
+@State(Scope.Benchmark)
+public class ProfileLogicBenchmark {
+
+    @Param({ "1", "10", "100" })
+    int scale;
+
+    @Param({ "parallel", "serial" })
+    String mode;
+
+    private final ProfileLogic logic = new ProfileLogic();
+    private BenchData data;
+    private ForkJoinPool serialPool;
+    private List<CrimeMatch> spatialMatches;
+    private List<CrimeMatch> otherMatches;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        data = BenchData.load(Path.of(System.getProperty("jmh.dataDir", "data")), scale);
+        serialPool = new ForkJoinPool(1);
+
+        // inputs for mergeCrimeMatches: the real spatial result plus a second
+        // list that overlaps half of the crimes, like LPR / wifi matches do
+        spatialMatches = logic.matchCrimesSpatial(data.track, data.crimes);
+        otherMatches = new ArrayList<>();
+        for (int i = 0; i < data.crimes.size(); i += 2) {
+            Crime c = data.crimes.get(i);
+            CrimeMatch m = new CrimeMatch();
+            m.reportId = c.reportId;
+            m.preText = c.preText;
+            m.postText = c.postText;
+            m.filePath = c.filePath;
+            m.lat = c.lat;
+            m.lon = c.lon;
+            m.via = "LPR";
+            m.distM = 10.0;
+            otherMatches.add(m);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        serialPool.shutdown();
+    }
+
+    private <T> T run(Callable<T> body) throws Exception {
+        if ("serial".equals(mode))
+            return serialPool.submit(body).get();
+        return body.call();
+    }
+
+    @Benchmark
+    public List<BizVisit> businessesLinked() throws Exception {
+        return run(() -> logic.businessesLinked(data.track, data.bizGrid));
+    }
+
+    @Benchmark
+    public List<WifiSpot> wifiNearby() throws Exception {
+        return run(() -> logic.wifiNearby(data.track, data.phones, data.wifi));
+    }
+
+    @Benchmark
+    public List<LprView> lprSightings() throws Exception {
+        return run(() -> logic.lprSightings(data.track, data.vehicles, data.lpr));
+    }
+
+    @Benchmark
+    public List<CrimeMatch> matchCrimesSpatial() throws Exception {
+        return run(() -> logic.matchCrimesSpatial(data.track, data.crimes));
+    }
+
+    @Benchmark
+    public List<CrimeMatch> matchCrimesByWifiPhones() throws Exception {
+        return run(() -> logic.matchCrimesByWifiPhones(data.phones, data.wifi, data.crimes));
+    }
+
+    @Benchmark
+    public List<CrimeMatch> mergeCrimeMatches() throws Exception {
+        return run(() -> logic.mergeCrimeMatches(spatialMatches, otherMatches));
+    }
+}
@@ -1,31 +1,71 @@
 package com.example.network_tool.cli;
 
+import com.example.network_tool.db.DuckDb;
+import com.example.network_tool.model.Models.BatchSummary;
 import com.example.network_tool.service.ProfileService;
+import com.example.network_tool.service.ReferenceDataCache;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Component;
 
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Scanner;
 
 @Component
 public class ConsoleApp implements CommandLineRunner {
     private final ProfileService service;
+    private final DuckDb duck;
+    private final ReferenceDataCache refCache;
+    private final PrometheusMeterRegistry registry;
 
-    public ConsoleApp(ProfileService service) { this.service = service; }
+    public ConsoleApp(ProfileService service, DuckDb duck, ReferenceDataCache refCache,
+            PrometheusMeterRegistry registry) {
+        this.service = service;
+        this.duck = duck;
+        this.refCache = refCache;
+        this.registry = registry;
+    }
 
     @Override
     public void run(String... args) {
+        // --batch=<file of SSNs> [--out=<file>] runs the nightly batch instead of the prompt
+        String batch = null, out = null;
+        for (String a : args) {
+            if (a.startsWith("--batch=")) batch = a.substring("--batch=".length());
+            else if (a.startsWith("--out=")) out = a.substring("--out=".length());
+        }
+        if (batch != null) {
+            runBatch(batch, out != null ? out : batch + ".ndjson");
+            return;
+        }
+
         System.out.println("== POI Network Tool ==");
-        System.out.println("Enter POI SSN (or 'exit'):");
+        System.out.println("Enter POI SSN ('refresh' to reload changed CSVs, 'metrics' to dump timers, 'exit' to quit):");
+        Writer console = new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
         try (Scanner sc = new Scanner(System.in)) {
             while (true) {
                 System.out.print("> SSN: ");
                 String ssn = sc.nextLine().trim();
                 if (ssn.equalsIgnoreCase("exit")) break;
                 if (ssn.isEmpty()) continue;
+                if (ssn.equalsIgnoreCase("refresh")) {
+                    refresh();
+                    continue;
+                }
+                if (ssn.equalsIgnoreCase("metrics")) {
+                    // same text a Prometheus scrape of app.metrics.port gets
+                    System.out.print(registry.scrape());
+                    continue;
+                }
 
                 try {
-                    String json = service.profileJson(ssn);
-                    System.out.println(json);
+                    // streamed, sections show up as they are computed
+                    service.writeProfile(ssn, console, true);
+                    System.out.println();
                 } catch (Exception e) {
                     System.err.println("Error: " + e.getMessage());
                     e.printStackTrace(System.err);
@@ -33,4 +73,26 @@ public class ConsoleApp implements CommandLineRunner {
             }
         }
     }
+
+    private void refresh() {
+        try {
+            List<String> changed = duck.refresh();
+            System.out.println(changed.isEmpty() ? "no source changed" : "reloaded: " + String.join(", ", changed));
+            System.out.println("reference cache: " + refCache.stats());
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace(System.err);
+        }
+    }
+
+    private void runBatch(String in, String out) {
+        try {
+            BatchSummary s = service.profileBatch(Path.of(in), Path.of(out));
+            System.out.printf("batch: %d SSNs -> %s (%d profiles, %d not found, %d failed) in %d ms%n",
+                    s.total(), out, s.written(), s.notFound(), s.failed(), s.millis());
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace(System.err);
+        }
+    }
 }
@@ -1,32 +1,138 @@
 package com.example.network_tool.db;
 
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowReader;
+import org.duckdb.DuckDBAppender;
+import org.duckdb.DuckDBConnection;
+import org.duckdb.DuckDBResultSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.PathMatcher;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 /**
  * Bootstraps DuckDB:
  * 1) Connects to file-backed DB if app.dbPath is provided; else in-memory
  * 2) Loads CSVs into raw_* materialized tables (with safe
- * casting/normalization)
+ * casting/normalization). With a file-backed DB an ingest_manifest table
+ * remembers size/mtime/sha256 of every CSV, unchanged sources are skipped and
+ * files that only grew get just their new tail appended. While the app runs,
+ * LiveIngest can keep appending new lines of the ankle / LPR CSVs via follow()
  * 3) Creates views with the original names so existing queries keep working
+ * <p>
+ * Key contract: ssn / person_ssn / imsi come out trimmed; dl, owner_dl,
+ * plate_norm, mac, device_mac, names and address columns trimmed and upper
+ * case. DuckDbRepo relies on that and compares the bare columns, which keeps
+ * the filters pushable into the scan, and the lookup keys get ART indexes
+ * <p>
+ * With app.ingest.mode=parquet step 2 is different: every normalized raw_*
+ * table is written once to a Parquet file (sorted by timestamp/key; the ankle
+ * monitors one directory per subject and day) under app.ingest.parquetDir and
+ * raw_* become views over those files. Later starts skip CSV parsing
+ * entirely while the source CSV is unchanged, and the sort order lets the ts
+ * range filters of the bounded loaders skip row groups
+ * <p>
+ * Also keeps a small pool of duplicated connections to the same database so
+ * queries from different threads can run side by side (one DuckDB JDBC
+ * connection must not be used by two threads at once)
  */
 @Component
 public class DuckDb implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(DuckDb.class);
+
     private final Connection conn;
     private final String dataDir;
+    // file-backed DB: tables survive restarts, so bootstrap can skip unchanged CSVs
+    private final boolean persistent;
+    // null unless app.ingest.mode=parquet
+    private final Path parquetDir;
+    private final int poolSize;
+    private final long borrowTimeoutMs;
+    private final BlockingQueue<Connection> idle;
+    private final List<Connection> pooled = new ArrayList<>();
+    // raw_* table -> load count, and the fileStamp() of the CSVs it was loaded from
+    private final Map<String, AtomicLong> versions = new ConcurrentHashMap<>();
+    private final Map<String, String> seen = new ConcurrentHashMap<>();
+    // time series raw_* table -> rows whose datetime did not parse (ts NULL)
+    private final Map<String, Long> rejects = new ConcurrentHashMap<>();
+    // glob source table -> file name -> how far follow() has read it. Dropped
+    // whenever the table is (re)loaded, follow() then counts it up again
+    private final Map<String, Map<String, Tail>> tails = new ConcurrentHashMap<>();
+    // null when Arrow can't run in this JVM, scan() then reads JDBC rows
+    private final BufferAllocator arrow;
 
     public DuckDb(
             @Value("${app.dataDir}") String dataDir,
-            @Value("${app.dbPath:}") String dbPath) throws SQLException {
+            @Value("${app.dbPath:}") String dbPath,
+            @Value("${app.db.poolSize:8}") int poolSize,
+            @Value("${app.db.borrowTimeoutMs:30000}") long borrowTimeoutMs,
+            @Value("${app.ingest.mode:csv}") String ingestMode,
+            @Value("${app.ingest.parquetDir:}") String parquetDir) throws SQLException {
         this.dataDir = dataDir;
+        this.persistent = dbPath != null && !dbPath.isBlank();
+        if ("parquet".equalsIgnoreCase(ingestMode)) {
+            this.parquetDir = parquetDir == null || parquetDir.isBlank()
+                    ? Paths.get(dataDir, ".parquet")
+                    : Paths.get(parquetDir);
+        } else if ("csv".equalsIgnoreCase(ingestMode)) {
+            this.parquetDir = null;
+        } else {
+            throw new SQLException("app.ingest.mode must be csv or parquet, got: " + ingestMode);
+        }
+        this.poolSize = Math.max(1, poolSize);
+        this.borrowTimeoutMs = borrowTimeoutMs;
+        this.idle = new ArrayBlockingQueue<>(this.poolSize);
 
         File dd = new File(dataDir);
         if (!dd.exists() || !dd.isDirectory()) {
@@ -49,9 +155,16 @@ public class DuckDb implements AutoCloseable {
         this.conn = DriverManager.getConnection(jdbcUrl);
 
         // ✅ Enable DuckDB Spatial (install only once per DB; load every start)
+        // no query needs it yet, so a machine that cannot download the extension
+        // (offline, nothing cached) still gets to start. Its own statement: a
+        // failed execute closes the DuckDB statement it ran on
         try (Statement st = conn.createStatement()) {
             st.execute("INSTALL spatial");
             st.execute("LOAD spatial");
+        } catch (SQLException e) {
+            log.warn("DuckDB spatial extension not available, starting without it: {}", e.getMessage());
+        }
+        try (Statement st = conn.createStatement()) {
 
             st.execute("PRAGMA threads=" + Math.max(2, Runtime.getRuntime().availableProcessors()));
 
@@ -62,12 +175,84 @@ public class DuckDb implements AutoCloseable {
         }
 
         bootstrap(); // create raw_* materialized tables
+        createIndexes(); // point lookups on the normalized keys
         createViews(); // map views to original names
+
+        // duplicates share the database instance (tables, settings, buffer pool)
+        for (int i = 0; i < this.poolSize; i++) {
+            Connection c = ((DuckDBConnection) conn).duplicate();
+            pooled.add(c);
+            idle.add(c);
+        }
+        this.arrow = openArrow();
+    }
+
+    // Arrow needs java.nio opened to it (--add-opens=java.base/java.nio=ALL-UNNAMED,
+    // set by the pom and the jar manifest) and its C data library for the
+    // platform; one tiny export up front so a missing piece shows here and not
+    // halfway through a profile
+    private BufferAllocator openArrow() {
+        // checked first, Arrow prints a stack trace to stderr when it isn't
+        if (!Object.class.getModule().isOpen("java.nio", DuckDb.class.getModule())) {
+            log.warn("Arrow not available (java.nio not opened), bulk scans read JDBC rows; run the JVM with "
+                    + "--add-opens=java.base/java.nio=ALL-UNNAMED");
+            return null;
+        }
+        BufferAllocator a = null;
+        try {
+            a = new RootAllocator();
+            try (Statement st = conn.createStatement();
+                    ResultSet rs = st.executeQuery("SELECT 1::BIGINT");
+                    ArrowReader r = arrowReader(rs, a)) {
+                while (r.loadNextBatch())
+                    ;
+            }
+            return a;
+        } catch (Throwable e) {
+            log.warn("Arrow not available ({}), bulk scans read JDBC rows; run the JVM with "
+                    + "--add-opens=java.base/java.nio=ALL-UNNAMED", e.toString());
+            if (a != null) {
+                try {
+                    a.close();
+                } catch (RuntimeException ignore) {
+                }
+            }
+            return null;
+        }
+    }
+
+    private static ArrowReader arrowReader(ResultSet rs, BufferAllocator a) throws SQLException {
+        return (ArrowReader) rs.unwrap(DuckDBResultSet.class).arrowExportStream(a, ARROW_BATCH_ROWS);
     }
 
-    // Normalize separators so DuckDB sees forward slashes on Windows
+    // Normalize separators so DuckDB sees forward slashes on Windows. filename
+    // may be a glob, which Windows won't take as a Path
     private String csv(String filename) {
-        return Paths.get(dataDir, filename).toString().replace("\\", "/");
+        return (Paths.get(dataDir).toString() + "/" + filename).replace("\\", "/");
+    }
+
+    // the CSVs behind a source that are there right now, by name
+    private List<File> files(Source src) {
+        if (!src.glob()) {
+            File f = new File(csv(src.file()));
+            return f.isFile() ? List.of(f) : List.of();
+        }
+        PathMatcher m = FileSystems.getDefault().getPathMatcher("glob:" + src.file());
+        File[] found = new File(dataDir).listFiles(f -> f.isFile() && m.matches(Paths.get(f.getName())));
+        return found == null ? List.of()
+                : Arrays.stream(found).sorted(Comparator.comparing(File::getName)).toList();
+    }
+
+    // what refresh() compares: "size|mtime" of the CSV, for a glob
+    // "name|size|mtime" of every match
+    private String fileStamp(Source src) {
+        if (!src.glob()) {
+            File f = new File(csv(src.file()));
+            return f.length() + "|" + f.lastModified();
+        }
+        return files(src).stream()
+                .map(f -> f.getName() + "|" + f.length() + "|" + f.lastModified())
+                .collect(Collectors.joining(";"));
     }
 
     private void exec(Statement st, String sql, Object... args) throws SQLException {
@@ -86,159 +271,1208 @@ public class DuckDb implements AutoCloseable {
         }
     }
 
+    // One CSV source per raw_* table. %s in the select is where the CSV reader
+    // goes, so the same normalization runs for a full load and for an appended
+    // tail. sortKey is the row order of the Parquet cache copy (time series
+    // only, the small lookup tables keep CSV order so result order does not move).
+    // columns, when set, is the CSV header read as all VARCHAR instead of
+    // sniffed; those sources are also sorted by sortKey in csv mode and load as
+    // an empty table when the file is missing.
+    // file can be a glob (one CSV per subject): the reader then also gives the
+    // select a filename column, and a file-backed DB tracks every match on its
+    // own. partitions ("col TYPE, ...") makes parquet mode write one directory
+    // per value instead of a single file
+    private record Source(String table, String file, String sortKey, String select, String columns,
+            String partitions) {
+        Source(String table, String file, String sortKey, String select) {
+            this(table, file, sortKey, select, null, null);
+        }
+
+        Source(String table, String file, String sortKey, String select, String columns) {
+            this(table, file, sortKey, select, columns, null);
+        }
+
+        // a time series: ts comes from ts_utc(), rejects are counted after a load
+        boolean timed() {
+            return select.contains("ts_utc(");
+        }
+
+        boolean glob() {
+            return file.contains("*");
+        }
+
+        // read_csv call for path
+        String reader(String path) {
+            if (columns == null)
+                return "read_csv_auto('" + path + "', header=true" + (glob() ? ", filename=true" : "") + ")";
+            return "read_csv('" + path + "', header=true, auto_detect=false, delim=',', quote='\"', "
+                    + "columns={" + columnTypes() + "}" + (glob() ? ", filename=true" : "") + ")";
+        }
+
+        // no file: the same select over zero rows, so the table still has its columns
+        String emptyReader() {
+            return "(SELECT " + Arrays.stream((glob() ? columns + ", filename" : columns).split(","))
+                    .map(c -> "CAST(NULL AS VARCHAR) AS " + c.trim())
+                    .collect(Collectors.joining(", ")) + " LIMIT 0)";
+        }
+
+        // "a, b" for PARTITION_BY, "'a': T, 'b': U" for read_parquet's hive_types
+        String partitionColumns() {
+            return Arrays.stream(partitions.split(","))
+                    .map(p -> p.trim().split("\\s+")[0])
+                    .collect(Collectors.joining(", "));
+        }
+
+        String partitionTypes() {
+            return Arrays.stream(partitions.split(","))
+                    .map(p -> p.trim().split("\\s+"))
+                    .map(p -> "'" + p[0] + "': " + p[1])
+                    .collect(Collectors.joining(", "));
+        }
+
+        private String columnTypes() {
+            return Arrays.stream(columns.split(","))
+                    .map(c -> "'" + c.trim() + "': 'VARCHAR'")
+                    .collect(Collectors.joining(", "));
+        }
+    }
+
+    // Timestamp parsing for the time series sources, one vectorized expression
+    // each, kept as macros so every select parses the same way:
+    //   ts_utc(s)        ISO-8601 or "yyyy-MM-dd HH:mm:ss[.fff]" text to a naive
+    //                    UTC TIMESTAMP. A zone (Z, +hh, +hhmm, +hh:mm) is applied,
+    //                    no zone means the text is UTC already. NULL for anything
+    //                    else, a bare date included
+    //   ts_zone(s)       the zone part of s: '', 'Z' or e.g. '-05:00'
+    //   zone_minutes(z)  a ts_zone() as minutes east of UTC, NULL for ''
+    // Macros are inlined, so zone_minutes(ts_zone(s)) would cut the string once
+    // per use; the ankle select takes ts_zone() in a subquery first
+    private static final List<String> TS_MACROS = List.of(
+            """
+            CREATE OR REPLACE MACRO ts_utc(s) AS
+              CASE WHEN contains(CAST(s AS VARCHAR), ':') THEN TRY_CAST(TRIM(CAST(s AS VARCHAR)) AS TIMESTAMP) END
+            """,
+            """
+            CREATE OR REPLACE MACRO ts_zone(s) AS
+              ltrim(TRIM(CAST(s AS VARCHAR))[17:], ':.0123456789')
+            """,
+            """
+            CREATE OR REPLACE MACRO zone_minutes(z) AS
+              CASE WHEN z = '' THEN NULL
+                   WHEN upper(z) = 'Z' THEN 0
+                   ELSE TRY_CAST((CASE WHEN z[1] = '-' THEN -1 ELSE 1 END)
+                        * (TRY_CAST(z[2:3] AS INTEGER) * 60
+                           + COALESCE(TRY_CAST(NULLIF(replace(z[4:], ':', ''), '') AS INTEGER), 0)) AS SMALLINT)
+              END
+            """);
+
+    // Ankle monitors, one <First><Last>_Ankle_Monitor.csv per subject.
+    // datetime is ISO-8601 with the device's UTC offset
+    // (2016-11-11T00:00:04.000-05:00), read as text so the offset is still
+    // there: ts is the UTC time, ts_offset_min the offset the device gave.
+    // ssn_key is a number for the subject (see ssnKey()): sorted on it the
+    // table keeps each subject in its own row groups, whose min/max let a
+    // lookup skip everyone else; SSN strings can't do that, DuckDB only
+    // keeps the first 8 bytes of a string in those stats and the SSNs
+    // mostly share them. In parquet mode (ssn_key, day) are directories
+    private static final Source ANKLE = new Source("raw_ankle", "*_Ankle_Monitor.csv", "ssn_key, ts", """
+            SELECT
+              person_ssn, ts, lat, lon,
+              CASE WHEN ts IS NOT NULL THEN zone_minutes(zone) END  AS ts_offset_min,
+              md5_number_upper(person_ssn)                          AS ssn_key,
+              CAST(ts AS DATE)                                      AS day,
+              source_file
+            FROM (
+              SELECT
+                TRIM(ssn)                                       AS person_ssn,
+                ts_utc(datetime)                                AS ts,
+                ts_zone(datetime)                               AS zone,
+                TRY_CAST(location_y AS DOUBLE)                  AS lat,
+                TRY_CAST(location_x AS DOUBLE)                  AS lon,
+                parse_filename(filename)                        AS source_file
+              FROM %s
+            )
+            """, "datetime, location_x, location_y, firstname, lastname, middlename, ssn",
+            "ssn_key UBIGINT, day DATE");
+
+    private static final List<Source> SOURCES = List.of(
+            // People (DMV)
+            new Source("raw_people", "DepartmentMotorVehicles.csv", null, """
+                    SELECT
+                      TRIM(ssn)                                  AS ssn,
+                      UPPER(TRIM(firstname))                     AS firstname,
+                      UPPER(TRIM(middlename))                    AS middlename,
+                      UPPER(TRIM(lastname))                      AS lastname,
+                      UPPER(TRIM(driverslicense))                AS dl,
+                      UPPER(TRIM(address))                       AS address_line1,
+                      CAST(NULL AS VARCHAR)                      AS city,
+                      CAST(NULL AS VARCHAR)                      AS state,
+                      CAST(NULL AS VARCHAR)                      AS zip
+                    FROM %s
+                    """),
+            // Phone contracts (HSS / HLR)
+            new Source("raw_phone_contracts", "HomeLocationRegistry.csv", null, """
+                    SELECT
+                      TRIM(CAST(ssn AS VARCHAR))                                                             AS ssn,
+                      REGEXP_REPLACE(TRIM(CAST(msisdn AS VARCHAR)), '[^0-9]', '', 'g')                       AS phone_norm,
+                      TRIM(CAST(msisdn AS VARCHAR))                                                          AS phone,
+                      UPPER(TRIM(CAST(make  AS VARCHAR)))                                                    AS device_make,
+                      UPPER(TRIM(CAST(model AS VARCHAR)))                                                    AS device_model,
+                      TRIM(CAST(imsi AS VARCHAR))                                                            AS imsi,
+                      CAST(mcc  AS VARCHAR)                                                                  AS mcc,
+                      CAST(mnc  AS VARCHAR)                                                                  AS mnc,
+                      UPPER(TRIM(CAST(mac AS VARCHAR)))                                                      AS mac,
+                      CAST(TRY_STRPTIME(CAST(contract_start_date AS VARCHAR), '%Y-%m-%d') AS DATE)           AS contract_start_date,
+                      TRY_CAST(contract_term AS INTEGER)                                                     AS contract_term_months,
+                      'CONTRACT'                                                                             AS phone_type
+                    FROM %s
+                    """),
+            // Vehicles
+            new Source("raw_vehicles", "VehicleRegistration.csv", null, """
+                    SELECT
+                      UPPER(TRIM(CAST("Owner Drivers License" AS VARCHAR)))                                        AS owner_dl,
+                      UPPER(TRIM(CAST("Owner First Name"     AS VARCHAR)))                                        AS owner_first,
+                      UPPER(TRIM(CAST("Owner Middle Name"    AS VARCHAR)))                                        AS owner_middle,
+                      UPPER(TRIM(CAST("Owner Last Name"      AS VARCHAR)))                                        AS owner_last,
+                      UPPER(TRIM(CAST("Vehicle Make"         AS VARCHAR)))                                        AS make,
+                      UPPER(TRIM(CAST("Vehicle Model"        AS VARCHAR)))                                        AS model,
+                      TRY_CAST("Vehicle Year" AS INTEGER)                                                         AS year,
+                      UPPER(TRIM(CAST("Vehicle Color"        AS VARCHAR)))                                        AS color,
+                      UPPER(TRIM(CAST("State Registered"     AS VARCHAR)))                                        AS state_registered,
+                      UPPER(TRIM(REGEXP_REPLACE(CAST("License Plate" AS VARCHAR), '[^A-Z0-9]', '', 'g')))        AS plate_norm,
+                      UPPER(TRIM(CAST("License Plate"        AS VARCHAR)))                                        AS plate_raw,
+                      UPPER(TRIM(CAST(VIN                    AS VARCHAR)))                                        AS vin_norm
+                    FROM %s
+                    """),
+            // Tax / Employers
+            new Source("raw_tax_employers", "TaxData.csv", null, """
+                    SELECT
+                      TRIM(CAST("SSN" AS VARCHAR))                  AS ssn,
+                      UPPER(TRIM(CAST("Employer" AS VARCHAR)))      AS employer_name,
+                      UPPER(TRIM(CAST("Employer Address" AS VARCHAR))) AS employer_address,
+                      CAST("Employer EIN" AS VARCHAR)               AS employer_ein,
+                      UPPER(TRIM(CAST("Address" AS VARCHAR)))       AS filer_address,
+                      UPPER(TRIM(CAST("First Name" AS VARCHAR)))    AS filer_first,
+                      UPPER(TRIM(CAST("Middle Name" AS VARCHAR)))   AS filer_middle,
+                      UPPER(TRIM(CAST("Last Name" AS VARCHAR)))     AS filer_last,
+                      TRY_CAST("Part Time"     AS BOOLEAN)          AS part_time,
+                      TRY_CAST("Filed"         AS BOOLEAN)          AS filed,
+                      TRY_CAST("Paid"          AS BOOLEAN)          AS paid,
+                      TRY_CAST("Garnishment"   AS BOOLEAN)          AS garnishment,
+                      TRY_CAST("Investigation" AS BOOLEAN)          AS investigation
+                    FROM %s
+                    """),
+            // Ankle monitors, see ANKLE
+            ANKLE,
+            // Wi-Fi events, one WIFI_<yyyy-MM-dd>.csv per daily drop. Like LPR and
+            // telco: day (UTC) is the parquet partition, see daysOf()
+            new Source("raw_wifi_events_raw", "WIFI_*.csv", "ts", """
+                    SELECT *, CAST(ts AS DATE) AS day
+                    FROM (
+                      SELECT
+                        ts_utc(datetime)                               AS ts,
+                        UPPER(TRIM(CAST(mac AS VARCHAR)))              AS device_mac,
+                        UPPER(TRIM(CAST(sensor_id AS VARCHAR)))        AS sensor_id,
+                        TRY_CAST(sensor_latitude  AS DOUBLE)           AS s_lat,
+                        TRY_CAST(sensor_longitude AS DOUBLE)           AS s_lon,
+                        ssid_1, ssid_2, ssid_3, ssid_4, ssid_5,
+                        ssid_6, ssid_7, ssid_8, ssid_9, ssid_10,
+                        parse_filename(filename)                       AS source_file
+                      FROM %s
+                    )
+                    """, null, "day DATE"),
+            // Businesses
+            new Source("raw_businesses", "Baltimore_Businesses.csv", null, """
+                    SELECT
+                      MD5(
+                        COALESCE(UPPER(TRIM(CAST(name AS VARCHAR))),'') || '|' ||
+                        COALESCE(CAST(lat AS VARCHAR),'') || '|' ||
+                        COALESCE(CAST(lon AS VARCHAR),'')
+                      )                                                     AS biz_id,
+                      UPPER(TRIM(CAST(name        AS VARCHAR)))             AS name,
+                      UPPER(TRIM(CAST(address     AS VARCHAR)))             AS line1,
+                      TRY_CAST(lat AS DOUBLE)                               AS b_lat,
+                      TRY_CAST(lon AS DOUBLE)                               AS b_lon,
+                      UPPER(TRIM(CAST(naics       AS VARCHAR)))             AS naics,
+                      UPPER(TRIM(CAST(owner_firs  AS VARCHAR)))             AS owner_firs,
+                      UPPER(TRIM(CAST(owner_midd  AS VARCHAR)))             AS owner_midd,
+                      UPPER(TRIM(CAST(owner_last  AS VARCHAR)))             AS owner_last
+                    FROM %s
+                    """),
+            // LPR, one LPR_<yyyy-MM-dd>.csv per day
+            new Source("raw_lpr", "LPR_*.csv", "ts", """
+                    SELECT *, CAST(ts AS DATE) AS day
+                    FROM (
+                      SELECT
+                        ts_utc(datetime)                               AS ts,
+                        UPPER(TRIM(REGEXP_REPLACE(CAST(licenseplate AS VARCHAR), '[^A-Z0-9]', '', 'g'))) AS plate_norm,
+                        UPPER(TRIM(CAST(licenseplate AS VARCHAR)))                  AS plate_raw,
+                        TRY_CAST(lpr_latitude  AS DOUBLE)                           AS lat,
+                        TRY_CAST(lpr_longitude AS DOUBLE)                           AS lon,
+                        UPPER(TRIM(CAST(state AS VARCHAR)))                         AS plate_state,
+                        UPPER(TRIM(CAST(lpr_direction AS VARCHAR)))                 AS direction,
+                        UPPER(TRIM(CAST(lpr_id AS VARCHAR)))                        AS sensor_id,
+                        parse_filename(filename)                                    AS source_file
+                      FROM %s
+                    )
+                    """, null, "day DATE"),
+            // Crime reports. report_dat only has the day, the time is in the text
+            // ("On 11/11/2016 at approximately 10:19 PM", mostly pre-text, sometimes
+            // post-text): ts is the day plus the first h:mm AM/PM found. The reports
+            // are in Baltimore wall clock time, ts is kept as naive UTC like the
+            // ankle / wifi / LPR times. No time in the text leaves ts NULL
+            new Source("raw_crime_reports", "crime_reports.csv", null, """
+                    SELECT
+                      report_id, c_lat, c_lon, pre_text, post_text, file_path,
+                      timezone('UTC', timezone('America/New_York', report_day + report_tod)) AS ts
+                    FROM (
+                      SELECT
+                        TRIM(CAST(report_id   AS VARCHAR))  AS report_id,
+                        TRY_CAST(lat AS DOUBLE)             AS c_lat,
+                        TRY_CAST(lon AS DOUBLE)             AS c_lon,
+                        TRIM(CAST("pre-text"  AS VARCHAR))  AS pre_text,
+                        TRIM(CAST("post-text" AS VARCHAR))  AS post_text,
+                        TRIM(CAST(file_path   AS VARCHAR))  AS file_path,
+                        COALESCE(TRY_CAST(report_dat AS DATE),
+                                 CAST(TRY_STRPTIME(TRIM(CAST(report_dat AS VARCHAR)), '%m-%d-%Y') AS DATE),
+                                 CAST(TRY_STRPTIME(regexp_extract(concat_ws(' ', "pre-text", "post-text"),
+                                         '\\d{1,2}/\\d{1,2}/\\d{4}'), '%m/%d/%Y') AS DATE))  AS report_day,
+                        CAST(TRY_STRPTIME(regexp_replace(UPPER(regexp_extract(concat_ws(' ', "pre-text", "post-text"),
+                                 '\\b\\d{1,2}:\\d{2}\\s*[AP]\\.?\\s*M\\b', 0, 'i')), '[.\\s]', '', 'g'),
+                                 '%I:%M%p') AS TIME)                                        AS report_tod
+                      FROM %s
+                    )
+                    """),
+            // Telco CDRs, one row per party of a call / SMS (the party is imsi), one
+            // Telco_<yyyy-MM-dd>.csv per day. Easily the biggest files (>100 MB a
+            // day) and not always shipped with the data. DuckDB reads and sorts
+            // them on its side (spilling to temp_directory), nothing of it passes
+            // through the Java heap; sorted by imsi the zonemaps let the
+            // per-subscriber lookups skip most of it
+            new Source("raw_telco", "Telco_*.csv", "imsi, ts", """
+                    SELECT *, CAST(ts AS DATE) AS day
+                    FROM (
+                      SELECT
+                        ts_utc(datetime)                                      AS ts,
+                        UPPER(TRIM(type))                                     AS type,
+                        TRY_CAST(TRIM(duration) AS INTEGER)                   AS duration_sec,
+                        TRIM(imsi)                                            AS imsi,
+                        TRIM(imsi_from)                                       AS imsi_from,
+                        TRIM(imsi_to)                                         AS imsi_to,
+                        TRIM(msisdn)                                          AS msisdn,
+                        REGEXP_REPLACE(msisdn, '[^0-9]+', '', 'g')            AS msisdn_norm,
+                        TRIM(msisdn_from)                                     AS msisdn_from,
+                        TRIM(msisdn_to)                                       AS msisdn_to,
+                        TRIM(mcc)                                             AS mcc,
+                        TRIM(mnc)                                             AS mnc,
+                        TRIM(lac)                                             AS lac,
+                        TRIM(tower_id)                                        AS tower_id,
+                        parse_filename(filename)                              AS source_file
+                      FROM %s
+                    )
+                    """, "datetime, type, duration, imsi, imsi_from, imsi_to, msisdn, msisdn_from, msisdn_to, "
+                    + "mcc, mnc, lac, tower_id", "day DATE"),
+            // Cell sites, keyed like telco (mcc, mnc, lac, tower_id). Read as text
+            // so the quoted ids keep their exact spelling
+            new Source("raw_cell_sites", "CellSiteLocations.csv", null, """
+                    SELECT
+                      TRIM(MCC)                        AS mcc,
+                      TRIM(MNC)                        AS mnc,
+                      TRIM(LAC)                        AS lac,
+                      TRIM(Tower_ID)                   AS tower_id,
+                      TRY_CAST(TowerLat AS DOUBLE)     AS lat,
+                      TRY_CAST(TowerLon AS DOUBLE)     AS lon
+                    FROM %s
+                    """, "MCC, MNC, LAC, TowerLat, TowerLon, Tower_ID"));
+
+    // Tables computed from a loaded raw_* table (from), rebuilt whenever it is
+    private record Derived(String table, String from, String select) {
+    }
+
+    private static final List<Derived> DERIVED = List.of(
+            // telco events by cell and time for the tower co-location lookups: only
+            // the columns that join, cell being a 64 bit hash of (mcc, mnc, lac,
+            // tower_id). Sorted by cell, ts_us, each tower's events sit together
+            // in time order, so the join touches a few narrow integer columns
+            // instead of the four tower strings of every telco row
+            new Derived("raw_telco_cells", "raw_telco", """
+                    SELECT hash(mcc, mnc, lac, tower_id) AS cell, epoch_us(ts) AS ts_us, imsi
+                    FROM raw_telco
+                    WHERE ts IS NOT NULL AND tower_id IS NOT NULL AND tower_id <> ''
+                    ORDER BY cell, ts_us
+                    """));
+
     private void bootstrap() throws SQLException {
         try (Statement st = conn.createStatement()) {
-            // People (DMV)
-            exec(st, """
-                        CREATE SCHEMA IF NOT EXISTS raw;
-                        CREATE OR REPLACE TABLE raw_people AS
-                        SELECT
-                          TRIM(ssn)                                  AS ssn,
-                          UPPER(TRIM(firstname))                     AS firstname,
-                          UPPER(TRIM(middlename))                    AS middlename,
-                          UPPER(TRIM(lastname))                      AS lastname,
-                          UPPER(TRIM(driverslicense))                AS dl,
-                          UPPER(TRIM(address))                       AS address_line1,
-                          CAST(NULL AS VARCHAR)                      AS city,
-                          CAST(NULL AS VARCHAR)                      AS state,
-                          CAST(NULL AS VARCHAR)                      AS zip
-                        FROM read_csv_auto('%s', header=true);
-                    """, csv("DepartmentMotorVehicles.csv"));
+            exec(st, "CREATE SCHEMA IF NOT EXISTS raw;");
+            for (String m : TS_MACROS)
+                exec(st, m);
+            if (parquetDir != null) {
+                for (Source src : SOURCES)
+                    load(st, src);
+                return;
+            }
+            if (persistent)
+                exec(st, """
+                            CREATE TABLE IF NOT EXISTS ingest_manifest (
+                              table_name  VARCHAR PRIMARY KEY,
+                              source_file VARCHAR,
+                              size_bytes  BIGINT,
+                              mtime_ms    BIGINT,
+                              sha256      VARCHAR,
+                              ingested_at TIMESTAMP
+                            );
+                        """);
+            if (persistent)
+                // hash of the normalization select, so changing it reloads the table
+                exec(st, "ALTER TABLE ingest_manifest ADD COLUMN IF NOT EXISTS select_sha VARCHAR;");
+            for (Source src : SOURCES)
+                load(st, src);
+        }
+    }
 
-            // Phone contracts (HSS / HLR)
-            exec(st, """
-                        CREATE OR REPLACE TABLE raw_phone_contracts AS
-                        SELECT
-                          TRIM(CAST(ssn AS VARCHAR))                                                             AS ssn,
-                          REGEXP_REPLACE(TRIM(CAST(msisdn AS VARCHAR)), '[^0-9]', '', 'g')                       AS phone_norm,
-                          TRIM(CAST(msisdn AS VARCHAR))                                                          AS phone,
-                          UPPER(TRIM(CAST(make  AS VARCHAR)))                                                    AS device_make,
-                          UPPER(TRIM(CAST(model AS VARCHAR)))                                                    AS device_model,
-                          CAST(imsi AS VARCHAR)                                                                  AS imsi,
-                          CAST(mcc  AS VARCHAR)                                                                  AS mcc,
-                          CAST(mnc  AS VARCHAR)                                                                  AS mnc,
-                          UPPER(TRIM(CAST(mac AS VARCHAR)))                                                      AS mac,
-                          CAST(TRY_STRPTIME(CAST(contract_start_date AS VARCHAR), '%Y-%m-%d') AS DATE)           AS contract_start_date,
-                          TRY_CAST(contract_term AS INTEGER)                                                     AS contract_term_months,
-                          'CONTRACT'                                                                             AS phone_type
-                        FROM read_csv_auto('%s', header=true);
-                    """,
-                    csv("HomeLocationRegistry.csv"));
+    // (re)loads one source through whichever ingest mode is active and records
+    // that its table changed
+    private void load(Statement st, Source src) throws SQLException {
+        boolean changed;
+        if (src.columns() != null && files(src).isEmpty()) {
+            loadEmpty(st, src);
+            changed = true;
+        } else if (parquetDir != null) {
+            changed = ingestParquet(st, src);
+        } else {
+            changed = ingest(st, src);
+        }
+        if (src.timed() && (changed || !rejects.containsKey(src.table())))
+            countRejects(st, src);
+        for (Derived d : DERIVED)
+            if (d.from().equals(src.table()) && (changed || objectType(d.table()) == null)) {
+                log.info("{}: rebuilding from {}", d.table(), d.from());
+                exec(st, "CREATE OR REPLACE TABLE " + d.table() + " AS " + d.select());
+            }
+        seen.put(src.table(), fileStamp(src));
+        tails.remove(src.table());
+        versions.computeIfAbsent(src.table(), k -> new AtomicLong()).incrementAndGet();
+    }
 
-            // Vehicles
-            exec(st, """
-                        CREATE OR REPLACE TABLE raw_vehicles AS
-                        SELECT
-                          UPPER(TRIM(CAST("Owner Drivers License" AS VARCHAR)))                                        AS owner_dl,
-                          UPPER(TRIM(CAST("Owner First Name"     AS VARCHAR)))                                        AS owner_first,
-                          UPPER(TRIM(CAST("Owner Middle Name"    AS VARCHAR)))                                        AS owner_middle,
-                          UPPER(TRIM(CAST("Owner Last Name"      AS VARCHAR)))                                        AS owner_last,
-                          UPPER(TRIM(CAST("Vehicle Make"         AS VARCHAR)))                                        AS make,
-                          UPPER(TRIM(CAST("Vehicle Model"        AS VARCHAR)))                                        AS model,
-                          TRY_CAST("Vehicle Year" AS INTEGER)                                                         AS year,
-                          UPPER(TRIM(CAST("Vehicle Color"        AS VARCHAR)))                                        AS color,
-                          UPPER(TRIM(CAST("State Registered"     AS VARCHAR)))                                        AS state_registered,
-                          UPPER(TRIM(REGEXP_REPLACE(CAST("License Plate" AS VARCHAR), '[^A-Z0-9]', '', 'g')))        AS plate_norm,
-                          UPPER(TRIM(CAST("License Plate"        AS VARCHAR)))                                        AS plate_raw,
-                          UPPER(TRIM(CAST(VIN                    AS VARCHAR)))                                        AS vin_norm
-                        FROM read_csv_auto('%s', header=true);
-                    """,
-                    csv("VehicleRegistration.csv"));
+    // rows whose datetime did not parse stay in the table with ts NULL, where no
+    // time bounded query sees them; say how many there are
+    private void countRejects(Statement st, Source src) throws SQLException {
+        long rows, bad;
+        try (ResultSet rs = st.executeQuery("SELECT COUNT(*), COUNT(*) FILTER (WHERE ts IS NULL) FROM " + src.table())) {
+            rs.next();
+            rows = rs.getLong(1);
+            bad = rs.getLong(2);
+        }
+        rejects.put(src.table(), bad);
+        if (bad > 0)
+            log.warn("{}: {} of {} rows have no usable datetime in {}, time bounded queries skip them",
+                    src.table(), bad, rows, src.file());
+        else
+            log.info("{}: {} rows, every datetime parsed", src.table(), rows);
+    }
 
-            // Tax / Employers
-            exec(st, """
-                        CREATE OR REPLACE TABLE raw_tax_employers AS
-                        SELECT
-                          TRIM(CAST("SSN" AS VARCHAR))                  AS ssn,
-                          UPPER(TRIM(CAST("Employer" AS VARCHAR)))      AS employer_name,
-                          UPPER(TRIM(CAST("Employer Address" AS VARCHAR))) AS employer_address,
-                          CAST("Employer EIN" AS VARCHAR)               AS employer_ein,
-                          UPPER(TRIM(CAST("Address" AS VARCHAR)))       AS filer_address,
-                          UPPER(TRIM(CAST("First Name" AS VARCHAR)))    AS filer_first,
-                          UPPER(TRIM(CAST("Middle Name" AS VARCHAR)))   AS filer_middle,
-                          UPPER(TRIM(CAST("Last Name" AS VARCHAR)))     AS filer_last,
-                          TRY_CAST("Part Time"     AS BOOLEAN)          AS part_time,
-                          TRY_CAST("Filed"         AS BOOLEAN)          AS filed,
-                          TRY_CAST("Paid"          AS BOOLEAN)          AS paid,
-                          TRY_CAST("Garnishment"   AS BOOLEAN)          AS garnishment,
-                          TRY_CAST("Investigation" AS BOOLEAN)          AS investigation
-                        FROM read_csv_auto('%s', header=true);
-                    """, csv("TaxData.csv"));
-
-            // Ankle monitor
-            exec(st, """
-                        CREATE OR REPLACE TABLE raw_ankle AS
-                        SELECT
-                          TRIM(ssn)                                         AS person_ssn,
-                          CAST(TRY_STRPTIME(CAST(datetime AS VARCHAR), '%Y-%m-%d %H:%M:%S') AS TIMESTAMP)  AS ts,
-                          TRY_CAST(location_y AS DOUBLE)                    AS lat,
-                          TRY_CAST(location_x AS DOUBLE)                    AS lon
-                        FROM read_csv_auto('%s', header=true);
-                    """, csv("JaredCombs_Ankle_Monitor.csv"));
-
-            // Wi-Fi events
-            exec(st, """
-                        CREATE OR REPLACE TABLE raw_wifi_events_raw AS
-                        SELECT
-                          CAST(TRY_STRPTIME(CAST(datetime AS VARCHAR), '%Y-%m-%d %H:%M:%S') AS TIMESTAMP)  AS ts,
-                          UPPER(TRIM(CAST(mac AS VARCHAR)))              AS device_mac,
-                          UPPER(TRIM(CAST(sensor_id AS VARCHAR)))        AS sensor_id,
-                          TRY_CAST(sensor_latitude  AS DOUBLE)           AS s_lat,
-                          TRY_CAST(sensor_longitude AS DOUBLE)           AS s_lon,
-                          ssid_1, ssid_2, ssid_3, ssid_4, ssid_5,
-                          ssid_6, ssid_7, ssid_8, ssid_9, ssid_10
-                        FROM read_csv_auto('%s', header=true);
-                    """, csv("WIFI_2016-11-11.csv"));
+    /**
+     * Rows of a time series raw_* table (ankle, wifi, LPR, telco) whose datetime
+     * could not be parsed, as of its last load; 0 for any other table.
+     */
+    public long rejects(String table) {
+        return rejects.getOrDefault(table, 0L);
+    }
 
-            // Businesses
-            exec(st, """
-                        CREATE OR REPLACE TABLE raw_businesses AS
-                        SELECT
-                          MD5(
-                            COALESCE(UPPER(TRIM(CAST(name AS VARCHAR))),'') || '|' ||
-                            COALESCE(CAST(lat AS VARCHAR),'') || '|' ||
-                            COALESCE(CAST(lon AS VARCHAR),'')
-                          )                                                     AS biz_id,
-                          UPPER(TRIM(CAST(name        AS VARCHAR)))             AS name,
-                          UPPER(TRIM(CAST(address     AS VARCHAR)))             AS line1,
-                          TRY_CAST(lat AS DOUBLE)                               AS b_lat,
-                          TRY_CAST(lon AS DOUBLE)                               AS b_lon,
-                          UPPER(TRIM(CAST(naics       AS VARCHAR)))             AS naics,
-                          UPPER(TRIM(CAST(owner_firs  AS VARCHAR)))             AS owner_firs,
-                          UPPER(TRIM(CAST(owner_midd  AS VARCHAR)))             AS owner_midd,
-                          UPPER(TRIM(CAST(owner_last  AS VARCHAR)))             AS owner_last
-                        FROM read_csv_auto('%s', header=true);
-                    """, csv("Baltimore_Businesses.csv"));
-
-            // LPR
-            exec(st, """
-                        CREATE OR REPLACE TABLE raw_lpr AS
-                        SELECT
-                          CAST(TRY_STRPTIME(CAST(datetime AS VARCHAR), '%Y-%m-%d %H:%M:%S') AS TIMESTAMP)  AS ts,
-                          UPPER(TRIM(REGEXP_REPLACE(CAST(licenseplate AS VARCHAR), '[^A-Z0-9]', '', 'g'))) AS plate_norm,
-                          UPPER(TRIM(CAST(licenseplate AS VARCHAR)))                  AS plate_raw,
-                          TRY_CAST(lpr_latitude  AS DOUBLE)                           AS lat,
-                          TRY_CAST(lpr_longitude AS DOUBLE)                           AS lon,
-                          UPPER(TRIM(CAST(state AS VARCHAR)))                         AS plate_state,
-                          UPPER(TRIM(CAST(lpr_direction AS VARCHAR)))                 AS direction,
-                          CAST(lpr_id AS VARCHAR)                                     AS sensor_id
-                        FROM read_csv_auto('%s', header=true);
-                    """,
-                    csv("LPR_2016-11-11.csv"));
-
-            // Crime reports
-            exec(st, """
-                        CREATE OR REPLACE TABLE raw_crime_reports AS
-                        SELECT
-                          TRIM(CAST(report_id   AS VARCHAR))  AS report_id,
-                          TRY_CAST(lat AS DOUBLE)             AS c_lat,
-                          TRY_CAST(lon AS DOUBLE)             AS c_lon,
-                          TRIM(CAST("pre-text"  AS VARCHAR))  AS pre_text,
-                          TRIM(CAST("post-text" AS VARCHAR))  AS post_text,
-                          TRIM(CAST(file_path   AS VARCHAR))  AS file_path,
-                          CAST(NULL AS TIMESTAMP)             AS ts
-                        FROM read_csv_auto('%s', header=true);
-                    """, csv("crime_reports.csv"));
+    /**
+     * Re-ingests every source whose CSV changed size or mtime since it was last
+     * loaded (for a glob such as the ankle monitors: any of its files, or one
+     * came or went) and returns the raw_* tables that were reloaded. Each of
+     * those gets a new {@link #version}, which is how caches above the repo
+     * notice.
+     */
+    public synchronized List<String> refresh() throws SQLException {
+        List<String> changed = new ArrayList<>();
+        try (Statement st = conn.createStatement()) {
+            for (Source src : SOURCES) {
+                if (!fileStamp(src).equals(seen.get(src.table()))) {
+                    load(st, src);
+                    changed.add(src.table());
+                }
+            }
+        }
+        if (!changed.isEmpty())
+            createIndexes();
+        return changed;
+    }
+
+    // bumped every time the raw_* table is (re)loaded or follow() appends to it;
+    // 0 = unknown table
+    public long version(String table) {
+        AtomicLong v = versions.get(table);
+        return v == null ? 0 : v.get();
+    }
+
+    /**
+     * Live ingest for a glob source (raw_ankle, raw_lpr, ...) in csv mode:
+     * appends the complete lines written to its CSVs since they were loaded,
+     * new matching files included, and returns how many rows that was. The
+     * lines go through the Appender into a staging table that the source's
+     * own select reads, so the rows come out as a load makes them. A
+     * file-backed DB also moves each file's manifest row along, so neither
+     * refresh() nor the next start loads those lines again. A file that
+     * shrank or went away is left to refresh().
+     */
+    public synchronized int follow(String table) throws SQLException {
+        Source src = source(table);
+        if (src == null || !src.glob() || parquetDir != null)
+            throw new SQLException(table + ": live ingest needs a CSV glob source and app.ingest.mode=csv");
+        Map<String, Tail> known = tails.get(table);
+        if (known == null) {
+            known = countTails(src);
+            tails.put(table, known);
+        }
+        String selectSha = persistent ? selectSha(src) : null;
+        List<File> files = files(src);
+        int rows = 0;
+        // every byte of every file is in the table, refresh() has nothing to do
+        boolean caughtUp = files.stream().map(File::getName).collect(Collectors.toSet()).containsAll(known.keySet());
+        SQLException failed = null;
+        for (File f : files) {
+            long len = f.length();
+            long mtime = f.lastModified();
+            Tail t = known.get(f.getName());
+            if (t == null) {
+                t = Tail.open(f, 0);
+                if (t == null) {
+                    // header not written out yet
+                    caughtUp = false;
+                    continue;
+                }
+                known.put(f.getName(), t);
+            }
+            if (len < t.offset) {
+                caughtUp = false;
+                continue;
+            }
+            int skipped = 0;
+            try {
+                while (t.offset < len) {
+                    byte[] bytes = readRange(f, t.offset, Math.min(len, t.offset + FOLLOW_CHUNK));
+                    int end = lastNewline(bytes) + 1;
+                    if (end == 0)
+                        break;
+                    List<String[]> batch = new ArrayList<>();
+                    for (String line : new String(bytes, 0, end, StandardCharsets.UTF_8).split("\n")) {
+                        if (line.endsWith("\r"))
+                            line = line.substring(0, line.length() - 1);
+                        // read_csv skips empty lines too
+                        if (line.isEmpty())
+                            continue;
+                        List<String> values = splitCsv(line);
+                        if (values.size() != t.header.size())
+                            skipped++;
+                        else
+                            batch.add(values.toArray(new String[0]));
+                    }
+                    // one INSERT, all or nothing: the chunk only counts as read once
+                    // it is in, a failed round starts from the same offset next time
+                    appendRows(src, csv(f.getName()), t.header, batch);
+                    t.sha.update(bytes, 0, end);
+                    t.offset += end;
+                    rows += batch.size();
+                }
+            } catch (SQLException e) {
+                // what went in before stays in; versions and manifest below still
+                // cover it, then the caller hears about the failure
+                failed = e;
+            }
+            if (t.offset < len)
+                caughtUp = false;
+            if (skipped > 0)
+                log.warn("{}: {} lines of {} do not have {} fields, skipped", table, skipped, f.getName(),
+                        t.header.size());
+            if (persistent)
+                writeManifest(table + "/" + f.getName(), f.getName(), t.offset, t.offset == len ? mtime : 0,
+                        t.sha(), selectSha);
+            if (failed != null)
+                break;
+        }
+        if (rows > 0) {
+            try (Statement st = conn.createStatement()) {
+                for (Derived d : DERIVED)
+                    if (d.from().equals(table))
+                        exec(st, "CREATE OR REPLACE TABLE " + d.table() + " AS " + d.select());
+            }
+            versions.computeIfAbsent(table, k -> new AtomicLong()).incrementAndGet();
+        }
+        if (failed != null)
+            throw failed;
+        if (caughtUp)
+            seen.put(table, fileStamp(src));
+        return rows;
+    }
+
+    /**
+     * FROM item for the ankle rows of one subject (ssn as stored, trimmed),
+     * with the columns of the ankle view. Only that subject's data is read:
+     * the raw_ankle row groups of its ssn_key, or in parquet mode its own
+     * ssn_key=... directory. Callers still filter on person_ssn, two SSNs
+     * can share a key.
+     */
+    public String ankleOf(String ssn) {
+        String key = Long.toUnsignedString(ssnKey(ssn));
+        if (parquetDir == null)
+            return "(SELECT * FROM raw_ankle WHERE ssn_key = " + key + ")";
+        Path dir = parquetDir.resolve("raw_ankle").resolve("ssn_key=" + key);
+        if (!Files.isDirectory(dir))
+            return "(SELECT * FROM raw_ankle LIMIT 0)";
+        return partitionReader(ANKLE, dir);
+    }
+
+    /**
+     * FROM item for the rows of a day partitioned raw_* table (raw_wifi_events_raw,
+     * raw_lpr, raw_telco) that can have a ts in [minTs, maxTs]. In parquet mode
+     * only the day=... directories of those UTC days are read. Otherwise the
+     * table comes back as is: each file's rows sit together, one day per file,
+     * so the caller's ts filter skips most other days through the zonemaps.
+     */
+    public String daysOf(String table, Instant minTs, Instant maxTs) {
+        Source src = source(table);
+        if (parquetDir == null || src == null || src.partitions() == null || !"day".equals(src.partitionColumns()))
+            return table;
+        List<String> days = new ArrayList<>();
+        LocalDate last = LocalDate.ofInstant(maxTs, ZoneOffset.UTC);
+        for (LocalDate d = LocalDate.ofInstant(minTs, ZoneOffset.UTC); !d.isAfter(last); d = d.plusDays(1)) {
+            Path dir = parquetDir.resolve(table).resolve("day=" + d);
+            if (Files.isDirectory(dir))
+                days.add("'" + dir.toAbsolutePath().toString().replace("\\", "/") + "/*.parquet'");
+        }
+        if (days.isEmpty())
+            return "(SELECT * FROM " + table + " LIMIT 0)";
+        return "read_parquet([" + String.join(", ", days) + "], hive_partitioning=true, hive_types={"
+                + src.partitionTypes() + "})";
+    }
+
+    private static Source source(String table) {
+        return SOURCES.stream().filter(s -> s.table().equals(table)).findFirst().orElse(null);
+    }
+
+    // DuckDB's md5_number_upper(ssn): the first 8 bytes of the MD5, little endian
+    static long ssnKey(String ssn) {
+        try {
+            byte[] md5 = MessageDigest.getInstance("MD5").digest(ssn.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(md5).order(ByteOrder.LITTLE_ENDIAN).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // In-memory: always a full load. File-backed: compare the CSV with what the
+    // manifest says we loaded last time and do the least work that keeps the
+    // table in step with it
+    private boolean ingest(Statement st, Source src) throws SQLException {
+        String path = csv(src.file());
+        if (!persistent) {
+            loadFull(st, src, path);
+            return true;
+        }
+        if (src.glob())
+            return ingestGlob(st, src);
+
+        File f = new File(path);
+        long size = f.length();
+        long mtime = f.lastModified();
+        // a view here is left over from a parquet-mode run
+        if ("VIEW".equals(objectType(src.table())))
+            exec(st, "DROP VIEW " + src.table());
+        Manifest prev = objectType(src.table()) != null ? readManifest(src.table()) : null;
+
+        // loaded with a different select: the rows are not what it produces now
+        String selectSha = selectSha(src);
+        if (prev != null && !selectSha.equals(prev.selectSha())) {
+            log.info("{}: normalization changed, reloading {}", src.table(), src.file());
+            loadFull(st, src, path);
+            writeManifest(src, size, mtime, fingerprint(f, -1).sha256(), selectSha);
+            return true;
+        }
+
+        // same size and mtime: trust it, no need to read the file at all
+        if (prev != null && prev.size() == size && prev.mtimeMs() == mtime) {
+            log.info("{}: {} unchanged, skipped", src.table(), src.file());
+            return false;
+        }
+
+        Fingerprint fp = fingerprint(f, prev == null ? -1 : prev.size());
+        boolean changed = true;
+        if (prev != null && fp.sha256().equals(prev.sha256())) {
+            log.info("{}: {} touched but content unchanged, skipped", src.table(), src.file());
+            changed = false;
+        } else if (prev != null && size > prev.size() && prev.sha256().equals(fp.prefixSha256())
+                && endsWithNewline(f, prev.size())) {
+            log.info("{}: {} grew by {} bytes, appending tail", src.table(), src.file(), size - prev.size());
+            appendTail(st, src, path, prev.size());
+        } else {
+            log.info("{}: loading {}", src.table(), src.file());
+            loadFull(st, src, path);
+        }
+        writeManifest(src, size, mtime, fp.sha256(), selectSha);
+        return changed;
+    }
+
+    // File-backed DB, one CSV per subject: each match has its own manifest row
+    // ("<table>/<file name>"), and its rows carry source_file, so a new or
+    // edited file only replaces its own rows and a file that is gone only takes
+    // its own rows with it. Anything the per-file rows can't vouch for (no
+    // table, another select, the single-file manifest row of older builds) is
+    // a full load of every match
+    private boolean ingestGlob(Statement st, Source src) throws SQLException {
+        if ("VIEW".equals(objectType(src.table())))
+            exec(st, "DROP VIEW " + src.table());
+        String prefix = src.table() + "/";
+        Map<String, Manifest> prev = objectType(src.table()) != null ? readManifests(prefix) : new HashMap<>();
+        String selectSha = selectSha(src);
+        List<File> files = files(src);
+
+        if (prev.isEmpty() || prev.values().stream().anyMatch(m -> !selectSha.equals(m.selectSha()))) {
+            log.info("{}: loading {} files matching {}", src.table(), files.size(), src.file());
+            loadFull(st, src, csv(src.file()));
+            exec(st, "DELETE FROM ingest_manifest WHERE table_name = '" + src.table()
+                    + "' OR starts_with(table_name, '" + prefix + "')");
+            for (File f : files)
+                writeManifest(prefix + f.getName(), f.getName(), f.length(), f.lastModified(),
+                        fingerprint(f, -1).sha256(), selectSha);
+            return true;
+        }
+
+        boolean changed = false;
+        for (File f : files) {
+            Manifest m = prev.remove(f.getName());
+            if (m != null && m.size() == f.length() && m.mtimeMs() == f.lastModified())
+                continue;
+            Fingerprint fp = fingerprint(f, m == null ? -1 : m.size());
+            if (m != null && fp.sha256().equals(m.sha256())) {
+                log.info("{}: {} touched but content unchanged, skipped", src.table(), f.getName());
+            } else if (m != null && f.length() > m.size() && m.sha256().equals(fp.prefixSha256())
+                    && endsWithNewline(f, m.size())) {
+                // today's drop still being written to
+                log.info("{}: {} grew by {} bytes, appending tail", src.table(), f.getName(), f.length() - m.size());
+                appendTail(st, src, csv(f.getName()), m.size());
+                changed = true;
+            } else {
+                log.info("{}: {} {}", src.table(), m == null ? "adding" : "reloading", f.getName());
+                deleteRowsOf(src, f.getName());
+                exec(st, "INSERT INTO " + src.table() + " " + src.select() + csvOrder(src),
+                        src.reader(csv(f.getName())));
+                changed = true;
+            }
+            writeManifest(prefix + f.getName(), f.getName(), f.length(), f.lastModified(), fp.sha256(), selectSha);
+        }
+        for (String gone : prev.keySet()) {
+            log.info("{}: {} is gone, dropping its rows", src.table(), gone);
+            deleteRowsOf(src, gone);
+            try (PreparedStatement ps = conn.prepareStatement("DELETE FROM ingest_manifest WHERE table_name = ?")) {
+                ps.setString(1, prefix + gone);
+                ps.executeUpdate();
+            }
+            changed = true;
+        }
+        if (!changed)
+            log.info("{}: {} files unchanged, skipped", src.table(), files.size());
+        return changed;
+    }
+
+    private void deleteRowsOf(Source src, String fileName) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "DELETE FROM " + src.table() + " WHERE source_file = ?")) {
+            ps.setString(1, fileName);
+            ps.executeUpdate();
+        }
+    }
+
+    // what the rows of a table depend on: its select, and the macros it calls
+    private static String selectSha(Source src) throws SQLException {
+        return sha256(src.timed() ? String.join("", TS_MACROS) + src.select() : src.select());
+    }
+
+    private void loadFull(Statement st, Source src, String path) throws SQLException {
+        if ("VIEW".equals(objectType(src.table())))
+            exec(st, "DROP VIEW " + src.table());
+        exec(st, "CREATE OR REPLACE TABLE " + src.table() + " AS " + src.select() + csvOrder(src), src.reader(path));
+    }
+
+    // row order of a csv-mode table, see Source
+    private static String csvOrder(Source src) {
+        return src.columns() != null && src.sortKey() != null ? " ORDER BY " + src.sortKey() : "";
+    }
+
+    // optional source whose file is not there: an empty table, so queries over
+    // it return nothing instead of failing. A file that shows up later is picked
+    // up by refresh() (its fileStamp() differs from the "0|0" or "" of none)
+    private void loadEmpty(Statement st, Source src) throws SQLException {
+        log.warn("{}: {} not found, starting with an empty table", src.table(), src.file());
+        if ("VIEW".equals(objectType(src.table())))
+            exec(st, "DROP VIEW " + src.table());
+        exec(st, "CREATE OR REPLACE TABLE " + src.table() + " AS " + src.select(), src.emptyReader());
+        if (objectType("ingest_manifest") != null)
+            exec(st, "DELETE FROM ingest_manifest WHERE table_name = '" + src.table()
+                    + "' OR starts_with(table_name, '" + src.table() + "/')");
+    }
+
+    // Parquet mode: <table>.parquet is the normalized table, <table>.stamp says
+    // which CSV (size/mtime) and which select produced it. If either changed the
+    // file is rebuilt, otherwise the CSV is never opened. False when the cached
+    // file was used. A partitioned source is a <table>/ directory instead, one
+    // col=value/... subdirectory per partition
+    private boolean ingestParquet(Statement st, Source src) throws SQLException {
+        String path = csv(src.file());
+        boolean partitioned = src.partitions() != null;
+        Path pq = parquetDir.resolve(partitioned ? src.table() : src.table() + ".parquet");
+        Path stampFile = parquetDir.resolve(src.table() + ".stamp");
+        String stamp = src.file() + "|" + fileStamp(src) + "|" + selectSha(src) + "|" + src.sortKey()
+                + (partitioned ? "|" + src.partitions() : "");
+
+        boolean fresh;
+        try {
+            fresh = Files.exists(pq) && Files.exists(stampFile)
+                    && Files.readString(stampFile).equals(stamp);
+            if (fresh) {
+                log.info("{}: using cached {}", src.table(), pq);
+            } else {
+                log.info("{}: converting {} to {}", src.table(), src.file(), pq);
+                Files.createDirectories(parquetDir);
+                // write next to the target and move, so a crash never leaves a
+                // half written file behind a valid stamp
+                Path tmp = parquetDir.resolve(pq.getFileName() + ".tmp");
+                Files.deleteIfExists(stampFile);
+                deleteTree(tmp);
+                String order = src.sortKey() == null ? "" : " ORDER BY " + src.sortKey();
+                String options = partitioned ? "PARTITION_BY (" + src.partitionColumns() + "), " : "";
+                exec(st, "COPY (" + src.select() + order + ") TO '"
+                        + tmp.toString().replace("\\", "/") + "' (FORMAT PARQUET, " + options + "COMPRESSION ZSTD)",
+                        src.reader(path));
+                if (partitioned) {
+                    // a directory can't be swapped in one move: the old one goes
+                    // first, the missing stamp covers a crash in between
+                    deleteTree(pq);
+                    Files.createDirectories(tmp);
+                    Files.move(tmp, pq, StandardCopyOption.ATOMIC_MOVE);
+                    // the single file of a build before the source was partitioned
+                    Files.deleteIfExists(parquetDir.resolve(src.table() + ".parquet"));
+                } else {
+                    Files.move(tmp, pq, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                }
+                Files.writeString(stampFile, stamp);
+            }
+        } catch (IOException e) {
+            throw new SQLException("Failed to maintain parquet cache in " + parquetDir, e);
+        }
+
+        // a table here is left over from a csv-mode run on the same DB file
+        if ("BASE TABLE".equals(objectType(src.table())))
+            exec(st, "DROP TABLE " + src.table());
+        if (!partitioned) {
+            exec(st, "CREATE OR REPLACE VIEW " + src.table() + " AS SELECT * FROM read_parquet('"
+                    + pq.toAbsolutePath().toString().replace("\\", "/") + "')");
+        } else if (hasParquet(pq)) {
+            exec(st, "CREATE OR REPLACE VIEW " + src.table() + " AS SELECT * FROM " + partitionReader(src, pq));
+        } else {
+            // no rows, so no partitions: read_parquet would find no files
+            exec(st, "CREATE OR REPLACE VIEW " + src.table() + " AS " + src.select(), src.emptyReader());
+        }
+        return !fresh;
+    }
+
+    // read_parquet over dir and everything below it, partition columns from
+    // the directory names
+    private static String partitionReader(Source src, Path dir) {
+        return "read_parquet('" + dir.toAbsolutePath().toString().replace("\\", "/")
+                + "/**/*.parquet', hive_partitioning=true, hive_types={" + src.partitionTypes() + "})";
+    }
+
+    private static boolean hasParquet(Path dir) throws SQLException {
+        if (!Files.isDirectory(dir))
+            return false;
+        try (var paths = Files.walk(dir)) {
+            return paths.anyMatch(p -> p.toString().endsWith(".parquet"));
+        } catch (IOException e) {
+            throw new SQLException("Failed to list " + dir, e);
+        }
+    }
+
+    private static void deleteTree(Path p) throws IOException {
+        if (!Files.exists(p))
+            return;
+        try (var paths = Files.walk(p)) {
+            for (Path q : paths.sorted(Comparator.reverseOrder()).toList())
+                Files.delete(q);
+        }
+    }
+
+    // Reads only the bytes past the last ingest. The tail gets the header line
+    // copied in front and is parsed with the exact dialect/types DuckDB sniffed
+    // from the whole file, so values come out the same as a full load
+    private void appendTail(Statement st, Source src, String path, long fromByte) throws SQLException {
+        // declared columns: same reader as a full load, nothing to sniff
+        String reader = src.columns() != null ? src.reader(path) : sniffedReader(st, path);
+        if (src.glob() && src.columns() == null)
+            reader = reader.substring(0, reader.lastIndexOf(')')) + ", filename=true)";
+
+        Path dir = null;
+        Path tail = null;
+        try {
+            // under the file's own name, source_file of a glob source comes from it
+            dir = Files.createTempDirectory("ingest_" + src.table() + "_");
+            tail = dir.resolve(Paths.get(path).getFileName().toString());
+            try (RandomAccessFile in = new RandomAccessFile(path, "r");
+                    OutputStream out = Files.newOutputStream(tail)) {
+                // header line as-is, including its own line terminator
+                int b;
+                while ((b = in.read()) >= 0) {
+                    out.write(b);
+                    if (b == '\n')
+                        break;
+                }
+                in.seek(fromByte);
+                byte[] buf = new byte[1 << 16];
+                int n;
+                while ((n = in.read(buf)) > 0)
+                    out.write(buf, 0, n);
+            }
+            String tailPath = tail.toString().replace("\\", "/");
+            exec(st, "INSERT INTO " + src.table() + " " + src.select(),
+                    reader.replace("'" + path + "'", "'" + tailPath + "'"));
+        } catch (IOException e) {
+            throw new SQLException("Failed to stage appended rows of " + path, e);
+        } finally {
+            if (tail != null)
+                tail.toFile().delete();
+            if (dir != null)
+                dir.toFile().delete();
+        }
+    }
+
+    // the read_csv call DuckDB's sniffer settles on for the whole file
+    private static String sniffedReader(Statement st, String path) throws SQLException {
+        String reader;
+        try (ResultSet rs = st.executeQuery("SELECT Prompt FROM sniff_csv('" + path + "')")) {
+            rs.next();
+            reader = rs.getString(1).trim();
+        }
+        if (reader.startsWith("FROM "))
+            reader = reader.substring(5);
+        if (reader.endsWith(";"))
+            reader = reader.substring(0, reader.length() - 1);
+        // "no quote/escape" comes back as a NUL char, which the parser rejects
+        return reader.replace("'\u0000'", "''");
+    }
+
+    // bytes follow() reads from one file per append
+    private static final int FOLLOW_CHUNK = 8 << 20;
+
+    // follow()'s place in one CSV: offset is where the lines the table holds
+    // end, sha hashes the bytes before it (the manifest's sha256 of a file
+    // that size), header is the file's column names
+    private static final class Tail {
+        long offset;
+        final MessageDigest sha;
+        final List<String> header;
+
+        private Tail(long offset, MessageDigest sha, List<String> header) {
+            this.offset = offset;
+            this.sha = sha;
+            this.header = header;
+        }
+
+        String sha() throws SQLException {
+            try {
+                return hex(((MessageDigest) sha.clone()).digest());
+            } catch (CloneNotSupportedException e) {
+                throw new SQLException(e);
+            }
+        }
+
+        // just past the header and the next `rows` non-empty lines (or the end
+        // of the file); null while the header line isn't complete
+        static Tail open(File f, long rows) throws SQLException {
+            try (InputStream in = new BufferedInputStream(new FileInputStream(f), 1 << 16)) {
+                MessageDigest sha = MessageDigest.getInstance("SHA-256");
+                ByteArrayOutputStream head = new ByteArrayOutputStream();
+                List<String> header = null;
+                boolean empty = true;
+                long read = 0;
+                byte[] buf = new byte[1 << 16];
+                int n;
+                while ((n = in.read(buf)) > 0) {
+                    for (int i = 0; i < n; i++) {
+                        if (buf[i] != '\n') {
+                            if (header == null)
+                                head.write(buf[i]);
+                            if (buf[i] != '\r')
+                                empty = false;
+                            continue;
+                        }
+                        if (header == null)
+                            header = splitCsv(head.toString(StandardCharsets.UTF_8).replace("\r", "")).stream()
+                                    .map(c -> c == null ? "" : c.trim())
+                                    .toList();
+                        else if (!empty)
+                            rows--;
+                        empty = true;
+                        if (rows == 0) {
+                            sha.update(buf, 0, i + 1);
+                            return new Tail(read + i + 1, sha, header);
+                        }
+                    }
+                    sha.update(buf, 0, n);
+                    read += n;
+                }
+                return header == null ? null : new Tail(read, sha, header);
+            } catch (IOException | NoSuchAlgorithmException e) {
+                throw new SQLException("Failed to read " + f, e);
+            }
+        }
+    }
+
+    // where each file's rows in the table end: its header plus as many
+    // non-empty lines as the table has rows from it
+    private Map<String, Tail> countTails(Source src) throws SQLException {
+        Map<String, Long> loaded = new HashMap<>();
+        try (Statement st = conn.createStatement();
+                ResultSet rs = st.executeQuery(
+                        "SELECT source_file, COUNT(*) FROM " + src.table() + " GROUP BY source_file")) {
+            while (rs.next())
+                loaded.put(rs.getString(1), rs.getLong(2));
+        }
+        Map<String, Tail> out = new HashMap<>();
+        for (File f : files(src)) {
+            Tail t = Tail.open(f, loaded.getOrDefault(f.getName(), 0L));
+            if (t != null)
+                out.put(f.getName(), t);
+        }
+        return out;
+    }
+
+    // rows (text, in header order) into src's table: the Appender fills a
+    // staging table with the file's columns plus filename, and the source's
+    // select reads that the way it reads the CSV
+    private void appendRows(Source src, String path, List<String> header, List<String[]> rows) throws SQLException {
+        if (rows.isEmpty())
+            return;
+        String staging = "live_" + src.table();
+        try (Statement st = conn.createStatement()) {
+            st.execute("CREATE OR REPLACE TEMP TABLE " + staging + " (" + header.stream()
+                    .map(c -> "\"" + c.replace("\"", "\"\"") + "\" VARCHAR")
+                    .collect(Collectors.joining(", ")) + ", filename VARCHAR)");
+            try (DuckDBAppender app = conn.unwrap(DuckDBConnection.class).createAppender("main", staging)) {
+                for (String[] row : rows) {
+                    app.beginRow();
+                    for (String v : row)
+                        app.append(v);
+                    app.append(path);
+                    app.endRow();
+                }
+            }
+            exec(st, "INSERT INTO " + src.table() + " " + src.select(), staging);
+            st.execute("DROP TABLE " + staging);
+        }
+    }
+
+    /**
+     * One CSV line (',' separated, '"' quoted, "" for a quote inside quotes)
+     * to its fields. An empty unquoted field is null, as read_csv reads it.
+     * A quoted field can't span lines here.
+     */
+    static List<String> splitCsv(String line) {
+        List<String> out = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        boolean inQuotes = false;
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (inQuotes) {
+                if (c != '"')
+                    sb.append(c);
+                else if (i + 1 < line.length() && line.charAt(i + 1) == '"')
+                    sb.append(line.charAt(++i));
+                else
+                    inQuotes = false;
+            } else if (c == '"') {
+                inQuotes = true;
+                quoted = true;
+            } else if (c == ',') {
+                out.add(sb.isEmpty() && !quoted ? null : sb.toString());
+                sb.setLength(0);
+                quoted = false;
+            } else {
+                sb.append(c);
+            }
+        }
+        out.add(sb.isEmpty() && !quoted ? null : sb.toString());
+        return out;
+    }
+
+    private static byte[] readRange(File f, long from, long to) throws SQLException {
+        try (RandomAccessFile in = new RandomAccessFile(f, "r")) {
+            byte[] b = new byte[(int) (to - from)];
+            in.seek(from);
+            in.readFully(b);
+            return b;
+        } catch (IOException e) {
+            throw new SQLException("Failed to read " + f, e);
+        }
+    }
+
+    private static int lastNewline(byte[] b) {
+        for (int i = b.length - 1; i >= 0; i--)
+            if (b[i] == '\n')
+                return i;
+        return -1;
+    }
+
+    private record Manifest(long size, long mtimeMs, String sha256, String selectSha) {
+    }
+
+    private record Fingerprint(String sha256, String prefixSha256) {
+    }
+
+    // "BASE TABLE", "VIEW" or null if there is nothing by that name
+    private String objectType(String name) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT table_type FROM information_schema.tables WHERE table_name = ?")) {
+            ps.setString(1, name);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+
+    private Manifest readManifest(String table) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT size_bytes, mtime_ms, sha256, select_sha FROM ingest_manifest WHERE table_name = ?")) {
+            ps.setString(1, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next()
+                        ? new Manifest(rs.getLong(1), rs.getLong(2), rs.getString(3), rs.getString(4))
+                        : null;
+            }
+        }
+    }
+
+    // the per-file rows of a glob source, by file name
+    private Map<String, Manifest> readManifests(String prefix) throws SQLException {
+        Map<String, Manifest> out = new HashMap<>();
+        try (PreparedStatement ps = conn.prepareStatement("""
+                SELECT table_name, size_bytes, mtime_ms, sha256, select_sha
+                FROM ingest_manifest WHERE starts_with(table_name, ?)
+                """)) {
+            ps.setString(1, prefix);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next())
+                    out.put(rs.getString(1).substring(prefix.length()),
+                            new Manifest(rs.getLong(2), rs.getLong(3), rs.getString(4), rs.getString(5)));
+            }
+        }
+        return out;
+    }
+
+    private void writeManifest(Source src, long size, long mtime, String sha256, String selectSha)
+            throws SQLException {
+        writeManifest(src.table(), src.file(), size, mtime, sha256, selectSha);
+    }
+
+    private void writeManifest(String key, String file, long size, long mtime, String sha256, String selectSha)
+            throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("""
+                INSERT OR REPLACE INTO ingest_manifest
+                  (table_name, source_file, size_bytes, mtime_ms, sha256, ingested_at, select_sha)
+                VALUES (?, ?, ?, ?, ?, now(), ?)
+                """)) {
+            ps.setString(1, key);
+            ps.setString(2, file);
+            ps.setLong(3, size);
+            ps.setLong(4, mtime);
+            ps.setString(5, sha256);
+            ps.setString(6, selectSha);
+            ps.executeUpdate();
+        }
+    }
+
+    // one pass over the file: hash of the whole thing, plus the hash of the
+    // first prefixLen bytes so we can tell a pure append from an edit
+    private static Fingerprint fingerprint(File f, long prefixLen) throws SQLException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(f), 1 << 16)) {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            String prefix = null;
+            byte[] buf = new byte[1 << 16];
+            long read = 0;
+            while (true) {
+                int want = buf.length;
+                if (prefix == null && prefixLen >= 0 && prefixLen - read < want)
+                    want = (int) (prefixLen - read);
+                if (prefix == null && prefixLen >= 0 && want == 0) {
+                    prefix = hex(((MessageDigest) md.clone()).digest());
+                    continue;
+                }
+                int n = in.read(buf, 0, want);
+                if (n < 0)
+                    break;
+                md.update(buf, 0, n);
+                read += n;
+            }
+            return new Fingerprint(hex(md.digest()), prefix);
+        } catch (IOException | NoSuchAlgorithmException | CloneNotSupportedException e) {
+            throw new SQLException("Failed to fingerprint " + f, e);
+        }
+    }
+
+    private static String sha256(String text) throws SQLException {
+        try {
+            return hex(MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new SQLException(e);
+        }
+    }
+
+    private static boolean endsWithNewline(File f, long len) throws SQLException {
+        if (len <= 0)
+            return false;
+        try (RandomAccessFile in = new RandomAccessFile(f, "r")) {
+            in.seek(len - 1);
+            return in.read() == '\n';
+        } catch (IOException e) {
+            throw new SQLException("Failed to read " + f, e);
+        }
+    }
+
+    private static String hex(byte[] b) {
+        StringBuilder sb = new StringBuilder(b.length * 2);
+        for (byte x : b)
+            sb.append(String.format("%02x", x));
+        return sb.toString();
+    }
+
+    // ART indexes for the equality lookups DuckDbRepo does per profile. Only for
+    // real tables: in parquet mode raw_* are views and the file layout does the
+    // pruning. CREATE OR REPLACE TABLE drops a table's indexes, so this runs
+    // after every bootstrap and rebuilds whatever a reload removed
+    private static final String[][] INDEXES = {
+            { "raw_people", "ssn" },
+            { "raw_people", "address_line1" },
+            { "raw_phone_contracts", "ssn" },
+            { "raw_phone_contracts", "imsi" },
+            { "raw_vehicles", "owner_dl" },
+            { "raw_tax_employers", "ssn" },
+            { "raw_tax_employers", "filer_address" },
+            { "raw_tax_employers", "employer_address" },
+            { "raw_telco", "imsi" },
+            { "raw_telco", "msisdn_norm" },
+            { "raw_cell_sites", "mcc, mnc, lac, tower_id" },
+    };
+
+    private void createIndexes() throws SQLException {
+        if (parquetDir != null)
+            return;
+        try (Statement st = conn.createStatement()) {
+            for (String[] ix : INDEXES)
+                exec(st, "CREATE INDEX IF NOT EXISTS idx_" + ix[0] + "_" + ix[1].replaceAll("\\W+", "_")
+                        + " ON " + ix[0] + "(" + ix[1] + ");");
         }
     }
 
@@ -253,15 +1487,202 @@ public class DuckDb implements AutoCloseable {
             exec(st, "CREATE OR REPLACE VIEW businesses        AS SELECT * FROM raw_businesses;");
             exec(st, "CREATE OR REPLACE VIEW lpr               AS SELECT * FROM raw_lpr;");
             exec(st, "CREATE OR REPLACE VIEW crime_reports     AS SELECT * FROM raw_crime_reports;");
+            exec(st, "CREATE OR REPLACE VIEW telco             AS SELECT * FROM raw_telco;");
+            exec(st, "CREATE OR REPLACE VIEW cell_sites        AS SELECT * FROM raw_cell_sites;");
+            exec(st, "CREATE OR REPLACE VIEW telco_cells       AS SELECT * FROM raw_telco_cells;");
         }
     }
 
+    // Primary connection, used for bootstrap. Anything that can run on more
+    // than one thread should use borrow() instead
     public Connection conn() {
         return conn;
     }
 
+    /**
+     * Checks a connection out of the pool, waiting up to app.db.borrowTimeoutMs.
+     * Closing the returned connection hands it back to the pool, so use it in
+     * try-with-resources like any DataSource connection.
+     */
+    public Connection borrow() throws SQLException {
+        Connection c;
+        try {
+            c = idle.poll(borrowTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a DuckDB connection", e);
+        }
+        if (c == null)
+            throw new SQLException("No DuckDB connection free after " + borrowTimeoutMs
+                    + " ms (app.db.poolSize=" + poolSize + ")");
+        return lease(c);
+    }
+
+    /** temp table filled by {@link #loadKeys}, one VARCHAR column k */
+    public static final String KEYS_TABLE = "lookup_keys";
+
+    /**
+     * Bulk lookups: replaces the connection's lookup_keys temp table with keys,
+     * appended through DuckDB's Appender, for the caller's next query to join
+     * on. One statement whatever the number of keys, where a query per key
+     * costs a round trip each and an IN (?, ?, ...) list is parsed and bound
+     * again on every call. Temp tables belong to the connection, so borrowers
+     * never see each other's keys; the table stays until the next loadKeys.
+     */
+    public void loadKeys(Connection c, Collection<String> keys) throws SQLException {
+        try (Statement st = c.createStatement()) {
+            st.execute("CREATE OR REPLACE TEMP TABLE " + KEYS_TABLE + " (k VARCHAR)");
+        }
+        // the appender resolves the name like a query does, temp tables first
+        try (DuckDBAppender app = c.unwrap(DuckDBConnection.class).createAppender("main", KEYS_TABLE)) {
+            for (String k : keys) {
+                app.beginRow();
+                app.append(k);
+                app.endRow();
+            }
+        }
+    }
+
+    private static final int ARROW_BATCH_ROWS = 8192;
+
+    /** one row of a {@link #scan}, columns by position from 0 */
+    public interface ScanRow {
+        long getLong(int col) throws SQLException;
+
+        double getDouble(int col) throws SQLException;
+
+        String getString(int col) throws SQLException;
+    }
+
+    @FunctionalInterface
+    public interface RowSink {
+        void accept(ScanRow row) throws SQLException;
+    }
+
+    /**
+     * Runs ps and hands every row to sink, in result order. For the big
+     * bounded scans (wifi, LPR): when Arrow is up the rows come over as
+     * columnar batches (DuckDBResultSet.arrowExportStream) and are read
+     * straight out of the vectors, which skips most of the per value work of
+     * the JDBC getters. Otherwise plain ResultSet rows. BIGINT, DOUBLE and
+     * VARCHAR columns only; NULL reads as 0 / null like the JDBC getters.
+     */
+    public void scan(PreparedStatement ps, RowSink sink) throws SQLException {
+        try (ResultSet rs = ps.executeQuery()) {
+            if (arrow == null) {
+                ScanRow row = new ScanRow() {
+                    public long getLong(int col) throws SQLException {
+                        return rs.getLong(col + 1);
+                    }
+
+                    public double getDouble(int col) throws SQLException {
+                        return rs.getDouble(col + 1);
+                    }
+
+                    public String getString(int col) throws SQLException {
+                        return rs.getString(col + 1);
+                    }
+                };
+                while (rs.next())
+                    sink.accept(row);
+                return;
+            }
+            try (ArrowReader r = arrowReader(rs, arrow)) {
+                ArrowRow row = new ArrowRow();
+                while (r.loadNextBatch()) {
+                    VectorSchemaRoot root = r.getVectorSchemaRoot();
+                    row.cols = root.getFieldVectors().toArray(new FieldVector[0]);
+                    for (row.i = 0; row.i < root.getRowCount(); row.i++)
+                        sink.accept(row);
+                }
+            } catch (IOException e) {
+                throw new SQLException("Reading Arrow batches failed", e);
+            }
+        }
+    }
+
+    public boolean arrowScans() {
+        return arrow != null;
+    }
+
+    private static final class ArrowRow implements ScanRow {
+        FieldVector[] cols;
+        int i;
+
+        public long getLong(int col) {
+            BigIntVector v = (BigIntVector) cols[col];
+            return v.isNull(i) ? 0 : v.get(i);
+        }
+
+        public double getDouble(int col) {
+            Float8Vector v = (Float8Vector) cols[col];
+            return v.isNull(i) ? 0 : v.get(i);
+        }
+
+        public String getString(int col) {
+            VarCharVector v = (VarCharVector) cols[col];
+            return v.isNull(i) ? null : new String(v.get(i), StandardCharsets.UTF_8);
+        }
+    }
+
+    public int poolSize() {
+        return poolSize;
+    }
+
+    public int idleConnections() {
+        return idle.size();
+    }
+
+    // wraps a pooled connection so close() returns it instead of closing it
+    private Connection lease(Connection real) {
+        AtomicBoolean returned = new AtomicBoolean(false);
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, (proxy, m, args) -> {
+                    switch (m.getName()) {
+                        case "close":
+                            if (returned.compareAndSet(false, true))
+                                giveBack(real);
+                            return null;
+                        case "isClosed":
+                            if (returned.get())
+                                return true;
+                            break;
+                        default:
+                            if (returned.get())
+                                throw new SQLException("Connection was already returned to the pool");
+                    }
+                    try {
+                        return m.invoke(real, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    private void giveBack(Connection c) throws SQLException {
+        if (c.isClosed()) {
+            // borrower closed the real thing (unwrap + close), replace it
+            synchronized (pooled) {
+                pooled.remove(c);
+                c = ((DuckDBConnection) conn).duplicate();
+                pooled.add(c);
+            }
+        } else if (!c.getAutoCommit()) {
+            c.rollback();
+            c.setAutoCommit(true);
+        }
+        idle.offer(c);
+    }
+
     @Override
     public void close() throws SQLException {
+        synchronized (pooled) {
+            for (Connection c : pooled)
+                c.close();
+            pooled.clear();
+        }
         conn.close();
+        if (arrow != null)
+            arrow.close();
     }
 }
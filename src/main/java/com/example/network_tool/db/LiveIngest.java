@@ -0,0 +1,245 @@
+package com.example.network_tool.db;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watch mode (app.live.enabled): keeps raw_ankle and raw_lpr current while the
+ * app runs, so a profile shows pings and plate reads from seconds ago without
+ * a restart or 'refresh'. Every app.live.flushMs, DuckDb.follow() appends the
+ * complete lines written to the *_Ankle_Monitor.csv and LPR_*.csv files of
+ * the data dir since the last round, new files included.
+ * <p>
+ * Feeds that don't write files send lines to a local socket (app.live.port)
+ * or a named pipe (app.live.pipe) instead: "ankle,&lt;fields&gt;" or
+ * "lpr,&lt;fields&gt;", the fields in the column order of that feed's CSV.
+ * Each round spools them to a CSV of their own in the data dir
+ * (Live_Ankle_Monitor.csv, LPR_live.csv) before following, so they take the
+ * same path as every other line and are still there after a restart.
+ * <p>
+ * csv ingest mode only: in parquet mode raw_* are views over files written
+ * at startup.
+ */
+@Component
+public class LiveIngest implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(LiveIngest.class);
+
+    // table the feed goes to, the CSV its socket / pipe lines are spooled to,
+    // and the columns those lines carry
+    private record Feed(String table, String spool, List<String> columns) {
+    }
+
+    private static final Map<String, Feed> FEEDS = new LinkedHashMap<>();
+    static {
+        FEEDS.put("ankle", new Feed("raw_ankle", "Live_Ankle_Monitor.csv",
+                List.of("datetime", "location_x", "location_y", "firstname", "lastname", "middlename", "ssn")));
+        FEEDS.put("lpr", new Feed("raw_lpr", "LPR_live.csv",
+                List.of("datetime", "licenseplate", "lpr_latitude", "lpr_longitude", "state", "lpr_direction",
+                        "lpr_id")));
+    }
+
+    private final DuckDb duck;
+    private final MeterRegistry registry;
+    private final Path dataDir;
+    // feed -> socket / pipe lines not spooled yet
+    private final Map<String, List<String>> pending = new LinkedHashMap<>();
+    private final ScheduledExecutorService flusher;
+    private final ServerSocket server;
+    private volatile boolean closed;
+
+    public LiveIngest(DuckDb duck, MeterRegistry registry,
+            @Value("${app.dataDir}") String dataDir,
+            @Value("${app.ingest.mode:csv}") String ingestMode,
+            @Value("${app.live.enabled:false}") boolean enabled,
+            @Value("${app.live.flushMs:1000}") long flushMs,
+            @Value("${app.live.port:0}") int port,
+            @Value("${app.live.host:127.0.0.1}") String host,
+            @Value("${app.live.pipe:}") String pipe) throws IOException {
+        this.duck = duck;
+        this.registry = registry;
+        this.dataDir = Paths.get(dataDir);
+        for (String feed : FEEDS.keySet())
+            pending.put(feed, new ArrayList<>());
+        if (!enabled || !"csv".equalsIgnoreCase(ingestMode)) {
+            if (enabled)
+                log.warn("app.live.enabled needs app.ingest.mode=csv, live ingest is off");
+            flusher = null;
+            server = null;
+            return;
+        }
+
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> daemon("live-ingest", r));
+        flusher.scheduleWithFixedDelay(this::flush, flushMs, flushMs, TimeUnit.MILLISECONDS);
+        if (port > 0) {
+            server = new ServerSocket(port, 50, InetAddress.getByName(host));
+            daemon("live-socket", this::acceptLines).start();
+            log.info("live ingest: taking lines on {}:{}", host, server.getLocalPort());
+        } else {
+            server = null;
+        }
+        if (pipe != null && !pipe.isBlank())
+            daemon("live-pipe", () -> readPipe(Paths.get(pipe))).start();
+        log.info("live ingest: following {} every {} ms",
+                FEEDS.values().stream().map(Feed::table).toList(), flushMs);
+    }
+
+    private static Thread daemon(String name, Runnable r) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+
+    // one thread per connection, a feed usually keeps its socket open
+    private void acceptLines() {
+        while (!closed) {
+            try {
+                Socket s = server.accept();
+                daemon("live-socket-" + s.getPort(), () -> {
+                    try (s; BufferedReader in = new BufferedReader(
+                            new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8))) {
+                        for (String line; (line = in.readLine()) != null;)
+                            offer(line);
+                    } catch (IOException e) {
+                        log.warn("live ingest: connection from {} dropped: {}", s.getRemoteSocketAddress(), e.toString());
+                    }
+                }).start();
+            } catch (IOException e) {
+                if (!closed)
+                    log.warn("live ingest: accept failed: {}", e.toString());
+            }
+        }
+    }
+
+    // opening a FIFO waits for a writer and reading it ends when the writer
+    // closes, so reopen it for the next one
+    private void readPipe(Path pipe) {
+        if (!Files.exists(pipe) || Files.isRegularFile(pipe) || Files.isDirectory(pipe)) {
+            log.warn("live ingest: {} is not a named pipe (mkfifo), not reading it", pipe);
+            return;
+        }
+        log.info("live ingest: reading lines from {}", pipe);
+        while (!closed) {
+            try (BufferedReader in = Files.newBufferedReader(pipe, StandardCharsets.UTF_8)) {
+                for (String line; (line = in.readLine()) != null;)
+                    offer(line);
+            } catch (IOException e) {
+                log.warn("live ingest: reading {} failed: {}", pipe, e.toString());
+                return;
+            }
+        }
+    }
+
+    // "<feed>,<fields>". Checked here, one bad line must not leave a spool
+    // CSV that read_csv refuses on the next start
+    void offer(String line) {
+        if (line.isBlank())
+            return;
+        int comma = line.indexOf(',');
+        String name = comma < 0 ? "" : line.substring(0, comma).trim().toLowerCase(Locale.ROOT);
+        Feed feed = FEEDS.get(name);
+        String fields = comma < 0 ? "" : line.substring(comma + 1);
+        if (feed == null || DuckDb.splitCsv(fields).size() != feed.columns().size()) {
+            registry.counter("ingest.live.rejected").increment();
+            log.warn("live ingest: not a line of {} with the feed's fields, dropped: {}", FEEDS.keySet(), line);
+            return;
+        }
+        List<String> q = pending.get(name);
+        synchronized (q) {
+            q.add(fields);
+        }
+    }
+
+    private void flush() {
+        for (Map.Entry<String, Feed> e : FEEDS.entrySet()) {
+            String table = e.getValue().table();
+            try {
+                spool(e.getKey());
+                int rows = duck.follow(table);
+                if (rows > 0) {
+                    registry.counter("ingest.live.rows", "table", table).increment(rows);
+                    log.debug("{}: {} live rows appended", table, rows);
+                }
+            } catch (Exception ex) {
+                // logged and retried next round: a scheduled task that throws is never run again
+                log.warn("{}: live ingest failed: {}", table, ex.toString());
+            }
+        }
+    }
+
+    // the feed's pending lines onto its spool CSV, header first if it is new.
+    // If the write fails they go back to the front of the queue for the next round
+    void spool(String name) throws IOException {
+        Feed feed = FEEDS.get(name);
+        List<String> q = pending.get(name);
+        List<String> lines;
+        synchronized (q) {
+            if (q.isEmpty())
+                return;
+            lines = new ArrayList<>(q);
+            q.clear();
+        }
+        Path p = dataDir.resolve(feed.spool());
+        StringBuilder sb = new StringBuilder();
+        if (!Files.exists(p))
+            sb.append(String.join(",", feed.columns())).append('\n');
+        for (String l : lines)
+            sb.append(l).append('\n');
+        try {
+            Files.writeString(p, sb, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            synchronized (q) {
+                q.addAll(0, lines);
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (flusher == null)
+            return;
+        closed = true;
+        try {
+            if (server != null)
+                server.close();
+        } catch (IOException ignore) {
+        }
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // whatever came in since the last round is on disk for the next start
+        for (Map.Entry<String, Feed> e : FEEDS.entrySet()) {
+            try {
+                spool(e.getKey());
+            } catch (IOException ex) {
+                log.warn("{}: could not spool live lines: {}", e.getValue().table(), ex.toString());
+            }
+        }
+    }
+}
@@ -10,6 +10,8 @@ import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.stream.Collector;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 @Component
 public class ProfileLogic {
@@ -40,19 +42,27 @@ public class ProfileLogic {
     }
 
     // businesses linked by ANKLE proximity
-    public List<BizVisit> businessesLinked(List<AnklePing> ankle, List<Business> all) {
+    // the grid is built by the caller so it can be reused across profiles;
+    // walks the track arrays, each ping only checks the cells around it, and a
+    // timestamp is only boxed when a ping actually hits a business
+    public List<BizVisit> businessesLinked(AnkleTrack track, SpatialGrid<Business> grid) {
         final double radiusM = Consts.BIZ_RADIUS_M;
 
-        // Build events in parallel
-        List<VisitEvent> events = ankle.parallelStream()
-                .flatMap(a -> {
-                    final Instant hour = a.ts().truncatedTo(ChronoUnit.HOURS);
-                    return all.stream()
-                            .filter(b -> haversineM(a.lat(), a.lon(), b.lat, b.lon) <= radiusM)
-                            .map(b -> new VisitEvent(b, a.ts(), hour));
+        List<VisitEvent> events = IntStream.range(0, track.size()).parallel()
+                .boxed()
+                .flatMap(i -> {
+                    List<Business> near = grid.near(track.lat[i], track.lon[i], radiusM);
+                    if (near.isEmpty())
+                        return Stream.empty();
+                    final Instant ts = track.ts(i);
+                    final Instant hour = ts.truncatedTo(ChronoUnit.HOURS);
+                    return near.stream().map(b -> new VisitEvent(b, ts, hour));
                 })
                 .collect(Collectors.toList());
+        return topVisits(events);
+    }
 
+    private List<BizVisit> topVisits(List<VisitEvent> events) {
         Map<String, VisitAgg> agg = events.stream()
                 .collect(Collectors.groupingBy(
                         ev -> ev.b.bizId,
@@ -75,26 +85,43 @@ public class ProfileLogic {
     }
 
     // WIFI nearby
-    public List<WifiSpot> wifiNearby(List<AnklePing> ankle, List<Phone> phones, List<WifiEvent> wifi) {
+    // straight off the scan columns, a WifiEvt is only made for a hit
+    public List<WifiSpot> wifiNearby(AnkleTrack track, List<Phone> phones, WifiScan wifi) {
         final long wMin = Consts.WIFI_MINUTES;
         final double radiusM = Consts.WIFI_RADIUS_M;
 
-        // Normalize phone MACs
+        TimeWindowIndex.Micros wifiByTime = TimeWindowIndex.ofMicros(wifi.epochMicros);
+        List<WifiEvt> ankleHits = IntStream.range(0, track.size()).parallel()
+                .boxed()
+                .flatMap(i -> Arrays.stream(wifiByTime.positions(track.ts(i), wMin))
+                        .filter(j -> haversineM(track.lat[i], track.lon[i], wifi.lat[j], wifi.lon[j]) <= radiusM)
+                        .mapToObj(j -> wifiEvt(wifi, j, "PRS proximity")))
+                .collect(Collectors.toList());
+
+        return wifiSpots(ankleHits, macHits(phones, wifi));
+    }
+
+    private static WifiEvt wifiEvt(WifiScan wifi, int j, String via) {
+        return new WifiEvt(round(wifi.lat[j], 6), round(wifi.lon[j], 6), wifi.ts(j), wifi.ssids(j), via);
+    }
+
+    // Device MAC derived spots: scan rows seen from one of the phones
+    private List<WifiEvt> macHits(List<Phone> phones, WifiScan wifi) {
         Set<String> phoneMacs = phones.stream()
                 .map(p -> normMac(p.mac))
                 .filter(s -> !s.isBlank())
                 .collect(Collectors.toSet());
+        if (phoneMacs.isEmpty())
+            return List.of();
+        return IntStream.range(0, wifi.size()).parallel()
+                .filter(j -> !wifi.macHex[j].isBlank() && phoneMacs.contains(wifi.macHex[j]))
+                .mapToObj(j -> wifiEvt(wifi, j, "device_mac"))
+                .collect(Collectors.toList());
+    }
 
+    private List<WifiSpot> wifiSpots(List<WifiEvt> ankleHits, List<WifiEvt> macHits) {
         Map<String, WifiAgg> agg = new HashMap<>();
 
-        // Ankle-proximity derived spots
-        List<WifiEvt> ankleHits = ankle.parallelStream()
-                .flatMap(a -> wifi.stream()
-                        .filter(w -> Math.abs(Duration.between(a.ts(), w.ts).toMinutes()) <= wMin)
-                        .filter(w -> haversineM(a.lat(), a.lon(), w.lat, w.lon) <= radiusM)
-                        .map(w -> new WifiEvt(round(w.lat, 6), round(w.lon, 6), w.ts, w.ssids, "PRS proximity")))
-                .collect(Collectors.toList());
-
         for (WifiEvt e : ankleHits) {
             WifiAgg wa = agg.computeIfAbsent(e.key(), k -> new WifiAgg(e.lat, e.lon));
             wa.hits++;
@@ -106,23 +133,15 @@ public class ProfileLogic {
             wa.ssids.addAll(e.ssids);
         }
 
-        // Device MAC derived spots
-        if (!phoneMacs.isEmpty()) {
-            List<WifiEvt> macHits = wifi.parallelStream()
-                    .filter(w -> !normMac(w.deviceMac).isBlank() && phoneMacs.contains(normMac(w.deviceMac)))
-                    .map(w -> new WifiEvt(round(w.lat, 6), round(w.lon, 6), w.ts, w.ssids, "device_mac"))
-                    .collect(Collectors.toList());
-
-            for (WifiEvt e : macHits) {
-                WifiAgg wa = agg.computeIfAbsent(e.key(), k -> new WifiAgg(e.lat, e.lon));
-                wa.hits++;
-                wa.vias.add(e.viaTag);
-                if (wa.firstTs == null || e.ts.isBefore(wa.firstTs))
-                    wa.firstTs = e.ts;
-                if (wa.lastTs == null || e.ts.isAfter(wa.lastTs))
-                    wa.lastTs = e.ts;
-                wa.ssids.addAll(e.ssids);
-            }
+        for (WifiEvt e : macHits) {
+            WifiAgg wa = agg.computeIfAbsent(e.key(), k -> new WifiAgg(e.lat, e.lon));
+            wa.hits++;
+            wa.vias.add(e.viaTag);
+            if (wa.firstTs == null || e.ts.isBefore(wa.firstTs))
+                wa.firstTs = e.ts;
+            if (wa.lastTs == null || e.ts.isAfter(wa.lastTs))
+                wa.lastTs = e.ts;
+            wa.ssids.addAll(e.ssids);
         }
 
         return agg.values().stream()
@@ -145,7 +164,7 @@ public class ProfileLogic {
     }
 
     // LPR sightings
-    public List<LprView> lprSightings(List<AnklePing> ankle, List<Vehicle> myVehicles, List<LprHit> allLpr) {
+    public List<LprView> lprSightings(AnkleTrack track, List<Vehicle> myVehicles, LprScan lpr) {
         Set<String> plates = myVehicles.stream()
                 .map(v -> v.plate == null ? "" : v.plate.trim().toUpperCase())
                 .filter(s -> !s.isBlank())
@@ -153,35 +172,28 @@ public class ProfileLogic {
 
         List<LprView> out = new ArrayList<>();
 
-        List<LprHit> plateHits = List.of();
         if (!plates.isEmpty()) {
-            plateHits = allLpr.stream()
-                    .filter(h -> h.plateNorm != null && !h.plateNorm.isBlank())
-                    .filter(h -> plates.contains(h.plateNorm.trim().toUpperCase()))
-                    .collect(Collectors.toList());
-
-            if (!plateHits.isEmpty()) {
-                out = plateHits.parallelStream().map(h -> {
-                    AnklePing best = bestAnkleWithinWindow(h.ts, h.lat, h.lon, ankle, Consts.LPR_MINUTES);
+            int[] plateHits = IntStream.range(0, lpr.size())
+                    .filter(i -> lpr.plateNorm[i] != null && !lpr.plateNorm[i].isBlank())
+                    .filter(i -> plates.contains(lpr.plateNorm[i].trim().toUpperCase()))
+                    .toArray();
+
+            if (plateHits.length > 0) {
+                out = Arrays.stream(plateHits).parallel().mapToObj(i -> {
+                    Instant ts = lpr.ts(i);
+                    AnklePing best = bestAnkleWithinWindow(ts, lpr.lat[i], lpr.lon[i], track, Consts.LPR_MINUTES);
                     boolean confirm = false;
                     Double distM = null;
                     Instant ankleTs = null;
                     if (best != null) {
-                        double d = haversineM(h.lat, h.lon, best.lat(), best.lon());
+                        double d = haversineM(lpr.lat[i], lpr.lon[i], best.lat(), best.lon());
                         if (d <= Consts.LPR_RADIUS_M) {
                             confirm = true;
                             distM = d;
                             ankleTs = best.ts();
                         }
                     }
-                    LprView v = new LprView();
-                    v.ts = h.ts;
-                    v.lat = h.lat;
-                    v.lon = h.lon;
-                    v.sensorId = h.sensorId;
-                    v.direction = h.direction;
-                    v.plateState = h.plateState;
-                    v.plateRaw = h.plateRaw;
+                    LprView v = lprView(lpr, i, ts);
                     v.ankleTs = ankleTs;
                     v.distM = distM;
                     v.confirmed = confirm;
@@ -192,23 +204,17 @@ public class ProfileLogic {
         }
 
         if (out.isEmpty()) {
-            out = allLpr.parallelStream()
-                    .map(h -> {
-                        AnklePing best = bestAnkleWithinWindow(h.ts, h.lat, h.lon, ankle, Consts.LPR_MINUTES);
+            out = IntStream.range(0, lpr.size()).parallel()
+                    .mapToObj(i -> {
+                        Instant ts = lpr.ts(i);
+                        AnklePing best = bestAnkleWithinWindow(ts, lpr.lat[i], lpr.lon[i], track, Consts.LPR_MINUTES);
                         if (best == null)
                             return null;
-                        double d = haversineM(h.lat, h.lon, best.lat(), best.lon());
+                        double d = haversineM(lpr.lat[i], lpr.lon[i], best.lat(), best.lon());
                         if (d > Consts.LPR_RADIUS_M)
                             return null;
 
-                        LprView v = new LprView();
-                        v.ts = h.ts;
-                        v.lat = h.lat;
-                        v.lon = h.lon;
-                        v.sensorId = h.sensorId;
-                        v.direction = h.direction;
-                        v.plateState = h.plateState;
-                        v.plateRaw = h.plateRaw;
+                        LprView v = lprView(lpr, i, ts);
                         v.ankleTs = best.ts();
                         v.distM = d;
                         v.confirmed = true;
@@ -223,26 +229,57 @@ public class ProfileLogic {
         return out.stream().limit(500).collect(Collectors.toList());
     }
 
-    // crime matches
-    public List<CrimeMatch> matchCrimesSpatial(List<AnklePing> ankle, List<Crime> crimes) {
+    private static LprView lprView(LprScan lpr, int i, Instant ts) {
+        LprView v = new LprView();
+        v.ts = ts;
+        v.lat = lpr.lat[i];
+        v.lon = lpr.lon[i];
+        v.sensorId = lpr.sensorId[i];
+        v.direction = lpr.direction[i];
+        v.plateState = lpr.plateState[i];
+        v.plateRaw = lpr.plateRaw[i];
+        return v;
+    }
+
+    // crime matches. A crime with a report time only matches points within
+    // windowMin minutes of it (Consts.CRIME_MINUTES unless given); reports without
+    // a time, or windowMin <= 0, match on distance alone
+    public List<CrimeMatch> matchCrimesSpatial(AnkleTrack track, List<Crime> crimes) {
+        return matchCrimesSpatial(track, crimes, Consts.CRIME_MINUTES);
+    }
+
+    // the track is time sorted, so a timed crime only walks the slice of pings
+    // around its report time instead of the whole track
+    public List<CrimeMatch> matchCrimesSpatial(AnkleTrack track, List<Crime> crimes, long windowMin) {
+        final long[] ms = track.epochMillis;
+        final double[] lat = track.lat, lon = track.lon;
         List<CrimeMatch> out = crimes.parallelStream()
                 .map(c -> {
-                    AnklePing best = null;
+                    boolean timed = c.ts != null && windowMin > 0;
+                    int from = 0, to = lat.length;
+                    if (timed) {
+                        int[] r = TimeWindowIndex.range(ms, c.ts, windowMin);
+                        from = r[0];
+                        to = r[1];
+                    }
+                    int best = -1;
                     double bestD = Double.POSITIVE_INFINITY;
-                    for (AnklePing a : ankle) {
-                        double d = haversineM(a.lat(), a.lon(), c.lat, c.lon);
+                    for (int i = from; i < to; i++) {
+                        if (timed && !TimeWindowIndex.withinMillis(c.ts, ms[i], windowMin))
+                            continue;
+                        double d = haversineM(lat[i], lon[i], c.lat, c.lon);
                         if (d < bestD) {
                             bestD = d;
-                            best = a;
+                            best = i;
                         }
                     }
-                    if (best != null && bestD <= Consts.CRIME_RADIUS_M) {
+                    if (best >= 0 && bestD <= Consts.CRIME_RADIUS_M) {
                         CrimeMatch m = new CrimeMatch();
                         m.reportId = c.reportId;
-                        m.crimeTs = null;
+                        m.crimeTs = c.ts;
                         m.lat = c.lat;
                         m.lon = c.lon;
-                        m.ankleTs = best.ts();
+                        m.ankleTs = track.ts(best);
                         m.distM = bestD;
                         m.preText = c.preText;
                         m.postText = c.postText;
@@ -259,11 +296,17 @@ public class ProfileLogic {
     }
 
     public List<CrimeMatch> matchCrimesByLpr(List<LprView> lprViews, List<Crime> crimes) {
+        return matchCrimesByLpr(lprViews, crimes, Consts.CRIME_MINUTES);
+    }
+
+    public List<CrimeMatch> matchCrimesByLpr(List<LprView> lprViews, List<Crime> crimes, long windowMin) {
         List<CrimeMatch> out = crimes.parallelStream()
                 .map(c -> {
                     LprView best = null;
                     double bestD = Double.POSITIVE_INFINITY;
                     for (LprView v : lprViews) {
+                        if (!inCrimeWindow(c, v.ts.toEpochMilli(), windowMin))
+                            continue;
                         double d = haversineM(v.lat, v.lon, c.lat, c.lon);
                         if (d < bestD) {
                             bestD = d;
@@ -273,7 +316,7 @@ public class ProfileLogic {
                     if (best != null && bestD <= Consts.CRIME_RADIUS_M) {
                         CrimeMatch m = new CrimeMatch();
                         m.reportId = c.reportId;
-                        m.crimeTs = null;
+                        m.crimeTs = c.ts;
                         m.lat = c.lat;
                         m.lon = c.lon;
                         m.ankleTs = best.ankleTs;
@@ -292,6 +335,10 @@ public class ProfileLogic {
         return out.stream().sorted(Comparator.comparingDouble(cm -> cm.distM)).limit(50).toList();
     }
 
+    private static boolean inCrimeWindow(Crime c, long epochMillis, long windowMin) {
+        return c.ts == null || windowMin <= 0 || TimeWindowIndex.withinMillis(c.ts, epochMillis, windowMin);
+    }
+
     public List<CrimeMatch> mergeCrimeMatches(List<CrimeMatch> a, List<CrimeMatch> b) {
         Map<String, CrimeMatch> byId = new LinkedHashMap<>();
         for (CrimeMatch m : a) {
@@ -382,6 +429,33 @@ public class ProfileLogic {
         return new PeopleConnections(cards);
     }
 
+    // the POI's network out of the relation graph, names filled in from people
+    public List<NetworkLink> relatedNetwork(DuckDbRepo repo, RelationGraph graph, String ssn,
+            RelationGraph.Query q) throws Exception {
+        List<RelationGraph.Reached> reached = graph.expand(ssn, q);
+        if (reached.isEmpty())
+            return List.of();
+        Set<String> ssns = new LinkedHashSet<>();
+        for (RelationGraph.Reached r : reached)
+            ssns.add(r.ssn());
+        Map<String, PersonMini> basics = repo.loadPersonMini(ssns);
+
+        List<NetworkLink> out = new ArrayList<>(reached.size());
+        for (RelationGraph.Reached r : reached) {
+            NetworkLink n = new NetworkLink();
+            n.ssn = r.ssn();
+            PersonMini pm = basics.get(r.ssn());
+            n.name = pm == null ? null : pm.name();
+            n.hops = r.hops();
+            n.fromSsn = r.from();
+            n.via = r.via().label;
+            n.shared = r.shared();
+            n.events = r.events();
+            out.add(n);
+        }
+        return out;
+    }
+
     // helpers
 
     private static final class VisitEvent {
@@ -479,7 +553,7 @@ public class ProfileLogic {
     }
 
     // We use this to determine distance between two points on earth
-    private static double haversineM(double lat1, double lon1, double lat2, double lon2) {
+    static double haversineM(double lat1, double lon1, double lat2, double lon2) {
         double R = 6371000.0;
         double dLat = Math.toRadians(lat2 - lat1);
         double dLon = Math.toRadians(lon2 - lon1);
@@ -504,24 +578,30 @@ public class ProfileLogic {
     }
 
     // Prefer an ankle ping that is inside the time window and nearest in space.
+    // The track is time sorted, so the window is a binary search
     private static AnklePing bestAnkleWithinWindow(Instant ts, double lat, double lon,
-            List<AnklePing> ankle, long windowMin) {
-        AnklePing best = null;
+            AnkleTrack track, long windowMin) {
+        int best = -1;
         double bestDist = Double.POSITIVE_INFINITY;
-        for (AnklePing a : ankle) {
-            long dtMin = Math.abs(Duration.between(ts, a.ts()).toMinutes());
-            if (dtMin <= windowMin) {
-                double d = haversineM(lat, lon, a.lat(), a.lon());
-                if (d < bestDist) {
-                    bestDist = d;
-                    best = a;
-                }
+        int[] range = TimeWindowIndex.range(track.epochMillis, ts, windowMin);
+        for (int i = range[0]; i < range[1]; i++) {
+            if (!TimeWindowIndex.withinMillis(ts, track.epochMillis[i], windowMin))
+                continue;
+            double d = haversineM(lat, lon, track.lat[i], track.lon[i]);
+            if (d < bestDist) {
+                bestDist = d;
+                best = i;
             }
         }
-        return best; // may be null
+        return best < 0 ? null : track.ping(best);
+    }
+
+    public List<CrimeMatch> matchCrimesByWifiPhones(List<Phone> phones, WifiScan wifi, List<Crime> crimes) {
+        return matchCrimesByWifiPhones(phones, wifi, crimes, Consts.CRIME_MINUTES);
     }
 
-    public List<CrimeMatch> matchCrimesByWifiPhones(List<Phone> phones, List<WifiEvent> wifi, List<Crime> crimes) {
+    public List<CrimeMatch> matchCrimesByWifiPhones(List<Phone> phones, WifiScan wifi, List<Crime> crimes,
+            long windowMin) {
         Set<String> macs = phones.stream()
                 .map(p -> normMac(p.mac))
                 .filter(s -> !s.isBlank())
@@ -529,27 +609,29 @@ public class ProfileLogic {
         if (macs.isEmpty())
             return List.of();
 
-        List<WifiEvent> myHits = wifi.stream()
-                .filter(w -> macs.contains(normMac(w.deviceMac)))
-                .collect(Collectors.toList());
-        if (myHits.isEmpty())
+        int[] myHits = IntStream.range(0, wifi.size())
+                .filter(j -> macs.contains(wifi.macHex[j]))
+                .toArray();
+        if (myHits.length == 0)
             return List.of();
 
         List<CrimeMatch> out = crimes.parallelStream()
                 .map(c -> {
-                    WifiEvent best = null;
+                    int best = -1;
                     double bestD = Double.POSITIVE_INFINITY;
-                    for (WifiEvent w : myHits) {
-                        double d = haversineM(w.lat, w.lon, c.lat, c.lon);
+                    for (int j : myHits) {
+                        if (!inCrimeWindow(c, Math.floorDiv(wifi.epochMicros[j], 1000), windowMin))
+                            continue;
+                        double d = haversineM(wifi.lat[j], wifi.lon[j], c.lat, c.lon);
                         if (d < bestD) {
                             bestD = d;
-                            best = w;
+                            best = j;
                         }
                     }
-                    if (best != null && bestD <= Consts.CRIME_RADIUS_M) {
+                    if (best >= 0 && bestD <= Consts.CRIME_RADIUS_M) {
                         CrimeMatch m = new CrimeMatch();
                         m.reportId = c.reportId;
-                        m.crimeTs = null;
+                        m.crimeTs = c.ts;
                         m.lat = c.lat;
                         m.lon = c.lon;
                         m.ankleTs = null;
@@ -570,29 +652,32 @@ public class ProfileLogic {
         return out;
     }
 
-    public Bounds computeBoundsWithPadding(List<AnklePing> ankle, double padMeters) {
-        if (ankle == null || ankle.isEmpty())
+    public Bounds computeBoundsWithPadding(AnkleTrack track, double padMeters) {
+        if (track == null || track.isEmpty())
             return null;
 
         double minLat = Double.POSITIVE_INFINITY, maxLat = Double.NEGATIVE_INFINITY;
         double minLon = Double.POSITIVE_INFINITY, maxLon = Double.NEGATIVE_INFINITY;
 
-        for (AnklePing a : ankle) {
-            if (a == null)
-                continue;
-            if (a.lat() < minLat)
-                minLat = a.lat();
-            if (a.lat() > maxLat)
-                maxLat = a.lat();
-            if (a.lon() < minLon)
-                minLon = a.lon();
-            if (a.lon() > maxLon)
-                maxLon = a.lon();
+        for (int i = 0; i < track.size(); i++) {
+            double la = track.lat[i], lo = track.lon[i];
+            if (la < minLat)
+                minLat = la;
+            if (la > maxLat)
+                maxLat = la;
+            if (lo < minLon)
+                minLon = lo;
+            if (lo > maxLon)
+                maxLon = lo;
         }
 
         if (!Double.isFinite(minLat))
             return null;
 
+        return padBounds(minLat, maxLat, minLon, maxLon, padMeters);
+    }
+
+    private static Bounds padBounds(double minLat, double maxLat, double minLon, double maxLon, double padMeters) {
         // meters → degrees
         double dLat = padMeters / 111_000.0;
         // use the box’s center latitude for lon scaling
@@ -0,0 +1,379 @@
+package com.example.network_tool.logic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Who is linked to whom through shared addresses, employers and phone calls,
+ * in memory, for multi-hop expansion without a query per person.
+ * <p>
+ * People are int ids (index into the sorted ssns array) and every adjacency is
+ * a CSR pair of arrays: row i is to[off[i]] .. to[off[i + 1] - 1]. Addresses
+ * and employers are not expanded into cliques, each one is a group with its
+ * members (person -> groups, group -> people), so an employer with 300 people
+ * costs 600 ints instead of 90k edges. Calls are direct person to person edges
+ * weighted by the number of events, heaviest first, so a fan-out cap keeps
+ * the strongest ties.
+ * <p>
+ * Immutable once built. expand() allocates only its own visited set and
+ * result, any number of profiles can walk the same graph at once.
+ */
+public final class RelationGraph {
+
+    public enum Link {
+        // same home address (DMV address or tax filer address)
+        HOUSEHOLD("household"),
+        // one lives where the other works (employer address)
+        EMPLOYER_ADDR("employer_addr"),
+        // same employer name on the tax records
+        COWORKER("coworker"),
+        // SMS / calls between their phone lines
+        CALLS("calls");
+
+        public final String label;
+
+        Link(String label) {
+            this.label = label;
+        }
+
+        public static Link parse(String s) {
+            String t = s.trim().toLowerCase(Locale.ROOT);
+            for (Link l : values())
+                if (l.label.equals(t))
+                    return l;
+            throw new IllegalArgumentException("unknown link '" + s + "', use household, employer_addr, "
+                    + "coworker or calls");
+        }
+    }
+
+    /**
+     * maxHops: how far out to go. links: which kinds of edges to follow.
+     * fanout: most new people taken from one person per kind of link (0: no
+     * cap). maxNodes: stop once this many people are reached. minCalls: call
+     * edges with fewer events are not followed.
+     */
+    public record Query(int maxHops, Set<Link> links, int fanout, int maxNodes, int minCalls) {
+    }
+
+    /**
+     * Someone reached from the start, hops away, first reached from `from` over
+     * `via`. shared: the address or employer name behind the link (null for
+     * calls). events: call events for calls, 0 otherwise.
+     */
+    public record Reached(String ssn, int hops, String from, Link via, String shared, int events) {
+    }
+
+    // row i = to[off[i]] .. to[off[i + 1] - 1], w parallel to `to` (null when unweighted)
+    private record Csr(int[] off, int[] to, int[] w) {
+        int size() {
+            return to.length;
+        }
+    }
+
+    private final String[] ssns;
+    private final String[] places;
+    private final String[] employers;
+    private final Csr lives, residents;   // person -> place, place -> person
+    private final Csr works, workers;     // person -> employer address, employer address -> person
+    private final Csr employs, staff;     // person -> employer name, employer name -> person
+    private final Csr calls;              // person -> person, by events desc
+
+    private RelationGraph(String[] ssns, String[] places, String[] employers, Csr lives, Csr residents,
+            Csr works, Csr workers, Csr employs, Csr staff, Csr calls) {
+        this.ssns = ssns;
+        this.places = places;
+        this.employers = employers;
+        this.lives = lives;
+        this.residents = residents;
+        this.works = works;
+        this.workers = workers;
+        this.employs = employs;
+        this.staff = staff;
+        this.calls = calls;
+    }
+
+    public int nodeCount() {
+        return ssns.length;
+    }
+
+    // ints held in adjacency rows, both directions
+    public long edgeCount() {
+        return (long) lives.size() + residents.size() + works.size() + workers.size() + employs.size()
+                + staff.size() + calls.size();
+    }
+
+    public boolean contains(String ssn) {
+        return id(ssn) >= 0;
+    }
+
+    /**
+     * Breadth first from ssn: everyone within q.maxHops() over q.links(), each
+     * once, at the hop they were first reached, in the order they were found
+     * (by hop, then the order of their parent, then links in Link order).
+     * The start itself is not in the result; empty when ssn is not a node.
+     */
+    public List<Reached> expand(String ssn, Query q) {
+        int start = id(ssn);
+        if (start < 0 || q.maxHops() <= 0 || q.maxNodes() <= 0)
+            return List.of();
+
+        Walk walk = new Walk(q);
+        walk.seen.set(start);
+        int[] frontier = { start };
+        for (int hop = 1; hop <= q.maxHops() && frontier.length > 0 && !walk.full(); hop++) {
+            walk.hop = hop;
+            walk.next = new int[16];
+            walk.nextSize = 0;
+            for (int u : frontier) {
+                if (walk.full())
+                    break;
+                if (q.links().contains(Link.HOUSEHOLD)) {
+                    walk.taken = 0;
+                    walk.viaGroups(u, lives, residents, places, Link.HOUSEHOLD);
+                }
+                if (q.links().contains(Link.EMPLOYER_ADDR)) {
+                    // both ways round share the one fan-out budget
+                    walk.taken = 0;
+                    if (walk.viaGroups(u, lives, workers, places, Link.EMPLOYER_ADDR))
+                        walk.viaGroups(u, works, residents, places, Link.EMPLOYER_ADDR);
+                }
+                if (q.links().contains(Link.COWORKER)) {
+                    walk.taken = 0;
+                    walk.viaGroups(u, employs, staff, employers, Link.COWORKER);
+                }
+                if (q.links().contains(Link.CALLS)) {
+                    walk.taken = 0;
+                    walk.viaCalls(u);
+                }
+            }
+            frontier = Arrays.copyOf(walk.next, walk.nextSize);
+        }
+        return walk.out;
+    }
+
+    // state of one expand(): the visited set, the result and the next frontier
+    private final class Walk {
+        final Query q;
+        final BitSet seen = new BitSet(ssns.length);
+        final List<Reached> out = new ArrayList<>();
+        int hop;
+        int[] next;
+        int nextSize;
+        int taken;
+
+        Walk(Query q) {
+            this.q = q;
+        }
+
+        boolean full() {
+            return out.size() >= q.maxNodes();
+        }
+
+        // false once this person's fan-out for the link, or maxNodes, is used up
+        boolean reach(int v, int from, Link via, String shared, int events) {
+            // a later link of the same person can still get here once maxNodes is hit
+            if (full())
+                return false;
+            if (!seen.get(v)) {
+                seen.set(v);
+                out.add(new Reached(ssns[v], hop, ssns[from], via, shared, events));
+                if (nextSize == next.length)
+                    next = Arrays.copyOf(next, nextSize * 2);
+                next[nextSize++] = v;
+                taken++;
+            }
+            return (q.fanout() <= 0 || taken < q.fanout()) && !full();
+        }
+
+        // u -> its groups in memberOf -> the people of each group in members
+        boolean viaGroups(int u, Csr memberOf, Csr members, String[] names, Link via) {
+            for (int i = memberOf.off()[u]; i < memberOf.off()[u + 1]; i++) {
+                int g = memberOf.to()[i];
+                for (int j = members.off()[g]; j < members.off()[g + 1]; j++) {
+                    int v = members.to()[j];
+                    if (v != u && !reach(v, u, via, names[g], 0))
+                        return false;
+                }
+            }
+            return true;
+        }
+
+        void viaCalls(int u) {
+            for (int i = calls.off()[u]; i < calls.off()[u + 1]; i++) {
+                // heaviest first, nothing after this one qualifies either
+                if (calls.w()[i] < q.minCalls())
+                    return;
+                if (!reach(calls.to()[i], u, Link.CALLS, null, calls.w()[i]))
+                    return;
+            }
+        }
+    }
+
+    private int id(String ssn) {
+        if (ssn == null)
+            return -1;
+        int i = Arrays.binarySearch(ssns, ssn.trim());
+        return i < 0 ? -1 : i;
+    }
+
+    /** every kind of link */
+    public static Set<Link> allLinks() {
+        return EnumSet.allOf(Link.class);
+    }
+
+    /**
+     * Collects the links by SSN / address / employer name and packs them into
+     * the CSR arrays. Links naming an SSN that is not in the node list, or a
+     * blank key, are dropped.
+     */
+    public static final class Builder {
+        private final String[] ssns;
+        private final Map<String, Integer> places = new HashMap<>();
+        private final Map<String, Integer> employers = new HashMap<>();
+        private final Pairs lives = new Pairs(), works = new Pairs(), employs = new Pairs(), calls = new Pairs();
+
+        public Builder(Collection<String> nodes) {
+            this.ssns = nodes.stream().filter(s -> s != null && !s.isBlank()).map(String::trim).distinct()
+                    .sorted().toArray(String[]::new);
+        }
+
+        public Builder residence(String ssn, String address) {
+            return member(lives, places, ssn, address);
+        }
+
+        public Builder workplace(String ssn, String employerAddress) {
+            return member(works, places, ssn, employerAddress);
+        }
+
+        public Builder employment(String ssn, String employerName) {
+            return member(employs, employers, ssn, employerName);
+        }
+
+        // undirected, events > 0
+        public Builder call(String a, String b, int events) {
+            int x = id(a), y = id(b);
+            if (x >= 0 && y >= 0 && x != y && events > 0) {
+                calls.add(x, y, events);
+                calls.add(y, x, events);
+            }
+            return this;
+        }
+
+        // Group ids are renumbered in name order and every membership row is
+        // sorted by id, so the graph, and which people a fan-out cap keeps,
+        // do not depend on the order the links came in
+        public RelationGraph build() {
+            int n = ssns.length, np = places.size(), ne = employers.size();
+            String[] placeNames = renumber(places, lives, works);
+            String[] employerNames = renumber(employers, employs);
+            Csr callCsr = csr(calls, n, false);
+            sortByEventsDesc(callCsr);
+            return new RelationGraph(ssns, placeNames, employerNames,
+                    sorted(csr(lives, n, false)), sorted(csr(lives, np, true)),
+                    sorted(csr(works, n, false)), sorted(csr(works, np, true)),
+                    sorted(csr(employs, n, false)), sorted(csr(employs, ne, true)),
+                    callCsr);
+        }
+
+        private Builder member(Pairs pairs, Map<String, Integer> groups, String ssn, String key) {
+            int p = id(ssn);
+            if (p < 0 || key == null || key.isBlank())
+                return this;
+            int g = groups.computeIfAbsent(key, k -> groups.size());
+            pairs.add(p, g, 0);
+            return this;
+        }
+
+        private int id(String ssn) {
+            if (ssn == null)
+                return -1;
+            int i = Arrays.binarySearch(ssns, ssn.trim());
+            return i < 0 ? -1 : i;
+        }
+
+        // names in sorted order; the pairs' group ids (b) are rewritten to match
+        private static String[] renumber(Map<String, Integer> groups, Pairs... pairs) {
+            String[] names = groups.keySet().toArray(String[]::new);
+            Arrays.sort(names);
+            int[] newId = new int[names.length];
+            for (int i = 0; i < names.length; i++)
+                newId[groups.get(names[i])] = i;
+            for (Pairs p : pairs)
+                for (int i = 0; i < p.size; i++)
+                    p.b[i] = newId[p.b[i]];
+            return names;
+        }
+
+        private static Csr sorted(Csr c) {
+            for (int r = 0; r + 1 < c.off().length; r++)
+                Arrays.sort(c.to(), c.off()[r], c.off()[r + 1]);
+            return c;
+        }
+
+        // counting sort of the pairs into rows (by a, or by b when reversed)
+        private static Csr csr(Pairs p, int rows, boolean reversed) {
+            int[] from = reversed ? p.b : p.a, to = reversed ? p.a : p.b;
+            int[] off = new int[rows + 1];
+            for (int i = 0; i < p.size; i++)
+                off[from[i] + 1]++;
+            for (int r = 0; r < rows; r++)
+                off[r + 1] += off[r];
+            int[] fill = Arrays.copyOf(off, rows);
+            int[] outTo = new int[p.size];
+            int[] outW = reversed ? null : new int[p.size];
+            for (int i = 0; i < p.size; i++) {
+                int at = fill[from[i]]++;
+                outTo[at] = to[i];
+                if (outW != null)
+                    outW[at] = p.w[i];
+            }
+            return new Csr(off, outTo, outW);
+        }
+
+        // each row heaviest first, ties by id: packed into longs so a plain
+        // Arrays.sort on the row does it
+        private static void sortByEventsDesc(Csr c) {
+            long[] buf = new long[16];
+            for (int r = 0; r + 1 < c.off().length; r++) {
+                int lo = c.off()[r], len = c.off()[r + 1] - lo;
+                if (len < 2)
+                    continue;
+                if (buf.length < len)
+                    buf = new long[Math.max(len, buf.length * 2)];
+                for (int i = 0; i < len; i++)
+                    buf[i] = ((long) (Integer.MAX_VALUE - c.w()[lo + i]) << 32) | c.to()[lo + i];
+                Arrays.sort(buf, 0, len);
+                for (int i = 0; i < len; i++) {
+                    c.w()[lo + i] = Integer.MAX_VALUE - (int) (buf[i] >>> 32);
+                    c.to()[lo + i] = (int) buf[i];
+                }
+            }
+        }
+    }
+
+    // growable (a, b, w) int triples
+    private static final class Pairs {
+        int[] a = new int[1024], b = new int[1024], w = new int[1024];
+        int size;
+
+        void add(int x, int y, int weight) {
+            if (size == a.length) {
+                a = Arrays.copyOf(a, size * 2);
+                b = Arrays.copyOf(b, size * 2);
+                w = Arrays.copyOf(w, size * 2);
+            }
+            a[size] = x;
+            b[size] = y;
+            w[size] = weight;
+            size++;
+        }
+    }
+}
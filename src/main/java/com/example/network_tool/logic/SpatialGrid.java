@@ -0,0 +1,95 @@
+package com.example.network_tool.logic;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Uniform lat/lon grid over a fixed set of points. Cells are sized so one cell
+ * spans at least {@code cellMeters} in both directions, so a radius query only
+ * has to look at the cells around the query point instead of every item.
+ * Results of {@link #near} are exactly the items a full haversine scan would
+ * return (same filter, fewer candidates).
+ */
+public final class SpatialGrid<T> {
+    // same degree->meter factor we use for the bounding boxes in the repo
+    private static final double M_PER_DEG = 111_000.0;
+
+    private final Map<Long, List<T>> cells = new HashMap<>();
+    private final ToDoubleFunction<T> latFn;
+    private final ToDoubleFunction<T> lonFn;
+    private final double cellLat;
+    private final double cellLon;
+    private final int size;
+
+    public SpatialGrid(Collection<T> items, ToDoubleFunction<T> latFn, ToDoubleFunction<T> lonFn,
+            double cellMeters) {
+        this.latFn = latFn;
+        this.lonFn = lonFn;
+        this.cellLat = cellMeters / M_PER_DEG;
+
+        // widest longitude cells we can use without a cell being narrower than
+        // cellMeters anywhere in the data
+        double maxAbsLat = 0;
+        for (T t : items) {
+            double lat = Math.abs(latFn.applyAsDouble(t));
+            if (lat > maxAbsLat && lat <= 90)
+                maxAbsLat = lat;
+        }
+        this.cellLon = cellLat / Math.max(Math.cos(Math.toRadians(Math.min(maxAbsLat, 89.0))), 1e-6);
+
+        for (T t : items) {
+            long key = key(row(latFn.applyAsDouble(t)), col(lonFn.applyAsDouble(t)));
+            cells.computeIfAbsent(key, k -> new ArrayList<>()).add(t);
+        }
+        this.size = items.size();
+    }
+
+    // every item within radiusM (haversine) of lat/lon
+    public List<T> near(double lat, double lon, double radiusM) {
+        double dLat = radiusM / M_PER_DEG;
+        // longitude span grows toward the poles, so use the far edge of the box
+        double edgeLat = Math.min(Math.abs(lat) + dLat, 89.0);
+        double dLon = dLat / Math.max(Math.cos(Math.toRadians(edgeLat)), 1e-6);
+
+        int r0 = row(lat - dLat), r1 = row(lat + dLat);
+        int c0 = col(lon - dLon), c1 = col(lon + dLon);
+
+        List<T> out = new ArrayList<>();
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                List<T> bucket = cells.get(key(r, c));
+                if (bucket == null)
+                    continue;
+                for (T t : bucket) {
+                    if (ProfileLogic.haversineM(lat, lon, latFn.applyAsDouble(t), lonFn.applyAsDouble(t)) <= radiusM)
+                        out.add(t);
+                }
+            }
+        }
+        return out;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int cellCount() {
+        return cells.size();
+    }
+
+    private int row(double lat) {
+        return (int) Math.floor(lat / cellLat);
+    }
+
+    private int col(double lon) {
+        return (int) Math.floor(lon / cellLon);
+    }
+
+    private static long key(int row, int col) {
+        return ((long) row << 32) | (col & 0xffffffffL);
+    }
+}
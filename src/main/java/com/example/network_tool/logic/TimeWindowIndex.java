@@ -0,0 +1,138 @@
+package com.example.network_tool.logic;
+
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * Time-sorted views over event times. {@link #ofMicros} indexes a column of
+ * epoch micros and hands back the rows inside a +/- minute window of a probe
+ * time by binary searching the window edges, so a join of N probes against M
+ * events costs about O(M log M + N log M + matches) instead of N x M;
+ * {@link #range} / {@link #withinMillis} do the same over a track that is
+ * already sorted.
+ * <p>
+ * The window test is the one the old loops used,
+ * {@code |Duration.between(probe, event).toMinutes()| <= windowMin}
+ * (whole minutes, truncated), and matches come back in the caller's original
+ * row order, so swapping this in does not change any result.
+ */
+public final class TimeWindowIndex {
+
+    private TimeWindowIndex() {
+    }
+
+    /**
+     * Index over a column of epoch micros (WifiScan, LprScan), kept as the
+     * sorted micros themselves: no Instant per row, and {@link Micros#positions}
+     * hands back row numbers without boxing.
+     */
+    public static Micros ofMicros(long[] epochMicros) {
+        return new Micros(epochMicros);
+    }
+
+    // first sorted position with a value >= v
+    private static int lowerBound(long[] sorted, long v) {
+        int lo = 0, hi = sorted.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sorted[mid] < v)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    // Helpers for callers that already keep time sorted epoch millis (AnkleTrack).
+    // range() is the candidate slice [from, to), withinMillis() the exact test.
+    static int[] range(long[] sortedEpochMillis, Instant ts, long windowMin) {
+        long limit = (windowMin + 1) * 60;
+        long from = (ts.getEpochSecond() - limit) * 1000;
+        long to = (ts.getEpochSecond() + limit + 1) * 1000;
+        return new int[] { lowerBound(sortedEpochMillis, from), lowerBound(sortedEpochMillis, to) };
+    }
+
+    static boolean withinMillis(Instant ts, long epochMillis, long windowMin) {
+        long limit = (windowMin + 1) * 60;
+        long d = Math.floorDiv(epochMillis, 1000) - ts.getEpochSecond();
+        if (Math.floorMod(epochMillis, 1000) * 1_000_000L < ts.getNano())
+            d--;
+        return d > -limit && d < limit;
+    }
+
+    static boolean withinMicros(Instant ts, long epochMicros, long windowMin) {
+        long limit = (windowMin + 1) * 60;
+        long d = Math.floorDiv(epochMicros, 1_000_000) - ts.getEpochSecond();
+        if (Math.floorMod(epochMicros, 1_000_000) * 1_000L < ts.getNano())
+            d--;
+        return d > -limit && d < limit;
+    }
+
+    /** See {@link #ofMicros}. */
+    public static final class Micros {
+        // sorted; order[i] is the row micros[i] came from
+        private final long[] micros;
+        private final int[] order;
+
+        private Micros(long[] epochMicros) {
+            order = sortedOrder(epochMicros);
+            micros = new long[order.length];
+            for (int i = 0; i < order.length; i++)
+                micros[i] = epochMicros[order[i]];
+        }
+
+        public int size() {
+            return order.length;
+        }
+
+        // rows within windowMin whole minutes of ts, ascending
+        public int[] positions(Instant ts, long windowMin) {
+            long limit = (windowMin + 1) * 60;
+            int lo = lowerBound(micros, (ts.getEpochSecond() - limit) * 1_000_000);
+            int hi = lowerBound(micros, (ts.getEpochSecond() + limit + 1) * 1_000_000);
+            if (lo >= hi)
+                return new int[0];
+
+            int[] hits = new int[hi - lo];
+            int k = 0;
+            for (int i = lo; i < hi; i++) {
+                if (withinMicros(ts, micros[i], windowMin))
+                    hits[k++] = order[i];
+            }
+            Arrays.sort(hits, 0, k);
+            return k == hits.length ? hits : Arrays.copyOf(hits, k);
+        }
+    }
+
+    // row numbers in the order of their keys, stable; a merge sort on int[]
+    // since Arrays.sort has no comparator form for primitives
+    private static int[] sortedOrder(long[] keys) {
+        int n = keys.length;
+        int[] a = new int[n];
+        boolean sorted = true;
+        for (int i = 0; i < n; i++) {
+            a[i] = i;
+            if (i > 0 && keys[i - 1] > keys[i])
+                sorted = false;
+        }
+        if (sorted)
+            return a;
+        int[] b = new int[n];
+        for (int w = 1; w < n; w *= 2) {
+            for (int lo = 0; lo < n; lo += 2 * w) {
+                int mid = Math.min(lo + w, n), hi = Math.min(lo + 2 * w, n);
+                int i = lo, j = mid, k = lo;
+                while (i < mid && j < hi)
+                    b[k++] = keys[a[j]] < keys[a[i]] ? a[j++] : a[i++];
+                while (i < mid)
+                    b[k++] = a[i++];
+                while (j < hi)
+                    b[k++] = a[j++];
+            }
+            int[] t = a;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+}
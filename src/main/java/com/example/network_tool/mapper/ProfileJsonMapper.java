@@ -1,256 +1,409 @@
 package com.example.network_tool.mapper;
 
+import com.example.network_tool.metrics.ProfileMetrics;
 import com.example.network_tool.model.Models.*;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.List;
 
+/**
+ * Writes profiles with a streaming JsonGenerator, section by section, straight
+ * to the caller's Writer. No ObjectNode tree and no intermediate String, so a
+ * profile with thousands of LPR rows costs the model objects plus a small
+ * write buffer. Field order and number types are what the old tree version
+ * produced, so the output is the same byte for byte.
+ */
 @Component
 public class ProfileJsonMapper {
     private final ObjectMapper om = new ObjectMapper();
 
+    /**
+     * The parts of one profile in output order. Each getter may block until its
+     * section has been computed, writeProfile asks for them one at a time and
+     * flushes in between, so early sections go out while later ones still run.
+     */
+    public interface Sections {
+        Person person() throws Exception;
+        List<Phone> phones() throws Exception;
+        List<Vehicle> vehicles() throws Exception;
+        List<Employer> employers() throws Exception;
+        List<OwnedBiz> businessesOwned() throws Exception;
+        List<BizVisit> businessesLinked() throws Exception;
+        List<WifiSpot> wifiNearby() throws Exception;
+        List<LprView> lprSightings() throws Exception;
+        List<CrimeMatch> crimeMatches() throws Exception;
+        PeopleConnections peopleConnected() throws Exception;
+        List<ConvoLink> conversations() throws Exception;
+        List<TowerColocation> towerColocations() throws Exception;
+        List<NetworkLink> network() throws Exception;
+        // null: no _timings block
+        ProfileMetrics.Trace timings();
+    }
+
     private static String nvl(String s) { return s == null ? "" : s; }
     private static String nullIfBlank(String s) { return (s == null || s.isBlank()) ? null : s; }
 
-    private void putStr(ObjectNode n, String field, String value) {
-        if (value == null) n.putNull(field); else n.put(field, value);
+    private static void putStr(JsonGenerator g, String field, String value) throws IOException {
+        if (value == null) g.writeNullField(field); else g.writeStringField(field, value);
+    }
+    private static void putNum(JsonGenerator g, String field, Long value) throws IOException {
+        if (value == null) g.writeNullField(field); else g.writeNumberField(field, (long) value);
+    }
+    private static void putNum(JsonGenerator g, String field, Double value) throws IOException {
+        if (value == null) g.writeNullField(field); else g.writeNumberField(field, (double) value);
+    }
+    private static void putTs(JsonGenerator g, String field, java.time.Instant ts) throws IOException {
+        putStr(g, field, ts == null ? null : ts.toString());
     }
-    private void putNum(ObjectNode n, String field, Long value) {
-        if (value == null) n.putNull(field); else n.put(field, value);
+
+    // pretty for the console, compact (one line) for batch output. The caller
+    // owns out; the generator does not close it
+    public JsonGenerator generator(Writer out, boolean pretty) throws IOException {
+        JsonGenerator g = om.createGenerator(out);
+        g.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        if (pretty)
+            g.setPrettyPrinter(new DefaultPrettyPrinter());
+        return g;
     }
-    private void putNum(ObjectNode n, String field, Double value) {
-        if (value == null) n.putNull(field); else n.put(field, value);
+
+    public void writeProfile(JsonGenerator g, Sections s) throws Exception {
+        g.writeStartObject();
+        g.writeFieldName("person");
+        writePerson(g, s.person());
+        g.flush();
+        g.writeFieldName("phones");
+        writePhones(g, s.phones(), true);
+        g.writeFieldName("vehicles");
+        writeVehicles(g, s.vehicles(), "DL");
+        g.writeFieldName("employers");
+        writeEmployers(g, s.employers(), "tax_filing");
+        g.writeFieldName("businesses_owned");
+        writeOwnedBiz(g, s.businessesOwned());
+        g.flush();
+        g.writeFieldName("businesses_linked");
+        writeBizVisits(g, s.businessesLinked());
+        g.flush();
+        g.writeFieldName("wifi_nearby");
+        writeWifi(g, s.wifiNearby());
+        g.flush();
+        g.writeFieldName("lpr_sightings");
+        writeLpr(g, s.lprSightings());
+        g.flush();
+        g.writeFieldName("crime_matches");
+        writeCrimes(g, s.crimeMatches());
+        g.flush();
+        g.writeFieldName("people_connected");
+        writeConnected(g, s.peopleConnected());
+        g.flush();
+        g.writeFieldName("conversations");
+        writeConversations(g, s.conversations());
+        g.flush();
+        g.writeFieldName("tower_colocations");
+        writeTowerColocations(g, s.towerColocations());
+        g.flush();
+        g.writeFieldName("network");
+        writeNetwork(g, s.network());
+        ProfileMetrics.Trace trace = s.timings();
+        if (trace != null) {
+            g.writeFieldName("_timings");
+            writeTimings(g, trace);
+        }
+        g.writeEndObject();
+        g.flush();
     }
 
-    public ObjectNode personNode(Person p) {
-        ObjectNode node = om.createObjectNode();
-        putStr(node, "ssn", p.ssn);
-        putStr(node, "name", p.name);
-        putStr(node, "dl", p.dl);
-        ObjectNode addr = om.createObjectNode();
-        putStr(addr, "line1", nvl(p.addr1));
-        addr.putNull("city"); addr.putNull("state"); addr.putNull("zip");
-        node.set("address", addr);
-        return node;
+    public void writePerson(JsonGenerator g, Person p) throws IOException {
+        g.writeStartObject();
+        putStr(g, "ssn", p.ssn);
+        putStr(g, "name", p.name);
+        putStr(g, "dl", p.dl);
+        g.writeObjectFieldStart("address");
+        putStr(g, "line1", nvl(p.addr1));
+        g.writeNullField("city"); g.writeNullField("state"); g.writeNullField("zip");
+        g.writeEndObject();
+        g.writeEndObject();
     }
 
-    public ArrayNode listPhones(List<Phone> phones, boolean includeVia) {
-        ArrayNode arr = om.createArrayNode();
+    public void writePhones(JsonGenerator g, List<Phone> phones, boolean includeVia) throws IOException {
+        g.writeStartArray();
         for (Phone p : phones) {
-            ObjectNode n = om.createObjectNode();
-            putStr(n, "msisdn", nullIfBlank(p.msisdn));
-            putStr(n, "imsi",   nullIfBlank(p.imsi));
-            putStr(n, "mac",    nullIfBlank(p.mac));
-            putStr(n, "type",   nullIfBlank(p.type));
-            putStr(n, "make",   nullIfBlank(p.make));
-            putStr(n, "model",  nullIfBlank(p.model));
-            if (includeVia) putStr(n, "via", "contract");
-            arr.add(n);
+            g.writeStartObject();
+            putStr(g, "msisdn", nullIfBlank(p.msisdn));
+            putStr(g, "imsi",   nullIfBlank(p.imsi));
+            putStr(g, "mac",    nullIfBlank(p.mac));
+            putStr(g, "type",   nullIfBlank(p.type));
+            putStr(g, "make",   nullIfBlank(p.make));
+            putStr(g, "model",  nullIfBlank(p.model));
+            if (includeVia) putStr(g, "via", "contract");
+            g.writeEndObject();
         }
-        return arr;
+        g.writeEndArray();
     }
 
-    public ArrayNode listVehicles(List<Vehicle> vehicles, String via) {
-        ArrayNode arr = om.createArrayNode();
+    public void writeVehicles(JsonGenerator g, List<Vehicle> vehicles, String via) throws IOException {
+        g.writeStartArray();
         for (Vehicle v : vehicles) {
-            ObjectNode n = om.createObjectNode();
-            putStr(n, "vin",   nullIfBlank(v.vin));
-            putStr(n, "plate", nullIfBlank(v.plate));
-            putStr(n, "make",  nullIfBlank(v.make));
-            putStr(n, "model", nullIfBlank(v.model));
-            putNum(n, "year",  v.year);
-            if (via != null) putStr(n, "via", via);
-            arr.add(n);
+            g.writeStartObject();
+            putStr(g, "vin",   nullIfBlank(v.vin));
+            putStr(g, "plate", nullIfBlank(v.plate));
+            putStr(g, "make",  nullIfBlank(v.make));
+            putStr(g, "model", nullIfBlank(v.model));
+            putNum(g, "year",  v.year);
+            if (via != null) putStr(g, "via", via);
+            g.writeEndObject();
         }
-        return arr;
+        g.writeEndArray();
     }
 
-    public ArrayNode listEmployers(List<Employer> emps, String via) {
-        ArrayNode arr = om.createArrayNode();
+    public void writeEmployers(JsonGenerator g, List<Employer> emps, String via) throws IOException {
+        g.writeStartArray();
         for (Employer e : emps) {
-            ObjectNode n = om.createObjectNode();
-            putStr(n, "name",    nullIfBlank(e.name));
-            putStr(n, "address", nullIfBlank(e.address));
-            putStr(n, "via", via);
-            arr.add(n);
+            g.writeStartObject();
+            putStr(g, "name",    nullIfBlank(e.name));
+            putStr(g, "address", nullIfBlank(e.address));
+            putStr(g, "via", via);
+            g.writeEndObject();
         }
-        return arr;
+        g.writeEndArray();
     }
 
-    public ArrayNode listOwnedBiz(List<OwnedBiz> owned) {
-        ArrayNode arr = om.createArrayNode();
+    public void writeOwnedBiz(JsonGenerator g, List<OwnedBiz> owned) throws IOException {
+        g.writeStartArray();
         for (OwnedBiz b : owned) {
-            ObjectNode n = om.createObjectNode();
-            putStr(n, "biz_id", b.bizId);
-            putStr(n, "name",   b.name);
-            putNum(n, "lat",    b.lat);
-            putNum(n, "lon",    b.lon);
-            putStr(n, "line1",  b.line1);
-            putStr(n, "via",    b.via);
-            arr.add(n);
+            g.writeStartObject();
+            putStr(g, "biz_id", b.bizId);
+            putStr(g, "name",   b.name);
+            putNum(g, "lat",    b.lat);
+            putNum(g, "lon",    b.lon);
+            putStr(g, "line1",  b.line1);
+            putStr(g, "via",    b.via);
+            g.writeEndObject();
         }
-        return arr;
+        g.writeEndArray();
     }
 
-    public ArrayNode listBizVisits(List<BizVisit> visits) {
-        ArrayNode arr = om.createArrayNode();
+    public void writeBizVisits(JsonGenerator g, List<BizVisit> visits) throws IOException {
+        g.writeStartArray();
         for (BizVisit v : visits) {
-            ObjectNode n = om.createObjectNode();
-            putStr(n, "biz_id", v.bizId);
-            putStr(n, "name",   v.name);
-            putStr(n, "line1",  v.line1);
-            putNum(n, "lat",    v.lat);
-            putNum(n, "lon",    v.lon);
-            putStr(n, "first_seen", v.firstTs == null ? null : v.firstTs.toString());
-            putStr(n, "last_seen",  v.lastTs  == null ? null : v.lastTs.toString());
-            putNum(n, "pings",      (long) v.pings);
-            putNum(n, "visit_hours",(long) v.visitHours);
-            putStr(n, "via", v.via);
-            arr.add(n);
+            g.writeStartObject();
+            putStr(g, "biz_id", v.bizId);
+            putStr(g, "name",   v.name);
+            putStr(g, "line1",  v.line1);
+            putNum(g, "lat",    v.lat);
+            putNum(g, "lon",    v.lon);
+            putTs(g, "first_seen", v.firstTs);
+            putTs(g, "last_seen",  v.lastTs);
+            putNum(g, "pings",      (long) v.pings);
+            putNum(g, "visit_hours",(long) v.visitHours);
+            putStr(g, "via", v.via);
+            g.writeEndObject();
         }
-        return arr;
+        g.writeEndArray();
     }
 
-    public ArrayNode listWifi(List<WifiSpot> spots) {
-        ArrayNode arr = om.createArrayNode();
+    public void writeWifi(JsonGenerator g, List<WifiSpot> spots) throws IOException {
+        g.writeStartArray();
         for (WifiSpot w : spots) {
-            ObjectNode n = om.createObjectNode();
-            putNum(n, "lat", w.lat);
-            putNum(n, "lon", w.lon);
-            ArrayNode ss = om.createArrayNode();
-            w.ssids.forEach(ss::add);
-            n.set("ssids", ss);
-            putStr(n, "first_ts", w.firstTs == null ? null : w.firstTs.toString());
-            putStr(n, "last_ts",  w.lastTs  == null ? null : w.lastTs.toString());
-            n.put("hits", w.hits);
-            putStr(n, "via",  w.via);
-            arr.add(n);
+            g.writeStartObject();
+            putNum(g, "lat", w.lat);
+            putNum(g, "lon", w.lon);
+            g.writeArrayFieldStart("ssids");
+            for (String s : w.ssids) g.writeString(s);
+            g.writeEndArray();
+            putTs(g, "first_ts", w.firstTs);
+            putTs(g, "last_ts",  w.lastTs);
+            g.writeNumberField("hits", w.hits);
+            putStr(g, "via",  w.via);
+            g.writeEndObject();
         }
-        return arr;
+        g.writeEndArray();
     }
 
-    public ArrayNode listLpr(List<LprView> lpr) {
-        ArrayNode arr = om.createArrayNode();
+    public void writeLpr(JsonGenerator g, List<LprView> lpr) throws IOException {
+        g.writeStartArray();
         for (LprView v : lpr) {
-            ObjectNode n = om.createObjectNode();
-            putStr(n, "ts", v.ts.toString());
-            putNum(n, "lat", v.lat);
-            putNum(n, "lon", v.lon);
-            putStr(n, "method", v.method);
-            n.put("confirmed_by_ankle", v.confirmed);
-            putStr(n, "ankle_ts", v.ankleTs == null ? null : v.ankleTs.toString());
-            if (v.distM == null) n.putNull("dist_m"); else n.put("dist_m", v.distM);
-            putStr(n, "sensor_id", v.sensorId);
-            putStr(n, "direction", v.direction);
-            putStr(n, "plate_state", v.plateState);
-            putStr(n, "plate_raw", v.plateRaw);
-            arr.add(n);
+            g.writeStartObject();
+            putStr(g, "ts", v.ts.toString());
+            putNum(g, "lat", v.lat);
+            putNum(g, "lon", v.lon);
+            putStr(g, "method", v.method);
+            g.writeBooleanField("confirmed_by_ankle", v.confirmed);
+            putTs(g, "ankle_ts", v.ankleTs);
+            putNum(g, "dist_m", v.distM);
+            putStr(g, "sensor_id", v.sensorId);
+            putStr(g, "direction", v.direction);
+            putStr(g, "plate_state", v.plateState);
+            putStr(g, "plate_raw", v.plateRaw);
+            g.writeEndObject();
         }
-        return arr;
+        g.writeEndArray();
     }
 
-    public ArrayNode listCrimes(List<CrimeMatch> crimes) {
-        ArrayNode arr = om.createArrayNode();
+    public void writeCrimes(JsonGenerator g, List<CrimeMatch> crimes) throws IOException {
+        g.writeStartArray();
         for (CrimeMatch c : crimes) {
-            ObjectNode n = om.createObjectNode();
-            putStr(n, "report_id", c.reportId);
-            n.putNull("report_ts");
-            putNum(n, "lat", c.lat);
-            putNum(n, "lon", c.lon);
-            putStr(n, "ankle_ts", c.ankleTs == null ? null : c.ankleTs.toString());
-            putNum(n, "dist_m", c.distM);
-            putStr(n, "pre_text",  c.preText);
-            putStr(n, "post_text", c.postText);
-            putStr(n, "file_path", c.filePath);
-            putStr(n, "via", c.via);
-            arr.add(n);
+            g.writeStartObject();
+            putStr(g, "report_id", c.reportId);
+            putTs(g, "report_ts", c.crimeTs);
+            putNum(g, "lat", c.lat);
+            putNum(g, "lon", c.lon);
+            putTs(g, "ankle_ts", c.ankleTs);
+            putNum(g, "dist_m", c.distM);
+            putStr(g, "pre_text",  c.preText);
+            putStr(g, "post_text", c.postText);
+            putStr(g, "file_path", c.filePath);
+            putStr(g, "via", c.via);
+            g.writeEndObject();
         }
-        return arr;
+        g.writeEndArray();
     }
 
-    public ArrayNode listConnected(PeopleConnections pc) {
-        ArrayNode arr = om.createArrayNode();
+    public void writeConnected(JsonGenerator g, PeopleConnections pc) throws IOException {
+        g.writeStartArray();
         for (Connected c : pc.cards) {
-            ObjectNode n = om.createObjectNode();
-            putStr(n, "ssn",  c.ssn);
-            putStr(n, "name", c.name);
-            ArrayNode via = om.createArrayNode();
-            c.vias.forEach(via::add);
-            n.set("via", via);
-            putStr(n, "address", c.addressLine1);
-            n.set("phones",   listPhones(c.phones, false));
-            n.set("vehicles", listVehicles(c.vehicles, null));
-            ArrayNode bz = om.createArrayNode();
+            g.writeStartObject();
+            putStr(g, "ssn",  c.ssn);
+            putStr(g, "name", c.name);
+            g.writeArrayFieldStart("via");
+            for (String v : c.vias) g.writeString(v);
+            g.writeEndArray();
+            putStr(g, "address", c.addressLine1);
+            g.writeFieldName("phones");
+            writePhones(g, c.phones, false);
+            g.writeFieldName("vehicles");
+            writeVehicles(g, c.vehicles, null);
+            g.writeArrayFieldStart("businesses");
             for (OwnedBiz b : c.businesses) {
-                ObjectNode bn = om.createObjectNode();
-                putStr(bn, "biz_id", b.bizId);
-                putStr(bn, "name",   b.name);
-                putStr(bn, "line1",  b.line1);
-                putNum(bn, "lat",    b.lat);
-                putNum(bn, "lon",    b.lon);
-                putStr(bn, "via",    b.via);
-                bz.add(bn);
+                g.writeStartObject();
+                putStr(g, "biz_id", b.bizId);
+                putStr(g, "name",   b.name);
+                putStr(g, "line1",  b.line1);
+                putNum(g, "lat",    b.lat);
+                putNum(g, "lon",    b.lon);
+                putStr(g, "via",    b.via);
+                g.writeEndObject();
             }
-            n.set("businesses", bz);
-            putStr(n, "employer_name",    c.employerName);
-            putStr(n, "employer_address", c.employerAddress);
-            arr.add(n);
+            g.writeEndArray();
+            putStr(g, "employer_name",    c.employerName);
+            putStr(g, "employer_address", c.employerAddress);
+            g.writeEndObject();
         }
-        return arr;
+        g.writeEndArray();
     }
 
 
-    public ArrayNode listConversations(List<ConvoLink> convos) {
-        ArrayNode arr = om.createArrayNode();
+    public void writeConversations(JsonGenerator g, List<ConvoLink> convos) throws IOException {
+        g.writeStartArray();
         for (ConvoLink c : convos) {
-            ObjectNode n = om.createObjectNode();
-            putStr(n, "other_imsi",        nullIfBlank(c.otherImsi));
-            putStr(n, "other_ssn",         nullIfBlank(c.otherSsn));
-            putStr(n, "other_name",        nullIfBlank(c.otherName));
-            putStr(n, "other_msisdn",      nullIfBlank(c.otherMsisdnRaw));
-            putStr(n, "other_msisdn_norm", nullIfBlank(c.otherMsisdnNorm));
-            n.put("events",       c.events);
-            n.put("calls",        c.calls);
-            n.put("sms",          c.sms);
-            n.put("duration_sec", c.durationSec);
-            n.put("out_events",   c.outEvents);
-            n.put("in_events",    c.inEvents);
-            putStr(n, "first_ts", c.firstTs == null ? null : c.firstTs.toString());
-            putStr(n, "last_ts",  c.lastTs  == null ? null : c.lastTs.toString());
-            putStr(n, "via", c.via);
-            arr.add(n);
+            g.writeStartObject();
+            putStr(g, "other_imsi",        nullIfBlank(c.otherImsi));
+            putStr(g, "other_ssn",         nullIfBlank(c.otherSsn));
+            putStr(g, "other_name",        nullIfBlank(c.otherName));
+            putStr(g, "other_msisdn",      nullIfBlank(c.otherMsisdnRaw));
+            putStr(g, "other_msisdn_norm", nullIfBlank(c.otherMsisdnNorm));
+            g.writeNumberField("events",       c.events);
+            g.writeNumberField("calls",        c.calls);
+            g.writeNumberField("sms",          c.sms);
+            g.writeNumberField("duration_sec", c.durationSec);
+            g.writeNumberField("out_events",   c.outEvents);
+            g.writeNumberField("in_events",    c.inEvents);
+            putTs(g, "first_ts", c.firstTs);
+            putTs(g, "last_ts",  c.lastTs);
+            putStr(g, "via", c.via);
+            g.writeEndObject();
         }
-        return arr;
+        g.writeEndArray();
     }
 
-    public String buildProfileJson(Person poi,
-                                   List<Phone> poiPhones,
-                                   List<Vehicle> poiVehicles,
-                                   List<Employer> poiEmployers,
-                                   List<OwnedBiz> owned,
-                                   List<BizVisit> bizVisits,
-                                   List<WifiSpot> wifiNearby,
-                                   List<LprView> lprViews,
-                                   List<CrimeMatch> crimeMatches,
-                                   PeopleConnections pc
-                                  ) throws Exception {
-        ObjectNode root = om.createObjectNode();
-        root.set("person", personNode(poi));
-        root.set("phones", listPhones(poiPhones, true));
-        root.set("vehicles", listVehicles(poiVehicles, "DL"));
-        root.set("employers", listEmployers(poiEmployers, "tax_filing"));
-        root.set("businesses_owned", listOwnedBiz(owned));
-        root.set("businesses_linked", listBizVisits(bizVisits));
-        root.set("wifi_nearby", listWifi(wifiNearby));
-        root.set("lpr_sightings", listLpr(lprViews));
-        root.set("crime_matches", listCrimes(crimeMatches));
-        root.set("people_connected", listConnected(pc));
-        return om.writerWithDefaultPrettyPrinter().writeValueAsString(root);
+    public void writeTowerColocations(JsonGenerator g, List<TowerColocation> colocs) throws IOException {
+        g.writeStartArray();
+        for (TowerColocation c : colocs) {
+            g.writeStartObject();
+            putStr(g, "other_imsi",   nullIfBlank(c.otherImsi));
+            putStr(g, "other_ssn",    nullIfBlank(c.otherSsn));
+            putStr(g, "other_name",   nullIfBlank(c.otherName));
+            putStr(g, "other_msisdn", nullIfBlank(c.otherMsisdnRaw));
+            g.writeNumberField("events", c.events);
+            putTs(g, "first_ts", c.firstTs);
+            putTs(g, "last_ts",  c.lastTs);
+            g.writeArrayFieldStart("towers");
+            for (SharedTower t : c.towers) {
+                g.writeStartObject();
+                putStr(g, "mcc",      t.mcc);
+                putStr(g, "mnc",      t.mnc);
+                putStr(g, "lac",      t.lac);
+                putStr(g, "tower_id", t.towerId);
+                putNum(g, "lat",      t.lat);
+                putNum(g, "lon",      t.lon);
+                g.writeNumberField("events", t.events);
+                g.writeEndObject();
+            }
+            g.writeEndArray();
+            putStr(g, "via", c.via);
+            g.writeEndObject();
+        }
+        g.writeEndArray();
     }
 
+    public void writeNetwork(JsonGenerator g, List<NetworkLink> links) throws IOException {
+        g.writeStartArray();
+        for (NetworkLink n : links) {
+            g.writeStartObject();
+            putStr(g, "ssn",      n.ssn);
+            putStr(g, "name",     nullIfBlank(n.name));
+            g.writeNumberField("hops", n.hops);
+            putStr(g, "from_ssn", n.fromSsn);
+            putStr(g, "via",      n.via);
+            putStr(g, "shared",   n.shared);
+            g.writeNumberField("events", n.events);
+            g.writeEndObject();
+        }
+        g.writeEndArray();
+    }
 
+    // _timings block: total, then per stage and per repo method ms / rows
+    public void writeTimings(JsonGenerator g, ProfileMetrics.Trace trace) throws IOException {
+        g.writeStartObject();
+        g.writeNumberField("total_ms", millis(trace.elapsedNanos()));
+        g.writeObjectFieldStart("stages");
+        for (var e : trace.stages().entrySet()) {
+            g.writeObjectFieldStart(e.getKey());
+            g.writeNumberField("ms", millis(e.getValue().nanos()));
+            g.writeNumberField("rows", e.getValue().rows());
+            g.writeEndObject();
+        }
+        g.writeEndObject();
+        g.writeObjectFieldStart("repo");
+        for (var e : trace.repo().entrySet()) {
+            g.writeObjectFieldStart(e.getKey());
+            g.writeNumberField("calls", e.getValue().calls());
+            g.writeNumberField("ms", millis(e.getValue().nanos()));
+            g.writeNumberField("rows", e.getValue().rows());
+            g.writeEndObject();
+        }
+        g.writeEndObject();
+        g.writeEndObject();
+    }
 
+    private static double millis(long nanos) {
+        return Math.round(nanos / 10_000.0) / 100.0;
+    }
+
+    // batch line for an SSN that produced no profile
+    public String errorJson(String ssn, String error) throws IOException {
+        StringWriter out = new StringWriter();
+        try (JsonGenerator g = generator(out, false)) {
+            g.writeStartObject();
+            putStr(g, "ssn", ssn);
+            putStr(g, "error", error);
+            g.writeEndObject();
+        }
+        return out.toString();
+    }
 }
@@ -0,0 +1,66 @@
+package com.example.network_tool.metrics;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serves GET /metrics in Prometheus text format when app.metrics.port is set
+ * (0, the default, keeps it off). Uses the JDK HttpServer so the console app
+ * does not need a servlet container just for scraping.
+ */
+@Component
+public class MetricsHttpExporter implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(MetricsHttpExporter.class);
+
+    private final HttpServer server;
+
+    public MetricsHttpExporter(PrometheusMeterRegistry registry,
+            @Value("${app.metrics.port:0}") int port,
+            @Value("${app.metrics.host:127.0.0.1}") String host) throws IOException {
+        if (port <= 0) {
+            server = null;
+            return;
+        }
+        server = HttpServer.create(new InetSocketAddress(host, port), 0);
+        server.createContext("/metrics", ex -> {
+            try (ex) {
+                if (!"GET".equals(ex.getRequestMethod())) {
+                    ex.sendResponseHeaders(405, -1);
+                    return;
+                }
+                byte[] body = registry.scrape().getBytes(StandardCharsets.UTF_8);
+                ex.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                ex.sendResponseHeaders(200, body.length);
+                try (OutputStream os = ex.getResponseBody()) {
+                    os.write(body);
+                }
+            }
+        });
+        // HttpServer's dispatcher thread inherits daemon-ness from whoever calls
+        // start(); start it from a daemon thread so 'exit' still ends the app
+        Thread starter = new Thread(server::start, "metrics-http-start");
+        starter.setDaemon(true);
+        starter.start();
+        try {
+            starter.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("metrics on http://{}:{}/metrics", host, server.getAddress().getPort());
+    }
+
+    @Override
+    public void close() {
+        if (server != null)
+            server.stop(0);
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.network_tool.metrics;
+
+import com.example.network_tool.model.Models.AnkleTrack;
+import com.example.network_tool.model.Models.LprScan;
+import com.example.network_tool.model.Models.PeopleConnections;
+import com.example.network_tool.model.Models.WifiScan;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timers and row counts for every DuckDbRepo call (profile.repo,
+ * profile.repo.rows, tag method) and every profile pipeline stage
+ * (profile.stage, profile.stage.rows, tag stage).
+ * <p>
+ * Besides the registry, calls made while a Trace is active on the thread are
+ * also added to that trace, which is what ends up in the optional _timings
+ * block of one profile. ProfilePipeline activates the profile's trace around
+ * each stage, so repo calls made from inside a stage (findRelatedPeople) land
+ * in it too; calls outside any profile (reference cache loads) only go to the
+ * registry.
+ */
+@Component
+public class ProfileMetrics {
+
+    @FunctionalInterface
+    public interface SqlCall<T> {
+        T call() throws SQLException;
+    }
+
+    /** calls / total nanos / total rows of one repo method or stage within a trace */
+    public record Timing(long calls, long nanos, long rows) {
+    }
+
+    /** everything one profile did, safe to add to from several stage threads */
+    public static final class Trace {
+        private final long startNanos = System.nanoTime();
+        private final Map<String, Timing> stages = new LinkedHashMap<>();
+        private final Map<String, Timing> repo = new LinkedHashMap<>();
+
+        private static void add(Map<String, Timing> m, String name, long nanos, long rows) {
+            synchronized (m) {
+                m.merge(name, new Timing(1, nanos, rows),
+                        (a, b) -> new Timing(a.calls() + b.calls(), a.nanos() + b.nanos(), a.rows() + b.rows()));
+            }
+        }
+
+        /** stage name -> timing, in the order stages finished */
+        public Map<String, Timing> stages() {
+            synchronized (stages) {
+                return new LinkedHashMap<>(stages);
+            }
+        }
+
+        /** repo method -> timing, in order of first call */
+        public Map<String, Timing> repo() {
+            synchronized (repo) {
+                return new LinkedHashMap<>(repo);
+            }
+        }
+
+        public long elapsedNanos() {
+            return System.nanoTime() - startNanos;
+        }
+    }
+
+    private static final ThreadLocal<Trace> CURRENT = new ThreadLocal<>();
+
+    private final MeterRegistry registry;
+
+    public ProfileMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public MeterRegistry registry() {
+        return registry;
+    }
+
+    public Trace newTrace() {
+        return new Trace();
+    }
+
+    /** runs body with trace as the thread's current trace (null: none) */
+    public <T> T within(Trace trace, Callable<T> body) throws Exception {
+        Trace prev = CURRENT.get();
+        CURRENT.set(trace);
+        try {
+            return body.call();
+        } finally {
+            if (prev == null)
+                CURRENT.remove();
+            else
+                CURRENT.set(prev);
+        }
+    }
+
+    /** times a repo call, rows = size of what it returned */
+    public <T> T repo(String method, SqlCall<T> body) throws SQLException {
+        long t0 = System.nanoTime();
+        boolean ok = false;
+        T out = null;
+        try {
+            out = body.call();
+            ok = true;
+            return out;
+        } finally {
+            long nanos = System.nanoTime() - t0;
+            long rows = rows(out);
+            Timer.builder("profile.repo")
+                    .tag("method", method)
+                    .tag("outcome", ok ? "ok" : "error")
+                    .register(registry)
+                    .record(nanos, TimeUnit.NANOSECONDS);
+            if (ok) {
+                DistributionSummary.builder("profile.repo.rows").tag("method", method).register(registry)
+                        .record(rows);
+                Trace t = CURRENT.get();
+                if (t != null)
+                    Trace.add(t.repo, method, nanos, rows);
+            }
+        }
+    }
+
+    /** records one finished pipeline stage, result null when it failed */
+    public void stage(Trace trace, String name, long nanos, Object result, boolean ok) {
+        long rows = rows(result);
+        Timer.builder("profile.stage")
+                .tag("stage", name)
+                .tag("outcome", ok ? "ok" : "error")
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        if (!ok)
+            return;
+        DistributionSummary.builder("profile.stage.rows").tag("stage", name).register(registry).record(rows);
+        if (trace != null)
+            Trace.add(trace.stages, name, nanos, rows);
+    }
+
+    /** whole profile, from first load to the rendered node */
+    public void profile(long nanos, boolean found) {
+        Timer.builder("profile.total").tag("found", Boolean.toString(found)).register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    // how many rows / items a call produced, 1 for a single object
+    static long rows(Object o) {
+        if (o == null)
+            return 0;
+        if (o instanceof Collection<?> c)
+            return c.size();
+        if (o instanceof Map<?, ?> m)
+            return m.size();
+        if (o instanceof AnkleTrack t)
+            return t.size();
+        if (o instanceof WifiScan w)
+            return w.size();
+        if (o instanceof LprScan l)
+            return l.size();
+        if (o instanceof PeopleConnections pc)
+            return pc.cards == null ? 0 : pc.cards.size();
+        return 1;
+    }
+}
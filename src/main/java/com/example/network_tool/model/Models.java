@@ -2,7 +2,9 @@ package com.example.network_tool.model;
 
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 public final class Models {
     private Models() {
@@ -56,6 +58,105 @@ public final class Models {
     public record AnklePing(Instant ts, double lat, double lon) {
     }
 
+    // Same data as a List<AnklePing> but stored as parallel primitive arrays in
+    // time order, 24 bytes a ping instead of a record plus a boxed Instant.
+    // Use this for long monitor histories
+    public static final class AnkleTrack {
+        public final long[] epochMillis;
+        public final double[] lat;
+        public final double[] lon;
+
+        private AnkleTrack(long[] epochMillis, double[] lat, double[] lon) {
+            this.epochMillis = epochMillis;
+            this.lat = lat;
+            this.lon = lon;
+        }
+
+        public int size() {
+            return epochMillis.length;
+        }
+
+        public boolean isEmpty() {
+            return epochMillis.length == 0;
+        }
+
+        public Instant ts(int i) {
+            return Instant.ofEpochMilli(epochMillis[i]);
+        }
+
+        public AnklePing ping(int i) {
+            return new AnklePing(ts(i), lat[i], lon[i]);
+        }
+
+        public List<AnklePing> toPings() {
+            List<AnklePing> out = new ArrayList<>(size());
+            for (int i = 0; i < size(); i++)
+                out.add(ping(i));
+            return out;
+        }
+
+        public static AnkleTrack of(List<AnklePing> pings) {
+            Builder b = new Builder(pings.size());
+            for (AnklePing p : pings)
+                b.add(p.ts().toEpochMilli(), p.lat(), p.lon());
+            return b.build();
+        }
+
+        public static final class Builder {
+            private long[] ts;
+            private double[] lat;
+            private double[] lon;
+            private int n = 0;
+            private boolean sorted = true;
+
+            public Builder() {
+                this(1024);
+            }
+
+            public Builder(int capacity) {
+                int c = Math.max(capacity, 16);
+                ts = new long[c];
+                lat = new double[c];
+                lon = new double[c];
+            }
+
+            public Builder add(long epochMillis, double la, double lo) {
+                if (n == ts.length) {
+                    int c = n + (n >> 1);
+                    ts = Arrays.copyOf(ts, c);
+                    lat = Arrays.copyOf(lat, c);
+                    lon = Arrays.copyOf(lon, c);
+                }
+                if (n > 0 && epochMillis < ts[n - 1])
+                    sorted = false;
+                ts[n] = epochMillis;
+                lat[n] = la;
+                lon[n] = lo;
+                n++;
+                return this;
+            }
+
+            // trims the arrays; sorts by time (stable) if pings came in out of order
+            public AnkleTrack build() {
+                if (sorted)
+                    return new AnkleTrack(Arrays.copyOf(ts, n),
+                            Arrays.copyOf(lat, n), Arrays.copyOf(lon, n));
+                Integer[] idx = new Integer[n];
+                for (int i = 0; i < n; i++)
+                    idx[i] = i;
+                Arrays.sort(idx, (x, y) -> Long.compare(ts[x], ts[y]));
+                long[] t2 = new long[n];
+                double[] la2 = new double[n], lo2 = new double[n];
+                for (int i = 0; i < n; i++) {
+                    t2[i] = ts[idx[i]];
+                    la2[i] = lat[idx[i]];
+                    lo2[i] = lon[idx[i]];
+                }
+                return new AnkleTrack(t2, la2, lo2);
+            }
+        }
+    }
+
     public static final class WifiEvent {
         public Instant ts;
         public double lat;
@@ -64,6 +165,143 @@ public final class Models {
         public List<String> ssids = new ArrayList<>();
     }
 
+    // A bounded wifi scan as parallel arrays in load order, the columns as
+    // they come out of DuckDB instead of a WifiEvent per row (like AnkleTrack
+    // for pings). macHex is deviceMac as hex digits only, what the MAC matches
+    // compare; the SSIDs of row i are ssids[ssidFrom[i] .. ssidFrom[i + 1])
+    public static final class WifiScan {
+        public final long[] epochMicros;
+        public final double[] lat;
+        public final double[] lon;
+        public final String[] deviceMac;
+        public final String[] macHex;
+        private final int[] ssidFrom;
+        private final String[] ssids;
+
+        private WifiScan(long[] epochMicros, double[] lat, double[] lon, String[] deviceMac, String[] macHex,
+                int[] ssidFrom, String[] ssids) {
+            this.epochMicros = epochMicros;
+            this.lat = lat;
+            this.lon = lon;
+            this.deviceMac = deviceMac;
+            this.macHex = macHex;
+            this.ssidFrom = ssidFrom;
+            this.ssids = ssids;
+        }
+
+        public int size() {
+            return epochMicros.length;
+        }
+
+        public boolean isEmpty() {
+            return epochMicros.length == 0;
+        }
+
+        public Instant ts(int i) {
+            return instantOfMicros(epochMicros[i]);
+        }
+
+        public List<String> ssids(int i) {
+            return List.of(Arrays.copyOfRange(ssids, ssidFrom[i], ssidFrom[i + 1]));
+        }
+
+        public WifiEvent event(int i) {
+            WifiEvent e = new WifiEvent();
+            e.ts = ts(i);
+            e.lat = lat[i];
+            e.lon = lon[i];
+            e.deviceMac = deviceMac[i];
+            e.ssids = new ArrayList<>(ssids(i));
+            return e;
+        }
+
+        public List<WifiEvent> toEvents() {
+            List<WifiEvent> out = new ArrayList<>(size());
+            for (int i = 0; i < size(); i++)
+                out.add(event(i));
+            return out;
+        }
+
+        public static WifiScan of(List<WifiEvent> events) {
+            Builder b = new Builder(events.size());
+            for (WifiEvent e : events) {
+                b.row(microsOf(e.ts), e.lat, e.lon, e.deviceMac);
+                e.ssids.forEach(b::ssid);
+            }
+            return b.build();
+        }
+
+        public static final class Builder {
+            private long[] ts;
+            private double[] lat;
+            private double[] lon;
+            private String[] mac;
+            private int[] ssidFrom;
+            private final List<String> ssids = new ArrayList<>();
+            private int n = 0;
+
+            public Builder() {
+                this(1024);
+            }
+
+            public Builder(int capacity) {
+                int c = Math.max(capacity, 16);
+                ts = new long[c];
+                lat = new double[c];
+                lon = new double[c];
+                mac = new String[c];
+                ssidFrom = new int[c + 1];
+            }
+
+            // starts a row; ssid() adds to the last row started
+            public Builder row(long epochMicros, double la, double lo, String deviceMac) {
+                if (n == ts.length) {
+                    int c = n + (n >> 1);
+                    ts = Arrays.copyOf(ts, c);
+                    lat = Arrays.copyOf(lat, c);
+                    lon = Arrays.copyOf(lon, c);
+                    mac = Arrays.copyOf(mac, c);
+                    ssidFrom = Arrays.copyOf(ssidFrom, c + 1);
+                }
+                ts[n] = epochMicros;
+                lat[n] = la;
+                lon[n] = lo;
+                mac[n] = deviceMac == null ? "" : deviceMac;
+                ssidFrom[n] = ssids.size();
+                n++;
+                return this;
+            }
+
+            public Builder ssid(String s) {
+                ssids.add(s);
+                return this;
+            }
+
+            public WifiScan build() {
+                String[] m = Arrays.copyOf(mac, n);
+                String[] hex = new String[n];
+                for (int i = 0; i < n; i++)
+                    hex[i] = hexDigits(m[i]);
+                int[] from = Arrays.copyOf(ssidFrom, n + 1);
+                from[n] = ssids.size();
+                return new WifiScan(Arrays.copyOf(ts, n), Arrays.copyOf(lat, n), Arrays.copyOf(lon, n), m, hex,
+                        from, ssids.toArray(new String[0]));
+            }
+
+            // same as the regex in ProfileLogic.normMac, without the regex per row
+            private static String hexDigits(String mac) {
+                String up = mac.toUpperCase();
+                StringBuilder sb = new StringBuilder(up.length());
+                for (int i = 0; i < up.length(); i++) {
+                    char c = up.charAt(i);
+                    if ((c >= '0' && c <= '9') || (c >= 'A' && c <= 'F'))
+                        sb.append(c);
+                }
+                return sb.length() == up.length() ? up : sb.toString();
+            }
+        }
+    }
+
     public static final class WifiSpot {
         public double lat;
         public double lon;
@@ -85,6 +323,115 @@ public final class Models {
         public String plateNorm;
     }
 
+    // LPR rows of a bounded scan as parallel arrays in load order, see WifiScan
+    public static final class LprScan {
+        public final long[] epochMicros;
+        public final double[] lat;
+        public final double[] lon;
+        public final String[] sensorId;
+        public final String[] direction;
+        public final String[] plateState;
+        public final String[] plateRaw;
+        public final String[] plateNorm;
+
+        private LprScan(long[] epochMicros, double[] lat, double[] lon, String[] sensorId, String[] direction,
+                String[] plateState, String[] plateRaw, String[] plateNorm) {
+            this.epochMicros = epochMicros;
+            this.lat = lat;
+            this.lon = lon;
+            this.sensorId = sensorId;
+            this.direction = direction;
+            this.plateState = plateState;
+            this.plateRaw = plateRaw;
+            this.plateNorm = plateNorm;
+        }
+
+        public int size() {
+            return epochMicros.length;
+        }
+
+        public Instant ts(int i) {
+            return instantOfMicros(epochMicros[i]);
+        }
+
+        public LprHit hit(int i) {
+            LprHit h = new LprHit();
+            h.ts = ts(i);
+            h.lat = lat[i];
+            h.lon = lon[i];
+            h.sensorId = sensorId[i];
+            h.direction = direction[i];
+            h.plateState = plateState[i];
+            h.plateRaw = plateRaw[i];
+            h.plateNorm = plateNorm[i];
+            return h;
+        }
+
+        public static LprScan of(List<LprHit> hits) {
+            Builder b = new Builder(hits.size());
+            for (LprHit h : hits)
+                b.add(microsOf(h.ts), h.lat, h.lon, h.sensorId, h.direction, h.plateState, h.plateRaw, h.plateNorm);
+            return b.build();
+        }
+
+        public static final class Builder {
+            private long[] ts;
+            private double[] lat;
+            private double[] lon;
+            private String[][] str; // sensorId, direction, plateState, plateRaw, plateNorm
+            private int n = 0;
+
+            public Builder() {
+                this(1024);
+            }
+
+            public Builder(int capacity) {
+                int c = Math.max(capacity, 16);
+                ts = new long[c];
+                lat = new double[c];
+                lon = new double[c];
+                str = new String[5][c];
+            }
+
+            public Builder add(long epochMicros, double la, double lo, String sensorId, String direction,
+                    String plateState, String plateRaw, String plateNorm) {
+                if (n == ts.length) {
+                    int c = n + (n >> 1);
+                    ts = Arrays.copyOf(ts, c);
+                    lat = Arrays.copyOf(lat, c);
+                    lon = Arrays.copyOf(lon, c);
+                    for (int k = 0; k < str.length; k++)
+                        str[k] = Arrays.copyOf(str[k], c);
+                }
+                ts[n] = epochMicros;
+                lat[n] = la;
+                lon[n] = lo;
+                str[0][n] = sensorId;
+                str[1][n] = direction;
+                str[2][n] = plateState;
+                str[3][n] = plateRaw;
+                str[4][n] = plateNorm;
+                n++;
+                return this;
+            }
+
+            public LprScan build() {
+                return new LprScan(Arrays.copyOf(ts, n), Arrays.copyOf(lat, n), Arrays.copyOf(lon, n),
+                        Arrays.copyOf(str[0], n), Arrays.copyOf(str[1], n), Arrays.copyOf(str[2], n),
+                        Arrays.copyOf(str[3], n), Arrays.copyOf(str[4], n));
+            }
+        }
+    }
+
+    public static Instant instantOfMicros(long epochMicros) {
+        return Instant.ofEpochSecond(Math.floorDiv(epochMicros, 1_000_000L),
+                Math.floorMod(epochMicros, 1_000_000L) * 1_000L);
+    }
+
+    public static long microsOf(Instant ts) {
+        return Math.multiplyExact(ts.getEpochSecond(), 1_000_000L) + ts.getNano() / 1_000;
+    }
+
     public static final class LprView {
         public Instant ts;
         public Instant ankleTs;
@@ -106,6 +453,7 @@ public final class Models {
         public String filePath;
         public double lat;
         public double lon;
+        public Instant ts; // report time, null when the report text has none
     }
 
     public static final class CrimeMatch {
@@ -209,6 +557,8 @@ public final class Models {
         public static final double LPR_RADIUS_M = 120.0;
         public static final int LPR_MINUTES = 10;
         public static final double CRIME_RADIUS_M = 150.0;
+        public static final int CRIME_MINUTES = 30;
+        public static final int TOWER_MINUTES = 10;
 
         private Consts() {
         }
@@ -231,6 +581,57 @@ public final class Models {
         public String via = "telco";
     }
 
+    // someone whose phone used the same cell towers as the POI's, each of their
+    // events within TOWER_MINUTES of one of the POI's at that tower
+    public static final class TowerColocation {
+        public String otherImsi;
+        public String otherMsisdnRaw;
+        public String otherSsn;
+        public String otherName;
+        public long events;
+        public Instant firstTs;
+        public Instant lastTs;
+        public List<SharedTower> towers = new ArrayList<>();
+        public String via = "cell_tower";
+    }
+
+    public static final class SharedTower {
+        public String mcc;
+        public String mnc;
+        public String lac;
+        public String towerId;
+        public Double lat;
+        public Double lon;
+        public long events;
+    }
+
+    // one row for the relation graph: (ssn, address) / (ssn, employer name)
+    // memberships, or two SSNs and how many times they called / texted
+    public record GraphLink(String a, String b, int weight) {
+    }
+
+    // someone within app.network.maxHops of the POI: first reached from
+    // fromSsn over via, shared = the address / employer behind it, events =
+    // call count for calls
+    public static final class NetworkLink {
+        public String ssn;
+        public String name;
+        public int hops;
+        public String fromSsn;
+        public String via;
+        public String shared;
+        public long events;
+    }
+
     public record Bounds(double minLat, double maxLat, double minLon, double maxLon) {
     }
+
+    // what ProfileService.profileBatch did: written = profiles, the rest got an
+    // error line
+    public record BatchSummary(int total, int written, int notFound, int failed, long millis) {
+    }
+
+    // ProfileService.profileTimed: the profile json plus stage name -> nanos
+    public record TimedProfile(String json, Map<String, Long> stageNanos) {
+    }
 }
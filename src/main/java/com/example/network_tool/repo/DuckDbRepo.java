@@ -1,6 +1,7 @@
 package com.example.network_tool.repo;
 
 import com.example.network_tool.db.DuckDb;
+import com.example.network_tool.metrics.ProfileMetrics;
 import com.example.network_tool.model.Models.*;
 import org.springframework.stereotype.Component;
 
@@ -12,1005 +13,1494 @@ import java.util.stream.Collectors;
 @Component
 public class DuckDbRepo {
     private final DuckDb duck;
+    private final ProfileMetrics metrics;
 
-    public DuckDbRepo(DuckDb duck) {
+    // every public load goes through metrics.repo: timer + row count per method
+    public DuckDbRepo(DuckDb duck, ProfileMetrics metrics) {
         this.duck = duck;
+        this.metrics = metrics;
     }
 
     // To DO : need to load crime events based on lpr near by
     // Just loads tables moved out of profile service so its easier for me and
     // others
-    // to read, Need to use trim to make sure I have a standard way in seeing the
-    // data that may have dashes or spaces
+    // to read. DuckDb.bootstrap already trims / upper cases the key columns
+    // (ssn, dl, plate_norm, mac, addresses), so queries compare the bare
+    // columns, that way DuckDB can prune and use the indexes. Trim the incoming
+    // value here instead
     private static String nvl(String s) {
         return s == null ? "" : s;
     }
 
+    private static String key(String s) {
+        return s == null ? null : s.trim();
+    }
+
+    // same degree->meter factor as the bounding boxes and SpatialGrid
+    private static final double M_PER_DEG = 111_000.0;
+    // meters per degree on the haversine sphere
+    private static final double M_PER_DEG_SPHERE = 6_371_000.0 * Math.PI / 180.0;
+
+    // ProfileLogic.haversineM as a SQL expression, same constants and the same
+    // order of operations, so both engines agree on what is inside a radius
+    private static String haversineSql(String lat1, String lon1, String lat2, String lon2) {
+        String rad = " * (PI() / 180.0)";
+        String dLat = "((" + lat2 + " - " + lat1 + ")" + rad + ")";
+        String dLon = "((" + lon2 + " - " + lon1 + ")" + rad + ")";
+        String a = "(SIN(" + dLat + " / 2) * SIN(" + dLat + " / 2)"
+                + " + COS(" + lat1 + rad + ") * COS(" + lat2 + rad + ")"
+                + " * SIN(" + dLon + " / 2) * SIN(" + dLon + " / 2))";
+        return "(6371000.0 * (2 * ATAN2(SQRT(" + a + "), SQRT(1 - " + a + "))))";
+    }
+
+    // haversineM(1, 2) <= radius for a join. The trig is most of the cost of
+    // these joins, so a flat earth distance (degrees, longitude scaled by
+    // cosLat1) settles the pairs well inside or outside first; at a few
+    // hundred meters it is off by far less than the 1% margin, only pairs
+    // near the edge get the exact test. Takes the three ? from withinArgs
+    private static String withinSql(String lat1, String lon1, String cosLat1, String lat2, String lon2) {
+        String flat = "((" + lat2 + " - " + lat1 + ") * (" + lat2 + " - " + lat1 + ") + ("
+                + lon2 + " - " + lon1 + ") * " + cosLat1 + " * (" + lon2 + " - " + lon1 + ") * " + cosLat1 + ")";
+        return "(" + flat + " < ? OR (" + flat + " <= ? AND " + haversineSql(lat1, lon1, lat2, lon2) + " <= ?))";
+    }
+
+    private static double[] withinArgs(double radiusMeters) {
+        double inner = radiusMeters * 0.99 / M_PER_DEG_SPHERE, outer = radiusMeters * 1.01 / M_PER_DEG_SPHERE;
+        return new double[] { inner * inner, outer * outer, radiusMeters };
+    }
+
+    // half width in degrees of longitude of the box around lat, measured at the
+    // box edge nearest the pole like SpatialGrid.near; takes two ? (dLat)
+    private static String boxLonSql(String lat) {
+        return "(? / GREATEST(COS(RADIANS(LEAST(ABS(" + lat + ") + ?, 89.0))), 1e-6))";
+    }
+
+    // the TimeWindowIndex window as a [from, to) offset in micros: |Duration|
+    // .toMinutes() <= windowMin truncates, so it is -(limit - 1)s .. limit s
+    private static long[] windowMicros(long windowMin) {
+        long limit = (windowMin + 1) * 60;
+        return new long[] { -(limit - 1) * 1_000_000L, limit * 1_000_000L };
+    }
+
+    // for make_timestamp(?), the naive-UTC micros epoch_us(ts) gives back
+    private static long micros(Instant ts) {
+        return ts.getEpochSecond() * 1_000_000L + ts.getNano() / 1_000;
+    }
+
     public Person loadPerson(String ssn) throws SQLException {
-        String sql = """
-                    SELECT TRIM(ssn) AS ssn,
-                           UPPER(TRIM(firstname)) AS first,
-                           UPPER(TRIM(COALESCE(middlename,''))) AS middle,
-                           UPPER(TRIM(lastname)) AS last,
-                           UPPER(TRIM(dl)) AS dl,
-                           UPPER(TRIM(address_line1)) AS addr1
-                    FROM people
-                    WHERE TRIM(ssn) = TRIM(?)
-                """;
-        try (PreparedStatement ps = duck.conn().prepareStatement(sql)) {
-            ps.setString(1, ssn);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (!rs.next())
-                    return null;
-                Person p = new Person();
-                p.ssn = rs.getString("ssn");
-                p.first = rs.getString("first");
-                p.middle = rs.getString("middle");
-                p.last = rs.getString("last");
-                p.dl = rs.getString("dl");
-                p.addr1 = rs.getString("addr1");
-                p.name = (p.first + " " + (p.middle.isBlank() ? "" : (p.middle + " ")) + p.last)
-                        .trim().replaceAll(" +", " ");
-                return p;
+        return metrics.repo("loadPerson", () -> {
+            String sql = """
+                        SELECT ssn,
+                               firstname AS first,
+                               COALESCE(middlename,'') AS middle,
+                               lastname AS last,
+                               dl,
+                               address_line1 AS addr1
+                        FROM people
+                        WHERE ssn = ?
+                    """;
+            try (Connection conn = duck.borrow();
+                    PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setString(1, key(ssn));
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next())
+                        return null;
+                    Person p = new Person();
+                    p.ssn = rs.getString("ssn");
+                    p.first = rs.getString("first");
+                    p.middle = rs.getString("middle");
+                    p.last = rs.getString("last");
+                    p.dl = rs.getString("dl");
+                    p.addr1 = rs.getString("addr1");
+                    p.name = (p.first + " " + (p.middle.isBlank() ? "" : (p.middle + " ")) + p.last)
+                            .trim().replaceAll(" +", " ");
+                    return p;
+                }
             }
-        }
+        });
     }
 
     public List<Phone> loadPhones(String ssn) throws SQLException {
-        String sql = """
-                    SELECT TRIM(ssn) AS ssn,
-                           TRIM(phone) AS msisdn,
-                           UPPER(TRIM(phone_type)) AS phone_type,
-                           UPPER(TRIM(device_make)) AS device_make,
-                           UPPER(TRIM(device_model)) AS device_model,
-                           UPPER(TRIM(mac)) AS mac,
-                           TRIM(imsi) AS imsi
-                    FROM phone_contracts
-                    WHERE TRIM(ssn) = TRIM(?)
-                """;
-        List<Phone> out = new ArrayList<>();
-        try (PreparedStatement ps = duck.conn().prepareStatement(sql)) {
-            ps.setString(1, ssn);
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    Phone p = new Phone();
-                    p.ssn = rs.getString("ssn");
-                    p.msisdn = nvl(rs.getString("msisdn"));
-                    p.type = nvl(rs.getString("phone_type"));
-                    p.make = nvl(rs.getString("device_make"));
-                    p.model = nvl(rs.getString("device_model"));
-                    p.mac = nvl(rs.getString("mac"));
-                    p.imsi = nvl(rs.getString("imsi"));
-                    out.add(p);
+        return metrics.repo("loadPhones", () -> {
+            String sql = """
+                        SELECT ssn,
+                               phone AS msisdn,
+                               phone_type,
+                               device_make,
+                               device_model,
+                               mac,
+                               imsi
+                        FROM phone_contracts
+                        WHERE ssn = ?
+                    """;
+            List<Phone> out = new ArrayList<>();
+            try (Connection conn = duck.borrow();
+                    PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setString(1, key(ssn));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        Phone p = new Phone();
+                        p.ssn = rs.getString("ssn");
+                        p.msisdn = nvl(rs.getString("msisdn"));
+                        p.type = nvl(rs.getString("phone_type"));
+                        p.make = nvl(rs.getString("device_make"));
+                        p.model = nvl(rs.getString("device_model"));
+                        p.mac = nvl(rs.getString("mac"));
+                        p.imsi = nvl(rs.getString("imsi"));
+                        out.add(p);
+                    }
                 }
             }
-        }
-        return out;
+            return out;
+        });
     }
 
     public List<Employer> loadEmployers(String ssn) throws SQLException {
-        String sql = """
-                    SELECT UPPER(TRIM(employer_name)) AS employer_name,
-                           UPPER(TRIM(employer_address)) AS employer_address
-                    FROM tax_employers
-                    WHERE TRIM(ssn) = TRIM(?)
-                """;
-        List<Employer> out = new ArrayList<>();
-        try (PreparedStatement ps = duck.conn().prepareStatement(sql)) {
-            ps.setString(1, ssn);
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    Employer e = new Employer();
-                    e.name = nvl(rs.getString("employer_name"));
-                    e.address = nvl(rs.getString("employer_address"));
-                    out.add(e);
+        return metrics.repo("loadEmployers", () -> {
+            String sql = """
+                        SELECT employer_name,
+                               employer_address
+                        FROM tax_employers
+                        WHERE ssn = ?
+                    """;
+            List<Employer> out = new ArrayList<>();
+            try (Connection conn = duck.borrow();
+                    PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setString(1, key(ssn));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        Employer e = new Employer();
+                        e.name = nvl(rs.getString("employer_name"));
+                        e.address = nvl(rs.getString("employer_address"));
+                        out.add(e);
+                    }
                 }
             }
-        }
-        return out;
+            return out;
+        });
     }
 
     public List<Vehicle> loadVehiclesByDL(String dl) throws SQLException {
-        if (dl == null || dl.isBlank())
-            return List.of();
-        String sql = """
-                    SELECT UPPER(TRIM(vin_norm)) AS vin,
-                           UPPER(TRIM(plate_norm)) AS plate,
-                           UPPER(TRIM(make)) AS make,
-                           UPPER(TRIM(model)) AS model,
-                           CAST(year AS BIGINT) AS year
-                    FROM vehicles
-                    WHERE UPPER(TRIM(owner_dl)) = ?
-                """;
-        List<Vehicle> out = new ArrayList<>();
-        try (PreparedStatement ps = duck.conn().prepareStatement(sql)) {
-            ps.setString(1, dl);
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    Vehicle v = new Vehicle();
-                    v.vin = nvl(rs.getString("vin"));
-                    v.plate = nvl(rs.getString("plate"));
-                    v.make = nvl(rs.getString("make"));
-                    v.model = nvl(rs.getString("model"));
-                    v.year = (Long) rs.getObject("year");
-                    out.add(v);
+        return metrics.repo("loadVehiclesByDL", () -> {
+            if (dl == null || dl.isBlank())
+                return List.of();
+            String sql = """
+                        SELECT vin_norm AS vin,
+                               plate_norm AS plate,
+                               make,
+                               model,
+                               CAST(year AS BIGINT) AS year
+                        FROM vehicles
+                        WHERE owner_dl = ?
+                    """;
+            List<Vehicle> out = new ArrayList<>();
+            try (Connection conn = duck.borrow();
+                    PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setString(1, dl);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        Vehicle v = new Vehicle();
+                        v.vin = nvl(rs.getString("vin"));
+                        v.plate = nvl(rs.getString("plate"));
+                        v.make = nvl(rs.getString("make"));
+                        v.model = nvl(rs.getString("model"));
+                        v.year = (Long) rs.getObject("year");
+                        out.add(v);
+                    }
                 }
             }
-        }
-        return out;
+            return out;
+        });
     }
 
     // NEW: create TEMP ankle_poi for this SSN
-    public void createTempAnklePoi(String ssn) throws SQLException {
-        try (Statement st = duck.conn().createStatement()) {
+    // temp tables only live on the connection that made them, so the caller
+    // passes the (borrowed) connection it will keep using
+    public void createTempAnklePoi(Connection c, String ssn) throws SQLException {
+        try (Statement st = c.createStatement()) {
             st.execute("DROP TABLE IF EXISTS ankle_poi");
         }
         String makeTmp = """
                 CREATE TEMP TABLE ankle_poi AS
                 SELECT ts, lat, lon
-                FROM ankle
+                FROM %s
                 WHERE person_ssn = ?
                   AND lat IS NOT NULL AND lon IS NOT NULL
-                """;
-        try (PreparedStatement ps = duck.conn().prepareStatement(makeTmp)) {
+                """.formatted(duck.ankleOf(ssn));
+        try (PreparedStatement ps = c.prepareStatement(makeTmp)) {
             ps.setString(1, ssn);
             ps.execute();
         }
     }
 
+    // ankle proximity done inside DuckDB, same rule as
+    // ProfileLogic.businessesLinked: every located business within
+    // radiusMeters of a ping is a hit, kept when seen in at least
+    // minDistinctHours distinct hours, most hours / pings first
     public List<BizVisit> loadBusinessesLinkedForSsn(
             String ssn, double radiusMeters, int minDistinctHours, int limit) throws SQLException {
-        String sql = """
-                WITH hits AS (
-                  SELECT
-                    b.biz_id,
-                    b.name,
-                    b.line1,
-                    b.b_lat AS lat,
-                    b.b_lon AS lon,
-                    a.ts,
-                    date_trunc('hour', a.ts) AS hour_bucket
-                  FROM ankle a
-                  JOIN businesses b
-                    -- DuckDB Spatial: distance between two POINT geometries (meters)
-                    ON ST_Distance_Sphere(
-                         ST_Point(a.lon, a.lat),       -- (x=lon, y=lat)
-                         ST_Point(b.b_lon, b.b_lat)
-                       ) <= ?
-                  WHERE TRIM(a.person_ssn) = TRIM(?)
-                ),
-                agg AS (
-                  SELECT
-                    biz_id,
-                    ANY_VALUE(name)  AS name,
-                    ANY_VALUE(line1) AS line1,
-                    ANY_VALUE(lat)   AS lat,
-                    ANY_VALUE(lon)   AS lon,
-                    MIN(ts)          AS first_ts,
-                    MAX(ts)          AS last_ts,
-                    COUNT(*)         AS pings,
-                    COUNT(DISTINCT hour_bucket) AS hour_buckets
-                  FROM hits
-                  GROUP BY biz_id
-                )
-                SELECT
-                  biz_id,
-                  name,
-                  line1,
-                  lat,
-                  lon,
-                  first_ts,
-                  last_ts,
-                  pings,
-                  hour_buckets,
-                  'ankle proximity' AS method
-                FROM agg
-                WHERE hour_buckets >= ?
-                ORDER BY hour_buckets DESC, pings DESC
-                LIMIT ?
-                """;
-
-        try (var ps = duck.conn().prepareStatement(sql)) {
-            ps.setDouble(1, radiusMeters);
-            ps.setString(2, ssn);
-            ps.setInt(3, minDistinctHours);
-            ps.setInt(4, limit);
-
-            List<BizVisit> out = new ArrayList<>();
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    out.add(new BizVisit(
-                            rs.getString("biz_id"),
-                            rs.getString("name"),
-                            rs.getString("line1"),
-                            rs.getDouble("lat"),
-                            rs.getDouble("lon"),
-                            rs.getTimestamp("first_ts").toInstant(),
-                            rs.getTimestamp("last_ts").toInstant(),
-                            rs.getInt("pings"),
-                            rs.getInt("hour_buckets"),
-                            rs.getString("method")));
+        return metrics.repo("loadBusinessesLinkedForSsn", () -> {
+            String sql = """
+                    WITH ank AS (
+                      SELECT ts, lat, lon,
+                             lat - ? AS lat_lo, lat + ? AS lat_hi, %s AS dlon,
+                             COS(lat * (PI() / 180.0)) AS coslat
+                      FROM (SELECT ts, CAST(lat AS DOUBLE) AS lat, CAST(lon AS DOUBLE) AS lon
+                            FROM %s
+                            WHERE person_ssn = ?
+                              AND ts IS NOT NULL)
+                    ),
+                    hits AS (
+                      SELECT b.biz_id, b.name, b.line1,
+                             CAST(b.b_lat AS DOUBLE) AS lat,
+                             CAST(b.b_lon AS DOUBLE) AS lon,
+                             a.ts
+                      FROM ank a
+                      JOIN businesses b
+                        -- cheap box first, exact distance after
+                        ON b.b_lat BETWEEN a.lat_lo AND a.lat_hi
+                       AND b.b_lon BETWEEN a.lon - a.dlon AND a.lon + a.dlon
+                      WHERE %s
+                    )
+                    SELECT
+                      biz_id,
+                      ANY_VALUE(name)  AS name,
+                      ANY_VALUE(line1) AS line1,
+                      ANY_VALUE(lat)   AS lat,
+                      ANY_VALUE(lon)   AS lon,
+                      epoch_ms(MIN(ts)) AS first_ms,
+                      epoch_ms(MAX(ts)) AS last_ms,
+                      COUNT(*)          AS pings,
+                      COUNT(DISTINCT date_trunc('hour', ts)) AS hour_buckets
+                    FROM hits
+                    GROUP BY biz_id
+                    HAVING COUNT(DISTINCT date_trunc('hour', ts)) >= ?
+                    ORDER BY hour_buckets DESC, pings DESC, biz_id
+                    LIMIT ?
+                    """.formatted(boxLonSql("lat"), duck.ankleOf(key(ssn)),
+                    withinSql("a.lat", "a.lon", "a.coslat", "b.b_lat", "b.b_lon"));
+
+            double dLat = radiusMeters / M_PER_DEG;
+            try (Connection conn = duck.borrow();
+                    var ps = conn.prepareStatement(sql)) {
+                int i = 1;
+                ps.setDouble(i++, dLat); // lat_lo
+                ps.setDouble(i++, dLat); // lat_hi
+                ps.setDouble(i++, dLat); // dlon
+                ps.setDouble(i++, dLat); // dlon edge
+                ps.setString(i++, key(ssn));
+                for (double v : withinArgs(radiusMeters))
+                    ps.setDouble(i++, v);
+                ps.setInt(i++, minDistinctHours);
+                ps.setInt(i++, limit);
+
+                List<BizVisit> out = new ArrayList<>();
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        out.add(new BizVisit(
+                                rs.getString("biz_id"),
+                                rs.getString("name"),
+                                rs.getString("line1"),
+                                rs.getDouble("lat"),
+                                rs.getDouble("lon"),
+                                Instant.ofEpochMilli(rs.getLong("first_ms")),
+                                Instant.ofEpochMilli(rs.getLong("last_ms")),
+                                rs.getInt("pings"),
+                                rs.getInt("hour_buckets"),
+                                "ankle proximity"));
+                    }
                 }
+                return out;
             }
-            return out;
-        }
+        });
     }
 
-    public List<AnklePing> loadAnkle(String ssn) throws SQLException {
-        String sql = """
-                    SELECT ts, CAST(lat AS DOUBLE) AS lat, CAST(lon AS DOUBLE) AS lon
-                    FROM ankle
-                    WHERE TRIM(person_ssn) = TRIM(?)
-                    ORDER BY ts
-                """;
-        List<AnklePing> out = new ArrayList<>();
-        try (PreparedStatement ps = duck.conn().prepareStatement(sql)) {
-            ps.setString(1, ssn);
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    Timestamp ts = rs.getTimestamp("ts");
-                    out.add(new AnklePing(ts.toInstant(), rs.getDouble("lat"), rs.getDouble("lon")));
+    // the ankle track in time order, as primitive columns, no per-ping objects
+    public AnkleTrack loadAnkleTrack(String ssn) throws SQLException {
+        return metrics.repo("loadAnkleTrack", () -> {
+            String sql = """
+                        SELECT epoch_ms(ts) AS ts_ms, CAST(lat AS DOUBLE) AS lat, CAST(lon AS DOUBLE) AS lon
+                        FROM %s
+                        WHERE person_ssn = ?
+                          AND ts IS NOT NULL
+                        ORDER BY ts
+                    """.formatted(duck.ankleOf(key(ssn)));
+            AnkleTrack.Builder b = new AnkleTrack.Builder();
+            try (Connection conn = duck.borrow();
+                    PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setString(1, key(ssn));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next())
+                        b.add(rs.getLong(1), rs.getDouble(2), rs.getDouble(3));
                 }
             }
-        }
-        return out;
+            return b.build();
+        });
     }
 
     public List<Business> loadBusinesses() throws SQLException {
-        String sql = """
-                    SELECT UPPER(TRIM(biz_id)) AS biz_id,
-                           UPPER(TRIM(name)) AS name,
-                           UPPER(TRIM(line1)) AS line1,
-                           CAST(b_lat AS DOUBLE) AS lat,
-                           CAST(b_lon AS DOUBLE) AS lon,
-                           UPPER(TRIM(owner_firs)) AS owner_firs,
-                           UPPER(TRIM(owner_last)) AS owner_last
-                    FROM businesses
-                """;
-        List<Business> out = new ArrayList<>();
-        try (PreparedStatement ps = duck.conn().prepareStatement(sql);
-                ResultSet rs = ps.executeQuery()) {
-            while (rs.next()) {
-                Business b = new Business();
-                b.bizId = nvl(rs.getString("biz_id"));
-                b.name = nvl(rs.getString("name"));
-                b.line1 = nvl(rs.getString("line1"));
-                b.lat = rs.getDouble("lat");
-                b.lon = rs.getDouble("lon");
-                b.ownerFirst = nvl(rs.getString("owner_firs"));
-                b.ownerLast = nvl(rs.getString("owner_last"));
-                out.add(b);
+        return metrics.repo("loadBusinesses", () -> {
+            String sql = """
+                        -- md5() gives lower case hex, this loader always handed out upper
+                        SELECT UPPER(biz_id) AS biz_id,
+                               name,
+                               line1,
+                               CAST(b_lat AS DOUBLE) AS lat,
+                               CAST(b_lon AS DOUBLE) AS lon,
+                               owner_firs,
+                               owner_last
+                        FROM businesses
+                    """;
+            List<Business> out = new ArrayList<>();
+            try (Connection conn = duck.borrow();
+                    PreparedStatement ps = conn.prepareStatement(sql);
+                    ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Business b = new Business();
+                    b.bizId = nvl(rs.getString("biz_id"));
+                    b.name = nvl(rs.getString("name"));
+                    b.line1 = nvl(rs.getString("line1"));
+                    b.lat = rs.getDouble("lat");
+                    b.lon = rs.getDouble("lon");
+                    b.ownerFirst = nvl(rs.getString("owner_firs"));
+                    b.ownerLast = nvl(rs.getString("owner_last"));
+                    out.add(b);
+                }
             }
-        }
-        return out;
+            return out;
+        });
     }
 
     public List<OwnedBiz> loadOwnedBusinessesBySsn(String ssn) throws SQLException {
-        String sql = """
-                    SELECT
-                        b.biz_id,
-                        b.name,
-                        b.line1,
-                        CAST(b.b_lat AS DOUBLE) AS lat,
-                        CAST(b.b_lon AS DOUBLE) AS lon
-                    FROM people p
-                    JOIN businesses b
-                      ON UPPER(TRIM(b.owner_firs)) = UPPER(TRIM(p.firstname))
-                     AND UPPER(TRIM(b.owner_last)) = UPPER(TRIM(p.lastname))
-                    WHERE TRIM(p.ssn) = TRIM(?)
-                """;
-
-        List<OwnedBiz> out = new ArrayList<>();
-        try (PreparedStatement ps = duck.conn().prepareStatement(sql)) {
-            ps.setString(1, ssn);
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    out.add(new OwnedBiz(
-                            rs.getString("biz_id"),
-                            rs.getString("name"),
-                            rs.getString("line1"),
-                            rs.getDouble("lat"),
-                            rs.getDouble("lon"),
-                            "owner_name_fl" // same reason tag you had before
-                    ));
+        return metrics.repo("loadOwnedBusinessesBySsn", () -> {
+            String sql = """
+                        SELECT
+                            b.biz_id,
+                            b.name,
+                            b.line1,
+                            CAST(b.b_lat AS DOUBLE) AS lat,
+                            CAST(b.b_lon AS DOUBLE) AS lon
+                        FROM people p
+                        JOIN businesses b
+                          ON b.owner_firs = p.firstname
+                         AND b.owner_last = p.lastname
+                        WHERE p.ssn = ?
+                    """;
+
+            List<OwnedBiz> out = new ArrayList<>();
+            try (Connection conn = duck.borrow();
+                    PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setString(1, key(ssn));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        out.add(new OwnedBiz(
+                                rs.getString("biz_id"),
+                                rs.getString("name"),
+                                rs.getString("line1"),
+                                rs.getDouble("lat"),
+                                rs.getDouble("lon"),
+                                "owner_name_fl" // same reason tag you had before
+                        ));
+                    }
                 }
             }
-        }
-        return out;
+            return out;
+        });
     }
 
     public List<WifiEvent> loadWifiEvents() throws SQLException {
-        String sql = """
-                    SELECT ts, CAST(s_lat AS DOUBLE) AS s_lat, CAST(s_lon AS DOUBLE) AS s_lon, device_mac,
-                           ssid_1, ssid_2, ssid_3, ssid_4, ssid_5, ssid_6, ssid_7, ssid_8, ssid_9, ssid_10
-                    FROM wifi_events_raw
-                """;
-        List<WifiEvent> out = new ArrayList<>();
-        try (PreparedStatement ps = duck.conn().prepareStatement(sql);
-                ResultSet rs = ps.executeQuery()) {
-            while (rs.next()) {
-                WifiEvent e = new WifiEvent();
-                e.ts = rs.getTimestamp("ts").toInstant();
-                e.lat = rs.getDouble("s_lat");
-                e.lon = rs.getDouble("s_lon");
-                e.deviceMac = nvl(rs.getString("device_mac"));
-                for (int i = 1; i <= 10; i++) {
-                    String s = rs.getString("ssid_" + i);
-                    if (s != null && !s.isBlank())
-                        e.ssids.add(s.trim().toUpperCase());
+        return metrics.repo("loadWifiEvents", () -> {
+            String sql = """
+                        SELECT ts, CAST(s_lat AS DOUBLE) AS s_lat, CAST(s_lon AS DOUBLE) AS s_lon, device_mac,
+                               ssid_1, ssid_2, ssid_3, ssid_4, ssid_5, ssid_6, ssid_7, ssid_8, ssid_9, ssid_10
+                        FROM wifi_events_raw
+                    """;
+            List<WifiEvent> out = new ArrayList<>();
+            try (Connection conn = duck.borrow();
+                    PreparedStatement ps = conn.prepareStatement(sql);
+                    ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    WifiEvent e = new WifiEvent();
+                    e.ts = rs.getTimestamp("ts").toInstant();
+                    e.lat = rs.getDouble("s_lat");
+                    e.lon = rs.getDouble("s_lon");
+                    e.deviceMac = nvl(rs.getString("device_mac"));
+                    for (int i = 1; i <= 10; i++) {
+                        String s = rs.getString("ssid_" + i);
+                        if (s != null && !s.isBlank())
+                            e.ssids.add(s.trim().toUpperCase());
+                    }
+                    out.add(e);
                 }
-                out.add(e);
             }
-        }
-        return out;
+            return out;
+        });
     }
 
     public List<LprHit> loadLpr() throws SQLException {
-        String sql = """
-                    SELECT ts, CAST(lat AS DOUBLE) AS lat, CAST(lon AS DOUBLE) AS lon,
-                           UPPER(TRIM(sensor_id)) AS sensor_id,
-                           UPPER(TRIM(direction)) AS direction,
-                           UPPER(TRIM(plate_state)) AS plate_state,
-                           TRIM(plate_raw) AS plate_raw,
-                           UPPER(TRIM(plate_norm)) AS plate_norm
-                    FROM lpr
-                """;
-        List<LprHit> out = new ArrayList<>();
-        try (PreparedStatement ps = duck.conn().prepareStatement(sql);
-                ResultSet rs = ps.executeQuery()) {
-            while (rs.next()) {
-                LprHit h = new LprHit();
-                h.ts = rs.getTimestamp("ts").toInstant();
-                h.lat = rs.getDouble("lat");
-                h.lon = rs.getDouble("lon");
-                h.sensorId = nvl(rs.getString("sensor_id"));
-                h.direction = nvl(rs.getString("direction"));
-                h.plateState = nvl(rs.getString("plate_state"));
-                h.plateRaw = nvl(rs.getString("plate_raw"));
-                h.plateNorm = nvl(rs.getString("plate_norm"));
-                out.add(h);
+        return metrics.repo("loadLpr", () -> {
+            String sql = """
+                        SELECT ts, CAST(lat AS DOUBLE) AS lat, CAST(lon AS DOUBLE) AS lon,
+                               sensor_id,
+                               direction,
+                               plate_state,
+                               plate_raw,
+                               plate_norm
+                        FROM lpr
+                    """;
+            List<LprHit> out = new ArrayList<>();
+            try (Connection conn = duck.borrow();
+                    PreparedStatement ps = conn.prepareStatement(sql);
+                    ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    LprHit h = new LprHit();
+                    h.ts = rs.getTimestamp("ts").toInstant();
+                    h.lat = rs.getDouble("lat");
+                    h.lon = rs.getDouble("lon");
+                    h.sensorId = nvl(rs.getString("sensor_id"));
+                    h.direction = nvl(rs.getString("direction"));
+                    h.plateState = nvl(rs.getString("plate_state"));
+                    h.plateRaw = nvl(rs.getString("plate_raw"));
+                    h.plateNorm = nvl(rs.getString("plate_norm"));
+                    out.add(h);
+                }
             }
-        }
-        return out;
+            return out;
+        });
     }
 
     public List<Crime> loadCrimes() throws SQLException {
-        String sql = """
-                    SELECT report_id, c_lat AS lat, c_lon AS lon, pre_text, post_text, file_path
-                    FROM crime_reports
-                """;
-        List<Crime> out = new ArrayList<>();
-        try (PreparedStatement ps = duck.conn().prepareStatement(sql);
-                ResultSet rs = ps.executeQuery()) {
-            while (rs.next()) {
-                Crime c = new Crime();
-                c.reportId = nvl(rs.getString("report_id"));
-                c.lat = rs.getDouble("lat");
-                c.lon = rs.getDouble("lon");
-                c.preText = nvl(rs.getString("pre_text"));
-                c.postText = nvl(rs.getString("post_text"));
-                c.filePath = nvl(rs.getString("file_path"));
-                out.add(c);
+        return metrics.repo("loadCrimes", () -> {
+            String sql = """
+                        SELECT report_id, c_lat AS lat, c_lon AS lon, pre_text, post_text, file_path,
+                               epoch_ms(ts) AS ts_ms
+                        FROM crime_reports
+                    """;
+            List<Crime> out = new ArrayList<>();
+            try (Connection conn = duck.borrow();
+                    PreparedStatement ps = conn.prepareStatement(sql);
+                    ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Crime c = new Crime();
+                    c.reportId = nvl(rs.getString("report_id"));
+                    c.lat = rs.getDouble("lat");
+                    c.lon = rs.getDouble("lon");
+                    c.preText = nvl(rs.getString("pre_text"));
+                    c.postText = nvl(rs.getString("post_text"));
+                    c.filePath = nvl(rs.getString("file_path"));
+                    long tsMs = rs.getLong("ts_ms");
+                    c.ts = rs.wasNull() ? null : Instant.ofEpochMilli(tsMs);
+                    out.add(c);
+                }
             }
-        }
-        return out;
+            return out;
+        });
     }
 
     public Set<String> findPeopleByHomeAddr(String addrUpper, String excludeSsn) throws SQLException {
-        String sql = """
-                    SELECT TRIM(ssn) AS ssn
-                    FROM people
-                    WHERE UPPER(TRIM(address_line1)) = ?
-                      AND TRIM(ssn) <> ?
-                """;
-        Set<String> out = new LinkedHashSet<>();
-        try (PreparedStatement ps = duck.conn().prepareStatement(sql)) {
-            ps.setString(1, addrUpper);
-            ps.setString(2, excludeSsn);
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next())
-                    out.add(rs.getString("ssn"));
+        return metrics.repo("findPeopleByHomeAddr", () -> {
+            String sql = """
+                        SELECT ssn
+                        FROM people
+                        WHERE address_line1 = ?
+                          AND ssn <> ?
+                    """;
+            Set<String> out = new LinkedHashSet<>();
+            try (Connection conn = duck.borrow();
+                    PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setString(1, addrUpper);
+                ps.setString(2, excludeSsn);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next())
+                        out.add(rs.getString("ssn"));
+                }
             }
-        }
-        return out;
+            return out;
+        });
     }
 
     public Set<String> findFilersByAddress(String addrUpper, String excludeSsn) throws SQLException {
-        String sql = """
-                    SELECT TRIM(ssn) AS ssn
-                    FROM tax_employers
-                    WHERE UPPER(TRIM(filer_address)) = ?
-                      AND TRIM(ssn) <> ?
-                """;
-        Set<String> out = new LinkedHashSet<>();
-        try (PreparedStatement ps = duck.conn().prepareStatement(sql)) {
-            ps.setString(1, addrUpper);
-            ps.setString(2, excludeSsn);
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next())
-                    out.add(rs.getString("ssn"));
+        return metrics.repo("findFilersByAddress", () -> {
+            String sql = """
+                        SELECT ssn
+                        FROM tax_employers
+                        WHERE filer_address = ?
+                          AND ssn <> ?
+                    """;
+            Set<String> out = new LinkedHashSet<>();
+            try (Connection conn = duck.borrow();
+                    PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setString(1, addrUpper);
+                ps.setString(2, excludeSsn);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next())
+                        out.add(rs.getString("ssn"));
+                }
             }
-        }
-        return out;
+            return out;
+        });
     }
 
     public Set<String> findPeopleByEmployerAddress(String addrUpper, String excludeSsn) throws SQLException {
-        String sql = """
-                    SELECT DISTINCT TRIM(ssn) AS ssn
-                    FROM tax_employers
-                    WHERE UPPER(TRIM(employer_address)) = ?
-                      AND TRIM(ssn) <> ?
-                """;
-        Set<String> out = new LinkedHashSet<>();
-        try (PreparedStatement ps = duck.conn().prepareStatement(sql)) {
-            ps.setString(1, addrUpper);
-            ps.setString(2, excludeSsn);
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next())
-                    out.add(rs.getString("ssn"));
+        return metrics.repo("findPeopleByEmployerAddress", () -> {
+            String sql = """
+                        SELECT DISTINCT ssn
+                        FROM tax_employers
+                        WHERE employer_address = ?
+                          AND ssn <> ?
+                    """;
+            Set<String> out = new LinkedHashSet<>();
+            try (Connection conn = duck.borrow();
+                    PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setString(1, addrUpper);
+                ps.setString(2, excludeSsn);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next())
+                        out.add(rs.getString("ssn"));
+                }
             }
-        }
-        return out;
+            return out;
+        });
     }
 
     public Set<String> findCoworkersByEmployerNames(Set<String> empNamesUpper, String excludeSsn) throws SQLException {
-        if (empNamesUpper.isEmpty())
-            return Set.of();
-        String in = empNamesUpper.stream().map(s -> "?").collect(Collectors.joining(","));
-        String sql = "SELECT TRIM(ssn) AS ssn FROM tax_employers " +
-                "WHERE UPPER(TRIM(employer_name)) IN (" + in + ") AND TRIM(ssn) <> ?";
-        Set<String> out = new LinkedHashSet<>();
-        try (PreparedStatement ps = duck.conn().prepareStatement(sql)) {
-            int i = 1;
-            for (String n : empNamesUpper)
-                ps.setString(i++, n);
-            ps.setString(i, excludeSsn);
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next())
-                    out.add(rs.getString("ssn"));
+        return metrics.repo("findCoworkersByEmployerNames", () -> {
+            if (empNamesUpper.isEmpty())
+                return Set.of();
+            // A plain IN list, not duck.loadKeys: it is one to three names, and
+            // the IN list hands the coworkers back a scan vector at a time,
+            // grouped per name in the order given. people_connected is built in
+            // that order, and the lookup_keys semi join returns table order
+            String in = empNamesUpper.stream().map(s -> "?").collect(Collectors.joining(","));
+            String sql = "SELECT ssn FROM tax_employers " +
+                    "WHERE employer_name IN (" + in + ") AND ssn <> ?";
+            Set<String> out = new LinkedHashSet<>();
+            try (Connection conn = duck.borrow();
+                    PreparedStatement ps = conn.prepareStatement(sql)) {
+                int i = 1;
+                for (String n : empNamesUpper)
+                    ps.setString(i++, n);
+                ps.setString(i, excludeSsn);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next())
+                        out.add(rs.getString("ssn"));
+                }
             }
-        }
-        return out;
+            return out;
+        });
     }
 
-    public Map<String, PersonMini> loadPersonMini(Set<String> ssns) throws SQLException {
-        if (ssns.isEmpty())
-            return Map.of();
-        String qMarks = ssns.stream().map(s -> "?").collect(Collectors.joining(","));
-        String sql = "SELECT TRIM(ssn) AS ssn, " +
-                " UPPER(TRIM(firstname)) AS first, UPPER(TRIM(COALESCE(middlename,''))) AS middle, UPPER(TRIM(lastname)) AS last, "
-                +
-                " UPPER(TRIM(address_line1)) AS addr1, UPPER(TRIM(dl)) AS dl " +
-                "FROM people WHERE TRIM(ssn) IN (" + qMarks + ")";
-        Map<String, PersonMini> out = new HashMap<>();
-        try (PreparedStatement ps = duck.conn().prepareStatement(sql)) {
-            int i = 1;
-            for (String s : ssns)
-                ps.setString(i++, s);
-            try (ResultSet rs = ps.executeQuery()) {
+    // Relation graph (RelationGraph, built by ReferenceDataCache). Whole-table
+    // reads, the same keys findRelatedPeople matches on
+
+    // everyone who can be a node: people, tax filers and phone subscribers
+    public List<String> loadGraphNodes() throws SQLException {
+        return metrics.repo("loadGraphNodes", () -> {
+            String sql = """
+                        SELECT ssn FROM people
+                        UNION SELECT ssn FROM tax_employers
+                        UNION SELECT ssn FROM phone_contracts
+                    """;
+            List<String> out = new ArrayList<>();
+            try (Connection conn = duck.borrow();
+                    Statement st = conn.createStatement();
+                    ResultSet rs = st.executeQuery(sql)) {
                 while (rs.next()) {
-                    String s = rs.getString("ssn");
-                    String first = nvl(rs.getString("first"));
-                    String middle = nvl(rs.getString("middle"));
-                    String last = nvl(rs.getString("last"));
-                    String name = (first + " " + (middle.isBlank() ? "" : (middle + " ")) + last).trim()
-                            .replaceAll(" +", " ");
-                    out.put(s,
-                            new PersonMini(s, name, nvl(rs.getString("addr1")), first, last, nvl(rs.getString("dl"))));
+                    String ssn = rs.getString(1);
+                    if (ssn != null && !ssn.isBlank())
+                        out.add(ssn);
                 }
             }
+            return out;
+        });
+    }
+
+    // (ssn, home address): DMV address and tax filer address
+    public List<GraphLink> loadResidences() throws SQLException {
+        return metrics.repo("loadResidences", () -> graphLinks("""
+                    SELECT ssn, address_line1, 0 FROM people WHERE address_line1 <> ''
+                    UNION
+                    SELECT ssn, filer_address, 0 FROM tax_employers WHERE filer_address <> ''
+                """));
+    }
+
+    // (ssn, employer address)
+    public List<GraphLink> loadWorkplaces() throws SQLException {
+        return metrics.repo("loadWorkplaces", () -> graphLinks("""
+                    SELECT DISTINCT ssn, employer_address, 0 FROM tax_employers WHERE employer_address <> ''
+                """));
+    }
+
+    // (ssn, employer name)
+    public List<GraphLink> loadEmployments() throws SQLException {
+        return metrics.repo("loadEmployments", () -> graphLinks("""
+                    SELECT DISTINCT ssn, employer_name, 0 FROM tax_employers WHERE employer_name <> ''
+                """));
+    }
+
+    // (ssn, ssn, SMS + calls between them), each pair once with a < b. Telco
+    // has a row per party for every event, only the caller's is counted.
+    // Callers are resolved to an SSN first (materialized): with both owner
+    // joins in one plan DuckDB turns a.ssn <> b.ssn into an owner x owner
+    // nested loop
+    public List<GraphLink> loadCallPairs() throws SQLException {
+        return metrics.repo("loadCallPairs", () -> graphLinks("""
+                    WITH owner AS (
+                      SELECT imsi, MIN(ssn) AS ssn
+                      FROM phone_contracts
+                      WHERE imsi <> '' AND ssn <> ''
+                      GROUP BY imsi
+                    ),
+                    sent AS MATERIALIZED (
+                      SELECT a.ssn AS ssn_from, t.imsi_to, COUNT(*) AS n
+                      FROM telco t
+                      JOIN owner a ON a.imsi = t.imsi_from
+                      WHERE t.type IN ('SMS','CALL') AND t.imsi = t.imsi_from AND t.imsi_to <> ''
+                      GROUP BY a.ssn, t.imsi_to
+                    )
+                    SELECT LEAST(s.ssn_from, b.ssn), GREATEST(s.ssn_from, b.ssn), SUM(s.n)
+                    FROM sent s
+                    JOIN owner b ON b.imsi = s.imsi_to
+                    WHERE b.ssn <> s.ssn_from
+                    GROUP BY 1, 2
+                """));
+    }
+
+    private List<GraphLink> graphLinks(String sql) throws SQLException {
+        List<GraphLink> out = new ArrayList<>();
+        try (Connection conn = duck.borrow();
+                Statement st = conn.createStatement();
+                ResultSet rs = st.executeQuery(sql)) {
+            while (rs.next()) {
+                String a = rs.getString(1), b = rs.getString(2);
+                if (a != null && b != null)
+                    out.add(new GraphLink(a, b, (int) Math.min(Integer.MAX_VALUE, rs.getLong(3))));
+            }
         }
-        // fill from tax filers if missing
-        Set<String> missing = new HashSet<>(ssns);
-        missing.removeAll(out.keySet());
-        if (!missing.isEmpty()) {
-            String q = missing.stream().map(x -> "?").collect(Collectors.joining(","));
-            String sql2 = "SELECT TRIM(ssn) AS ssn, " +
-                    " UPPER(TRIM(filer_first)) AS first, UPPER(TRIM(COALESCE(filer_middle,''))) AS middle, UPPER(TRIM(filer_last)) AS last, "
-                    +
-                    " UPPER(TRIM(filer_address)) AS addr1 " +
-                    "FROM tax_employers WHERE TRIM(ssn) IN (" + q + ")";
-            try (PreparedStatement ps = duck.conn().prepareStatement(sql2)) {
-                int i = 1;
-                for (String s : missing)
-                    ps.setString(i++, s);
-                try (ResultSet rs = ps.executeQuery()) {
-                    while (rs.next()) {
-                        String s = rs.getString("ssn");
-                        String first = nvl(rs.getString("first"));
-                        String middle = nvl(rs.getString("middle"));
-                        String last = nvl(rs.getString("last"));
-                        String name = (first + " " + (middle.isBlank() ? "" : (middle + " ")) + last).trim()
-                                .replaceAll(" +", " ");
-                        out.put(s, new PersonMini(s, name, nvl(rs.getString("addr1")), first, last, null));
-                    }
+        return out;
+    }
+
+    // The multi-key loaders below (related people cards, network names) take
+    // their keys from duck.loadKeys: one query per call however many people
+    // there are. Written as IN (SELECT k FROM lookup_keys), a semi join; the
+    // rows of one key still come back in table order, as from the old IN lists
+
+    // people row when there is one, otherwise name / address from the tax
+    // filer. The filer query only runs for the SSNs people didn't have (the
+    // usual case is none): folding it into one UNION costs a tax_employers
+    // scan on every call
+    public Map<String, PersonMini> loadPersonMini(Set<String> ssns) throws SQLException {
+        return metrics.repo("loadPersonMini", () -> {
+            if (ssns.isEmpty())
+                return Map.of();
+            String sql = """
+                        SELECT ssn, firstname AS first, COALESCE(middlename,'') AS middle,
+                               lastname AS last, address_line1 AS addr1, dl
+                        FROM people
+                        WHERE ssn IN (SELECT k FROM lookup_keys)
+                    """;
+            String sql2 = """
+                        SELECT ssn, filer_first AS first, COALESCE(filer_middle,'') AS middle,
+                               filer_last AS last, filer_address AS addr1
+                        FROM tax_employers
+                        WHERE ssn IN (SELECT k FROM lookup_keys)
+                    """;
+            Map<String, PersonMini> out = new HashMap<>();
+            try (Connection conn = duck.borrow()) {
+                duck.loadKeys(conn, ssns);
+                readPersonMini(conn, sql, true, out);
+                Set<String> missing = new HashSet<>(ssns);
+                missing.removeAll(out.keySet());
+                if (!missing.isEmpty()) {
+                    duck.loadKeys(conn, missing);
+                    readPersonMini(conn, sql2, false, out);
                 }
             }
+            return out;
+        });
+    }
+
+    private void readPersonMini(Connection conn, String sql, boolean people, Map<String, PersonMini> out) throws SQLException {
+        try (Statement st = conn.createStatement();
+                ResultSet rs = st.executeQuery(sql)) {
+            while (rs.next()) {
+                String s = rs.getString("ssn");
+                String first = nvl(rs.getString("first"));
+                String middle = nvl(rs.getString("middle"));
+                String last = nvl(rs.getString("last"));
+                String name = (first + " " + (middle.isBlank() ? "" : (middle + " ")) + last).trim()
+                        .replaceAll(" +", " ");
+                out.put(s, new PersonMini(s, name, nvl(rs.getString("addr1")), first, last,
+                        people ? nvl(rs.getString("dl")) : null));
+            }
         }
-        return out;
     }
 
     public Map<String, List<Phone>> loadPhonesFor(Set<String> ssns) throws SQLException {
-        if (ssns.isEmpty())
-            return Map.of();
-        String q = ssns.stream().map(s -> "?").collect(Collectors.joining(","));
-        String sql = "SELECT TRIM(ssn) AS ssn, TRIM(phone) AS msisdn, " +
-                " UPPER(TRIM(phone_type)) AS phone_type, UPPER(TRIM(device_make)) AS device_make, " +
-                " UPPER(TRIM(device_model)) AS device_model, UPPER(TRIM(mac)) AS mac, TRIM(imsi) AS imsi " +
-                "FROM phone_contracts WHERE TRIM(ssn) IN (" + q + ")";
-        Map<String, List<Phone>> out = new HashMap<>();
-        try (PreparedStatement ps = duck.conn().prepareStatement(sql)) {
-            int i = 1;
-            for (String s : ssns)
-                ps.setString(i++, s);
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    Phone p = new Phone();
-                    p.ssn = rs.getString("ssn");
-                    p.msisdn = nvl(rs.getString("msisdn"));
-                    p.type = nvl(rs.getString("phone_type"));
-                    p.make = nvl(rs.getString("device_make"));
-                    p.model = nvl(rs.getString("device_model"));
-                    p.mac = nvl(rs.getString("mac"));
-                    p.imsi = nvl(rs.getString("imsi"));
-                    out.computeIfAbsent(p.ssn, k -> new ArrayList<>()).add(p);
+        return metrics.repo("loadPhonesFor", () -> {
+            if (ssns.isEmpty())
+                return Map.of();
+            String sql = """
+                        SELECT ssn, phone AS msisdn, phone_type, device_make, device_model, mac, imsi
+                        FROM phone_contracts
+                        WHERE ssn IN (SELECT k FROM lookup_keys)
+                    """;
+            Map<String, List<Phone>> out = new HashMap<>();
+            try (Connection conn = duck.borrow()) {
+                duck.loadKeys(conn, ssns);
+                try (Statement st = conn.createStatement();
+                        ResultSet rs = st.executeQuery(sql)) {
+                    while (rs.next()) {
+                        Phone p = new Phone();
+                        p.ssn = rs.getString("ssn");
+                        p.msisdn = nvl(rs.getString("msisdn"));
+                        p.type = nvl(rs.getString("phone_type"));
+                        p.make = nvl(rs.getString("device_make"));
+                        p.model = nvl(rs.getString("device_model"));
+                        p.mac = nvl(rs.getString("mac"));
+                        p.imsi = nvl(rs.getString("imsi"));
+                        out.computeIfAbsent(p.ssn, k -> new ArrayList<>()).add(p);
+                    }
                 }
             }
-        }
-        return out;
+            return out;
+        });
     }
 
+    // every SSN of ssnToDl gets a list, empty when its DL owns nothing
     public Map<String, List<Vehicle>> loadVehiclesFor(Map<String, String> ssnToDl) throws SQLException {
-        if (ssnToDl.isEmpty())
-            return Map.of();
-        String sql = """
-                    SELECT UPPER(TRIM(owner_dl)) AS owner_dl,
-                           UPPER(TRIM(vin_norm))  AS vin,
-                           UPPER(TRIM(plate_norm))AS plate,
-                           UPPER(TRIM(make))      AS make,
-                           UPPER(TRIM(model))     AS model,
-                           CAST(year AS BIGINT)   AS year
-                    FROM vehicles
-                    WHERE UPPER(TRIM(owner_dl)) = ?
-                """;
-        Map<String, List<Vehicle>> out = new HashMap<>();
-        try (PreparedStatement ps = duck.conn().prepareStatement(sql)) {
+        return metrics.repo("loadVehiclesFor", () -> {
+            if (ssnToDl.isEmpty())
+                return Map.of();
+            String sql = """
+                        SELECT owner_dl,
+                               vin_norm               AS vin,
+                               plate_norm             AS plate,
+                               make,
+                               model,
+                               CAST(year AS BIGINT)   AS year
+                        FROM vehicles
+                        WHERE owner_dl IN (SELECT k FROM lookup_keys)
+                    """;
+            Map<String, List<Vehicle>> out = new HashMap<>();
+            Map<String, List<String>> ssnsByDl = new LinkedHashMap<>();
             for (Map.Entry<String, String> e : ssnToDl.entrySet()) {
-                ps.setString(1, e.getValue());
-                try (ResultSet rs = ps.executeQuery()) {
-                    List<Vehicle> list = new ArrayList<>();
+                out.put(e.getKey(), new ArrayList<>());
+                ssnsByDl.computeIfAbsent(e.getValue(), k -> new ArrayList<>()).add(e.getKey());
+            }
+            try (Connection conn = duck.borrow()) {
+                duck.loadKeys(conn, ssnsByDl.keySet());
+                try (Statement st = conn.createStatement();
+                        ResultSet rs = st.executeQuery(sql)) {
                     while (rs.next()) {
-                        Vehicle v = new Vehicle();
-                        v.vin = nvl(rs.getString("vin"));
-                        v.plate = nvl(rs.getString("plate"));
-                        v.make = nvl(rs.getString("make"));
-                        v.model = nvl(rs.getString("model"));
-                        v.year = (Long) rs.getObject("year");
-                        list.add(v);
+                        // own object per SSN, two people can share a DL
+                        for (String ssn : ssnsByDl.getOrDefault(rs.getString("owner_dl"), List.of())) {
+                            Vehicle v = new Vehicle();
+                            v.vin = nvl(rs.getString("vin"));
+                            v.plate = nvl(rs.getString("plate"));
+                            v.make = nvl(rs.getString("make"));
+                            v.model = nvl(rs.getString("model"));
+                            v.year = (Long) rs.getObject("year");
+                            out.get(ssn).add(v);
+                        }
                     }
-                    out.put(e.getKey(), list);
                 }
             }
-        }
-        return out;
+            return out;
+        });
     }
 
-    // Linked conversations for this SSN
+    // Linked conversations for this SSN: the SMS and calls on the POI's lines
+    // (Lines.telcoRows), grouped per other IMSI with counts, call time,
+    // direction and first / last time, top 100 by events. Names and numbers of
+    // the other side are joined after grouping, for at most one row per peer
     public List<ConvoLink> loadConversations(String ssn) throws SQLException {
-        String sql = """
-                    WITH poi AS (
-                      SELECT UPPER(TRIM(imsi)) AS imsi,
-                             REGEXP_REPLACE(TRIM(phone), '[^0-9]', '', 'g') AS msisdn_norm
-                      FROM phone_contracts
-                      WHERE TRIM(ssn) = TRIM(?)
-                    ),
-                    mine AS (
-                      SELECT t.ts, t.type, t.duration_sec, t.imsi, t.imsi_from, t.imsi_to
-                      FROM telco t
-                      WHERE t.type IN ('SMS','CALL')
-                        AND (
-                          t.imsi IN (SELECT imsi FROM poi)
-                          OR t.msisdn_norm IN (SELECT msisdn_norm FROM poi)
+        return metrics.repo("loadConversations", () -> {
+            Lines lines = poiLines(ssn);
+            if (lines.isEmpty())
+                return List.<ConvoLink>of();
+
+            String sql = """
+                        WITH mine AS (
+                          %s
+                        ),
+                        edges AS (
+                          SELECT
+                            CASE
+                              WHEN m.imsi = m.imsi_from THEN m.imsi_to
+                              WHEN m.imsi = m.imsi_to   THEN m.imsi_from
+                              ELSE NULL
+                            END AS other_imsi,
+                            m.imsi AS self_imsi,
+                            m.type,
+                            m.duration_sec,
+                            m.ts,
+                            CASE
+                              WHEN m.imsi = m.imsi_from THEN 'OUT'
+                              WHEN m.imsi = m.imsi_to   THEN 'IN'
+                              ELSE NULL
+                            END AS dir
+                          FROM mine m
+                          WHERE m.type IN ('SMS','CALL')
+                        ),
+                        peers AS (
+                          SELECT
+                            e.other_imsi                                        AS other_imsi,
+                            COUNT(*)                                            AS events,
+                            SUM(CASE WHEN e.type='CALL' THEN 1 ELSE 0 END)      AS calls,
+                            SUM(CASE WHEN e.type='SMS'  THEN 1 ELSE 0 END)      AS sms,
+                            SUM(CASE WHEN e.type='CALL' THEN COALESCE(e.duration_sec,0) ELSE 0 END) AS duration_sec,
+                            SUM(CASE WHEN e.dir='OUT' THEN 1 ELSE 0 END)        AS out_events,
+                            SUM(CASE WHEN e.dir='IN'  THEN 1 ELSE 0 END)        AS in_events,
+                            MIN(e.ts)                                           AS first_ts,
+                            MAX(e.ts)                                           AS last_ts
+                          FROM edges e
+                          WHERE e.other_imsi IS NOT NULL
+                          GROUP BY e.other_imsi
                         )
-                    ),
-                    edges AS (
-                      SELECT
-                        CASE
-                          WHEN m.imsi = m.imsi_from THEN m.imsi_to
-                          WHEN m.imsi = m.imsi_to   THEN m.imsi_from
-                          ELSE NULL
-                        END AS other_imsi,
-                        m.imsi AS self_imsi,
-                        m.type,
-                        m.duration_sec,
-                        m.ts,
-                        CASE
-                          WHEN m.imsi = m.imsi_from THEN 'OUT'
-                          WHEN m.imsi = m.imsi_to   THEN 'IN'
-                          ELSE NULL
-                        END AS dir
-                      FROM mine m
-                    )
-                    SELECT
-                      e.other_imsi                                        AS other_imsi,
-                      COUNT(*)                                            AS events,
-                      SUM(CASE WHEN e.type='CALL' THEN 1 ELSE 0 END)      AS calls,
-                      SUM(CASE WHEN e.type='SMS'  THEN 1 ELSE 0 END)      AS sms,
-                      SUM(CASE WHEN e.type='CALL' THEN COALESCE(e.duration_sec,0) ELSE 0 END) AS duration_sec,
-                      SUM(CASE WHEN e.dir='OUT' THEN 1 ELSE 0 END)        AS out_events,
-                      SUM(CASE WHEN e.dir='IN'  THEN 1 ELSE 0 END)        AS in_events,
-                      MIN(e.ts)                                           AS first_ts,
-                      MAX(e.ts)                                           AS last_ts,
-                      pc_other.ssn                                        AS other_ssn,
-                      pc_other.phone                                      AS other_msisdn_raw,
-                      pc_other.phone_norm                                 AS other_msisdn_norm,
-                      UPPER(TRIM(COALESCE(ppl.firstname,''))) || ' ' || UPPER(TRIM(COALESCE(ppl.lastname,''))) AS other_name
-                    FROM edges e
-                    LEFT JOIN phone_contracts pc_other ON pc_other.imsi = e.other_imsi
-                    LEFT JOIN people ppl ON TRIM(ppl.ssn) = TRIM(pc_other.ssn)
-                    WHERE e.other_imsi IS NOT NULL
-                    GROUP BY e.other_imsi, pc_other.ssn, pc_other.phone, pc_other.phone_norm, other_name
-                    ORDER BY events DESC, last_ts DESC
-                    LIMIT 100
-                """;
-
-        List<ConvoLink> out = new ArrayList<>();
-        try (PreparedStatement ps = duck.conn().prepareStatement(sql)) {
-            ps.setString(1, ssn);
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    ConvoLink c = new ConvoLink();
-                    c.otherImsi = nvl(rs.getString("other_imsi"));
-                    c.otherSsn = nvl(rs.getString("other_ssn"));
-                    c.otherName = nvl(rs.getString("other_name")).trim().replaceAll(" +", " ");
-                    c.otherMsisdnRaw = nvl(rs.getString("other_msisdn_raw"));
-                    c.otherMsisdnNorm = nvl(rs.getString("other_msisdn_norm"));
-                    c.events = rs.getLong("events");
-                    c.calls = rs.getLong("calls");
-                    c.sms = rs.getLong("sms");
-                    c.durationSec = rs.getLong("duration_sec");
-                    c.outEvents = rs.getLong("out_events");
-                    c.inEvents = rs.getLong("in_events");
-                    Timestamp f = rs.getTimestamp("first_ts");
-                    Timestamp l = rs.getTimestamp("last_ts");
-                    c.firstTs = f == null ? null : f.toInstant();
-                    c.lastTs = l == null ? null : l.toInstant();
-                    out.add(c);
+                        SELECT
+                          p.*,
+                          pc_other.ssn                                        AS other_ssn,
+                          pc_other.phone                                      AS other_msisdn_raw,
+                          pc_other.phone_norm                                 AS other_msisdn_norm,
+                          COALESCE(ppl.firstname,'') || ' ' || COALESCE(ppl.lastname,'') AS other_name
+                        FROM peers p
+                        LEFT JOIN phone_contracts pc_other ON pc_other.imsi = p.other_imsi
+                        LEFT JOIN people ppl ON ppl.ssn = pc_other.ssn
+                        ORDER BY events DESC, last_ts DESC
+                        LIMIT 100
+                    """.formatted(lines.telcoRows("ts, type, duration_sec, imsi, imsi_from, imsi_to"));
+
+            List<ConvoLink> out = new ArrayList<>();
+            try (Connection conn = duck.borrow();
+                    PreparedStatement ps = conn.prepareStatement(sql)) {
+                lines.bind(ps, 1);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        ConvoLink c = new ConvoLink();
+                        c.otherImsi = nvl(rs.getString("other_imsi"));
+                        c.otherSsn = nvl(rs.getString("other_ssn"));
+                        c.otherName = nvl(rs.getString("other_name")).trim().replaceAll(" +", " ");
+                        c.otherMsisdnRaw = nvl(rs.getString("other_msisdn_raw"));
+                        c.otherMsisdnNorm = nvl(rs.getString("other_msisdn_norm"));
+                        c.events = rs.getLong("events");
+                        c.calls = rs.getLong("calls");
+                        c.sms = rs.getLong("sms");
+                        c.durationSec = rs.getLong("duration_sec");
+                        c.outEvents = rs.getLong("out_events");
+                        c.inEvents = rs.getLong("in_events");
+                        Timestamp f = rs.getTimestamp("first_ts");
+                        Timestamp l = rs.getTimestamp("last_ts");
+                        c.firstTs = f == null ? null : f.toInstant();
+                        c.lastTs = l == null ? null : l.toInstant();
+                        out.add(c);
+                    }
                 }
             }
+            return out;
+        });
+    }
+
+    // The POI's own phone lines, as telco knows them
+    private record Lines(Set<String> imsis, Set<String> msisdns) {
+        boolean isEmpty() {
+            return imsis.isEmpty() && msisdns.isEmpty();
+        }
+
+        // telco rows of these lines: one equality lookup per key, which the imsi /
+        // msisdn_norm indexes answer without scanning the table (an OR of two IN
+        // subqueries scans all of it). A row found through both keys only comes
+        // back once, the msisdn lookups skip the POI's own IMSIs. Bind with bind()
+        String telcoRows(String cols) {
+            String select = "SELECT " + cols + " FROM telco ";
+            String notMine = imsis.isEmpty() ? ""
+                    : " AND COALESCE(imsi, '') NOT IN (" + marks(imsis.size()) + ")";
+            List<String> lookups = new ArrayList<>();
+            imsis.forEach(x -> lookups.add(select + "WHERE imsi = ?"));
+            msisdns.forEach(x -> lookups.add(select + "WHERE msisdn_norm = ?" + notMine));
+            return String.join("\n                          UNION ALL\n                          ", lookups);
+        }
+
+        // returns the next parameter index
+        int bind(PreparedStatement ps, int i) throws SQLException {
+            for (String imsi : imsis)
+                ps.setString(i++, imsi);
+            for (String msisdn : msisdns) {
+                ps.setString(i++, msisdn);
+                for (String imsi : imsis)
+                    ps.setString(i++, imsi);
+            }
+            return i;
+        }
+
+        private static String marks(int n) {
+            return String.join(",", Collections.nCopies(n, "?"));
         }
-        return out;
     }
 
-    public Map<String, Employer> loadPrimaryEmployer(Set<String> ssns) throws SQLException {
-        if (ssns.isEmpty())
-            return Map.of();
-        String q = ssns.stream().map(s -> "?").collect(Collectors.joining(","));
-        String sql = "SELECT TRIM(ssn) AS ssn, UPPER(TRIM(employer_name)) AS n, UPPER(TRIM(employer_address)) AS a " +
-                "FROM tax_employers WHERE TRIM(ssn) IN (" + q
-                + ") AND employer_address IS NOT NULL AND TRIM(employer_address) <> ''";
-        Map<String, Map<String, Long>> countByPair = new HashMap<>();
-        try (PreparedStatement ps = duck.conn().prepareStatement(sql)) {
-            int i = 1;
-            for (String s : ssns)
-                ps.setString(i++, s);
+    private Lines poiLines(String ssn) throws SQLException {
+        Set<String> imsis = new LinkedHashSet<>();
+        Set<String> msisdns = new LinkedHashSet<>();
+        try (Connection conn = duck.borrow();
+                PreparedStatement ps = conn.prepareStatement(
+                        "SELECT imsi, phone_norm FROM phone_contracts WHERE ssn = ?")) {
+            ps.setString(1, key(ssn));
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
-                    String s = rs.getString("ssn");
-                    String key = nvl(rs.getString("n")) + "|" + nvl(rs.getString("a"));
-                    countByPair.computeIfAbsent(s, k -> new HashMap<>()).merge(key, 1L, Long::sum);
+                    if (!nvl(rs.getString(1)).isBlank())
+                        imsis.add(rs.getString(1));
+                    if (!nvl(rs.getString(2)).isBlank())
+                        msisdns.add(rs.getString(2));
                 }
             }
         }
-        Map<String, Employer> out = new HashMap<>();
-        for (Map.Entry<String, Map<String, Long>> e : countByPair.entrySet()) {
-            String bestKey = e.getValue().entrySet().stream()
-                    .sorted(Map.Entry.<String, Long>comparingByValue().reversed()
-                            .thenComparing(Map.Entry.comparingByKey()))
-                    .map(Map.Entry::getKey)
-                    .findFirst().orElse(null);
-            if (bestKey != null) {
-                String[] parts = bestKey.split("\\|", -1);
-                Employer emp = new Employer();
-                emp.name = parts.length > 0 ? parts[0] : "";
-                emp.address = parts.length > 1 ? parts[1] : "";
-                out.put(e.getKey(), emp);
+        return new Lines(imsis, msisdns);
+    }
+
+    // Other subscribers seen at the POI's cell towers around the same time: each
+    // of their telco events counts when it is at a tower where the POI had an
+    // event no more than minuteWindow minutes before or after.
+    // Rather than comparing event pairs, the POI's events at a tower are merged
+    // into disjoint [ts - w, ts + w] spans (gaps and islands) and every span is
+    // put under each w-sized time bucket it touches. telco_cells (telco by
+    // tower and time, see DuckDb) then joins on (cell, bucket) like any hash
+    // join, and an event lands in at most one span, so nothing is counted
+    // twice. Top `limit` others by shared towers, then events; their towers
+    // come with cell_sites coordinates when known
+    public List<TowerColocation> loadTowerColocations(String ssn, long minuteWindow, int limit)
+            throws SQLException {
+        return metrics.repo("loadTowerColocations", () -> {
+            Lines lines = poiLines(ssn);
+            if (lines.isEmpty())
+                return List.<TowerColocation>of();
+
+            String sql = """
+                        WITH mine AS MATERIALIZED (
+                          %s
+                        ),
+                        poi AS (
+                          SELECT hash(mcc, mnc, lac, tower_id) AS cell, mcc, mnc, lac, tower_id,
+                                 epoch_us(ts) AS ts_us
+                          FROM mine
+                          WHERE ts IS NOT NULL AND tower_id IS NOT NULL AND tower_id <> ''
+                        ),
+                        towers AS (
+                          SELECT DISTINCT cell, mcc, mnc, lac, tower_id FROM poi
+                        ),
+                        islands AS (
+                          SELECT *,
+                                 SUM(CASE WHEN prev_us IS NULL OR ts_us - prev_us > 2 * ? THEN 1 ELSE 0 END)
+                                   OVER (PARTITION BY cell ORDER BY ts_us) AS island
+                          FROM (
+                            SELECT cell, ts_us, lag(ts_us) OVER (PARTITION BY cell ORDER BY ts_us) AS prev_us
+                            FROM poi
+                          )
+                        ),
+                        spans AS (
+                          SELECT cell, MIN(ts_us) - ? AS lo_us, MAX(ts_us) + ? AS hi_us
+                          FROM islands
+                          GROUP BY cell, island
+                        ),
+                        buckets AS (
+                          SELECT s.*, UNNEST(range(s.lo_us // ?, s.hi_us // ? + 1)) AS bucket
+                          FROM spans s
+                        ),
+                        hits AS (
+                          SELECT t.imsi AS other_imsi, t.cell, t.ts_us
+                          FROM telco_cells t
+                          JOIN buckets b ON t.cell = b.cell AND t.ts_us // ? = b.bucket
+                          WHERE t.ts_us BETWEEN b.lo_us AND b.hi_us
+                            AND t.imsi IS NOT NULL AND t.imsi <> ''
+                            AND t.imsi NOT IN (SELECT imsi FROM mine WHERE imsi IS NOT NULL)
+                        ),
+                        per_tower AS MATERIALIZED (
+                          SELECT other_imsi, cell, COUNT(*) AS events, MIN(ts_us) AS first_us, MAX(ts_us) AS last_us
+                          FROM hits
+                          GROUP BY other_imsi, cell
+                        ),
+                        others AS (
+                          SELECT other_imsi, COUNT(*) AS towers, SUM(events) AS events,
+                                 MIN(first_us) AS first_us, MAX(last_us) AS last_us
+                          FROM per_tower
+                          GROUP BY other_imsi
+                          ORDER BY towers DESC, events DESC, other_imsi
+                          LIMIT ?
+                        ),
+                        who AS (
+                          SELECT o.other_imsi, pc.ssn, pc.phone,
+                                 COALESCE(ppl.firstname,'') || ' ' || COALESCE(ppl.lastname,'') AS name
+                          FROM others o
+                          JOIN phone_contracts pc ON pc.imsi = o.other_imsi
+                          LEFT JOIN people ppl ON ppl.ssn = pc.ssn
+                          QUALIFY row_number() OVER (PARTITION BY o.other_imsi ORDER BY pc.ssn) = 1
+                        )
+                        SELECT o.other_imsi, o.events,
+                               make_timestamp(o.first_us) AS first_ts, make_timestamp(o.last_us) AS last_ts,
+                               w.ssn AS other_ssn, w.phone AS other_msisdn_raw, w.name AS other_name,
+                               tw.mcc, tw.mnc, tw.lac, tw.tower_id, p.events AS tower_events, cs.lat, cs.lon
+                        FROM others o
+                        JOIN per_tower p ON p.other_imsi = o.other_imsi
+                        JOIN towers tw ON tw.cell = p.cell
+                        LEFT JOIN who w ON w.other_imsi = o.other_imsi
+                        LEFT JOIN cell_sites cs
+                          ON cs.tower_id = tw.tower_id AND cs.lac = tw.lac AND cs.mnc = tw.mnc AND cs.mcc = tw.mcc
+                        ORDER BY o.towers DESC, o.events DESC, o.other_imsi, p.events DESC, tw.tower_id
+                    """.formatted(lines.telcoRows("ts, imsi, mcc, mnc, lac, tower_id"));
+
+            long windowUs = Math.max(1, minuteWindow) * 60_000_000L;
+            Map<String, TowerColocation> out = new LinkedHashMap<>();
+            try (Connection conn = duck.borrow();
+                    PreparedStatement ps = conn.prepareStatement(sql)) {
+                int i = lines.bind(ps, 1);
+                for (int k = 0; k < 6; k++)
+                    ps.setLong(i++, windowUs);
+                ps.setInt(i, limit);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        String imsi = rs.getString("other_imsi");
+                        TowerColocation c = out.get(imsi);
+                        if (c == null) {
+                            c = new TowerColocation();
+                            c.otherImsi = imsi;
+                            c.otherSsn = nvl(rs.getString("other_ssn"));
+                            c.otherName = nvl(rs.getString("other_name")).trim().replaceAll(" +", " ");
+                            c.otherMsisdnRaw = nvl(rs.getString("other_msisdn_raw"));
+                            c.events = rs.getLong("events");
+                            Timestamp f = rs.getTimestamp("first_ts");
+                            Timestamp l = rs.getTimestamp("last_ts");
+                            c.firstTs = f == null ? null : f.toInstant();
+                            c.lastTs = l == null ? null : l.toInstant();
+                            out.put(imsi, c);
+                        }
+                        SharedTower t = new SharedTower();
+                        t.mcc = rs.getString("mcc");
+                        t.mnc = rs.getString("mnc");
+                        t.lac = rs.getString("lac");
+                        t.towerId = rs.getString("tower_id");
+                        t.lat = (Double) rs.getObject("lat");
+                        t.lon = (Double) rs.getObject("lon");
+                        t.events = rs.getLong("tower_events");
+                        c.towers.add(t);
+                    }
+                }
             }
-        }
-        return out;
+            return new ArrayList<>(out.values());
+        });
     }
 
+    public Map<String, Employer> loadPrimaryEmployer(Set<String> ssns) throws SQLException {
+        return metrics.repo("loadPrimaryEmployer", () -> {
+            if (ssns.isEmpty())
+                return Map.of();
+            String sql = """
+                        SELECT ssn, employer_name AS n, employer_address AS a
+                        FROM tax_employers
+                        WHERE ssn IN (SELECT k FROM lookup_keys)
+                          AND employer_address IS NOT NULL AND employer_address <> ''
+                    """;
+            Map<String, Map<String, Long>> countByPair = new HashMap<>();
+            try (Connection conn = duck.borrow()) {
+                duck.loadKeys(conn, ssns);
+                try (Statement st = conn.createStatement();
+                        ResultSet rs = st.executeQuery(sql)) {
+                    while (rs.next()) {
+                        String s = rs.getString("ssn");
+                        String key = nvl(rs.getString("n")) + "|" + nvl(rs.getString("a"));
+                        countByPair.computeIfAbsent(s, k -> new HashMap<>()).merge(key, 1L, Long::sum);
+                    }
+                }
+            }
+            Map<String, Employer> out = new HashMap<>();
+            for (Map.Entry<String, Map<String, Long>> e : countByPair.entrySet()) {
+                String bestKey = e.getValue().entrySet().stream()
+                        .sorted(Map.Entry.<String, Long>comparingByValue().reversed()
+                                .thenComparing(Map.Entry.comparingByKey()))
+                        .map(Map.Entry::getKey)
+                        .findFirst().orElse(null);
+                if (bestKey != null) {
+                    String[] parts = bestKey.split("\\|", -1);
+                    Employer emp = new Employer();
+                    emp.name = parts.length > 0 ? parts[0] : "";
+                    emp.address = parts.length > 1 ? parts[1] : "";
+                    out.put(e.getKey(), emp);
+                }
+            }
+            return out;
+        });
+    }
+
+    // wifiNearby done inside DuckDB, same rule as ProfileLogic.wifiNearby over
+    // the events loadWifiEventsByBounds would hand back: every (ping, event)
+    // pair inside the minute window and radius is a "PRS proximity" hit, every
+    // event from one of phoneMacs a "device_mac" hit, grouped by the event
+    // location rounded to 6 decimals, most hits first
     public List<WifiSpot> loadWifiNearbyForSsn(
-            String ssn, double radiusMeters, int minuteWindow, int limit) throws SQLException {
-
-        String sql = """
-                  WITH poi_macs AS (
-                    SELECT UPPER(TRIM(mac)) AS mac
-                    FROM phone_contracts
-                    WHERE TRIM(ssn)=TRIM(?)
-                      AND mac IS NOT NULL AND TRIM(mac) <> ''
-                  ),
-                  ank AS (
-                    SELECT ts, CAST(lat AS DOUBLE) AS lat, CAST(lon AS DOUBLE) AS lon
-                    FROM ankle
-                    WHERE TRIM(person_ssn)=TRIM(?)
-                      AND lat IS NOT NULL AND lon IS NOT NULL
-                  ),
-                  bounds AS (
-                    SELECT MIN(ts) AS min_ts, MAX(ts) AS max_ts FROM ank
-                  ),
-                  cand AS (
+            String ssn,
+            Instant minTs,
+            Instant maxTs,
+            Bounds box,
+            Set<String> phoneMacs, // hex only, upper case; may be empty
+            double radiusMeters,
+            long minuteWindow,
+            int limit) throws SQLException {
+        return metrics.repo("loadWifiNearbyForSsn", () -> {
+            boolean useMacs = phoneMacs != null && !phoneMacs.isEmpty();
+            String macHits = useMacs
+                    ? """
+                      UNION ALL
+                      SELECT ts, lat, lon, ssids, 1, FALSE
+                      FROM w
+                      WHERE REGEXP_REPLACE(UPPER(device_mac), '[^A-F0-9]', '', 'g') IN (%s)
+                      """.formatted(phoneMacs.stream().map(x -> "?").collect(Collectors.joining(",")))
+                    : "";
+
+            // pairs are only counted per event and joined back to the event
+            // afterwards, a busy subject has millions of them. The join is on
+            // time alone: a bounding box in the ON clause turns it into a much
+            // slower nested loop, the flat distance test does that job
+            String sql = """
+                    WITH ank AS (
+                      SELECT ts_us, lat, lon, COS(lat * (PI() / 180.0)) AS coslat
+                      FROM (SELECT epoch_ms(ts) * 1000 AS ts_us,
+                                   CAST(lat AS DOUBLE) AS lat, CAST(lon AS DOUBLE) AS lon
+                            FROM %s
+                            WHERE person_ssn = ?
+                              AND ts IS NOT NULL)
+                    ),
+                    w AS MATERIALIZED (
+                      SELECT
+                        row_number() OVER () AS rid,
+                        ts,
+                        epoch_us(ts) AS ts_us,
+                        CAST(s_lat AS DOUBLE) AS lat,
+                        CAST(s_lon AS DOUBLE) AS lon,
+                        device_mac,
+                        list_filter([ssid_1, ssid_2, ssid_3, ssid_4, ssid_5,
+                                     ssid_6, ssid_7, ssid_8, ssid_9, ssid_10],
+                                    s -> s IS NOT NULL AND TRIM(s) <> '') AS ssids
+                      FROM %s
+                      WHERE ts BETWEEN ? AND ?
+                        AND s_lat BETWEEN ? AND ?
+                        AND s_lon BETWEEN ? AND ?
+                    ),
+                    near AS (
+                      SELECT w.rid, COUNT(*) AS n
+                      FROM ank a
+                      JOIN (SELECT rid, ts_us, lat, lon FROM w) w
+                        -- TimeWindowIndex window: whole minutes, truncated
+                        ON w.ts_us >= a.ts_us + ?
+                       AND w.ts_us <  a.ts_us + ?
+                      WHERE %s
+                      GROUP BY w.rid
+                    ),
+                    hits AS (
+                      SELECT w.ts, w.lat, w.lon, w.ssids, n.n, TRUE AS by_ankle
+                      FROM near n
+                      JOIN w ON w.rid = n.rid
+                      %s
+                    )
                     SELECT
-                      w.ts,
-                      CAST(w.s_lat AS DOUBLE) AS lat,
-                      CAST(w.s_lon AS DOUBLE) AS lon,
-                      UPPER(TRIM(w.device_mac)) AS device_mac,
-                      COALESCE(NULLIF(TRIM(w.ssid_1),''), NULLIF(TRIM(w.ssid_2),'')) AS ssid
-                    FROM ank a
-                    JOIN wifi_events_raw w
-                      -- global time prune (zone-map friendly)
-                      ON w.ts BETWEEN (SELECT min_ts FROM bounds) AND (SELECT max_ts FROM bounds)
-                     AND w.device_mac IN (SELECT mac FROM poi_macs)
-                     -- local time window per ankle (parameter-friendly)
-                     AND ABS(date_diff('minute', a.ts, w.ts)) <= ?
-                     -- cheap bounding box first
-                     AND w.s_lat BETWEEN a.lat - (?/111000.0) AND a.lat + (?/111000.0)
-                     AND w.s_lon BETWEEN a.lon - ((?/111000.0)/GREATEST(COS(radians(a.lat)), 1e-6))
-                                     AND a.lon + ((?/111000.0)/GREATEST(COS(radians(a.lat)), 1e-6))
-                     -- exact distance last
-                     AND ST_Distance_Sphere(ST_Point(a.lon,a.lat), ST_Point(w.s_lon,w.s_lat)) <= ?
-                  )
-                  SELECT
-                    device_mac,
-                    MIN(ts)  AS first_ts,
-                    MAX(ts)  AS last_ts,
-                    COUNT(*) AS hits,
-                    ANY_VALUE(ssid) AS ssid,
-                    AVG(lat) AS lat,
-                    AVG(lon) AS lon
-                  FROM cand
-                  GROUP BY device_mac
-                  ORDER BY hits DESC, last_ts DESC
-                  LIMIT ?
-                """;
-
-        try (var ps = duck.conn().prepareStatement(sql)) {
-            int i = 1;
-            ps.setString(i++, ssn); // poi_macs
-            ps.setString(i++, ssn); // ank
-            ps.setInt(i++, minuteWindow); // local time window
-            ps.setDouble(i++, radiusMeters); // lat_box (lower)
-            ps.setDouble(i++, radiusMeters); // lat_box (upper)
-            ps.setDouble(i++, radiusMeters); // lon_box (lower)
-            ps.setDouble(i++, radiusMeters); // lon_box (upper)
-            ps.setDouble(i++, radiusMeters); // exact distance
-            ps.setInt(i++, limit);
-
-            List<WifiSpot> out = new ArrayList<>();
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    WifiSpot s = new WifiSpot();
-                    s.firstTs = rs.getTimestamp("first_ts").toInstant();
-                    s.lastTs = rs.getTimestamp("last_ts").toInstant();
-                    s.hits = rs.getLong("hits");
-                    s.lat = rs.getDouble("lat");
-                    s.lon = rs.getDouble("lon");
-                    String one = rs.getString("ssid");
-                    if (one != null && !one.isBlank())
-                        s.ssids.add(one);
-                    s.via = "wifi proximity";
-                    out.add(s);
+                      FLOOR(lat * 1e6 + 0.5) / 1e6 AS lat,
+                      FLOOR(lon * 1e6 + 0.5) / 1e6 AS lon,
+                      SUM(n)                       AS hits,
+                      MIN(ts)                      AS first_ts,
+                      MAX(ts)                      AS last_ts,
+                      BOOL_OR(by_ankle)            AS by_ankle,
+                      BOOL_OR(NOT by_ankle)        AS by_mac,
+                      array_to_string(list_distinct(flatten(list(ssids))), chr(31)) AS ssids
+                    FROM hits
+                    GROUP BY 1, 2
+                    ORDER BY hits DESC, lat, lon
+                    LIMIT ?
+                    """.formatted(duck.ankleOf(key(ssn)), duck.daysOf("raw_wifi_events_raw", minTs, maxTs),
+                    withinSql("a.lat", "a.lon", "a.coslat", "w.lat", "w.lon"), macHits);
+
+            long[] window = windowMicros(minuteWindow);
+            try (Connection conn = duck.borrow();
+                    var ps = conn.prepareStatement(sql)) {
+                int i = 1;
+                ps.setString(i++, key(ssn));
+                ps.setTimestamp(i++, Timestamp.from(minTs));
+                ps.setTimestamp(i++, Timestamp.from(maxTs));
+                ps.setDouble(i++, box.minLat());
+                ps.setDouble(i++, box.maxLat());
+                ps.setDouble(i++, box.minLon());
+                ps.setDouble(i++, box.maxLon());
+                ps.setLong(i++, window[0]);
+                ps.setLong(i++, window[1]);
+                for (double v : withinArgs(radiusMeters))
+                    ps.setDouble(i++, v);
+                if (useMacs) {
+                    for (String mac : phoneMacs)
+                        ps.setString(i++, mac);
+                }
+                ps.setInt(i++, limit);
+
+                List<WifiSpot> out = new ArrayList<>();
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        WifiSpot s = new WifiSpot();
+                        s.lat = rs.getDouble("lat");
+                        s.lon = rs.getDouble("lon");
+                        s.hits = rs.getLong("hits");
+                        s.firstTs = rs.getTimestamp("first_ts").toInstant();
+                        s.lastTs = rs.getTimestamp("last_ts").toInstant();
+                        String ssids = rs.getString("ssids");
+                        if (ssids != null && !ssids.isEmpty())
+                            s.ssids = new ArrayList<>(Arrays.stream(ssids.split("\u001f"))
+                                    .map(String::trim).map(String::toUpperCase)
+                                    .distinct().sorted().toList());
+                        boolean byAnkle = rs.getBoolean("by_ankle"), byMac = rs.getBoolean("by_mac");
+                        s.via = byAnkle && byMac ? "PRS proximity+device_mac"
+                                : byAnkle ? "PRS proximity" : "device_mac";
+                        out.add(s);
+                    }
                 }
+                return out;
             }
-            return out;
-        }
+        });
     }
 
+    // lprSightings done inside DuckDB, same rule as ProfileLogic.lprSightings
+    // over the hits loadLprByBounds would hand back: when one of plates shows
+    // up at all only those hits are reported (PLATE, confirmed when the nearest
+    // ankle ping inside the window is within radius), otherwise every hit with
+    // an ankle ping inside window and radius (ANKLE_PROX). Oldest first.
     public List<LprView> loadLprSightingsForSsn(
+            String ssn,
+            Instant minTs,
+            Instant maxTs,
+            Bounds box,
+            Set<String> plates, // trimmed, upper case; may be empty
+            double radiusMeters,
+            long minuteWindow,
+            int limit) throws SQLException {
+        return metrics.repo("loadLprSightingsForSsn", () -> {
+            boolean usePlates = plates != null && !plates.isEmpty();
+            String mine = usePlates
+                    ? "COALESCE(UPPER(TRIM(plate_norm)) IN ("
+                            + plates.stream().map(x -> "?").collect(Collectors.joining(",")) + "), FALSE)"
+                    : "FALSE";
 
-            String ssn, double radiusMeters, int minuteWindow, int limit) throws SQLException {
-
-        String sql = """
-                  WITH ank AS (
-                    SELECT ts, CAST(lat AS DOUBLE) AS lat, CAST(lon AS DOUBLE) AS lon
-                    FROM ankle
-                    WHERE TRIM(person_ssn)=TRIM(?)
-                      AND lat IS NOT NULL AND lon IS NOT NULL
-                  ),
-                  bounds AS (
-                    SELECT MIN(ts) AS min_ts, MAX(ts) AS max_ts FROM ank
-                  ),
-                  pairs AS (
+            // row ids are handed out once, the CTEs that use them are materialized.
+            // Joined on time alone like loadWifiNearbyForSsn
+            String sql = """
+                    WITH ank AS (
+                      SELECT epoch_ms(ts) AS ts_ms, epoch_ms(ts) * 1000 AS ts_us,
+                             CAST(lat AS DOUBLE) AS lat, CAST(lon AS DOUBLE) AS lon
+                      FROM %s
+                      WHERE person_ssn = ?
+                        AND ts IS NOT NULL
+                    ),
+                    l AS MATERIALIZED (
+                      SELECT
+                        row_number() OVER () AS rid,
+                        ts,
+                        epoch_us(ts)          AS ts_us,
+                        CAST(lat AS DOUBLE)   AS lat,
+                        CAST(lon AS DOUBLE)   AS lon,
+                        sensor_id,
+                        direction,
+                        plate_state,
+                        plate_raw,
+                        %s AS mine
+                      FROM %s
+                      WHERE ts BETWEEN ? AND ?
+                        AND lat BETWEEN ? AND ?
+                        AND lon BETWEEN ? AND ?
+                    ),
+                    -- own plates when they were read at all, otherwise every hit
+                    pick AS MATERIALIZED (
+                      SELECT *, COS(lat * (PI() / 180.0)) AS coslat
+                      FROM l
+                      WHERE mine OR NOT EXISTS (SELECT 1 FROM l WHERE mine)
+                    ),
+                    -- nearest ankle ping inside the window; only matters when it is
+                    -- inside the radius, so pairs outside it are dropped up front
+                    near AS (
+                      SELECT p.rid, a.ts_ms, %s AS dist_m
+                      FROM pick p
+                      JOIN ank a
+                        ON a.ts_us >= p.ts_us + ?
+                       AND a.ts_us <  p.ts_us + ?
+                      WHERE %s
+                      QUALIFY row_number() OVER (PARTITION BY p.rid ORDER BY dist_m, a.ts_ms) = 1
+                    )
                     SELECT
-                      l.ts  AS lpr_ts,
-                      a.ts  AS ankle_ts,
-                      ST_Distance_Sphere(ST_Point(a.lon,a.lat), ST_Point(l.lon,l.lat)) AS dist_m,
-                      CAST(l.lat AS DOUBLE)  AS lat,
-                      CAST(l.lon AS DOUBLE)  AS lon,
-                      UPPER(TRIM(l.sensor_id))  AS sensor_id,
-                      UPPER(TRIM(l.direction))  AS direction,
-                      UPPER(TRIM(l.plate_state)) AS plate_state,
-                      TRIM(l.plate_raw)         AS plate_raw
-                    FROM ank a
-                    JOIN lpr l
-                      -- global time prune
-                      ON l.ts BETWEEN (SELECT min_ts FROM bounds) AND (SELECT max_ts FROM bounds)
-                     -- local time window (parameter-friendly)
-                     AND ABS(date_diff('minute', a.ts, l.ts)) <= ?
-                     -- cheap bounding box
-                     AND l.lat BETWEEN a.lat - (?/111000.0) AND a.lat + (?/111000.0)
-                     AND l.lon BETWEEN a.lon - ((?/111000.0)/GREATEST(COS(radians(a.lat)), 1e-6))
-                                  AND a.lon + ((?/111000.0)/GREATEST(COS(radians(a.lat)), 1e-6))
-                     -- exact distance
-                     AND ST_Distance_Sphere(ST_Point(a.lon,a.lat), ST_Point(l.lon,l.lat)) <= ?
-                  ),
-                  ranked AS (
-                    SELECT *,
-                           ROW_NUMBER() OVER (PARTITION BY lpr_ts ORDER BY dist_m) AS rn
-                    FROM pairs
-                  )
-                  SELECT
-                    lpr_ts,
-                    ankle_ts,
-                    dist_m,
-                    lat,
-                    lon,
-                    sensor_id,
-                    direction,
-                    plate_state,
-                    plate_raw
-                  FROM ranked
-                  WHERE rn = 1
-                  ORDER BY lpr_ts DESC
-                  LIMIT ?
-                """;
-
-        try (var ps = duck.conn().prepareStatement(sql)) {
-            int i = 1;
-            ps.setString(i++, ssn); // ank
-            ps.setInt(i++, minuteWindow); // local window
-            ps.setDouble(i++, radiusMeters); // lat_box (lower)
-            ps.setDouble(i++, radiusMeters); // lon_box (lower)
-            ps.setDouble(i++, radiusMeters); // lon_box (upper)
-            ps.setDouble(i++, radiusMeters); // exact distance
-            ps.setInt(i++, limit);
-
-            List<LprView> out = new ArrayList<>();
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    LprView v = new LprView();
-                    v.ts = rs.getTimestamp("lpr_ts").toInstant();
-                    v.ankleTs = rs.getTimestamp("ankle_ts").toInstant();
-                    v.distM = rs.getDouble("dist_m");
-                    v.lat = rs.getDouble("lat");
-                    v.lon = rs.getDouble("lon");
-                    v.sensorId = nvl(rs.getString("sensor_id"));
-                    v.direction = nvl(rs.getString("direction"));
-                    v.plateState = nvl(rs.getString("plate_state"));
-                    v.plateRaw = nvl(rs.getString("plate_raw"));
-                    v.method = "ankle+LPR proximity";
-                    v.confirmed = true;
-                    out.add(v);
+                      p.ts, p.lat, p.lon, p.sensor_id, p.direction, p.plate_state, p.plate_raw, p.mine,
+                      n.ts_ms AS ankle_ms,
+                      n.dist_m
+                    FROM pick p
+                    LEFT JOIN near n ON n.rid = p.rid
+                    WHERE p.mine OR n.rid IS NOT NULL
+                    ORDER BY p.ts
+                    LIMIT ?
+                    """.formatted(duck.ankleOf(key(ssn)), mine, duck.daysOf("raw_lpr", minTs, maxTs),
+                            haversineSql("p.lat", "p.lon", "a.lat", "a.lon"),
+                            withinSql("p.lat", "p.lon", "p.coslat", "a.lat", "a.lon"));
+
+            long[] window = windowMicros(minuteWindow);
+            try (Connection conn = duck.borrow();
+                    var ps = conn.prepareStatement(sql)) {
+                int i = 1;
+                ps.setString(i++, key(ssn));
+                if (usePlates) {
+                    for (String p : plates)
+                        ps.setString(i++, p);
                 }
-            }
-            return out;
-        }
+                ps.setTimestamp(i++, Timestamp.from(minTs));
+                ps.setTimestamp(i++, Timestamp.from(maxTs));
+                ps.setDouble(i++, box.minLat());
+                ps.setDouble(i++, box.maxLat());
+                ps.setDouble(i++, box.minLon());
+                ps.setDouble(i++, box.maxLon());
+                ps.setLong(i++, window[0]);
+                ps.setLong(i++, window[1]);
+                for (double v : withinArgs(radiusMeters))
+                    ps.setDouble(i++, v);
+                ps.setInt(i++, limit);
 
+                List<LprView> out = new ArrayList<>();
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        LprView v = new LprView();
+                        v.ts = rs.getTimestamp("ts").toInstant();
+                        v.lat = rs.getDouble("lat");
+                        v.lon = rs.getDouble("lon");
+                        v.sensorId = rs.getString("sensor_id");
+                        v.direction = rs.getString("direction");
+                        v.plateState = rs.getString("plate_state");
+                        v.plateRaw = rs.getString("plate_raw");
+                        long ankleMs = rs.getLong("ankle_ms");
+                        if (!rs.wasNull()) {
+                            v.ankleTs = Instant.ofEpochMilli(ankleMs);
+                            v.distM = rs.getDouble("dist_m");
+                            v.confirmed = true;
+                        }
+                        v.method = rs.getBoolean("mine") ? "PLATE" : "ANKLE_PROX";
+                        out.add(v);
+                    }
+                }
+                return out;
+            }
+        });
     }
 
     public List<Business> loadBusinessesInBox(double minLat, double maxLat, double minLon, double maxLon)
             throws SQLException {
-        String sql = """
-                    SELECT biz_id, name, line1,
-                           CAST(b_lat AS DOUBLE) AS lat,
-                           CAST(b_lon AS DOUBLE) AS lon,
-                           owner_firs, owner_last
-                    FROM businesses
-                    WHERE b_lat IS NOT NULL
-                      AND b_lon IS NOT NULL
-                      AND b_lat BETWEEN ? AND ?
-                      AND b_lon BETWEEN ? AND ?
-                """;
-
-        List<Business> out = new ArrayList<>();
-        try (PreparedStatement ps = duck.conn().prepareStatement(sql)) {
-            ps.setDouble(1, minLat);
-            ps.setDouble(2, maxLat);
-            ps.setDouble(3, minLon);
-            ps.setDouble(4, maxLon);
+        return metrics.repo("loadBusinessesInBox", () -> {
+            String sql = """
+                        SELECT biz_id, name, line1,
+                               CAST(b_lat AS DOUBLE) AS lat,
+                               CAST(b_lon AS DOUBLE) AS lon,
+                               owner_firs, owner_last
+                        FROM businesses
+                        WHERE b_lat IS NOT NULL
+                          AND b_lon IS NOT NULL
+                          AND b_lat BETWEEN ? AND ?
+                          AND b_lon BETWEEN ? AND ?
+                    """;
 
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    Business b = new Business();
-                    b.bizId = rs.getString("biz_id");
-                    b.name = rs.getString("name");
-                    b.line1 = rs.getString("line1");
-                    b.lat = rs.getDouble("lat");
-                    b.lon = rs.getDouble("lon");
-                    b.ownerFirst = rs.getString("owner_firs");
-                    b.ownerLast = rs.getString("owner_last");
-                    out.add(b);
+            List<Business> out = new ArrayList<>();
+            try (Connection conn = duck.borrow();
+                    PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setDouble(1, minLat);
+                ps.setDouble(2, maxLat);
+                ps.setDouble(3, minLon);
+                ps.setDouble(4, maxLon);
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        Business b = new Business();
+                        b.bizId = rs.getString("biz_id");
+                        b.name = rs.getString("name");
+                        b.line1 = rs.getString("line1");
+                        b.lat = rs.getDouble("lat");
+                        b.lon = rs.getDouble("lon");
+                        b.ownerFirst = rs.getString("owner_firs");
+                        b.ownerLast = rs.getString("owner_last");
+                        out.add(b);
+                    }
                 }
             }
-        }
-        return out;
+            return out;
+        });
     }
 
-    public List<WifiEvent> loadWifiEventsByBounds(
+    // The two bounded scans behind the jvm engine: every wifi / LPR row in
+    // the ankle bounds, tens of thousands for a full day. They go through
+    // duck.scan (Arrow batches when available) into a WifiScan / LprScan
+    // instead of an object per row. ts is bound and read as epoch micros, the
+    // same naive-UTC reading loadAnkleTrack does, and comes back exact
+    public WifiScan loadWifiEventsByBounds(
             Instant minTs,
             Instant maxTs,
             double minLat, double maxLat,
             double minLon, double maxLon,
-            Set<String> deviceMacs, // may be empty or null = no MAC filter
+            Set<String> deviceMacs, // hex only, upper case; empty or null = no MAC filter
             int limit // pass Integer.MAX_VALUE for "no limit"
     ) throws SQLException {
+        return metrics.repo("loadWifiEventsByBounds", () -> {
 
-        boolean useMacs = deviceMacs != null && !deviceMacs.isEmpty();
-
-        String macClause = useMacs
-                ? " AND device_mac IN (" +
-                        deviceMacs.stream().map(x -> "?").collect(java.util.stream.Collectors.joining(",")) +
-                        ")"
-                : "";
-
-        String limClause = (limit > 0 && limit < Integer.MAX_VALUE) ? " LIMIT ?" : "";
-
-        String sql = """
-                SELECT
-                    ts,
-                    CAST(s_lat AS DOUBLE) AS s_lat,
-                    CAST(s_lon AS DOUBLE) AS s_lon,
-                    device_mac,
-                    ssid_1, ssid_2, ssid_3, ssid_4, ssid_5,
-                    ssid_6, ssid_7, ssid_8, ssid_9, ssid_10
-                FROM wifi_events_raw
-                WHERE ts BETWEEN ? AND ?
-                  AND s_lat BETWEEN ? AND ?
-                  AND s_lon BETWEEN ? AND ?
-                """ + macClause + limClause;
-
-        try (PreparedStatement ps = duck.conn().prepareStatement(sql)) {
-            int i = 1;
-            ps.setTimestamp(i++, java.sql.Timestamp.from(minTs));
-            ps.setTimestamp(i++, java.sql.Timestamp.from(maxTs));
-            ps.setDouble(i++, minLat);
-            ps.setDouble(i++, maxLat);
-            ps.setDouble(i++, minLon);
-            ps.setDouble(i++, maxLon);
-
-            if (useMacs) {
-                for (String mac : deviceMacs)
-                    ps.setString(i++, mac); // already normalized upstream
-            }
-            if (!limClause.isBlank()) {
-                ps.setInt(i++, limit);
-            }
+            boolean useMacs = deviceMacs != null && !deviceMacs.isEmpty();
 
-            List<WifiEvent> out = new java.util.ArrayList<>();
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    WifiEvent e = new WifiEvent();
-                    e.ts = rs.getTimestamp("ts").toInstant();
-                    e.lat = rs.getDouble("s_lat");
-                    e.lon = rs.getDouble("s_lon");
-                    e.deviceMac = nvl(rs.getString("device_mac")); // keep as-is; no UPPER/TRIM
+            String macClause = useMacs
+                    ? " AND REGEXP_REPLACE(UPPER(device_mac), '[^A-F0-9]', '', 'g') IN (" +
+                            deviceMacs.stream().map(x -> "?").collect(java.util.stream.Collectors.joining(",")) +
+                            ")"
+                    : "";
+
+            String limClause = (limit > 0 && limit < Integer.MAX_VALUE) ? " LIMIT ?" : "";
 
-                    // collect non-empty SSIDs as-is (no upper/trim since normalized)
-                    for (int k = 1; k <= 10; k++) {
-                        String s = rs.getString("ssid_" + k);
+            String sql = """
+                    SELECT
+                        epoch_us(ts) AS ts_us,
+                        CAST(s_lat AS DOUBLE) AS s_lat,
+                        CAST(s_lon AS DOUBLE) AS s_lon,
+                        device_mac,
+                        ssid_1, ssid_2, ssid_3, ssid_4, ssid_5,
+                        ssid_6, ssid_7, ssid_8, ssid_9, ssid_10
+                    FROM %s
+                    WHERE ts BETWEEN make_timestamp(?) AND make_timestamp(?)
+                      AND s_lat BETWEEN ? AND ?
+                      AND s_lon BETWEEN ? AND ?
+                    """.formatted(duck.daysOf("raw_wifi_events_raw", minTs, maxTs)) + macClause + limClause;
+
+            try (Connection conn = duck.borrow();
+                    PreparedStatement ps = conn.prepareStatement(sql)) {
+                int i = 1;
+                ps.setLong(i++, micros(minTs));
+                ps.setLong(i++, micros(maxTs));
+                ps.setDouble(i++, minLat);
+                ps.setDouble(i++, maxLat);
+                ps.setDouble(i++, minLon);
+                ps.setDouble(i++, maxLon);
+
+                if (useMacs) {
+                    for (String mac : deviceMacs)
+                        ps.setString(i++, mac); // same normalization as ProfileLogic.normMac
+                }
+                if (!limClause.isBlank()) {
+                    ps.setInt(i++, limit);
+                }
+
+                WifiScan.Builder out = new WifiScan.Builder();
+                duck.scan(ps, row -> {
+                    // device MAC and SSIDs as-is (normalized at ingest), blank SSIDs dropped
+                    out.row(row.getLong(0), row.getDouble(1), row.getDouble(2), nvl(row.getString(3)));
+                    for (int k = 4; k < 14; k++) {
+                        String s = row.getString(k);
                         if (s != null && !s.isBlank())
-                            e.ssids.add(s);
+                            out.ssid(s);
                     }
-                    out.add(e);
-                }
+                });
+                return out.build();
             }
-            return out;
-        }
 
+        });
     }
 
-    // DuckDbRepo.java
-    public List<LprHit> loadLprByBounds(
+    public LprScan loadLprByBounds(
             Instant minTs,
             Instant maxTs,
             double minLat, double maxLat,
@@ -1018,66 +1508,59 @@ public class DuckDbRepo {
             Set<String> plateNorms, // optional; pass empty set to ignore
             int limit // safety cap
     ) throws SQLException {
+        return metrics.repo("loadLprByBounds", () -> {
 
-        String base = """
-                SELECT
-                  ts,
-                  CAST(lat AS DOUBLE)       AS lat,
-                  CAST(lon AS DOUBLE)       AS lon,
-                  sensor_id,
-                  direction,
-                  plate_state,
-                  plate_raw,
-                  plate_norm
-                FROM lpr
-                WHERE ts BETWEEN ? AND ?
-                  AND lat BETWEEN ? AND ?
-                  AND lon BETWEEN ? AND ?
-                """;
-
-        // Add optional plate filter
-        StringBuilder sql = new StringBuilder(base);
-        if (plateNorms != null && !plateNorms.isEmpty()) {
-            String in = plateNorms.stream().map(s -> "?").collect(java.util.stream.Collectors.joining(","));
-            sql.append(" AND plate_norm IN (").append(in).append(") ");
-        }
-        sql.append(" ORDER BY ts DESC ");
-        if (limit > 0)
-            sql.append(" LIMIT ? ");
-
-        try (PreparedStatement ps = duck.conn().prepareStatement(sql.toString())) {
-            int i = 1;
-            ps.setTimestamp(i++, java.sql.Timestamp.from(minTs));
-            ps.setTimestamp(i++, java.sql.Timestamp.from(maxTs));
-            ps.setDouble(i++, minLat);
-            ps.setDouble(i++, maxLat);
-            ps.setDouble(i++, minLon);
-            ps.setDouble(i++, maxLon);
+            String base = """
+                    SELECT
+                      epoch_us(ts)              AS ts_us,
+                      CAST(lat AS DOUBLE)       AS lat,
+                      CAST(lon AS DOUBLE)       AS lon,
+                      sensor_id,
+                      direction,
+                      plate_state,
+                      plate_raw,
+                      plate_norm
+                    FROM %s
+                    WHERE ts BETWEEN make_timestamp(?) AND make_timestamp(?)
+                      AND lat BETWEEN ? AND ?
+                      AND lon BETWEEN ? AND ?
+                    """.formatted(duck.daysOf("raw_lpr", minTs, maxTs));
 
+            // Add optional plate filter
+            StringBuilder sql = new StringBuilder(base);
             if (plateNorms != null && !plateNorms.isEmpty()) {
-                for (String p : plateNorms)
-                    ps.setString(i++, p);
+                String in = plateNorms.stream().map(s -> "?").collect(java.util.stream.Collectors.joining(","));
+                sql.append(" AND plate_norm IN (").append(in).append(") ");
             }
+            // ties on ts broken by the rest of the row, otherwise DuckDB's parallel sort
+            // hands them back in a different order from run to run
+            sql.append(" ORDER BY ts DESC, sensor_id, plate_norm, lat, lon ");
             if (limit > 0)
-                ps.setInt(i++, limit);
+                sql.append(" LIMIT ? ");
 
-            List<LprHit> out = new ArrayList<>();
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    LprHit h = new LprHit();
-                    h.ts = rs.getTimestamp("ts").toInstant();
-                    h.lat = rs.getDouble("lat");
-                    h.lon = rs.getDouble("lon");
-                    h.sensorId = rs.getString("sensor_id");
-                    h.direction = rs.getString("direction");
-                    h.plateState = rs.getString("plate_state");
-                    h.plateRaw = rs.getString("plate_raw");
-                    h.plateNorm = rs.getString("plate_norm");
-                    out.add(h);
+            try (Connection conn = duck.borrow();
+                    PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+                int i = 1;
+                ps.setLong(i++, micros(minTs));
+                ps.setLong(i++, micros(maxTs));
+                ps.setDouble(i++, minLat);
+                ps.setDouble(i++, maxLat);
+                ps.setDouble(i++, minLon);
+                ps.setDouble(i++, maxLon);
+
+                if (plateNorms != null && !plateNorms.isEmpty()) {
+                    for (String p : plateNorms)
+                        ps.setString(i++, p);
                 }
+                if (limit > 0)
+                    ps.setInt(i++, limit);
+
+                LprScan.Builder out = new LprScan.Builder();
+                duck.scan(ps, row -> out.add(row.getLong(0), row.getDouble(1), row.getDouble(2),
+                        row.getString(3), row.getString(4), row.getString(5), row.getString(6), row.getString(7)));
+                return out.build();
             }
-            return out;
-        }
+        });
     }
 
 }
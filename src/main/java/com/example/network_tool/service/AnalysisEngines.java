@@ -0,0 +1,75 @@
+package com.example.network_tool.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+
+/**
+ * Where each proximity analysis runs (app.analysis.*):
+ * <ul>
+ * <li>jvm: load the raw WifiEvent / LprHit rows inside the ankle bounds and
+ * join them in ProfileLogic (the default)</li>
+ * <li>sql: let DuckDB do the join (DuckDbRepo.load*ForSsn) and only bring
+ * back the finished rows</li>
+ * </ul>
+ * Both produce the same sections; sql pays off when the bounds hold a lot of
+ * wifi / LPR traffic, jvm when the reference grid is already warm and the
+ * windows are small.
+ */
+@Component
+public class AnalysisEngines {
+
+    public enum Engine {
+        JVM, SQL;
+
+        public static Engine parse(String s) {
+            try {
+                return valueOf(s.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("unknown analysis engine '" + s + "', use jvm or sql");
+            }
+        }
+    }
+
+    private final Engine businessesLinked;
+    private final Engine wifiNearby;
+    private final Engine lprSightings;
+
+    @Autowired
+    public AnalysisEngines(@Value("${app.analysis.businessesLinked:jvm}") String businessesLinked,
+            @Value("${app.analysis.wifiNearby:jvm}") String wifiNearby,
+            @Value("${app.analysis.lprSightings:jvm}") String lprSightings) {
+        this(Engine.parse(businessesLinked), Engine.parse(wifiNearby), Engine.parse(lprSightings));
+    }
+
+    public AnalysisEngines(Engine businessesLinked, Engine wifiNearby, Engine lprSightings) {
+        this.businessesLinked = businessesLinked;
+        this.wifiNearby = wifiNearby;
+        this.lprSightings = lprSightings;
+    }
+
+    /** same engine for every analysis */
+    public static AnalysisEngines all(Engine e) {
+        return new AnalysisEngines(e, e, e);
+    }
+
+    public Engine businessesLinked() {
+        return businessesLinked;
+    }
+
+    public Engine wifiNearby() {
+        return wifiNearby;
+    }
+
+    public Engine lprSightings() {
+        return lprSightings;
+    }
+
+    @Override
+    public String toString() {
+        return "businessesLinked=" + businessesLinked + ", wifiNearby=" + wifiNearby
+                + ", lprSightings=" + lprSightings;
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.network_tool.service;
+
+import com.example.network_tool.logic.RelationGraph;
+import com.example.network_tool.logic.RelationGraph.Link;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * How far the network section of a profile reaches into the RelationGraph
+ * (app.network.*): hops out from the POI, which kinds of links to follow, and
+ * the caps that keep a big employer or a busy phone from pulling in half the
+ * city.
+ */
+@Component
+public class NetworkSettings {
+
+    private final RelationGraph.Query query;
+
+    @Autowired
+    public NetworkSettings(@Value("${app.network.maxHops:2}") int maxHops,
+            @Value("${app.network.links:household,employer_addr,coworker,calls}") String links,
+            @Value("${app.network.fanout:25}") int fanout,
+            @Value("${app.network.maxNodes:200}") int maxNodes,
+            @Value("${app.network.minCalls:1}") int minCalls) {
+        this(new RelationGraph.Query(maxHops, parse(links), fanout, maxNodes, minCalls));
+    }
+
+    public NetworkSettings(RelationGraph.Query query) {
+        this.query = query;
+    }
+
+    /** what the defaults in application.yml come to */
+    public static NetworkSettings defaults() {
+        return new NetworkSettings(new RelationGraph.Query(2, RelationGraph.allLinks(), 25, 200, 1));
+    }
+
+    public RelationGraph.Query query() {
+        return query;
+    }
+
+    private static Set<Link> parse(String links) {
+        Set<Link> out = EnumSet.noneOf(Link.class);
+        Arrays.stream(links.split(",")).filter(s -> !s.isBlank()).map(Link::parse).forEach(out::add);
+        return out;
+    }
+
+    @Override
+    public String toString() {
+        return query.toString();
+    }
+}
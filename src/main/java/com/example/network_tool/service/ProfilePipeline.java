@@ -0,0 +1,81 @@
+package com.example.network_tool.service;
+
+import com.example.network_tool.metrics.ProfileMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * One profile run as a small graph of stages. A stage starts as soon as the
+ * stages it depends on are done, so independent loads overlap and wall time
+ * follows the longest chain instead of the sum of every query.
+ * <p>
+ * Query stages and ProfileLogic stages share the one executor. A stage that
+ * queries borrows its own pooled connection inside the repo, so at most
+ * app.db.poolSize of them run side by side and the rest wait for a
+ * connection. Every stage is reported to ProfileMetrics and runs with the
+ * profile's trace active, so the repo calls it makes are attributed to this
+ * profile.
+ */
+final class ProfilePipeline {
+    private final Executor executor;
+    private final ProfileMetrics metrics;
+    private final ProfileMetrics.Trace trace;
+    // every stage started, for cancel(); stage() is only called by the thread
+    // that builds the graph
+    private final List<CompletableFuture<?>> started = new ArrayList<>();
+
+    ProfilePipeline(Executor executor, ProfileMetrics metrics, ProfileMetrics.Trace trace) {
+        this.executor = executor;
+        this.metrics = metrics;
+        this.trace = trace;
+    }
+
+    // body runs once every dep is done, timed under name
+    <T> CompletableFuture<T> stage(String name, Callable<T> body, CompletableFuture<?>... deps) {
+        CompletableFuture<T> f = CompletableFuture.allOf(deps).thenApplyAsync(ignored -> {
+            long t0 = System.nanoTime();
+            T out = null;
+            boolean ok = false;
+            try {
+                out = metrics.within(trace, body);
+                ok = true;
+                return out;
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            } finally {
+                long nanos = System.nanoTime() - t0;
+                metrics.stage(trace, name, nanos, out, ok);
+            }
+        }, executor);
+        started.add(f);
+        return f;
+    }
+
+    // stages not running yet never start; one already running finishes and
+    // its result is dropped
+    void cancel() {
+        for (CompletableFuture<?> f : started)
+            f.cancel(false);
+    }
+
+    // waits for the future and hands back the original failure, not the wrapper
+    static <T> T await(CompletableFuture<T> f) throws Exception {
+        try {
+            return f.join();
+        } catch (CompletionException e) {
+            Throwable c = e.getCause();
+            while (c instanceof CompletionException && c.getCause() != null)
+                c = c.getCause();
+            if (c instanceof Exception ex)
+                throw ex;
+            throw e;
+        }
+    }
+}
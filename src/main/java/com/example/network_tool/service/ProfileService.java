@@ -2,95 +2,426 @@ package com.example.network_tool.service;
 
 import com.example.network_tool.logic.ProfileLogic;
 import com.example.network_tool.mapper.ProfileJsonMapper;
+import com.example.network_tool.metrics.ProfileMetrics;
 import com.example.network_tool.model.Models.*;
 import com.example.network_tool.repo.DuckDbRepo;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.time.Instant;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
-public class ProfileService {
+public class ProfileService implements AutoCloseable {
+        private static final Logger log = LoggerFactory.getLogger(ProfileService.class);
+
         private final DuckDbRepo repo;
         private final ProfileLogic logic;
         private final ProfileJsonMapper mapper;
+        private final ReferenceDataCache refCache;
+        private final ProfileMetrics metrics;
+        private final ExecutorService stageExecutor;
+        private final int batchParallelism;
+        private final boolean includeTimings;
+        private final AnalysisEngines engines;
+        private final NetworkSettings network;
+        private final long crimeWindowMin;
 
         // safety padding for the bounding box
         private static final double BOUNDARY_PADDING_M = 200.0;
 
-        public ProfileService(DuckDbRepo repo, ProfileLogic logic, ProfileJsonMapper mapper) {
+        public ProfileService(DuckDbRepo repo, ProfileLogic logic, ProfileJsonMapper mapper,
+                        ReferenceDataCache refCache, ProfileMetrics metrics, AnalysisEngines engines,
+                        NetworkSettings network,
+                        @Value("${app.profile.stageThreads:8}") int stageThreads,
+                        @Value("${app.batch.parallelism:4}") int batchParallelism,
+                        @Value("${app.profile.includeTimings:false}") boolean includeTimings,
+                        @Value("${app.crime.windowMin:30}") long crimeWindowMin) {
                 this.repo = repo;
                 this.logic = logic;
                 this.mapper = mapper;
+                this.refCache = refCache;
+                this.metrics = metrics;
+                this.batchParallelism = Math.max(1, batchParallelism);
+                this.includeTimings = includeTimings;
+                this.engines = engines;
+                this.network = network;
+                this.crimeWindowMin = crimeWindowMin;
+                AtomicInteger n = new AtomicInteger();
+                this.stageExecutor = Executors.newFixedThreadPool(Math.max(1, stageThreads), r -> {
+                        Thread t = new Thread(r, "profile-stage-" + n.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                });
+        }
+
+        // Spring calls this on shutdown; stages still running are interrupted
+        @Override
+        public void close() {
+                stageExecutor.shutdownNow();
         }
 
+        private static final String NO_RESULT = "{ \"error\": \"no result\" }";
+
         public String profileJson(String ssn) {
+                StringWriter out = new StringWriter();
+                writeProfile(ssn, out, true);
+                return out.toString();
+        }
+
+        /**
+         * Streams the profile to out, each section as soon as it is computed (the
+         * console sees the person and phones while crime matching still runs).
+         * Returns false, after writing the no result document, when there is no
+         * person for the SSN. out is flushed but not closed.
+         */
+        public boolean writeProfile(String ssn, Writer out, boolean pretty) {
                 try {
-                        Person poi = repo.loadPerson(ssn);
-                        if (poi == null)
-                                return "{ \"error\": \"no result\" }";
-
-                        List<Phone> poiPhones = repo.loadPhones(ssn);
-                        List<Employer> poiEmployers = repo.loadEmployers(ssn);
-                        List<Vehicle> poiVehicles = repo.loadVehiclesByDL(poi.dl);
-                        List<AnklePing> ankle = repo.loadAnkle(ssn);
-                        List<Crime> crimes = repo.loadCrimes();
-
-                        // --- Compute ankle time span ---
-                        Instant minTs = ankle.stream().map(AnklePing::ts)
-                                        .min(Comparator.naturalOrder()).orElse(null);
-                        Instant maxTs = ankle.stream().map(AnklePing::ts)
-                                        .max(Comparator.naturalOrder()).orElse(null);
-
-                        // --- Compute ankle location bounding box ---
-                        Bounds box = logic.computeBoundsWithPadding(ankle, BOUNDARY_PADDING_M);
-
-                        // Load all businesses
-                        List<Business> allBusinesses = repo.loadBusinesses();
-
-                        // Load ONLY businesses inside the ankle bounding box
-                        List<Business> businessesInBox = (box == null)
-                                        ? new ArrayList<>()
-                                        : repo.loadBusinessesInBox(box.minLat(), box.maxLat(), box.minLon(),
-                                                        box.maxLon());
-
-                        /*
-                         * 
-                         * List<WifiEvent> wifiEvents = repo.loadWifiEvents();
-                         * List<LprHit> allLpr = repo.loadLpr();
-                         */
-
-                        List<WifiEvent> wifi = repo.loadWifiEventsByBounds(
-                                        minTs, maxTs, box.minLat(), box.maxLat(), box.minLon(), box.maxLon(),
-                                        java.util.Set.of(), Integer.MAX_VALUE);
-
-                        List<LprHit> allLpr = repo.loadLprByBounds(
-                                        minTs, maxTs,
+                        return writeProfile(ssn, out, pretty, metrics.newTrace());
+                } catch (Exception e) {
+                        throw new RuntimeException("Profile query failed", e);
+                }
+        }
+
+        /**
+         * profileJson plus how long each pipeline stage took. Used by the load
+         * harness for its per stage breakdown; json is the same string profileJson
+         * returns.
+         */
+        public TimedProfile profileTimed(String ssn) {
+                try {
+                        ProfileMetrics.Trace trace = metrics.newTrace();
+                        StringWriter out = new StringWriter();
+                        writeProfile(ssn, out, true, trace);
+                        Map<String, Long> stages = new LinkedHashMap<>();
+                        trace.stages().forEach((k, v) -> stages.put(k, v.nanos()));
+                        return new TimedProfile(out.toString(), stages);
+                } catch (Exception e) {
+                        throw new RuntimeException("Profile query failed", e);
+                }
+        }
+
+        private boolean writeProfile(String ssn, Writer out, boolean pretty, ProfileMetrics.Trace trace)
+                        throws Exception {
+                Running r = start(ssn, refCache.get(), trace);
+                if (r == null) {
+                        out.write(NO_RESULT);
+                        out.flush();
+                        return false;
+                }
+                try (JsonGenerator g = mapper.generator(out, pretty)) {
+                        write(g, r);
+                }
+                return true;
+        }
+
+        // renders a started profile; the write time includes waiting for sections
+        // that were still running
+        private void write(JsonGenerator g, Running r) throws Exception {
+                long t0 = System.nanoTime();
+                mapper.writeProfile(g, r);
+                metrics.stage(null, "write", System.nanoTime() - t0, null, true);
+                metrics.profile(r.trace().elapsedNanos(), true);
+                if (log.isDebugEnabled()) {
+                        Map<String, Long> ms = new LinkedHashMap<>();
+                        r.trace().stages().forEach((k, v) -> ms.put(k, v.nanos() / 1_000_000));
+                        log.debug("profile {} stage ms {}", r.poi().ssn, ms);
+                }
+        }
+
+        /**
+         * Profiles every SSN in ssnFile (one per line, blank lines and # comments
+         * skipped) and writes one compact JSON document per line to outFile, in the
+         * order they finish. A profile is streamed into the file once all of its
+         * sections are done, so no batch line is ever held as a String or tree.
+         * The whole batch uses one ReferenceDataCache snapshot (crimes,
+         * businesses and the relation graph); app.batch.parallelism profiles run
+         * at a time. An SSN with no person, or one that fails, gets a
+         * {"ssn":..,"error":..} line instead.
+         */
+        public BatchSummary profileBatch(Path ssnFile, Path outFile) throws IOException {
+                List<String> ssns = new ArrayList<>();
+                for (String line : Files.readAllLines(ssnFile, StandardCharsets.UTF_8)) {
+                        String s = line.trim();
+                        if (!s.isEmpty() && !s.startsWith("#"))
+                                ssns.add(s);
+                }
+
+                long t0 = System.nanoTime();
+                ReferenceDataCache.Snapshot ref;
+                try {
+                        ref = refCache.get();
+                } catch (SQLException e) {
+                        throw new RuntimeException("Loading reference data failed", e);
+                }
+
+                AtomicInteger n = new AtomicInteger();
+                ExecutorService pool = Executors.newFixedThreadPool(batchParallelism, r -> {
+                        Thread t = new Thread(r, "profile-batch-" + n.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                });
+                AtomicInteger written = new AtomicInteger();
+                AtomicInteger notFound = new AtomicInteger();
+                AtomicInteger failed = new AtomicInteger();
+
+                try (BufferedWriter out = Files.newBufferedWriter(outFile, StandardCharsets.UTF_8);
+                                JsonGenerator g = mapper.generator(out, false)) {
+                        // one generator for the whole file; its flushes must not reach
+                        // the disk after every line, the BufferedWriter decides that
+                        g.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+                        // root values are separated by a space unless told otherwise
+                        g.setRootValueSeparator(null);
+                        List<CompletableFuture<Void>> all = new ArrayList<>(ssns.size());
+                        for (String ssn : ssns) {
+                                all.add(CompletableFuture.runAsync(() -> {
+                                        String errorLine;
+                                        try {
+                                                Running r = start(ssn, ref, metrics.newTrace());
+                                                if (r == null) {
+                                                        notFound.incrementAndGet();
+                                                        errorLine = mapper.errorJson(ssn, "no result");
+                                                } else {
+                                                        // wait outside the lock, then only serialization holds it
+                                                        r.awaitAll();
+                                                        synchronized (out) {
+                                                                write(g, r);
+                                                                out.newLine();
+                                                        }
+                                                        written.incrementAndGet();
+                                                        return;
+                                                }
+                                        } catch (Exception e) {
+                                                failed.incrementAndGet();
+                                                log.warn("batch profile {} failed", ssn, e);
+                                                try {
+                                                        errorLine = mapper.errorJson(ssn, String.valueOf(e.getMessage()));
+                                                } catch (Exception e2) {
+                                                        return;
+                                                }
+                                        }
+                                        synchronized (out) {
+                                                try {
+                                                        out.write(errorLine);
+                                                        out.newLine();
+                                                } catch (IOException e) {
+                                                        throw new RuntimeException(e);
+                                                }
+                                        }
+                                }, pool));
+                        }
+                        CompletableFuture.allOf(all.toArray(CompletableFuture[]::new)).join();
+                } finally {
+                        pool.shutdownNow();
+                }
+                return new BatchSummary(ssns.size(), written.get(), notFound.get(), failed.get(),
+                                (System.nanoTime() - t0) / 1_000_000);
+        }
+
+        /**
+         * One profile whose stages are running. The getters wait for their own
+         * stage only, which is what lets the mapper stream sections in order.
+         */
+        private record Running(Person poi, ProfileMetrics.Trace trace, boolean includeTimings,
+                        CompletableFuture<List<Phone>> phonesF,
+                        CompletableFuture<List<Vehicle>> vehiclesF,
+                        CompletableFuture<List<Employer>> employersF,
+                        CompletableFuture<List<OwnedBiz>> ownedF,
+                        CompletableFuture<List<BizVisit>> bizVisitsF,
+                        CompletableFuture<List<WifiSpot>> wifiNearbyF,
+                        CompletableFuture<List<LprView>> lprViewsF,
+                        CompletableFuture<List<CrimeMatch>> crimeMatchesF,
+                        CompletableFuture<PeopleConnections> pcF,
+                        CompletableFuture<List<ConvoLink>> convosF,
+                        CompletableFuture<List<TowerColocation>> towersF,
+                        CompletableFuture<List<NetworkLink>> networkF) implements ProfileJsonMapper.Sections {
+
+                public Person person() { return poi; }
+                public List<Phone> phones() throws Exception { return ProfilePipeline.await(phonesF); }
+                public List<Vehicle> vehicles() throws Exception { return ProfilePipeline.await(vehiclesF); }
+                public List<Employer> employers() throws Exception { return ProfilePipeline.await(employersF); }
+                public List<OwnedBiz> businessesOwned() throws Exception { return ProfilePipeline.await(ownedF); }
+                public List<BizVisit> businessesLinked() throws Exception { return ProfilePipeline.await(bizVisitsF); }
+                public List<WifiSpot> wifiNearby() throws Exception { return ProfilePipeline.await(wifiNearbyF); }
+                public List<LprView> lprSightings() throws Exception { return ProfilePipeline.await(lprViewsF); }
+                public List<CrimeMatch> crimeMatches() throws Exception { return ProfilePipeline.await(crimeMatchesF); }
+                public PeopleConnections peopleConnected() throws Exception { return ProfilePipeline.await(pcF); }
+                public List<ConvoLink> conversations() throws Exception { return ProfilePipeline.await(convosF); }
+                public List<TowerColocation> towerColocations() throws Exception { return ProfilePipeline.await(towersF); }
+                public List<NetworkLink> network() throws Exception { return ProfilePipeline.await(networkF); }
+                public ProfileMetrics.Trace timings() { return includeTimings ? trace : null; }
+
+                void awaitAll() throws Exception {
+                        ProfilePipeline.await(CompletableFuture.allOf(phonesF, vehiclesF, employersF, ownedF,
+                                        bizVisitsF, wifiNearbyF, lprViewsF, crimeMatchesF, pcF, convosF, towersF,
+                                        networkF));
+                }
+        }
+
+        // starts every stage of the profile and returns once the person is known;
+        // null when there is no person for the SSN. The trace collects stage and
+        // repo timings; with app.profile.includeTimings they are written as _timings
+        private Running start(String ssn, ReferenceDataCache.Snapshot ref, ProfileMetrics.Trace trace)
+                        throws Exception {
+                ProfilePipeline p = new ProfilePipeline(stageExecutor, metrics, trace);
+                // everything keyed only by SSN starts right away
+                var poiF = p.stage("loadPerson", () -> repo.loadPerson(ssn));
+                var phonesF = p.stage("loadPhones", () -> repo.loadPhones(ssn));
+                var employersF = p.stage("loadEmployers", () -> repo.loadEmployers(ssn));
+                var ankleF = p.stage("loadAnkleTrack", () -> repo.loadAnkleTrack(ssn));
+                // reference data comes from the cache, nothing to load
+                var crimesF = CompletableFuture.completedFuture(ref.crimes());
+                var allBizF = CompletableFuture.completedFuture(ref.businesses());
+                var ownedF = p.stage("loadOwnedBusinessesBySsn", () -> repo.loadOwnedBusinessesBySsn(ssn));
+                var convosF = p.stage("loadConversations", () -> repo.loadConversations(ssn));
+                var towersF = p.stage("loadTowerColocations",
+                                () -> repo.loadTowerColocations(ssn, Consts.TOWER_MINUTES, 50));
+                var networkF = p.stage("relatedNetwork",
+                                () -> logic.relatedNetwork(repo, ref.graph(), ssn, network.query()));
+
+                Person poi = ProfilePipeline.await(poiF);
+                if (poi == null) {
+                        // the SSN-only stages are of no use now, free their threads and connections
+                        p.cancel();
+                        metrics.profile(trace.elapsedNanos(), false);
+                        return null;
+                }
+
+                var vehiclesF = p.stage("loadVehiclesByDL", () -> repo.loadVehiclesByDL(poi.dl), poiF);
+
+                // --- ankle time span + location bounding box ---
+                var boxF = p.stage("computeBounds",
+                                () -> logic.computeBoundsWithPadding(ankleF.join(), BOUNDARY_PADDING_M), ankleF);
+
+                // jvm: pull every wifi / LPR row inside the ankle bounds and join here.
+                // sql: DuckDB does the join (see AnalysisEngines); wifi still loads the
+                // POI's own device hits, matchCrimesByWifiPhones needs them
+                boolean wifiSql = engines.wifiNearby() == AnalysisEngines.Engine.SQL;
+                boolean lprSql = engines.lprSightings() == AnalysisEngines.Engine.SQL;
+
+                var wifiF = p.stage("loadWifiEventsByBounds", () -> {
+                        AnkleTrack ankle = ankleF.join();
+                        Bounds box = boxF.join();
+                        if (box == null)
+                                return WifiScan.of(List.of());
+                        Set<String> macs = Set.of();
+                        if (wifiSql) {
+                                macs = phoneMacs(phonesF.join());
+                                if (macs.isEmpty())
+                                        return WifiScan.of(List.of());
+                        }
+                        return repo.loadWifiEventsByBounds(
+                                        ankle.ts(0), ankle.ts(ankle.size() - 1),
                                         box.minLat(), box.maxLat(), box.minLon(), box.maxLon(),
-                                        java.util.Set.of(),
-                                        0);
+                                        macs, Integer.MAX_VALUE);
+                }, ankleF, boxF, phonesF);
 
-                        List<OwnedBiz> owned = repo.loadOwnedBusinessesBySsn(ssn);
-                        List<BizVisit> bizVisits = logic.businessesLinked(ankle, businessesInBox);
+                var lprF = lprSql ? CompletableFuture.completedFuture(LprScan.of(List.of()))
+                                : p.stage("loadLprByBounds", () -> {
+                                        AnkleTrack ankle = ankleF.join();
+                                        Bounds box = boxF.join();
+                                        if (box == null)
+                                                return LprScan.of(List.of());
+                                        return repo.loadLprByBounds(
+                                                        ankle.ts(0), ankle.ts(ankle.size() - 1),
+                                                        box.minLat(), box.maxLat(), box.minLon(), box.maxLon(),
+                                                        Set.of(),
+                                                        0);
+                                }, ankleF, boxF);
 
-                        List<WifiSpot> wifiNearby = logic.wifiNearby(ankle, poiPhones, wifi);
-                        List<LprView> lprViews = logic.lprSightings(ankle, poiVehicles, allLpr);
+                var bizVisitsF = engines.businessesLinked() == AnalysisEngines.Engine.SQL
+                                ? p.stage("businessesLinked", () -> repo.loadBusinessesLinkedForSsn(ssn,
+                                                Consts.BIZ_RADIUS_M, Consts.MIN_VISIT_HOURS, 10))
+                                // cached grid over every located business, no per profile box query
+                                : p.stage("businessesLinked",
+                                                () -> logic.businessesLinked(ankleF.join(), ref.bizGrid()), ankleF);
+                var wifiNearbyF = wifiSql
+                                ? p.stage("wifiNearby", () -> {
+                                        AnkleTrack ankle = ankleF.join();
+                                        Bounds box = boxF.join();
+                                        if (box == null)
+                                                return List.<WifiSpot>of();
+                                        return repo.loadWifiNearbyForSsn(ssn,
+                                                        ankle.ts(0), ankle.ts(ankle.size() - 1), box,
+                                                        phoneMacs(phonesF.join()),
+                                                        Consts.WIFI_RADIUS_M, Consts.WIFI_MINUTES, 200);
+                                }, ankleF, boxF, phonesF)
+                                : p.stage("wifiNearby",
+                                                () -> logic.wifiNearby(ankleF.join(), phonesF.join(), wifiF.join()),
+                                                ankleF, phonesF, wifiF);
+                var lprViewsF = lprSql
+                                ? p.stage("lprSightings", () -> {
+                                        AnkleTrack ankle = ankleF.join();
+                                        Bounds box = boxF.join();
+                                        if (box == null)
+                                                return List.<LprView>of();
+                                        return repo.loadLprSightingsForSsn(ssn,
+                                                        ankle.ts(0), ankle.ts(ankle.size() - 1), box,
+                                                        plates(vehiclesF.join()),
+                                                        Consts.LPR_RADIUS_M, Consts.LPR_MINUTES, 500);
+                                }, ankleF, boxF, vehiclesF)
+                                : p.stage("lprSightings",
+                                                () -> logic.lprSightings(ankleF.join(), vehiclesF.join(), lprF.join()),
+                                                ankleF, vehiclesF, lprF);
 
-                        List<CrimeMatch> crimeAnkle = logic.matchCrimesSpatial(ankle, crimes);
-                        List<CrimeMatch> crimeLpr = logic.matchCrimesByLpr(lprViews, crimes);
-                        List<CrimeMatch> crimeWifi = logic.matchCrimesByWifiPhones(poiPhones, wifi, crimes);
-                        List<CrimeMatch> crimeMatches = logic.mergeCrimeMatches(
-                                        logic.mergeCrimeMatches(crimeAnkle, crimeLpr), crimeWifi);
+                var crimeAnkleF = p.stage("matchCrimesSpatial",
+                                () -> logic.matchCrimesSpatial(ankleF.join(), crimesF.join(), crimeWindowMin), ankleF, crimesF);
+                var crimeLprF = p.stage("matchCrimesByLpr",
+                                () -> logic.matchCrimesByLpr(lprViewsF.join(), crimesF.join(), crimeWindowMin), lprViewsF, crimesF);
+                var crimeWifiF = p.stage("matchCrimesByWifiPhones",
+                                () -> logic.matchCrimesByWifiPhones(phonesF.join(), wifiF.join(), crimesF.join(),
+                                                crimeWindowMin),
+                                phonesF, wifiF, crimesF);
+                var crimeMatchesF = p.stage("mergeCrimeMatches", () -> logic.mergeCrimeMatches(
+                                logic.mergeCrimeMatches(crimeAnkleF.join(), crimeLprF.join()), crimeWifiF.join()),
+                                crimeAnkleF, crimeLprF, crimeWifiF);
 
-                        PeopleConnections pc = logic.findRelatedPeople(repo, poi, poiEmployers, allBusinesses);
-                        return mapper.buildProfileJson(poi, poiPhones, poiVehicles, poiEmployers,
-                                        owned, bizVisits, wifiNearby, lprViews, crimeMatches, pc);
+                var pcF = p.stage("findRelatedPeople",
+                                () -> logic.findRelatedPeople(repo, poi, employersF.join(), allBizF.join()),
+                                employersF, allBizF);
 
-                } catch (Exception e) {
-                        throw new RuntimeException("Profile query failed", e);
+                return new Running(poi, trace, includeTimings, phonesF, vehiclesF, employersF, ownedF, bizVisitsF,
+                                wifiNearbyF, lprViewsF, crimeMatchesF, pcF, convosF, towersF, networkF);
+        }
+
+        // the keys ProfileLogic matches on: MAC as hex digits only, plate trimmed
+        private static Set<String> phoneMacs(List<Phone> phones) {
+                Set<String> out = new HashSet<>();
+                for (Phone p : phones) {
+                        String mac = p.mac == null ? "" : p.mac.toUpperCase().replaceAll("[^A-F0-9]", "");
+                        if (!mac.isBlank())
+                                out.add(mac);
+                }
+                return out;
+        }
+
+        private static Set<String> plates(List<Vehicle> vehicles) {
+                Set<String> out = new HashSet<>();
+                for (Vehicle v : vehicles) {
+                        String plate = v.plate == null ? "" : v.plate.trim().toUpperCase();
+                        if (!plate.isBlank())
+                                out.add(plate);
                 }
+                return out;
         }
 
 }
@@ -0,0 +1,170 @@
+package com.example.network_tool.service;
+
+import com.example.network_tool.db.DuckDb;
+import com.example.network_tool.logic.RelationGraph;
+import com.example.network_tool.logic.SpatialGrid;
+import com.example.network_tool.model.Models.*;
+import com.example.network_tool.repo.DuckDbRepo;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Crimes and businesses are whole-table reads that every profile needs and
+ * that only change when their CSV is re-ingested. This keeps one loaded copy
+ * (plus the business SpatialGrid) and hands the same snapshot to every
+ * request until DuckDb bumps the version of raw_crime_reports or
+ * raw_businesses, then rebuilds just the part that changed. The
+ * RelationGraph is the third part, rebuilt when people, tax records, phone
+ * contracts or telco change.
+ * <p>
+ * The lists are unmodifiable, the Crime/Business objects in them are shared
+ * between requests, so nothing downstream may write to them.
+ */
+@Component
+public class ReferenceDataCache {
+    private static final Logger log = LoggerFactory.getLogger(ReferenceDataCache.class);
+
+    static final String CRIMES_TABLE = "raw_crime_reports";
+    static final String BUSINESSES_TABLE = "raw_businesses";
+    static final List<String> GRAPH_TABLES = List.of("raw_people", "raw_tax_employers", "raw_phone_contracts",
+            "raw_telco");
+
+    /**
+     * businesses: full table as loadBusinesses returns it (upper case biz_id),
+     * used for the related people search. bizGrid: every business with a
+     * location, as loadBusinessesInBox returns them, for ankle proximity.
+     * graph: households, employers and calls for the network section.
+     */
+    public record Snapshot(List<Crime> crimes, List<Business> businesses, SpatialGrid<Business> bizGrid,
+            RelationGraph graph) {
+    }
+
+    // a miss is a rebuild: misses counts both
+    public record Stats(long hits, long misses, long lastRebuildMs, long totalRebuildMs) {
+    }
+
+    private record Entry(Snapshot snap, long crimesVersion, long bizVersion, long graphVersion) {
+    }
+
+    private final DuckDbRepo repo;
+    private final DuckDb duck;
+    private volatile Entry current;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private volatile long lastRebuildMs;
+    private final AtomicLong totalRebuildMs = new AtomicLong();
+
+    public ReferenceDataCache(DuckDbRepo repo, DuckDb duck, MeterRegistry registry) {
+        this.repo = repo;
+        this.duck = duck;
+        FunctionCounter.builder("refdata.cache.hits", hits, AtomicLong::get)
+                .description("profiles served the cached reference data")
+                .register(registry);
+        FunctionCounter.builder("refdata.cache.misses", misses, AtomicLong::get)
+                .description("reference data rebuilds after a table version moved")
+                .register(registry);
+        Gauge.builder("refdata.cache.rebuild.ms", this, c -> c.lastRebuildMs)
+                .description("time the last reference data rebuild took")
+                .register(registry);
+    }
+
+    public Snapshot get() throws SQLException {
+        Entry e = current;
+        if (fresh(e)) {
+            hits.incrementAndGet();
+            return e.snap();
+        }
+        synchronized (this) {
+            e = current;
+            if (fresh(e)) {
+                // someone else rebuilt while we waited
+                hits.incrementAndGet();
+                return e.snap();
+            }
+            misses.incrementAndGet();
+            current = rebuild(e);
+            return current.snap();
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(hits.get(), misses.get(), lastRebuildMs, totalRebuildMs.get());
+    }
+
+    private boolean fresh(Entry e) {
+        return e != null
+                && e.crimesVersion() == duck.version(CRIMES_TABLE)
+                && e.bizVersion() == duck.version(BUSINESSES_TABLE)
+                && e.graphVersion() == graphVersion();
+    }
+
+    // versions only ever go up, so their sum moves whenever any of them does
+    private long graphVersion() {
+        long v = 0;
+        for (String t : GRAPH_TABLES)
+            v += duck.version(t);
+        return v;
+    }
+
+    // reloads only the side whose table version moved. Versions are read before
+    // loading, so a refresh that lands mid-load just causes one more rebuild
+    private Entry rebuild(Entry old) throws SQLException {
+        long t0 = System.nanoTime();
+        long cv = duck.version(CRIMES_TABLE);
+        long bv = duck.version(BUSINESSES_TABLE);
+        long gv = graphVersion();
+
+        List<Crime> crimes;
+        if (old != null && old.crimesVersion() == cv)
+            crimes = old.snap().crimes();
+        else
+            crimes = List.copyOf(repo.loadCrimes());
+
+        List<Business> businesses;
+        SpatialGrid<Business> grid;
+        if (old != null && old.bizVersion() == bv) {
+            businesses = old.snap().businesses();
+            grid = old.snap().bizGrid();
+        } else {
+            businesses = List.copyOf(repo.loadBusinesses());
+            List<Business> located = repo.loadBusinessesInBox(-90, 90, -180, 180);
+            grid = new SpatialGrid<>(located, b -> b.lat, b -> b.lon, Consts.BIZ_RADIUS_M);
+        }
+
+        RelationGraph graph;
+        if (old != null && old.graphVersion() == gv)
+            graph = old.snap().graph();
+        else
+            graph = buildGraph();
+
+        long ms = (System.nanoTime() - t0) / 1_000_000;
+        lastRebuildMs = ms;
+        totalRebuildMs.addAndGet(ms);
+        log.info("reference data rebuilt in {} ms: {} crimes (v{}), {} businesses (v{}), {} grid cells, "
+                + "graph {} people / {} adjacency entries (v{})", ms, crimes.size(), cv, businesses.size(), bv,
+                grid.cellCount(), graph.nodeCount(), graph.edgeCount(), gv);
+        return new Entry(new Snapshot(crimes, businesses, grid, graph), cv, bv, gv);
+    }
+
+    private RelationGraph buildGraph() throws SQLException {
+        RelationGraph.Builder b = new RelationGraph.Builder(repo.loadGraphNodes());
+        for (GraphLink l : repo.loadResidences())
+            b.residence(l.a(), l.b());
+        for (GraphLink l : repo.loadWorkplaces())
+            b.workplace(l.a(), l.b());
+        for (GraphLink l : repo.loadEmployments())
+            b.employment(l.a(), l.b());
+        for (GraphLink l : repo.loadCallPairs())
+            b.call(l.a(), l.b(), l.weight());
+        return b.build();
+    }
+}
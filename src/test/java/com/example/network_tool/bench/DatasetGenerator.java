@@ -0,0 +1,668 @@
+package com.example.network_tool.bench;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Writes a full synthetic data directory (the same file names and headers
+ * DuckDb ingests) for the load harness and the tests that need a DuckDb.
+ * <p>
+ * Per unit of scale: 2000 people in households of 1-4, their phones, vehicles
+ * and tax filings, 5 monitored subjects, and one day of WIFI, LPR and telco
+ * events. Subject 0 keeps the bundled ankle track and Jared Combs' SSN; the
+ * other subjects replay that track shifted a few km and jittered, each in its
+ * own ankle monitor file. A share of
+ * the WIFI / LPR / telco events is placed on subject tracks so the proximity
+ * stages have real work, the rest is city wide background. Businesses and
+ * crime reports are the bundled files repeated scale times with jitter, plus
+ * a couple of crimes planted on each subject's track. Cell sites are copied.
+ * <p>
+ * Same seed and scale always give the same files.
+ */
+public final class DatasetGenerator {
+
+    static final String DAY = "2016-11-11";
+    static final String FIRST_SUBJECT_SSN = "901-NI-6283";
+    // bumped when the files written change shape, LoadHarness then regenerates
+    // the data dirs it kept (2: one ankle monitor file per subject)
+    static final int FORMAT = 2;
+
+    static final int PEOPLE_PER_SCALE = 2000;
+    static final int SUBJECTS_PER_SCALE = 5;
+    static final int WIFI_BACKGROUND_PER_SCALE = 30_000;
+    static final int LPR_BACKGROUND_PER_SCALE = 20_000;
+    static final int CALLS_PER_SCALE = 20_000;
+
+    private static final double M_PER_DEG = 111000.0;
+    private static final double MIN_LAT = 39.20, MAX_LAT = 39.37, MIN_LON = -76.72, MAX_LON = -76.53;
+
+    private static final String[] FIRST = { "JAMES", "MARY", "ROBERT", "PATRICIA", "JOHN", "JENNIFER", "MICHAEL",
+            "LINDA", "DAVID", "ELIZABETH", "WILLIAM", "BARBARA", "RICHARD", "SUSAN", "JOSEPH", "JESSICA", "THOMAS",
+            "SARAH", "CHARLES", "KAREN", "DANIEL", "NANCY", "MARCUS", "LISA", "ANTHONY", "BETTY", "MARK", "SANDRA" };
+    private static final String[] LAST = { "SMITH", "JOHNSON", "WILLIAMS", "BROWN", "JONES", "GARCIA", "MILLER",
+            "DAVIS", "WILSON", "ANDERSON", "TAYLOR", "THOMAS", "MOORE", "JACKSON", "MARTIN", "LEE", "THOMPSON",
+            "WHITE", "HARRIS", "CLARK", "LEWIS", "ROBINSON", "WALKER", "YOUNG", "ALLEN", "KING", "WRIGHT", "SCOTT",
+            "GREEN", "BAKER", "ADAMS", "NELSON", "HILL", "CAMPBELL", "MITCHELL", "ROBERTS", "CARTER", "PHILLIPS" };
+    private static final String[] STREETS = { "MAIN", "CHARLES", "EDMONDSON", "NORTH", "FULTON", "MONROE", "PRATT",
+            "LOMBARD", "BALTIMORE", "FAYETTE", "LAFAYETTE", "PRESSTMAN", "WALBROOK", "BAKER", "MOSHER", "LANVALE" };
+    private static final String[][] PHONES = { { "APPLE", "IPHONE 6" }, { "APPLE", "IPHONE 7" },
+            { "SAMSUNG", "GALAXY S7" }, { "LG", "G5" }, { "MOTOROLA", "MOTO G" } };
+    private static final String[][] CARS = { { "FORD", "F150" }, { "HONDA", "CIVIC" }, { "TOYOTA", "CAMRY" },
+            { "CHEVROLET", "MALIBU" }, { "NISSAN", "ALTIMA" }, { "DODGE", "CHARGER" } };
+    private static final String[] COLORS = { "BLACK", "WHITE", "SILVER", "RED", "BLUE", "GRAY" };
+    private static final String[] DIRECTIONS = { "N", "S", "E", "W" };
+    private static final String[] CRIMES = { "a serious assault", "a robbery", "a burglary", "a shooting",
+            "an auto theft" };
+
+    private static final DateTimeFormatter SQL_TS = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final DateTimeFormatter ANKLE_TS = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSXXX");
+    private static final ZoneOffset EST = ZoneOffset.ofHours(-5);
+
+    /** what was written; ssns / subjectSsns are the sample pools for the harness */
+    public record Summary(int people, int phones, int vehicles, int subjects, long anklePings, long wifiEvents,
+            long lprHits, long telcoRows, int crimes, int businesses, List<String> ssns, List<String> subjectSsns) {
+    }
+
+    private record Person(String ssn, String first, String middle, String last, String dl, String address,
+            double homeLat, double homeLon, int household) {
+    }
+
+    private record Phone(int person, String msisdn, String imsi, String mac) {
+    }
+
+    private record Vehicle(int person, String plate) {
+    }
+
+    private record Ping(LocalDateTime ts, double lat, double lon) {
+    }
+
+    private record Tower(String mcc, String mnc, String lac, String id, double lat, double lon) {
+    }
+
+    private final Path source;
+    private final Path out;
+    private final int scale;
+    private final Random rnd;
+
+    private final List<Person> people = new ArrayList<>();
+    private final List<Phone> phones = new ArrayList<>();
+    private final List<List<Integer>> phonesOf = new ArrayList<>();
+    private final List<Vehicle> vehicles = new ArrayList<>();
+    private final List<List<Integer>> vehiclesOf = new ArrayList<>();
+    private final List<List<Ping>> tracks = new ArrayList<>();
+    private final List<Tower> towers = new ArrayList<>();
+
+    private DatasetGenerator(Path source, Path out, int scale, long seed) {
+        this.source = source;
+        this.out = out;
+        this.scale = Math.max(1, scale);
+        this.rnd = new Random(seed);
+    }
+
+    /** source: the bundled data/ dir (ankle track, businesses, crimes, cell sites) */
+    public static Summary generate(Path source, Path out, int scale, long seed) throws IOException, SQLException {
+        Path ankle = source.resolve("JaredCombs_Ankle_Monitor.csv");
+        if (!Files.isRegularFile(ankle))
+            throw new IllegalStateException("bundled CSVs not found in " + source.toAbsolutePath()
+                    + ", run from the project root or pass --source=<dir>");
+        Files.createDirectories(out);
+        return new DatasetGenerator(source, out, scale, seed).run();
+    }
+
+    private Summary run() throws IOException, SQLException {
+        loadTowers();
+        makePeople();
+        int businesses;
+        int crimes;
+        try (Connection c = DriverManager.getConnection("jdbc:duckdb:")) {
+            businesses = writeBusinesses(c);
+            crimes = writeCrimesBase(c);
+        }
+        writePeople();
+        writePhones();
+        writeVehicles();
+        writeTax();
+        long pings = writeAnkle();
+        crimes += appendPlantedCrimes();
+        long wifi = writeWifi();
+        long lpr = writeLpr();
+        long telco = writeTelco();
+        Files.copy(source.resolve("CellSiteLocations.csv"), out.resolve("CellSiteLocations.csv"),
+                StandardCopyOption.REPLACE_EXISTING);
+
+        List<String> ssns = people.stream().map(Person::ssn).toList();
+        return new Summary(people.size(), phones.size(), vehicles.size(), tracks.size(), pings, wifi, lpr, telco,
+                crimes, businesses, ssns, ssns.subList(0, tracks.size()));
+    }
+
+    // ---------- people and what hangs off them ----------
+
+    private void makePeople() {
+        int n = PEOPLE_PER_SCALE * scale;
+        int household = 0;
+        String address = null;
+        double hLat = 0, hLon = 0;
+        String householdLast = null;
+        int left = 0;
+        for (int i = 0; i < n; i++) {
+            if (left == 0) {
+                household++;
+                left = 1 + rnd.nextInt(4);
+                address = (100 + rnd.nextInt(4900)) + " " + pick(STREETS) + " ST BALTIMORE MD";
+                hLat = MIN_LAT + rnd.nextDouble() * (MAX_LAT - MIN_LAT);
+                hLon = MIN_LON + rnd.nextDouble() * (MAX_LON - MIN_LON);
+                householdLast = pick(LAST);
+            }
+            left--;
+            String ssn = i == 0 ? FIRST_SUBJECT_SSN : String.format("%03d-BN-%04d", 100 + i / 10000, i % 10000);
+            String first = i == 0 ? "JARED" : pick(FIRST);
+            String middle = i == 0 ? "SKYLER" : rnd.nextInt(3) == 0 ? "" : pick(FIRST);
+            String last = i == 0 ? "COMBS" : rnd.nextInt(4) == 0 ? pick(LAST) : householdLast;
+            people.add(new Person(ssn, first, middle, last, String.format("DL%08d", i), address, hLat, hLon,
+                    household));
+
+            List<Integer> ph = new ArrayList<>();
+            int nPhones = rnd.nextInt(10) < 3 ? 2 : 1;
+            for (int k = 0; k < nPhones; k++) {
+                int id = phones.size();
+                ph.add(id);
+                phones.add(new Phone(i,
+                        String.format("(%03d) %03d-%04d", 410 + id / 8_000_000, 200 + (id / 10000) % 800, id % 10000),
+                        Long.toString(310_700_000_000_000L + id),
+                        String.format("02:00:%02X:%02X:%02X:%02X", (id >> 24) & 0xff, (id >> 16) & 0xff,
+                                (id >> 8) & 0xff, id & 0xff)));
+            }
+            phonesOf.add(ph);
+
+            List<Integer> vs = new ArrayList<>();
+            int r = rnd.nextInt(100);
+            int nCars = r < 15 ? 2 : r < 80 ? 1 : 0;
+            if (i == 0)
+                nCars = Math.max(1, nCars);
+            for (int k = 0; k < nCars; k++) {
+                vs.add(vehicles.size());
+                vehicles.add(new Vehicle(i, String.format("V%07d", vehicles.size())));
+            }
+            vehiclesOf.add(vs);
+        }
+    }
+
+    private void writePeople() throws IOException {
+        try (BufferedWriter w = writer("DepartmentMotorVehicles.csv")) {
+            w.write("ssn,firstname,middlename,lastname,driverslicense,address\n");
+            for (Person p : people)
+                row(w, p.ssn(), p.first(), p.middle(), p.last(), p.dl(), p.address());
+        }
+    }
+
+    private void writePhones() throws IOException {
+        try (BufferedWriter w = writer("HomeLocationRegistry.csv")) {
+            w.write("ssn,msisdn,make,model,imsi,mcc,mnc,mac,contract_start_date,contract_term\n");
+            for (Phone ph : phones) {
+                String[] device = pick(PHONES);
+                row(w, people.get(ph.person()).ssn(), ph.msisdn(), device[0], device[1], ph.imsi(), "310", "70",
+                        ph.mac(), String.format("201%d-%02d-01", 3 + rnd.nextInt(4), 1 + rnd.nextInt(12)),
+                        rnd.nextBoolean() ? "24" : "12");
+            }
+        }
+    }
+
+    private void writeVehicles() throws IOException {
+        try (BufferedWriter w = writer("VehicleRegistration.csv")) {
+            w.write("Owner Drivers License,Owner First Name,Owner Middle Name,Owner Last Name,Vehicle Make,"
+                    + "Vehicle Model,Vehicle Year,Vehicle Color,State Registered,License Plate,VIN\n");
+            for (int i = 0; i < vehicles.size(); i++) {
+                Vehicle v = vehicles.get(i);
+                Person p = people.get(v.person());
+                String[] car = pick(CARS);
+                row(w, p.dl(), p.first(), p.middle(), p.last(), car[0], car[1],
+                        Integer.toString(2000 + rnd.nextInt(17)), pick(COLORS), "MD", v.plate(),
+                        String.format("1FT%014d", i));
+            }
+        }
+    }
+
+    // most people file with one employer, some with a second part time one;
+    // a few employers sit at a household address
+    private void writeTax() throws IOException {
+        int employers = Math.max(10, people.size() / 25);
+        String[] names = new String[employers];
+        String[] addrs = new String[employers];
+        for (int e = 0; e < employers; e++) {
+            names[e] = pick(LAST) + " " + pick(new String[] { "LLC", "INC", "AND SONS", "SERVICES", "GROUP" })
+                    + " " + e;
+            addrs[e] = rnd.nextInt(50) == 0
+                    ? people.get(rnd.nextInt(people.size())).address()
+                    : (1 + rnd.nextInt(2000)) + " " + pick(STREETS) + " AVE BALTIMORE MD";
+        }
+        try (BufferedWriter w = writer("TaxData.csv")) {
+            w.write("SSN,Employer,Employer Address,Employer EIN,Address,First Name,Middle Name,Last Name,"
+                    + "Part Time,Filed,Paid,Garnishment,Investigation\n");
+            for (Person p : people) {
+                if (rnd.nextInt(100) >= 85)
+                    continue;
+                int jobs = rnd.nextInt(10) == 0 ? 2 : 1;
+                for (int j = 0; j < jobs; j++) {
+                    int e = rnd.nextInt(employers);
+                    row(w, p.ssn(), names[e], addrs[e], String.format("%02d-%07d", e % 100, e), p.address(),
+                            p.first(), p.middle(), p.last(), Boolean.toString(j > 0), "true",
+                            Boolean.toString(rnd.nextInt(10) > 0), Boolean.toString(rnd.nextInt(50) == 0),
+                            Boolean.toString(rnd.nextInt(100) == 0));
+                }
+            }
+        }
+    }
+
+    // ---------- ankle ----------
+
+    // one <First><Last>_Ankle_Monitor.csv per subject, like the real feed;
+    // names repeat, so all but subject 0 get their number appended
+    private long writeAnkle() throws IOException {
+        List<Ping> base = readBundledTrack();
+        int subjects = Math.min(people.size(), SUBJECTS_PER_SCALE * scale);
+        // a rerun into the same dir must not leave the old files in the glob
+        try (var old = Files.newDirectoryStream(out, "*_Ankle_Monitor.csv")) {
+            for (Path f : old)
+                Files.delete(f);
+        }
+        long n = 0;
+        for (int s = 0; s < subjects; s++) {
+            // subject 0 is the real track, the rest are shifted copies
+            double dLat = s == 0 ? 0 : (rnd.nextDouble() - 0.5) * 6000 / M_PER_DEG;
+            double dLon = s == 0 ? 0 : (rnd.nextDouble() - 0.5) * 6000 / M_PER_DEG;
+            List<Ping> track = new ArrayList<>(base.size());
+            for (Ping b : base) {
+                double lat = b.lat() + dLat + (s == 0 ? 0 : (rnd.nextDouble() - 0.5) * 20 / M_PER_DEG);
+                double lon = b.lon() + dLon + (s == 0 ? 0 : (rnd.nextDouble() - 0.5) * 20 / M_PER_DEG);
+                track.add(new Ping(b.ts(), lat, lon));
+            }
+            tracks.add(track);
+            Person p = people.get(s);
+            String file = capitalized(p.first()) + capitalized(p.last()) + (s == 0 ? "" : Integer.toString(s))
+                    + "_Ankle_Monitor.csv";
+            try (BufferedWriter w = writer(file)) {
+                w.write("datetime,location_x,location_y,firstname,lastname,middlename,ssn\n");
+                for (Ping pg : track) {
+                    row(w, OffsetDateTime.of(pg.ts(), ZoneOffset.UTC).withOffsetSameInstant(EST).format(ANKLE_TS),
+                            Double.toString(pg.lon()), Double.toString(pg.lat()), p.first(), p.last(), p.middle(),
+                            p.ssn());
+                    n++;
+                }
+            }
+        }
+        return n;
+    }
+
+    private static String capitalized(String name) {
+        return name.isEmpty() ? name : name.charAt(0) + name.substring(1).toLowerCase();
+    }
+
+    // bundled track as UTC pings, in file order
+    private List<Ping> readBundledTrack() throws IOException {
+        List<Ping> out = new ArrayList<>();
+        List<String> lines = Files.readAllLines(source.resolve("JaredCombs_Ankle_Monitor.csv"), StandardCharsets.UTF_8);
+        for (String line : lines.subList(1, lines.size())) {
+            String[] f = line.split(",");
+            if (f.length < 3)
+                continue;
+            LocalDateTime ts = OffsetDateTime.parse(f[0].trim()).withOffsetSameInstant(ZoneOffset.UTC)
+                    .toLocalDateTime();
+            out.add(new Ping(ts, Double.parseDouble(f[2].trim()), Double.parseDouble(f[1].trim())));
+        }
+        return out;
+    }
+
+    // ---------- WIFI / LPR / telco ----------
+
+    // every 40th subject ping shows one of the subject's phones at a sensor close
+    // by; background is other people's phones, half of it on subject tracks
+    private long writeWifi() throws IOException {
+        int sensors = 200 * scale;
+        long n = 0;
+        try (BufferedWriter w = writer("WIFI_" + DAY + ".csv")) {
+            w.write("datetime,mac,sensor_id,sensor_latitude,sensor_longitude,"
+                    + "ssid_1,ssid_2,ssid_3,ssid_4,ssid_5,ssid_6,ssid_7,ssid_8,ssid_9,ssid_10\n");
+            for (int s = 0; s < tracks.size(); s++) {
+                List<Ping> track = tracks.get(s);
+                List<Integer> mine = phonesOf.get(s);
+                for (int i = 0; i < track.size(); i += 40) {
+                    Phone ph = phones.get(mine.get(rnd.nextInt(mine.size())));
+                    wifiRow(w, near(track.get(i), 30, 60), ph.mac(), sensors);
+                    n++;
+                }
+            }
+            for (int i = 0; i < WIFI_BACKGROUND_PER_SCALE * scale; i++) {
+                Phone ph = phones.get(rnd.nextInt(phones.size()));
+                wifiRow(w, i % 2 == 0 ? onTrack(60, 300) : anywhere(), ph.mac(), sensors);
+                n++;
+            }
+        }
+        return n;
+    }
+
+    private void wifiRow(BufferedWriter w, Ping at, String mac, int sensors) throws IOException {
+        String[] f = new String[15];
+        f[0] = at.ts().format(SQL_TS);
+        f[1] = mac;
+        f[2] = "S" + rnd.nextInt(sensors);
+        f[3] = Double.toString(at.lat());
+        f[4] = Double.toString(at.lon());
+        int ssids = rnd.nextInt(5);
+        for (int k = 0; k < 10; k++)
+            f[5 + k] = k < ssids ? "NET" + rnd.nextInt(500) : "";
+        row(w, f);
+    }
+
+    // subject plates every 200 pings, background is random plates
+    private long writeLpr() throws IOException {
+        int cameras = 100 * scale;
+        long n = 0;
+        try (BufferedWriter w = writer("LPR_" + DAY + ".csv")) {
+            w.write("datetime,licenseplate,lpr_latitude,lpr_longitude,state,lpr_direction,lpr_id\n");
+            for (int s = 0; s < tracks.size(); s++) {
+                List<Integer> mine = vehiclesOf.get(s);
+                if (mine.isEmpty())
+                    continue;
+                List<Ping> track = tracks.get(s);
+                for (int i = 0; i < track.size(); i += 200) {
+                    lprRow(w, near(track.get(i), 40, 120), vehicles.get(mine.get(rnd.nextInt(mine.size()))).plate(),
+                            cameras);
+                    n++;
+                }
+            }
+            for (int i = 0; i < LPR_BACKGROUND_PER_SCALE * scale; i++) {
+                lprRow(w, i % 2 == 0 ? onTrack(80, 600) : anywhere(),
+                        vehicles.get(rnd.nextInt(vehicles.size())).plate(), cameras);
+                n++;
+            }
+        }
+        return n;
+    }
+
+    private void lprRow(BufferedWriter w, Ping at, String plate, int cameras) throws IOException {
+        row(w, at.ts().format(SQL_TS), plate, Double.toString(at.lat()), Double.toString(at.lon()), "MD",
+                pick(DIRECTIONS), "L" + rnd.nextInt(cameras));
+    }
+
+    /**
+     * Telco_<day>.csv, one row per party of each event (the record of the
+     * subscriber in imsi). Half the calls stay within a household or between
+     * neighbouring records, the rest are random. The tower is the one nearest
+     * the party: the ankle ping at that time for subjects, home otherwise.
+     */
+    private long writeTelco() throws IOException {
+        long n = 0;
+        try (BufferedWriter w = writer("Telco_" + DAY + ".csv")) {
+            w.write("datetime,type,duration,imsi,imsi_from,imsi_to,msisdn,msisdn_from,msisdn_to,"
+                    + "mcc,mnc,lac,tower_id\n");
+            for (int i = 0; i < CALLS_PER_SCALE * scale; i++) {
+                Phone from;
+                LocalDateTime ts;
+                if (i % 10 == 0) {
+                    // subjects talk a lot
+                    int s = rnd.nextInt(tracks.size());
+                    List<Integer> mine = phonesOf.get(s);
+                    from = phones.get(mine.get(rnd.nextInt(mine.size())));
+                    ts = pingAt(s).ts();
+                } else {
+                    from = phones.get(rnd.nextInt(phones.size()));
+                    ts = randomTime();
+                }
+                Phone to = contactOf(from);
+                boolean call = rnd.nextInt(10) < 6;
+                String type = call ? "CALL" : "SMS";
+                String dur = call ? Long.toString(Math.round(-Math.log(1 - rnd.nextDouble()) * 120)) : "";
+                for (Phone party : new Phone[] { from, to }) {
+                    Tower t = nearestTower(positionOf(party.person(), ts));
+                    row(w, ts.format(SQL_TS), type, dur, party.imsi(), from.imsi(), to.imsi(), party.msisdn(),
+                            from.msisdn(), to.msisdn(), t.mcc(), t.mnc(), t.lac(), t.id());
+                    n++;
+                }
+            }
+        }
+        return n;
+    }
+
+    private Phone contactOf(Phone from) {
+        int p = from.person();
+        int other;
+        if (rnd.nextBoolean()) {
+            other = Math.max(0, Math.min(people.size() - 1, p + rnd.nextInt(11) - 5));
+            if (other == p)
+                other = p == 0 ? 1 : p - 1;
+        } else {
+            do {
+                other = rnd.nextInt(people.size());
+            } while (other == p);
+        }
+        List<Integer> theirs = phonesOf.get(other);
+        return phones.get(theirs.get(rnd.nextInt(theirs.size())));
+    }
+
+    private double[] positionOf(int person, LocalDateTime ts) {
+        if (person < tracks.size()) {
+            // last ping at or before ts, tracks are in time order
+            List<Ping> track = tracks.get(person);
+            int lo = 0, hi = track.size() - 1;
+            while (lo < hi) {
+                int mid = (lo + hi + 1) >>> 1;
+                if (track.get(mid).ts().isAfter(ts))
+                    hi = mid - 1;
+                else
+                    lo = mid;
+            }
+            Ping best = track.get(lo);
+            return new double[] { best.lat(), best.lon() };
+        }
+        Person p = people.get(person);
+        return new double[] { p.homeLat(), p.homeLon() };
+    }
+
+    private Tower nearestTower(double[] at) {
+        Tower best = null;
+        double bestD = Double.MAX_VALUE;
+        for (Tower t : towers) {
+            double dLat = t.lat() - at[0];
+            double dLon = (t.lon() - at[1]) * Math.cos(Math.toRadians(at[0]));
+            double d = dLat * dLat + dLon * dLon;
+            if (d < bestD) {
+                bestD = d;
+                best = t;
+            }
+        }
+        return best;
+    }
+
+    private void loadTowers() throws IOException {
+        List<String> lines = Files.readAllLines(source.resolve("CellSiteLocations.csv"), StandardCharsets.UTF_8);
+        for (String line : lines.subList(1, lines.size())) {
+            String[] f = line.replace("\"", "").split(",");
+            if (f.length < 6)
+                continue;
+            towers.add(new Tower(f[0].trim(), f[1].trim(), f[2].trim(), f[5].trim(),
+                    Double.parseDouble(f[3].trim()), Double.parseDouble(f[4].trim())));
+        }
+        if (towers.isEmpty())
+            throw new IllegalStateException("no cell sites in CellSiteLocations.csv");
+    }
+
+    // ---------- businesses and crimes ----------
+
+    // bundled rows as they are, then scale-1 jittered copies; half the copies
+    // are owned by generated people so owner lookups find someone
+    private int writeBusinesses(Connection c) throws IOException, SQLException {
+        List<String[]> base = readAllVarchar(c, source.resolve("Baltimore_Businesses.csv"),
+                "name, address, lat, lon, naics, owner_last, owner_firs, owner_midd");
+        int n = 0;
+        try (BufferedWriter w = writer("Baltimore_Businesses.csv")) {
+            w.write("name,address,lat,lon,naics,owner_last,owner_firs,owner_midd\n");
+            for (int r = 0; r < scale; r++) {
+                for (String[] b : base) {
+                    String[] f = b.clone();
+                    if (r > 0) {
+                        f[0] = b[0] + " #" + r;
+                        f[2] = jitter(b[2], 250);
+                        f[3] = jitter(b[3], 250);
+                        if (rnd.nextBoolean()) {
+                            Person p = people.get(rnd.nextInt(people.size()));
+                            f[5] = p.last();
+                            f[6] = p.first();
+                            f[7] = p.middle();
+                        }
+                    }
+                    row(w, f);
+                    n++;
+                }
+            }
+        }
+        return n;
+    }
+
+    private int writeCrimesBase(Connection c) throws IOException, SQLException {
+        List<String[]> base = readAllVarchar(c, source.resolve("crime_reports.csv"),
+                "report_id, coords, lat, lon, \"pre-text\", \"post-text\", report_dat, file_path");
+        int n = 0;
+        try (BufferedWriter w = writer("crime_reports.csv")) {
+            w.write("report_id,coords,lat,lon,pre-text,post-text,report_dat,file_path\n");
+            for (int r = 0; r < scale; r++) {
+                for (String[] b : base) {
+                    String[] f = b.clone();
+                    if (r > 0) {
+                        f[0] = b[0] + "-" + r;
+                        f[2] = jitter(b[2], 500);
+                        f[3] = jitter(b[3], 500);
+                        f[1] = f[2] + ", " + f[3];
+                        f[7] = "Worldline Data\\crime_reports\\" + f[0] + ".docx";
+                    }
+                    row(w, f);
+                    n++;
+                }
+            }
+        }
+        return n;
+    }
+
+    // two crimes on each subject's track, at the time the subject was there
+    private int appendPlantedCrimes() throws IOException {
+        int n = 0;
+        try (BufferedWriter w = Files.newBufferedWriter(out.resolve("crime_reports.csv"), StandardCharsets.UTF_8,
+                java.nio.file.StandardOpenOption.APPEND)) {
+            for (int s = 0; s < tracks.size(); s++) {
+                for (int k = 0; k < 2; k++) {
+                    Ping at = near(pingAt(s), 50, 0);
+                    LocalDateTime local = OffsetDateTime.of(at.ts(), ZoneOffset.UTC).withOffsetSameInstant(EST)
+                            .toLocalDateTime();
+                    String id = String.format("111116SY%03d%d", s, k);
+                    String lat = String.format("%.6f", at.lat());
+                    String lon = String.format("%.6f", at.lon());
+                    row(w, id, lat + ", " + lon, lat, lon,
+                            "On " + local.format(DateTimeFormatter.ofPattern("MM/dd/yyyy")) + " at approximately "
+                                    + local.format(DateTimeFormatter.ofPattern("h:mm a")) + ", officers responded to"
+                                    + " a report of " + pick(CRIMES) + " near " + people.get(s).address(),
+                            ". Synthetic report for the load harness.",
+                            local.format(DateTimeFormatter.ofPattern("MM-dd-yyyy")),
+                            "Worldline Data\\crime_reports\\" + id + ".docx");
+                    n++;
+                }
+            }
+        }
+        return n;
+    }
+
+    private static List<String[]> readAllVarchar(Connection c, Path csv, String columns) throws SQLException {
+        List<String[]> out = new ArrayList<>();
+        String path = csv.toAbsolutePath().toString().replace("'", "''");
+        try (Statement st = c.createStatement();
+                ResultSet rs = st.executeQuery("SELECT " + columns + " FROM read_csv_auto('" + path
+                        + "', header=true, all_varchar=true)")) {
+            int cols = rs.getMetaData().getColumnCount();
+            while (rs.next()) {
+                String[] f = new String[cols];
+                for (int i = 0; i < cols; i++)
+                    f[i] = rs.getString(i + 1);
+                out.add(f);
+            }
+        }
+        return out;
+    }
+
+    // ---------- helpers ----------
+
+    private Ping pingAt(int subject) {
+        List<Ping> track = tracks.get(subject);
+        return track.get(rnd.nextInt(track.size()));
+    }
+
+    private Ping onTrack(double meters, int seconds) {
+        return near(pingAt(rnd.nextInt(tracks.size())), meters, seconds);
+    }
+
+    private Ping near(Ping p, double meters, int seconds) {
+        double lat = p.lat() + (rnd.nextDouble() - 0.5) * 2 * meters / M_PER_DEG;
+        double lon = p.lon() + (rnd.nextDouble() - 0.5) * 2 * meters / (M_PER_DEG * Math.cos(Math.toRadians(p.lat())));
+        LocalDateTime ts = seconds == 0 ? p.ts() : p.ts().plusSeconds(rnd.nextInt(2 * seconds + 1) - seconds);
+        return new Ping(ts, lat, lon);
+    }
+
+    private Ping anywhere() {
+        return new Ping(randomTime(), MIN_LAT + rnd.nextDouble() * (MAX_LAT - MIN_LAT),
+                MIN_LON + rnd.nextDouble() * (MAX_LON - MIN_LON));
+    }
+
+    // somewhere in the subject day (UTC, like the ingested ankle ts)
+    private LocalDateTime randomTime() {
+        return LocalDateTime.parse(DAY + "T05:00:00").plusSeconds(rnd.nextInt(24 * 3600));
+    }
+
+    private String jitter(String deg, double meters) {
+        if (deg == null || deg.isBlank())
+            return deg;
+        try {
+            return Double.toString(Double.parseDouble(deg.trim()) + (rnd.nextDouble() - 0.5) * 2 * meters / M_PER_DEG);
+        } catch (NumberFormatException e) {
+            return deg;
+        }
+    }
+
+    private <T> T pick(T[] from) {
+        return from[rnd.nextInt(from.length)];
+    }
+
+    private BufferedWriter writer(String name) throws IOException {
+        return Files.newBufferedWriter(out.resolve(name), StandardCharsets.UTF_8);
+    }
+
+    private static void row(BufferedWriter w, String... fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0)
+                w.write(',');
+            String f = fields[i];
+            if (f == null)
+                continue;
+            if (f.indexOf(',') >= 0 || f.indexOf('"') >= 0 || f.indexOf('\n') >= 0) {
+                w.write('"');
+                w.write(f.replace("\"", "\"\""));
+                w.write('"');
+            } else {
+                w.write(f);
+            }
+        }
+        w.write('\n');
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.network_tool.bench;
+
+import com.example.network_tool.db.DuckDb;
+import com.example.network_tool.logic.ProfileLogic;
+import com.example.network_tool.mapper.ProfileJsonMapper;
+import com.example.network_tool.metrics.ProfileMetrics;
+import com.example.network_tool.model.Models.Consts;
+import com.example.network_tool.repo.DuckDbRepo;
+import com.example.network_tool.service.AnalysisEngines;
+import com.example.network_tool.service.AnalysisEngines.Engine;
+import com.example.network_tool.service.NetworkSettings;
+import com.example.network_tool.service.ProfileService;
+import com.example.network_tool.service.ReferenceDataCache;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Profiles the same SSNs with every analysis on the jvm engine and then on
+ * the sql engine (AnalysisEngines), over a small generated dataset, and
+ * checks the documents agree: the sections the engines compute
+ * (businesses_linked, wifi_nearby, lpr_sightings) and what is derived from
+ * them (crime_matches) row for row, everything else node for node.
+ * <p>
+ * Rows are compared as sets since the engines break ties in the sort order
+ * differently; the sequence of sort keys still has to match, and when a
+ * section is at its cap the rows tied with the last kept one are left out
+ * (either engine may keep any of them). Computed distances are compared to
+ * the micrometre.
+ */
+class EngineEquivalenceTest {
+    private static final int SCALE = 1;
+    private static final long SEED = 42;
+    // people besides every monitored subject
+    private static final int SAMPLES = 20;
+
+    private record Section(String field, int cap, Function<JsonNode, String> rank) {
+    }
+
+    private static final List<Section> SECTIONS = List.of(
+            new Section("businesses_linked", 10, r -> r.path("visit_hours").asText() + "/" + r.path("pings").asText()),
+            new Section("wifi_nearby", 200, r -> r.path("hits").asText()),
+            new Section("lpr_sightings", 500, r -> r.path("ts").asText()),
+            new Section("crime_matches", 0, r -> ""));
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    @TempDir
+    static Path tmp;
+
+    private static DuckDb duck;
+    private static ProfileService jvm, sql;
+    // ssn -> { jvm, sql }, only SSNs with a person
+    private static final Map<String, JsonNode[]> profiles = new LinkedHashMap<>();
+
+    @BeforeAll
+    static void profileOnBothEngines() throws Exception {
+        DatasetGenerator.Summary data = DatasetGenerator.generate(Path.of("data"), tmp, SCALE, SEED);
+        Set<String> ssns = new LinkedHashSet<>(data.subjectSsns());
+        Random rnd = new Random(SEED);
+        for (int i = 0; i < SAMPLES; i++)
+            ssns.add(data.ssns().get(rnd.nextInt(data.ssns().size())));
+
+        duck = new DuckDb(tmp.toString(), "", 4, 30_000, "csv", "");
+        // the jvm engine's wifi / LPR scans read Arrow vectors, not the JDBC fallback
+        assertThat(duck.arrowScans()).as("Arrow scans, see arrow.jvmArgs in the pom").isTrue();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ProfileMetrics metrics = new ProfileMetrics(registry);
+        DuckDbRepo repo = new DuckDbRepo(duck, metrics);
+        ReferenceDataCache refCache = new ReferenceDataCache(repo, duck, registry);
+        jvm = service(repo, refCache, metrics, Engine.JVM);
+        sql = service(repo, refCache, metrics, Engine.SQL);
+
+        for (String ssn : ssns) {
+            JsonNode a = JSON.readTree(jvm.profileJson(ssn)), b = JSON.readTree(sql.profileJson(ssn));
+            assertThat(a.has("person")).as("%s has a person on one engine only", ssn).isEqualTo(b.has("person"));
+            if (a.has("person"))
+                profiles.put(ssn, new JsonNode[] { a, b });
+            else
+                assertThat(a).isEqualTo(b);
+        }
+        assertThat(profiles).isNotEmpty();
+    }
+
+    private static ProfileService service(DuckDbRepo repo, ReferenceDataCache refCache, ProfileMetrics metrics,
+            Engine engine) {
+        return new ProfileService(repo, new ProfileLogic(), new ProfileJsonMapper(), refCache, metrics,
+                AnalysisEngines.all(engine), NetworkSettings.defaults(), 4, 1, false, Consts.CRIME_MINUTES);
+    }
+
+    @AfterAll
+    static void close() throws Exception {
+        if (jvm != null)
+            jvm.close();
+        if (sql != null)
+            sql.close();
+        if (duck != null)
+            duck.close();
+    }
+
+    static List<String> sections() {
+        return SECTIONS.stream().map(Section::field).toList();
+    }
+
+    @ParameterizedTest
+    @MethodSource("sections")
+    void sectionIsTheSameOnBothEngines(String field) {
+        Section s = SECTIONS.stream().filter(x -> x.field().equals(field)).findFirst().orElseThrow();
+        List<String> diffs = new ArrayList<>();
+        int withRows = 0;
+        for (Map.Entry<String, JsonNode[]> e : profiles.entrySet()) {
+            JsonNode a = e.getValue()[0].path(field), b = e.getValue()[1].path(field);
+            String diff = compare(s, a, b);
+            if (diff != null)
+                diffs.add(e.getKey() + ": " + diff);
+            if (a.size() > 0)
+                withRows++;
+        }
+        assertThat(diffs).as(field).isEmpty();
+        // the dataset puts events and crimes on the subjects' tracks, so
+        // every section has rows to compare for someone
+        assertThat(withRows).as("profiles with %s rows", field).isPositive();
+    }
+
+    @Test
+    void everyOtherSectionIsTheSameOnBothEngines() {
+        for (Map.Entry<String, JsonNode[]> e : profiles.entrySet()) {
+            ObjectNode a = e.getValue()[0].deepCopy(), b = e.getValue()[1].deepCopy();
+            for (Section s : SECTIONS) {
+                a.remove(s.field());
+                b.remove(s.field());
+            }
+            assertThat(b).as(e.getKey()).isEqualTo(a);
+        }
+    }
+
+    // null when the two arrays agree, otherwise what differs
+    private static String compare(Section s, JsonNode a, JsonNode b) {
+        List<JsonNode> ra = rows(a), rb = rows(b);
+        if (ra.size() != rb.size())
+            return ra.size() + " rows vs " + rb.size();
+        List<String> ka = ra.stream().map(s.rank()).toList(), kb = rb.stream().map(s.rank()).toList();
+        if (!ka.equals(kb))
+            return "order differs: " + ka + " vs " + kb;
+
+        // at the cap, which of the rows tied with the last one made it in is arbitrary
+        String cut = s.cap() > 0 && ra.size() >= s.cap() ? ka.get(ka.size() - 1) : null;
+        List<String> ca = canonical(ra, s, cut), cb = canonical(rb, s, cut);
+        if (ca.equals(cb))
+            return null;
+        List<String> onlyA = new ArrayList<>(ca), onlyB = new ArrayList<>(cb);
+        cb.forEach(onlyA::remove);
+        ca.forEach(onlyB::remove);
+        return "jvm only " + onlyA.stream().limit(2).toList() + ", sql only " + onlyB.stream().limit(2).toList();
+    }
+
+    private static List<JsonNode> rows(JsonNode arr) {
+        List<JsonNode> out = new ArrayList<>();
+        arr.forEach(out::add);
+        return out;
+    }
+
+    private static List<String> canonical(List<JsonNode> rows, Section s, String cut) {
+        List<String> out = new ArrayList<>();
+        for (JsonNode r : rows)
+            if (cut == null || !cut.equals(s.rank().apply(r)))
+                out.add(canonical(r));
+        Collections.sort(out);
+        return out;
+    }
+
+    // field order kept, doubles to 6 decimals (distances come out of two
+    // different libm's)
+    private static String canonical(JsonNode n) {
+        if (n.isDouble() || n.isFloat())
+            return String.format("%.6f", n.doubleValue());
+        if (n.isArray()) {
+            List<String> out = new ArrayList<>();
+            n.forEach(x -> out.add(canonical(x)));
+            return out.toString();
+        }
+        if (n.isObject()) {
+            StringBuilder sb = new StringBuilder("{");
+            for (Iterator<Map.Entry<String, JsonNode>> it = n.fields(); it.hasNext();) {
+                Map.Entry<String, JsonNode> e = it.next();
+                sb.append(e.getKey()).append('=').append(canonical(e.getValue()));
+                if (it.hasNext())
+                    sb.append(", ");
+            }
+            return sb.append('}').toString();
+        }
+        return n.toString();
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.network_tool.db;
+
+import com.example.network_tool.bench.DatasetGenerator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * follow() over an in-memory DuckDb on a generated data dir, with one more
+ * ankle monitor CSV for the tests to append to.
+ */
+class DuckDbFollowTest {
+    private static final String HEADER = "datetime,location_x,location_y,firstname,lastname,middlename,ssn";
+    private static final List<String> PINGS = List.of(
+            "2016-11-11T10:00:04.000-05:00,-76.6,39.3,Jared,Combs,Skyler,901-NI-6283",
+            "2016-11-11T10:00:09.000-05:00,-76.7,39.4,Jared,Combs,Skyler,901-NI-6283",
+            "2016-11-11T10:00:14.000-05:00,-76.8,39.5,Jared,Combs,Skyler,901-NI-6283");
+
+    @TempDir
+    static Path dataDir;
+
+    private Path csv;
+    private DuckDb duck;
+    // raw_ankle rows at boot
+    private long loaded;
+
+    @BeforeAll
+    static void generate() throws Exception {
+        DatasetGenerator.generate(Path.of("data"), dataDir, 1, 42);
+    }
+
+    @BeforeEach
+    void boot() throws Exception {
+        csv = Files.writeString(dataDir.resolve("Test_Ankle_Monitor.csv"), HEADER + "\n" + PINGS.get(0) + "\n");
+        duck = new DuckDb(dataDir.toString(), "", 2, 30_000, "csv", "");
+        loaded = count();
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        if (duck != null)
+            duck.close();
+    }
+
+    private void append(String line) throws Exception {
+        Files.writeString(csv, line + "\n", StandardOpenOption.APPEND);
+    }
+
+    private long count() throws SQLException {
+        try (Connection c = duck.borrow(); Statement st = c.createStatement();
+                ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM raw_ankle")) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private void exec(String sql) throws SQLException {
+        try (Connection c = duck.borrow(); Statement st = c.createStatement()) {
+            st.execute(sql);
+        }
+    }
+
+    @Test
+    void appendedLinesAreFollowedOnce() throws Exception {
+        append(PINGS.get(1));
+        append(PINGS.get(2));
+        long version = duck.version("raw_ankle");
+
+        assertThat(duck.follow("raw_ankle")).isEqualTo(2);
+        assertThat(duck.follow("raw_ankle")).isZero();
+        assertThat(count()).isEqualTo(loaded + 2);
+        assertThat(duck.version("raw_ankle")).isEqualTo(version + 1);
+    }
+
+    @Test
+    void linesOfAFailedAppendAreFollowedNextRound() throws Exception {
+        assertThat(duck.follow("raw_ankle")).isZero();
+        append(PINGS.get(1));
+        append(PINGS.get(2));
+
+        // no raw_ankle to insert into makes the append fail
+        exec("ALTER TABLE raw_ankle RENAME TO raw_ankle_away");
+        assertThatThrownBy(() -> duck.follow("raw_ankle")).isInstanceOf(SQLException.class);
+        exec("ALTER TABLE raw_ankle_away RENAME TO raw_ankle");
+
+        assertThat(duck.follow("raw_ankle")).isEqualTo(2);
+        assertThat(count()).isEqualTo(loaded + 2);
+    }
+}
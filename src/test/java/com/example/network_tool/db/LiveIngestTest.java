@@ -0,0 +1,86 @@
+package com.example.network_tool.db;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * offer() / spool() of the socket and pipe lines, without a DuckDb: live
+ * ingest left disabled only keeps the queues, which is all these touch.
+ */
+class LiveIngestTest {
+    private static final String HEADER = "datetime,location_x,location_y,firstname,lastname,middlename,ssn";
+    private static final String PING_1 = "2016-11-11T10:00:04.000-05:00,-76.6,39.3,Jared,Combs,Skyler,901-NI-6283";
+    private static final String PING_2 = "2016-11-11T10:00:09.000-05:00,-76.7,39.4,Jared,Combs,Skyler,901-NI-6283";
+    private static final String PING_3 = "2016-11-11T10:00:14.000-05:00,-76.8,39.5,Jared,Combs,Skyler,901-NI-6283";
+
+    @TempDir
+    Path dataDir;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private LiveIngest live() throws IOException {
+        return new LiveIngest(null, registry, dataDir.toString(), "csv", false, 1000, 0, "127.0.0.1", "");
+    }
+
+    private double rejected() {
+        return registry.counter("ingest.live.rejected").count();
+    }
+
+    @Test
+    void offeredLinesAreSpooledUnderAHeaderOnce() throws IOException {
+        LiveIngest live = live();
+        live.offer("ankle," + PING_1);
+        live.offer("ANKLE ," + PING_2);
+        live.spool("ankle");
+        live.offer("ankle," + PING_3);
+        live.spool("ankle");
+        // nothing pending: no write, no file
+        live.spool("lpr");
+
+        assertThat(Files.readAllLines(dataDir.resolve("Live_Ankle_Monitor.csv")))
+                .containsExactly(HEADER, PING_1, PING_2, PING_3);
+        assertThat(dataDir.resolve("LPR_live.csv")).doesNotExist();
+    }
+
+    @Test
+    void badLinesAreCountedAndDropped() throws IOException {
+        LiveIngest live = live();
+        live.offer("");
+        live.offer("   ");
+        live.offer("wifi," + PING_1);
+        live.offer("ankle,2016-11-11 15:00:04,-76.6,39.3");
+        live.offer("lpr,2016-11-11 15:00:04,ABC1234,39.29,-76.61,MD,N");
+        live.offer("no comma at all");
+        live.spool("ankle");
+        live.spool("lpr");
+
+        // blank lines are skipped, not rejected
+        assertThat(rejected()).isEqualTo(4);
+        assertThat(dataDir.resolve("Live_Ankle_Monitor.csv")).doesNotExist();
+        assertThat(dataDir.resolve("LPR_live.csv")).doesNotExist();
+    }
+
+    @Test
+    void linesOfAFailedWriteAreKeptForTheNextRound() throws IOException {
+        LiveIngest live = live();
+        // a directory where the spool file goes makes the write fail
+        Path spool = Files.createDirectory(dataDir.resolve("Live_Ankle_Monitor.csv"));
+        live.offer("ankle," + PING_1);
+        live.offer("ankle," + PING_2);
+        assertThatThrownBy(() -> live.spool("ankle")).isInstanceOf(IOException.class);
+
+        Files.delete(spool);
+        live.offer("ankle," + PING_3);
+        live.spool("ankle");
+
+        assertThat(Files.readAllLines(spool)).containsExactly(HEADER, PING_1, PING_2, PING_3);
+    }
+}
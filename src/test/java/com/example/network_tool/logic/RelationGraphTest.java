@@ -0,0 +1,109 @@
+package com.example.network_tool.logic;
+
+import com.example.network_tool.logic.RelationGraph.Link;
+import com.example.network_tool.logic.RelationGraph.Query;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The graph, and with it every expand(), must not depend on the order the
+ * people and links were fed to the Builder (SQL row order, which DuckDB does
+ * not promise). Groups are big enough for the fan-out caps to cut them.
+ */
+class RelationGraphTest {
+    private static final int PEOPLE = 400;
+
+    private static String ssn(int i) {
+        return String.format("%03d-00-%04d", i % 7, i);
+    }
+
+    // every link as a Builder call, so they can be replayed in any order
+    private static List<Consumer<RelationGraph.Builder>> links(Random rnd) {
+        List<Consumer<RelationGraph.Builder>> out = new ArrayList<>();
+        for (int i = 0; i < PEOPLE; i++) {
+            String s = ssn(i);
+            String home = "ADDR " + rnd.nextInt(60);
+            String employer = "EMPLOYER " + rnd.nextInt(25);
+            String office = "ADDR " + rnd.nextInt(60);
+            out.add(b -> b.residence(s, home));
+            out.add(b -> b.employment(s, employer));
+            out.add(b -> b.workplace(s, office));
+            // some people twice at the same place or employer, and one link to someone unknown
+            if (i % 9 == 0)
+                out.add(b -> b.residence(s, home));
+            if (i % 11 == 0)
+                out.add(b -> b.employment(s, employer));
+            if (i % 13 == 0)
+                out.add(b -> b.employment(s, "UNKNOWN PERSON'S EMPLOYER").residence("999-99-9999", home));
+        }
+        for (int k = 0; k < PEOPLE * 3; k++) {
+            String a = ssn(rnd.nextInt(PEOPLE)), c = ssn(rnd.nextInt(PEOPLE));
+            // few distinct counts, so plenty of ties among a person's contacts
+            int events = 1 + rnd.nextInt(4);
+            out.add(b -> b.call(a, c, events));
+        }
+        return out;
+    }
+
+    private static RelationGraph build(List<String> nodes, List<Consumer<RelationGraph.Builder>> links) {
+        RelationGraph.Builder b = new RelationGraph.Builder(nodes);
+        links.forEach(l -> l.accept(b));
+        return b.build();
+    }
+
+    private static List<Query> queries() {
+        List<Query> out = new ArrayList<>();
+        out.add(new Query(3, RelationGraph.allLinks(), 0, 10_000, 1));
+        out.add(new Query(2, RelationGraph.allLinks(), 3, 40, 2));
+        for (Link l : Link.values())
+            out.add(new Query(3, EnumSet.of(l), 2, 25, 1));
+        out.add(new Query(2, Set.of(Link.HOUSEHOLD, Link.COWORKER), 1, 15, 1));
+        return out;
+    }
+
+    @Test
+    void expandDoesNotDependOnInputOrder() {
+        List<String> nodes = new ArrayList<>();
+        for (int i = 0; i < PEOPLE; i++)
+            nodes.add(ssn(i));
+        List<Consumer<RelationGraph.Builder>> links = links(new Random(7));
+        RelationGraph first = build(nodes, links);
+
+        for (long seed = 1; seed <= 5; seed++) {
+            List<String> shuffledNodes = new ArrayList<>(nodes);
+            List<Consumer<RelationGraph.Builder>> shuffledLinks = new ArrayList<>(links);
+            Collections.shuffle(shuffledNodes, new Random(seed));
+            Collections.shuffle(shuffledLinks, new Random(seed));
+            RelationGraph again = build(shuffledNodes, shuffledLinks);
+
+            assertThat(again.nodeCount()).isEqualTo(first.nodeCount());
+            assertThat(again.edgeCount()).isEqualTo(first.edgeCount());
+            for (Query q : queries())
+                for (String s : nodes)
+                    assertThat(again.expand(s, q)).as("seed %d, %s from %s", seed, q, s)
+                            .containsExactlyElementsOf(first.expand(s, q));
+        }
+    }
+
+    @Test
+    void capsCutTheNetwork() {
+        // or the test above would not be checking which neighbours a cap keeps
+        List<String> nodes = new ArrayList<>();
+        for (int i = 0; i < PEOPLE; i++)
+            nodes.add(ssn(i));
+        RelationGraph g = build(nodes, links(new Random(7)));
+        String s = ssn(0);
+        assertThat(g.expand(s, new Query(1, EnumSet.of(Link.COWORKER), 0, 10_000, 1)).size())
+                .isGreaterThan(g.expand(s, new Query(1, EnumSet.of(Link.COWORKER), 2, 10_000, 1)).size());
+        assertThat(g.expand(s, new Query(3, RelationGraph.allLinks(), 3, 40, 2))).hasSize(40);
+    }
+}
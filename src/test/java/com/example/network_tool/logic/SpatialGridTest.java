@@ -0,0 +1,135 @@
+package com.example.network_tool.logic;
+
+import com.example.network_tool.model.Models.Business;
+import com.example.network_tool.model.Models.Consts;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * SpatialGrid.near against the full haversine scan it replaced, over the
+ * bundled businesses and ankle track: the same set for every ping, and for
+ * pings placed on cell edges and on the radius itself.
+ */
+class SpatialGridTest {
+    private static final double RADIUS_M = Consts.BIZ_RADIUS_M;
+
+    private static List<Business> businesses;
+    private static List<double[]> pings;
+
+    @BeforeAll
+    static void load() throws SQLException {
+        businesses = new ArrayList<>();
+        pings = new ArrayList<>();
+        // same casts as the raw_businesses / raw_ankle selects in DuckDb
+        try (Connection c = DriverManager.getConnection("jdbc:duckdb:");
+                Statement st = c.createStatement()) {
+            try (ResultSet rs = st.executeQuery("""
+                    SELECT UPPER(TRIM(CAST(name AS VARCHAR))), TRY_CAST(lat AS DOUBLE), TRY_CAST(lon AS DOUBLE)
+                    FROM read_csv_auto('data/Baltimore_Businesses.csv', header=true)
+                    WHERE TRY_CAST(lat AS DOUBLE) IS NOT NULL AND TRY_CAST(lon AS DOUBLE) IS NOT NULL
+                    """)) {
+                while (rs.next()) {
+                    Business b = new Business();
+                    b.name = rs.getString(1);
+                    b.lat = rs.getDouble(2);
+                    b.lon = rs.getDouble(3);
+                    businesses.add(b);
+                }
+            }
+            try (ResultSet rs = st.executeQuery("""
+                    SELECT TRY_CAST(location_y AS DOUBLE), TRY_CAST(location_x AS DOUBLE)
+                    FROM read_csv_auto('data/*_Ankle_Monitor.csv', header=true, all_varchar=true)
+                    WHERE TRY_CAST(location_y AS DOUBLE) IS NOT NULL AND TRY_CAST(location_x AS DOUBLE) IS NOT NULL
+                    """)) {
+                while (rs.next())
+                    pings.add(new double[] { rs.getDouble(1), rs.getDouble(2) });
+            }
+        }
+        assertThat(businesses).isNotEmpty();
+        assertThat(pings).isNotEmpty();
+    }
+
+    private static Set<Business> scan(double lat, double lon) {
+        Set<Business> out = new HashSet<>();
+        for (Business b : businesses)
+            if (ProfileLogic.haversineM(lat, lon, b.lat, b.lon) <= RADIUS_M)
+                out.add(b);
+        return out;
+    }
+
+    private static void assertSameAsScan(SpatialGrid<Business> grid, double lat, double lon) {
+        List<Business> near = grid.near(lat, lon, RADIUS_M);
+        assertThat(new HashSet<>(near))
+                .as("near(%s, %s)", lat, lon)
+                .isEqualTo(scan(lat, lon))
+                .hasSize(near.size());
+    }
+
+    private static SpatialGrid<Business> grid() {
+        return new SpatialGrid<>(businesses, b -> b.lat, b -> b.lon, RADIUS_M);
+    }
+
+    @Test
+    void everyAnklePingMatchesTheFullScan() {
+        SpatialGrid<Business> grid = grid();
+        int hits = 0;
+        for (double[] p : pings) {
+            assertSameAsScan(grid, p[0], p[1]);
+            hits += scan(p[0], p[1]).isEmpty() ? 0 : 1;
+        }
+        // the track does pass businesses, or this would prove little
+        assertThat(hits).isPositive();
+    }
+
+    @Test
+    void pingsOnCellEdgesMatchTheFullScan() {
+        SpatialGrid<Business> grid = grid();
+        // cell size as SpatialGrid works it out
+        double cellLat = RADIUS_M / 111_000.0;
+        double maxAbsLat = businesses.stream().mapToDouble(b -> Math.abs(b.lat)).max().orElse(0);
+        double cellLon = cellLat / Math.cos(Math.toRadians(maxAbsLat));
+        for (int i = 0; i < pings.size(); i += 25) {
+            double lat = pings.get(i)[0], lon = pings.get(i)[1];
+            double edgeLat = Math.floor(lat / cellLat) * cellLat;
+            double edgeLon = Math.floor(lon / cellLon) * cellLon;
+            for (double dLat : new double[] { -1e-12, 0, 1e-12 })
+                for (double dLon : new double[] { -1e-12, 0, 1e-12 }) {
+                    assertSameAsScan(grid, edgeLat + dLat, lon);
+                    assertSameAsScan(grid, lat, edgeLon + dLon);
+                    assertSameAsScan(grid, edgeLat + dLat, edgeLon + dLon);
+                }
+        }
+    }
+
+    @Test
+    void pingsOnTheRadiusMatchTheFullScan() {
+        SpatialGrid<Business> grid = grid();
+        double r = 6371000.0;
+        for (int i = 0; i < businesses.size(); i += 7) {
+            Business b = businesses.get(i);
+            for (int deg = 0; deg < 360; deg += 15) {
+                for (double d : new double[] { RADIUS_M - 1e-6, RADIUS_M, RADIUS_M + 1e-6 }) {
+                    // point d meters from b on bearing deg (spherical, same earth radius)
+                    double phi = Math.toRadians(b.lat), lam = Math.toRadians(b.lon);
+                    double th = Math.toRadians(deg), dr = d / r;
+                    double phi2 = Math.asin(Math.sin(phi) * Math.cos(dr) + Math.cos(phi) * Math.sin(dr) * Math.cos(th));
+                    double lam2 = lam + Math.atan2(Math.sin(th) * Math.sin(dr) * Math.cos(phi),
+                            Math.cos(dr) - Math.sin(phi) * Math.sin(phi2));
+                    assertSameAsScan(grid, Math.toDegrees(phi2), Math.toDegrees(lam2));
+                }
+            }
+        }
+    }
+}
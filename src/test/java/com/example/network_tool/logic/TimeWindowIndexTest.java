@@ -0,0 +1,114 @@
+package com.example.network_tool.logic;
+
+import com.example.network_tool.model.Models;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * TimeWindowIndex against the predicate of the loops it replaced,
+ * {@code Math.abs(Duration.between(probe, event).toMinutes()) <= windowMin}:
+ * events before and after the probe, on and around exact minute boundaries,
+ * and probes and events with sub-second parts.
+ */
+class TimeWindowIndexTest {
+    private static final long[] WINDOWS = { 0, 1, 10 };
+    private static final Instant BASE = Instant.parse("2016-11-11T15:00:00Z");
+    // nanos either side of a whole second / minute
+    private static final long[] NUDGES = { 0, 1, -1, 1_000, -1_000, 1_000_000, -1_000_000,
+            500_000_000, -500_000_000, 999_999_999, -999_999_999 };
+
+    private static boolean old(Instant probe, Instant event, long windowMin) {
+        return Math.abs(Duration.between(probe, event).toMinutes()) <= windowMin;
+    }
+
+    private static List<Instant> probes() {
+        List<Instant> out = new ArrayList<>();
+        for (long n : new long[] { 0, 1, 1_000, 250_000_000, 999_999_999 }) {
+            out.add(BASE.plusNanos(n));
+            out.add(BASE.minusNanos(n));
+        }
+        return out;
+    }
+
+    // every whole-minute offset up to 12 min either side, each nudged by NUDGES,
+    // plus the same around 1 s off the minute, shuffled so list order != time order
+    private static List<Instant> events() {
+        List<Instant> out = new ArrayList<>();
+        for (int m = -12; m <= 12; m++)
+            for (long s : new long[] { 0, 1, -1, 30 })
+                for (long n : NUDGES)
+                    out.add(BASE.plusSeconds(m * 60L + s).plusNanos(n));
+        // same time twice, both must come back
+        out.add(BASE);
+        out.add(BASE.plusSeconds(60));
+        Collections.shuffle(out, new Random(42));
+        return out;
+    }
+
+    @Test
+    void millisHelpersMatchTheDurationPredicate() {
+        // AnkleTrack keeps whole millis, so only the milli nudges apply to the events
+        long[] millis = events().stream()
+                .mapToLong(Instant::toEpochMilli)
+                .sorted()
+                .toArray();
+        for (Instant probe : probes())
+            for (long w : WINDOWS) {
+                int[] r = TimeWindowIndex.range(millis, probe, w);
+                for (int i = 0; i < millis.length; i++) {
+                    boolean want = old(probe, Instant.ofEpochMilli(millis[i]), w);
+                    assertThat(TimeWindowIndex.withinMillis(probe, millis[i], w))
+                            .as("probe %s, event %d, window %d", probe, millis[i], w)
+                            .isEqualTo(want);
+                    // range() may over-select, never miss
+                    if (want)
+                        assertThat(i).isBetween(r[0], r[1] - 1);
+                }
+            }
+    }
+
+    @Test
+    void microsIndexMatchesTheDurationPredicate() {
+        // WifiScan / LprScan keep whole micros; shuffled, and once already sorted
+        List<Instant> events = events();
+        long[] shuffled = events.stream().mapToLong(Models::microsOf).toArray();
+        long[] sorted = shuffled.clone();
+        Arrays.sort(sorted);
+        for (long[] micros : List.of(shuffled, sorted)) {
+            TimeWindowIndex.Micros idx = TimeWindowIndex.ofMicros(micros);
+            assertThat(idx.size()).isEqualTo(micros.length);
+            for (Instant probe : probes())
+                for (long w : WINDOWS) {
+                    int[] want = IntStream.range(0, micros.length)
+                            .filter(i -> old(probe, Models.instantOfMicros(micros[i]), w))
+                            .toArray();
+                    assertThat(idx.positions(probe, w)).as("probe %s, window %d", probe, w).containsExactly(want);
+                }
+        }
+    }
+
+    @Test
+    void eventsJustUnderAMinuteBeforeCountAsAWholeMinute() {
+        // Duration keeps its nanos positive, so -59.5 s is -60 s + 0.5 s and
+        // toMinutes() gives -1; the old loops (and the index) took abs after
+        // that, which is not the same as Duration.abs().toMinutes() == 0
+        Instant event = BASE.minusMillis(59_500);
+        assertThat(old(BASE, event, 0)).isFalse();
+        assertThat(Duration.between(BASE, event).abs().toMinutes()).isZero();
+        assertThat(TimeWindowIndex.ofMicros(new long[] { Models.microsOf(event) }).positions(BASE, 0)).isEmpty();
+        assertThat(TimeWindowIndex.withinMillis(BASE, event.toEpochMilli(), 0)).isFalse();
+        // after the probe the two agree
+        assertThat(TimeWindowIndex.ofMicros(new long[] { Models.microsOf(BASE.plusMillis(59_500)) }).positions(BASE, 0))
+                .containsExactly(0);
+    }
+}